@@ -19,6 +19,8 @@
  */
 package com.xpn.xwiki.plugin.activitystream.api;
 
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 
 import com.sun.syndication.feed.synd.SyndEntry;
@@ -150,6 +152,26 @@ void addDocumentActivityEvent(String streamName, XWikiDocument doc, String type,
      */
     void deleteActivityEvent(ActivityEvent event, XWikiContext context) throws ActivityStreamException;
 
+    /**
+     * Delete all the events older than the given date, from all the databases where events are stored.
+     *
+     * @param date the events strictly older than this date are deleted
+     * @param context the XWiki context
+     * @return the number of deleted events
+     * @throws ActivityStreamException if the delete of the events fails
+     * @since 10.0RC1
+     */
+    default int deleteActivityEvents(Date date, XWikiContext context) throws ActivityStreamException
+    {
+        List<ActivityEvent> events =
+            searchEvents("act.date < ?", false, true, 0, 0, Arrays.<Object>asList(date), context);
+        for (ActivityEvent event : events) {
+            deleteActivityEvent(event, context);
+        }
+
+        return events.size();
+    }
+
     /**
      * Search events.
      *
@@ -19,16 +19,13 @@
  */
 package com.xpn.xwiki.plugin.activitystream.impl;
 
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 
 import org.apache.commons.lang3.time.DateUtils;
 import org.quartz.Job;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
-import com.xpn.xwiki.plugin.activitystream.api.ActivityEvent;
 import com.xpn.xwiki.plugin.activitystream.api.ActivityStreamException;
 import com.xpn.xwiki.plugin.activitystream.plugin.ActivityStreamPlugin;
 import com.xpn.xwiki.plugin.scheduler.AbstractJob;
@@ -45,19 +42,14 @@ protected void executeJob(JobExecutionContext jobContext) throws JobExecutionExc
     {
         ActivityStreamPlugin plugin = (ActivityStreamPlugin) getXWikiContext().getWiki()
             .getPlugin(ActivityStreamPlugin.PLUGIN_NAME, getXWikiContext());
-        List<Object> parameters = new ArrayList<Object>();
         int days = ActivityStreamCleaner.getNumberOfDaysToKeep(getXWikiContext());
 
         if (days > 0) {
-            parameters.add(DateUtils.addDays(new Date(), days * -1));
             try {
-                List<ActivityEvent> events = plugin.getActivityStream().searchEvents("date < ?", false, true, 0, 0,
-                    parameters, getXWikiContext());
-                for (ActivityEvent event : events) {
-                    plugin.getActivityStream().deleteActivityEvent(event, getXWikiContext());
-                }
+                plugin.getActivityStream().deleteActivityEvents(DateUtils.addDays(new Date(), days * -1),
+                    getXWikiContext());
             } catch (ActivityStreamException e) {
-                // TODO
+                throw new JobExecutionException("Failed to delete the old activity stream events", e);
             }
         }
     }
@@ -24,8 +24,11 @@
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -108,6 +111,21 @@ public class ActivityStreamImpl implements ActivityStream, EventListener
      */
     private static final String NESTED_SPACE_FORMAT = "%s.%%";
 
+    /**
+     * The name of the date parameter of the queries deleting old events.
+     */
+    private static final String DATE_PARAMETER = "date";
+
+    /**
+     * The name of the identifiers parameter of the queries deleting old events.
+     */
+    private static final String IDS_PARAMETER = "ids";
+
+    /**
+     * The maximum number of old events deleted in a single transaction.
+     */
+    private static final int DELETE_BATCH_SIZE = 500;
+
     /**
      * The events to match.
      */
@@ -567,6 +585,94 @@ public void deleteActivityEvent(ActivityEvent event, XWikiContext context) throw
         this.sendEventStreamEvent(new EventStreamDeletedEvent(), event);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The events are deleted by batches of identifiers, starting with the oldest events, each batch in its own
+     * transaction. This way each statement only goes through a bounded number of rows and holds its locks for a short
+     * time, whatever the size of the table. The events of a batch are loaded before being deleted so that an
+     * {@link EventStreamDeletedEvent} can be sent for each of them once the batch is committed.
+     *
+     * @since 10.0RC1
+     */
+    @Override
+    public int deleteActivityEvents(Date date, XWikiContext context) throws ActivityStreamException
+    {
+        Set<String> wikis = new LinkedHashSet<>();
+        if (useMainStore()) {
+            wikis.add(context.getMainXWiki());
+        }
+        if (useLocalStore()) {
+            try {
+                wikis.addAll(context.getWiki().getVirtualWikisDatabaseNames(context));
+            } catch (XWikiException e) {
+                throw new ActivityStreamException(e);
+            }
+        }
+
+        int deleted = 0;
+
+        String oriDatabase = context.getWikiId();
+        try {
+            for (String wiki : wikis) {
+                context.setWikiId(wiki);
+
+                XWikiHibernateStore hibstore = context.getWiki().getHibernateStore();
+                for (List<ActivityEvent> batchEvents = deleteActivityEventsBefore(date, hibstore, context);
+                    !batchEvents.isEmpty(); batchEvents = deleteActivityEventsBefore(date, hibstore, context)) {
+                    for (ActivityEvent event : batchEvents) {
+                        sendEventStreamEvent(new EventStreamDeletedEvent(), event);
+                    }
+
+                    deleted += batchEvents.size();
+                }
+            }
+        } catch (XWikiException e) {
+            throw new ActivityStreamException(e);
+        } finally {
+            context.setWikiId(oriDatabase);
+        }
+
+        return deleted;
+    }
+
+    /**
+     * Delete a batch of the oldest events older than the passed date.
+     *
+     * @return the deleted events, empty when there's no event older than the passed date left
+     */
+    private List<ActivityEvent> deleteActivityEventsBefore(Date date, XWikiHibernateStore hibstore,
+        XWikiContext context) throws XWikiException
+    {
+        return hibstore.executeWrite(context, session -> {
+            List<String> ids = session
+                .createQuery("select act.eventId from ActivityEventImpl as act where act.date < :date "
+                    + "order by act.date")
+                .setTimestamp(DATE_PARAMETER, date).setMaxResults(DELETE_BATCH_SIZE).list();
+
+            if (ids.isEmpty()) {
+                return Collections.<ActivityEvent>emptyList();
+            }
+
+            List<ActivityEvent> events = session
+                .createQuery("select distinct act from ActivityEventImpl as act left join fetch act.target "
+                    + "where act.eventId in (:ids)")
+                .setParameterList(IDS_PARAMETER, ids).list();
+
+            // The statuses and the targets of the events are not removed by the bulk delete of the events
+            session.createQuery("delete from ActivityEventStatusImpl where activityEvent.eventId in (:ids)")
+                .setParameterList(IDS_PARAMETER, ids).executeUpdate();
+            // HQL cannot bulk delete the elements of a collection
+            session.createSQLQuery("delete from activitystream_events_targets where eventId in (:ids)")
+                .setParameterList(IDS_PARAMETER, ids).executeUpdate();
+
+            session.createQuery("delete from ActivityEventImpl where eventId in (:ids)")
+                .setParameterList(IDS_PARAMETER, ids).executeUpdate();
+
+            return events;
+        });
+    }
+
     @Override
     public List<ActivityEvent> searchEvents(String hql, boolean filter, int nb, int start, XWikiContext context)
         throws ActivityStreamException
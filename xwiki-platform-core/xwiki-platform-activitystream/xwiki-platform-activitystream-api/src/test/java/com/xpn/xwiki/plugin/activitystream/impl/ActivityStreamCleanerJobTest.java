@@ -0,0 +1,126 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.activitystream.impl;
+
+import java.util.Date;
+
+import org.apache.commons.lang3.time.DateUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.xwiki.context.ExecutionContextManager;
+
+import com.xpn.xwiki.plugin.activitystream.api.ActivityStream;
+import com.xpn.xwiki.plugin.activitystream.api.ActivityStreamException;
+import com.xpn.xwiki.plugin.activitystream.plugin.ActivityStreamPlugin;
+import com.xpn.xwiki.test.MockitoOldcoreRule;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ActivityStreamCleanerJob}.
+ *
+ * @version $Id$
+ */
+public class ActivityStreamCleanerJobTest
+{
+    @Rule
+    public MockitoOldcoreRule oldcore = new MockitoOldcoreRule();
+
+    private ActivityStreamPlugin plugin;
+
+    private ActivityStream activityStream;
+
+    private JobExecutionContext jobContext;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.oldcore.getMocker().registerMockComponent(ExecutionContextManager.class);
+
+        this.plugin = mock(ActivityStreamPlugin.class);
+        this.activityStream = mock(ActivityStream.class);
+        when(this.plugin.getActivityStream()).thenReturn(this.activityStream);
+        doReturn(this.plugin).when(this.oldcore.getSpyXWiki()).getPlugin(eq(ActivityStreamPlugin.PLUGIN_NAME), any());
+
+        JobDataMap data = new JobDataMap();
+        data.put("context", this.oldcore.getXWikiContext());
+        JobDetail jobDetail = mock(JobDetail.class);
+        when(jobDetail.getJobDataMap()).thenReturn(data);
+        this.jobContext = mock(JobExecutionContext.class);
+        when(this.jobContext.getJobDetail()).thenReturn(jobDetail);
+    }
+
+    @Test
+    public void executeDeletesTheExpiredEvents() throws Exception
+    {
+        when(this.plugin.getActivityStreamPreference(eq("daystokeepevents"), any(), any())).thenReturn("30");
+
+        Date before = new Date();
+        new ActivityStreamCleanerJob().execute(this.jobContext);
+        Date after = new Date();
+
+        ArgumentCaptor<Date> dateCaptor = ArgumentCaptor.forClass(Date.class);
+        verify(this.activityStream).deleteActivityEvents(dateCaptor.capture(), any());
+
+        Date limit = dateCaptor.getValue();
+        assertFalse(limit.before(DateUtils.addDays(before, -30)));
+        assertFalse(limit.after(DateUtils.addDays(after, -30)));
+    }
+
+    @Test
+    public void executeWhenEventsAreKeptForever() throws Exception
+    {
+        when(this.plugin.getActivityStreamPreference(eq("daystokeepevents"), any(), any())).thenReturn("0");
+
+        new ActivityStreamCleanerJob().execute(this.jobContext);
+
+        verifyZeroInteractions(this.activityStream);
+    }
+
+    @Test
+    public void executeReportsTheFailures() throws Exception
+    {
+        when(this.plugin.getActivityStreamPreference(eq("daystokeepevents"), any(), any())).thenReturn("30");
+        ActivityStreamException exception = new ActivityStreamException();
+        when(this.activityStream.deleteActivityEvents(any(), any())).thenThrow(exception);
+
+        try {
+            new ActivityStreamCleanerJob().execute(this.jobContext);
+            fail("The failure should be reported");
+        } catch (JobExecutionException e) {
+            assertSame(exception, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.activitystream.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Query;
+import org.hibernate.SQLQuery;
+import org.hibernate.Session;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.events.EventStreamDeletedEvent;
+import org.xwiki.observation.ObservationManager;
+
+import com.xpn.xwiki.plugin.activitystream.api.ActivityEvent;
+import com.xpn.xwiki.plugin.activitystream.eventstreambridge.EventConverter;
+import com.xpn.xwiki.store.XWikiHibernateBaseStore.HibernateCallback;
+import com.xpn.xwiki.store.XWikiHibernateStore;
+import com.xpn.xwiki.test.MockitoOldcoreRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ActivityStreamImpl}.
+ *
+ * @version $Id$
+ */
+public class ActivityStreamImplTest
+{
+    private static final String IDS_QUERY =
+        "select act.eventId from ActivityEventImpl as act where act.date < :date order by act.date";
+
+    @Rule
+    public MockitoOldcoreRule oldcore = new MockitoOldcoreRule();
+
+    private ActivityStreamImpl activityStream;
+
+    private ActivityStreamConfiguration configuration;
+
+    private ObservationManager observationManager;
+
+    private EventConverter eventConverter;
+
+    private Session session;
+
+    private Map<String, Query> queries = new HashMap<>();
+
+    private Map<ActivityEvent, Event> convertedEvents = new HashMap<>();
+
+    @Before
+    public void before() throws Exception
+    {
+        this.configuration = this.oldcore.getMocker().registerMockComponent(ActivityStreamConfiguration.class);
+        this.observationManager = this.oldcore.getMocker().registerMockComponent(ObservationManager.class);
+        this.eventConverter = this.oldcore.getMocker().registerMockComponent(EventConverter.class);
+
+        when(this.configuration.useMainStore()).thenReturn(true);
+
+        this.session = mock(Session.class);
+        when(this.session.createQuery(anyString())).then(invocation -> getQuery(invocation.getArgument(0)));
+        when(this.session.createSQLQuery(anyString()))
+            .then(invocation -> mockQuery(SQLQuery.class, invocation.getArgument(0)));
+
+        XWikiHibernateStore hibstore = mock(XWikiHibernateStore.class);
+        doReturn(hibstore).when(this.oldcore.getSpyXWiki()).getHibernateStore();
+        when(hibstore.executeRead(any(), any())).then(
+            invocation -> invocation.<HibernateCallback<?>>getArgument(1).doInHibernate(this.session));
+        when(hibstore.executeWrite(any(), any())).then(
+            invocation -> invocation.<HibernateCallback<?>>getArgument(1).doInHibernate(this.session));
+
+        this.activityStream = new ActivityStreamImpl();
+        this.activityStream.init(this.oldcore.getXWikiContext());
+    }
+
+    private Query getQuery(String statement)
+    {
+        return this.queries.computeIfAbsent(statement, key -> mockQuery(Query.class, key));
+    }
+
+    private <Q extends Query> Q mockQuery(Class<Q> queryClass, String statement)
+    {
+        Q query = mock(queryClass, statement);
+        when(query.setTimestamp(anyString(), any(Date.class))).thenReturn(query);
+        when(query.setMaxResults(anyInt())).thenReturn(query);
+        when(query.setParameterList(anyString(), anyCollection())).thenReturn(query);
+
+        return query;
+    }
+
+    private ActivityEvent createEvent(String id)
+    {
+        ActivityEvent event = new ActivityEventImpl();
+        event.setEventId(id);
+
+        Event convertedEvent = mock(Event.class);
+        when(this.eventConverter.convertActivityToEvent(event)).thenReturn(convertedEvent);
+        this.convertedEvents.put(event, convertedEvent);
+
+        return event;
+    }
+
+    @Test
+    public void deleteActivityEventsByBatches() throws Exception
+    {
+        Date limit = new GregorianCalendar(2017, Calendar.JANUARY, 3, 12, 0).getTime();
+
+        ActivityEvent event1 = createEvent("event1");
+        ActivityEvent event2 = createEvent("event2");
+
+        // The identifiers of the oldest remaining events after each deleted batch
+        Query idsQuery = getQuery(IDS_QUERY);
+        when(idsQuery.list()).thenReturn(Arrays.asList("event1"), Arrays.asList("event2"), Collections.emptyList());
+
+        Query selectQuery = getQuery("select distinct act from ActivityEventImpl as act left join fetch act.target "
+            + "where act.eventId in (:ids)");
+        when(selectQuery.list()).thenReturn(Arrays.asList(event1), Arrays.asList(event2));
+
+        Query deleteQuery = getQuery("delete from ActivityEventImpl where eventId in (:ids)");
+
+        assertEquals(2, this.activityStream.deleteActivityEvents(limit, this.oldcore.getXWikiContext()));
+
+        // The events are never searched after the limit and never loaded all at once
+        verify(idsQuery, times(3)).setTimestamp("date", limit);
+        verify(idsQuery, times(3)).setMaxResults(500);
+
+        verify(deleteQuery).setParameterList("ids", Arrays.asList("event1"));
+        verify(deleteQuery).setParameterList("ids", Arrays.asList("event2"));
+        verify(deleteQuery, times(2)).executeUpdate();
+
+        // The statuses of the events are deleted with the events
+        verify(getQuery("delete from ActivityEventStatusImpl where activityEvent.eventId in (:ids)"), times(2))
+            .executeUpdate();
+
+        verify(this.observationManager).notify(any(EventStreamDeletedEvent.class),
+            same(this.convertedEvents.get(event1)));
+        verify(this.observationManager).notify(any(EventStreamDeletedEvent.class),
+            same(this.convertedEvents.get(event2)));
+    }
+
+    @Test
+    public void deleteActivityEventsWhenNoneIsExpired() throws Exception
+    {
+        when(getQuery(IDS_QUERY).list()).thenReturn(Collections.emptyList());
+
+        assertEquals(0, this.activityStream.deleteActivityEvents(new Date(), this.oldcore.getXWikiContext()));
+
+        verify(this.session, never()).createSQLQuery(anyString());
+        verify(this.observationManager, never()).notify(any(EventStreamDeletedEvent.class), any());
+    }
+
+    @Test
+    public void deleteActivityEventsInLocalStores() throws Exception
+    {
+        when(this.configuration.useMainStore()).thenReturn(false);
+        when(this.configuration.useLocalStore()).thenReturn(true);
+        doReturn(Arrays.asList("wiki1", "wiki2")).when(this.oldcore.getSpyXWiki())
+            .getVirtualWikisDatabaseNames(any());
+
+        List<String> wikis = new ArrayList<>();
+        when(getQuery(IDS_QUERY).list()).then(invocation -> {
+            wikis.add(this.oldcore.getXWikiContext().getWikiId());
+            return Collections.emptyList();
+        });
+
+        this.oldcore.getXWikiContext().setWikiId("current");
+
+        this.activityStream.deleteActivityEvents(new Date(), this.oldcore.getXWikiContext());
+
+        assertEquals(Arrays.asList("wiki1", "wiki2"), wikis);
+        assertEquals("current", this.oldcore.getXWikiContext().getWikiId());
+        verify(this.observationManager, never()).notify(any(EventStreamDeletedEvent.class), any());
+    }
+}
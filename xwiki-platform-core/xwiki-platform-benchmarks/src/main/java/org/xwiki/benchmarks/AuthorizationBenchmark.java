@@ -0,0 +1,101 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.security.authorization.AccessDeniedException;
+import org.xwiki.security.authorization.AuthorizationManager;
+import org.xwiki.security.authorization.Right;
+
+/**
+ * Checking the rights of a user on documents with {@link AuthorizationManager#checkAccess}.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class AuthorizationBenchmark
+{
+    private static final int DOCUMENTS = 100;
+
+    private AuthorizationManager authorizationManager;
+
+    private DocumentReference userReference;
+
+    private List<DocumentReference> references = new ArrayList<>();
+
+    private int index;
+
+    /**
+     * @param wiki the benchmarked wiki
+     * @throws Exception when failing to create the documents
+     */
+    @Setup(Level.Trial)
+    public void setUp(WikiState wiki) throws Exception
+    {
+        this.authorizationManager = wiki.getInstance(AuthorizationManager.class);
+        this.userReference = new DocumentReference(WikiState.WIKI, "XWiki", "BenchmarkUser");
+
+        for (int i = 0; i < DOCUMENTS; i++) {
+            this.references.add(wiki.createDocument("RightsPage" + i).getDocumentReference());
+        }
+    }
+
+    /**
+     * @throws AccessDeniedException if the user is not allowed to view the document
+     */
+    @Benchmark
+    public void checkViewAccess() throws AccessDeniedException
+    {
+        this.index = (this.index + 1) % DOCUMENTS;
+
+        this.authorizationManager.checkAccess(Right.VIEW, this.userReference, this.references.get(this.index));
+    }
+
+    /**
+     * @throws AccessDeniedException if the user is not allowed to edit the document
+     */
+    @Benchmark
+    public void checkEditAccess() throws AccessDeniedException
+    {
+        this.index = (this.index + 1) % DOCUMENTS;
+
+        this.authorizationManager.checkAccess(Right.EDIT, this.userReference, this.references.get(this.index));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Copying and exporting documents: each document loaded for modification is cloned and the XML export is used by the
+ * history, the recycle bin and the XAR export.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class DocumentBenchmark
+{
+    private XWikiContext xcontext;
+
+    private XWikiDocument document;
+
+    private XWikiDocument preferences;
+
+    /**
+     * @param wiki the benchmarked wiki
+     * @throws Exception when failing to create the documents
+     */
+    @Setup(Level.Trial)
+    public void setUp(WikiState wiki) throws Exception
+    {
+        this.xcontext = wiki.getXWikiContext();
+        this.document = wiki.createDocument("DocumentPage");
+        // A document with an object of a class having many properties
+        this.preferences = this.xcontext.getWiki()
+            .getDocument(new DocumentReference(WikiState.WIKI, "XWiki", "XWikiPreferences"), this.xcontext);
+    }
+
+    /**
+     * @return the copy
+     */
+    @Benchmark
+    public XWikiDocument cloneDocument()
+    {
+        return this.document.clone();
+    }
+
+    /**
+     * @return the copy
+     */
+    @Benchmark
+    public XWikiDocument clonePreferences()
+    {
+        return this.preferences.clone();
+    }
+
+    /**
+     * @return the XML export
+     * @throws XWikiException when failing to export the document
+     */
+    @Benchmark
+    public String toXMLDocument() throws XWikiException
+    {
+        return this.document.toXML(this.xcontext);
+    }
+
+    /**
+     * @return the XML export
+     * @throws XWikiException when failing to export the document
+     */
+    @Benchmark
+    public String toXMLPreferences() throws XWikiException
+    {
+        return this.preferences.toXML(this.xcontext);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.store.XWikiCacheStore;
+
+/**
+ * Loading documents through {@link XWikiCacheStore#loadXWikiDoc(XWikiDocument, XWikiContext)}, with the documents in
+ * the cache and with an empty cache (i.e. loading from the database).
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class DocumentStoreBenchmark
+{
+    private static final int DOCUMENTS = 100;
+
+    /**
+     * Empties the document cache before each invocation.
+     *
+     * @version $Id$
+     */
+    @State(Scope.Thread)
+    public static class EmptyCache
+    {
+        /**
+         * @param wiki the benchmarked wiki
+         */
+        @Setup(Level.Invocation)
+        public void flush(WikiState wiki)
+        {
+            ((XWikiCacheStore) wiki.getXWikiContext().getWiki().getStore()).flushCache();
+        }
+    }
+
+    private XWikiCacheStore store;
+
+    private XWikiContext xcontext;
+
+    private List<DocumentReference> references = new ArrayList<>();
+
+    private int index;
+
+    /**
+     * @param wiki the benchmarked wiki
+     * @throws Exception when failing to create the documents
+     */
+    @Setup(Level.Trial)
+    public void setUp(WikiState wiki) throws Exception
+    {
+        this.xcontext = wiki.getXWikiContext();
+        this.store = (XWikiCacheStore) this.xcontext.getWiki().getStore();
+
+        for (int i = 0; i < DOCUMENTS; i++) {
+            this.references.add(wiki.createDocument("StorePage" + i).getDocumentReference());
+        }
+    }
+
+    private XWikiDocument nextDocument()
+    {
+        this.index = (this.index + 1) % DOCUMENTS;
+
+        return new XWikiDocument(this.references.get(this.index));
+    }
+
+    /**
+     * @return the loaded document
+     * @throws XWikiException when failing to load the document
+     */
+    @Benchmark
+    public XWikiDocument loadCached() throws XWikiException
+    {
+        return this.store.loadXWikiDoc(nextDocument(), this.xcontext);
+    }
+
+    /**
+     * @param emptyCache makes sure the document is not in the cache
+     * @return the loaded document
+     * @throws XWikiException when failing to load the document
+     */
+    @Benchmark
+    public XWikiDocument loadNotCached(EmptyCache emptyCache) throws XWikiException
+    {
+        return this.store.loadXWikiDoc(nextDocument(), this.xcontext);
+    }
+}
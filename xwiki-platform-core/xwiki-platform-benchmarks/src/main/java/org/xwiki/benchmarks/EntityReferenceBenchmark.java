@@ -0,0 +1,111 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+
+/**
+ * Resolving and serializing entity references, which is done many times for each request.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class EntityReferenceBenchmark
+{
+    private static final String RELATIVE_REFERENCE = "Space.Page";
+
+    private static final String NESTED_REFERENCE = "xwiki:Main.Some\\.Space.Nested.Page";
+
+    private DocumentReferenceResolver<String> currentResolver;
+
+    private EntityReferenceSerializer<String> serializer;
+
+    private EntityReferenceSerializer<String> localSerializer;
+
+    private DocumentReference reference;
+
+    /**
+     * @param wiki the benchmarked wiki
+     */
+    @Setup(Level.Trial)
+    public void setUp(WikiState wiki)
+    {
+        this.currentResolver = wiki.getInstance(DocumentReferenceResolver.TYPE_STRING, "current");
+        this.serializer = wiki.getInstance(EntityReferenceSerializer.TYPE_STRING);
+        this.localSerializer = wiki.getInstance(EntityReferenceSerializer.TYPE_STRING, "local");
+        this.reference = this.currentResolver.resolve(NESTED_REFERENCE);
+    }
+
+    /**
+     * @return the resolved reference
+     */
+    @Benchmark
+    public DocumentReference resolveRelative()
+    {
+        return this.currentResolver.resolve(RELATIVE_REFERENCE);
+    }
+
+    /**
+     * @return the resolved reference
+     */
+    @Benchmark
+    public DocumentReference resolveNested()
+    {
+        return this.currentResolver.resolve(NESTED_REFERENCE);
+    }
+
+    /**
+     * @return the serialized reference
+     */
+    @Benchmark
+    public String serialize()
+    {
+        return this.serializer.serialize(this.reference);
+    }
+
+    /**
+     * @return the serialized reference
+     */
+    @Benchmark
+    public String serializeLocal()
+    {
+        return this.localSerializer.serialize(this.reference);
+    }
+}
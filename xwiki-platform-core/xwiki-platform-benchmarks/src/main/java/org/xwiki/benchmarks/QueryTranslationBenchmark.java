@@ -0,0 +1,86 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.query.xwql.internal.QueryTranslator;
+
+/**
+ * Translating XWQL queries to HQL, which is done each time a XWQL query is executed.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class QueryTranslationBenchmark
+{
+    private static final String SHORT_FORM_QUERY = "where doc.space = :space order by doc.date desc";
+
+    private static final String OBJECT_QUERY = "select doc.fullName, comment.author from Document doc, "
+        + "doc.object(XWiki.XWikiComments) as comment where comment.comment like :text and doc.fullName <> "
+        + "'XWiki.XWikiPreferences' order by comment.date desc";
+
+    private QueryTranslator translator;
+
+    /**
+     * @param wiki the benchmarked wiki
+     */
+    @Setup(Level.Trial)
+    public void setUp(WikiState wiki)
+    {
+        this.translator = wiki.getInstance(QueryTranslator.class, "hql");
+    }
+
+    /**
+     * @return the HQL statement
+     * @throws Exception when failing to translate the query
+     */
+    @Benchmark
+    public String translateShortForm() throws Exception
+    {
+        return this.translator.translate(SHORT_FORM_QUERY);
+    }
+
+    /**
+     * @return the HQL statement
+     * @throws Exception when failing to translate the query
+     */
+    @Benchmark
+    public String translateObjectQuery() throws Exception
+    {
+        return this.translator.translate(OBJECT_QUERY);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.benchmarks;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.velocity.VelocityManager;
+import org.xwiki.velocity.XWikiVelocityException;
+
+/**
+ * Evaluating Velocity code through the {@link VelocityManager}, like templates and velocity macros do.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class VelocityBenchmark
+{
+    private static final String TEMPLATE_NAME = "benchmark";
+
+    private static final String TEMPLATE = "#macro (item $index)<li class=\"item-$index\">$escapetool.xml($index)</li>"
+        + "#end\n"
+        + "#set ($items = [1..100])\n"
+        + "<ul>\n"
+        + "#foreach ($index in $items)\n"
+        + "  #if ($index % 2 == 0)#item($index)#else<li>$stringtool.leftPad(\"$index\", 5, '0')</li>#end\n"
+        + "#end\n"
+        + "</ul>\n"
+        + "#set ($map = {'a': 1, 'b': 2})\n"
+        + "$map.a $map.get('b') $xcontext.wiki\n";
+
+    private VelocityManager velocityManager;
+
+    /**
+     * @param wiki the benchmarked wiki
+     */
+    @Setup(Level.Trial)
+    public void setUp(WikiState wiki)
+    {
+        this.velocityManager = wiki.getInstance(VelocityManager.class);
+    }
+
+    /**
+     * @return the result of the evaluation
+     * @throws XWikiVelocityException when failing to evaluate the template
+     */
+    @Benchmark
+    public String evaluate() throws XWikiVelocityException
+    {
+        StringWriter writer = new StringWriter();
+        this.velocityManager.evaluate(writer, TEMPLATE_NAME, new StringReader(TEMPLATE));
+
+        return writer.toString();
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.benchmarks;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiConfig;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.web.Utils;
+import com.xpn.xwiki.web.XWikiServletRequestStub;
+import com.xpn.xwiki.web.XWikiServletResponseStub;
+import com.xpn.xwiki.web.XWikiServletURLFactory;
+
+/**
+ * A complete wiki backed by an in-memory HSQLDB database, started once per benchmark fork. Benchmarks get it as a
+ * parameter of their own setup methods.
+ *
+ * @version $Id$
+ */
+@State(Scope.Benchmark)
+public class WikiState
+{
+    /**
+     * The identifier of the wiki.
+     */
+    public static final String WIKI = "xwiki";
+
+    /**
+     * The space of the documents created by the benchmarks.
+     */
+    public static final String SPACE = "Benchmark";
+
+    private static final String HIBERNATE_CONFIGURATION = "benchmark.hibernate.cfg.xml";
+
+    private File permanentDirectory;
+
+    private ComponentManager componentManager;
+
+    private ExecutionContext executionContext;
+
+    private XWikiContext xcontext;
+
+    /**
+     * Start the wiki.
+     *
+     * @throws Exception when failing to start the wiki
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        this.permanentDirectory = Files.createTempDirectory("xwiki-benchmark").toFile();
+        File temporaryDirectory = new File(this.permanentDirectory, "tmp");
+        this.componentManager = org.xwiki.environment.System.initialize(this.permanentDirectory,
+            this.permanentDirectory, temporaryDirectory);
+        Utils.setComponentManager(this.componentManager);
+
+        this.xcontext = new XWikiContext();
+        this.xcontext.put(ComponentManager.class.getName(), this.componentManager);
+
+        this.executionContext = new ExecutionContext();
+        // Bridge with old XWiki Context, required for old code.
+        this.xcontext.declareInExecutionContext(this.executionContext);
+        getInstance(ExecutionContextManager.class).initialize(this.executionContext);
+
+        this.xcontext.setWikiId(WIKI);
+        this.xcontext.setMainXWiki(WIKI);
+
+        // Dummy Request/Response and URL so that the initialization can create a Servlet URL Factory
+        this.xcontext.setRequest(new XWikiServletRequestStub());
+        this.xcontext.setResponse(new XWikiServletResponseStub());
+        this.xcontext.setURL(new URL("http://localhost/xwiki/bin/view/Main/WebHome"));
+        this.xcontext.setDoc(new XWikiDocument(new DocumentReference(WIKI, "Main", "WebHome")));
+
+        XWikiConfig config = new XWikiConfig();
+        config.put("xwiki.store.class", "com.xpn.xwiki.store.XWikiHibernateStore");
+        config.put("xwiki.store.hibernate.path", HIBERNATE_CONFIGURATION);
+        config.put("xwiki.store.hibernate.updateschema", "1");
+
+        XWiki xwiki = new XWiki(config, this.xcontext, null, true);
+
+        this.xcontext.setUserReference(new DocumentReference(WIKI, "XWiki", "superadmin"));
+        this.xcontext.setURLFactory(new XWikiServletURLFactory(new URL("http://localhost:8080"), "xwiki/", "bin/"));
+
+        // Create the mandatory documents and classes
+        xwiki.initializeWiki(WIKI, true, this.xcontext);
+    }
+
+    /**
+     * Make sure the thread running the benchmark has the wiki context.
+     */
+    @Setup(Level.Iteration)
+    public void attachContext()
+    {
+        Execution execution = getInstance(Execution.class);
+        if (execution.getContext() != this.executionContext) {
+            execution.setContext(this.executionContext);
+        }
+    }
+
+    /**
+     * Stop the wiki and delete its files.
+     *
+     * @throws Exception when failing to stop the wiki
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        getInstance(Execution.class).removeContext();
+        Utils.setComponentManager(null);
+        org.xwiki.environment.System.dispose(this.componentManager);
+
+        FileUtils.deleteDirectory(this.permanentDirectory);
+    }
+
+    /**
+     * @return the context of the wiki
+     */
+    public XWikiContext getXWikiContext()
+    {
+        return this.xcontext;
+    }
+
+    /**
+     * @param role the role of the component
+     * @param <T> the type of the component
+     * @return the component
+     */
+    public <T> T getInstance(Type role)
+    {
+        return getInstance(role, "default");
+    }
+
+    /**
+     * @param role the role of the component
+     * @param hint the hint of the component
+     * @param <T> the type of the component
+     * @return the component
+     */
+    public <T> T getInstance(Type role, String hint)
+    {
+        try {
+            return this.componentManager.getInstance(role, hint);
+        } catch (Exception e) {
+            throw new IllegalStateException(String.format("Failed to lookup component [%s] with hint [%s]", role,
+                hint), e);
+        }
+    }
+
+    /**
+     * Save a document with some content and an object, similar to a usual wiki page.
+     *
+     * @param name the name of the document, in the {@link #SPACE} space
+     * @return the saved document
+     * @throws Exception when failing to save the document
+     */
+    public XWikiDocument createDocument(String name) throws Exception
+    {
+        XWiki xwiki = this.xcontext.getWiki();
+
+        XWikiDocument document = xwiki.getDocument(new DocumentReference(WIKI, SPACE, name), this.xcontext);
+        document.setTitle("Benchmark page " + name);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            content.append("= Section ").append(i).append(" =\n\n");
+            content.append("Some **bold** text with a [[link>>Main.WebHome]] and a [[missing link>>").append(SPACE)
+                .append(".Missing").append(i).append("]].\n\n");
+            content.append("{{velocity}}$doc.title{{/velocity}}\n\n");
+        }
+        document.setContent(content.toString());
+
+        document.newXObject(new DocumentReference(WIKI, "XWiki", "XWikiComments"), this.xcontext)
+            .setLargeStringValue("comment", "A comment on " + name);
+
+        xwiki.saveDocument(document, "Created by the benchmark", this.xcontext);
+
+        return document;
+    }
+}
@@ -20,8 +20,11 @@
 package org.xwiki.bridge;
 
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.model.reference.AttachmentReference;
@@ -29,6 +32,7 @@
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.ObjectPropertyReference;
 import org.xwiki.model.reference.ObjectReference;
+import org.xwiki.stability.Unstable;
 
 /**
  * Exposes methods for accessing Document data. This is temporary until we remodel the Model classes and the Document
@@ -88,6 +92,27 @@
     @Deprecated
     boolean exists(String documentReference);
 
+    /**
+     * Check the existence of several documents at once, which is faster than calling
+     * {@link #exists(DocumentReference)} for each of them.
+     *
+     * @param documentReferences the references of the documents to check
+     * @return the references of the passed documents which exist
+     * @since 10.0RC1
+     */
+    @Unstable
+    default Set<DocumentReference> getExistingDocuments(Collection<DocumentReference> documentReferences)
+    {
+        Set<DocumentReference> existingDocuments = new HashSet<>();
+        for (DocumentReference documentReference : documentReferences) {
+            if (exists(documentReference)) {
+                existingDocuments.add(documentReference);
+            }
+        }
+
+        return existingDocuments;
+    }
+
     /**
      * Updates the target document with the new content provided. If the target document does not exists, a new one will
      * be created.
@@ -0,0 +1,56 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.bridge;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Exposes a cache for fragments of rendered content (typically the result of the execution of a few macros) which is
+ * invalidated when the documents, objects and rights read while producing the fragment are modified.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Role
+@Unstable
+public interface FragmentCacheBridge
+{
+    /**
+     * Return the cached fragment associated with the passed key or produce it (and record what it depends on) when
+     * there is no such fragment in the cache. The key is combined with the current wiki and user since the fragment
+     * depends on the rights of the user who produced it.
+     *
+     * @param <T> the type of the fragment
+     * @param key the identifier of the fragment
+     * @param timeToLive the number of seconds after which the fragment is produced again, even if none of its
+     *            dependencies changed
+     * @param classes references of classes (relative to the current wiki) whose objects are used to produce the
+     *            fragment without loading their documents (e.g. through queries); any modification of an object of
+     *            these classes invalidates the fragment
+     * @param producer used to produce the fragment when it's not cached
+     * @return the cached or newly produced fragment
+     * @throws Exception when failing to produce the fragment
+     */
+    <T> T getFragment(String key, int timeToLive, Collection<String> classes, Callable<T> producer) throws Exception;
+}
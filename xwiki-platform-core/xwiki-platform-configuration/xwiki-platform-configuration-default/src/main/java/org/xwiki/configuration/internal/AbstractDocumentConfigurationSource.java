@@ -22,8 +22,12 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -54,6 +58,7 @@
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.internal.event.XObjectAddedEvent;
 import com.xpn.xwiki.internal.event.XObjectDeletedEvent;
+import com.xpn.xwiki.internal.event.XObjectEvent;
 import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.BaseObjectReference;
@@ -95,8 +100,21 @@ public abstract class AbstractDocumentConfigurationSource extends AbstractConfig
     @Inject
     protected Logger logger;
 
+    /**
+     * The values of the properties of each configuration document, by property name and then by expected type. The
+     * entries are indexed with {@link #getCacheKeyPrefix()}.
+     * <p>
+     * The map of a document is never modified after one of its properties has changed: a new map without the modified
+     * properties is put in the cache instead so that a value loaded from the previous version of the document cannot
+     * end up in the cache.
+     */
     protected Cache<Object> cache;
 
+    /**
+     * The cache entries holding the properties of each document, used to find them when the document is modified.
+     */
+    private final Map<DocumentReference, Set<String>> cacheKeyPrefixes = new ConcurrentHashMap<>();
+
     /**
      * @return the document reference of the document containing an XWiki Object with configuration data or null if
      *         there no such document in which case this configuration source will be skipped
@@ -114,7 +132,7 @@ public abstract class AbstractDocumentConfigurationSource extends AbstractConfig
     protected abstract String getCacheId();
 
     /**
-     * @return the prefix used to generate a cache key combined to the actual configuration property name
+     * @return the key of the cache entry holding the properties of the configuration document
      */
     protected String getCacheKeyPrefix()
     {
@@ -171,8 +189,134 @@ protected List<Event> getCacheCleanupEvents()
 
     protected void onCacheCleanup(Event event, Object source, Object data)
     {
-        // TODO: do finer grain cache invalidation
-        this.cache.removeAll();
+        if (event instanceof XObjectEvent && source instanceof XWikiDocument) {
+            XWikiDocument document = (XWikiDocument) source;
+
+            Set<String> documentCacheKeyPrefixes = this.cacheKeyPrefixes.get(document.getDocumentReference());
+            if (documentCacheKeyPrefixes != null) {
+                Set<String> modifiedProperties = getModifiedProperties(document);
+
+                for (String cacheKeyPrefix : documentCacheKeyPrefixes) {
+                    removeProperties(cacheKeyPrefix, modifiedProperties);
+                }
+            }
+        } else {
+            this.cacheKeyPrefixes.clear();
+            this.cache.removeAll();
+        }
+    }
+
+    private Set<String> getModifiedProperties(XWikiDocument document)
+    {
+        XWikiDocument originalDocument = document.getOriginalDocument();
+        LocalDocumentReference classReference = getFailsafeClassReference();
+
+        if (originalDocument == null || classReference == null) {
+            return null;
+        }
+
+        List<BaseObject> previousObjects = getXObjects(originalDocument, classReference);
+        List<BaseObject> objects = getXObjects(document, classReference);
+
+        Set<String> modifiedProperties = new HashSet<>();
+        for (int number = 0; number < Math.max(previousObjects.size(), objects.size()); ++number) {
+            BaseObject previousObject = number < previousObjects.size() ? previousObjects.get(number) : null;
+            BaseObject object = number < objects.size() ? objects.get(number) : null;
+
+            if (previousObject != null || object != null) {
+                Set<String> objectModifiedProperties = getModifiedProperties(previousObject, object);
+                if (objectModifiedProperties == null) {
+                    return null;
+                }
+                modifiedProperties.addAll(objectModifiedProperties);
+            }
+        }
+
+        return modifiedProperties;
+    }
+
+    private List<BaseObject> getXObjects(XWikiDocument document, LocalDocumentReference classReference)
+    {
+        List<BaseObject> objects = document.getXObjects(classReference);
+
+        return objects != null ? objects : Collections.<BaseObject>emptyList();
+    }
+
+    /**
+     * @param previousObject the configuration object before the modification, {@code null} if it has been added
+     * @param object the configuration object after the modification, {@code null} if it has been deleted
+     * @return the configuration properties impacted by the modification, or {@code null} if any property can be
+     *         impacted
+     * @since 10.0RC1
+     */
+    protected Set<String> getModifiedProperties(BaseObject previousObject, BaseObject object)
+    {
+        Set<String> properties = new HashSet<>();
+        if (previousObject != null) {
+            properties.addAll(previousObject.getPropertyList());
+        }
+        if (object != null) {
+            properties.addAll(object.getPropertyList());
+        }
+
+        properties.removeIf(
+            propertyName -> Objects.equals(getValue(previousObject, propertyName), getValue(object, propertyName)));
+
+        return properties;
+    }
+
+    private Object getValue(BaseObject object, String propertyName)
+    {
+        if (object != null) {
+            BaseProperty property = (BaseProperty) object.getField(propertyName);
+
+            if (property != null) {
+                return property.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    private synchronized void removeProperties(String cacheKeyPrefix, Set<String> propertyNames)
+    {
+        if (propertyNames == null) {
+            this.cache.remove(cacheKeyPrefix);
+        } else if (!propertyNames.isEmpty()) {
+            Map<String, Map<String, Object>> properties = getCachedProperties(cacheKeyPrefix);
+
+            if (properties != null) {
+                Map<String, Map<String, Object>> newProperties = new ConcurrentHashMap<>(properties);
+                newProperties.keySet().removeAll(propertyNames);
+
+                this.cache.set(cacheKeyPrefix, newProperties);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Map<String, Object>> getCachedProperties(String cacheKeyPrefix)
+    {
+        return (Map<String, Map<String, Object>>) this.cache.get(cacheKeyPrefix);
+    }
+
+    private Map<String, Map<String, Object>> getDocumentProperties(String cacheKeyPrefix)
+    {
+        Map<String, Map<String, Object>> properties = getCachedProperties(cacheKeyPrefix);
+
+        if (properties == null) {
+            properties = new ConcurrentHashMap<>();
+
+            DocumentReference documentReference = getFailsafeDocumentReference();
+            if (documentReference != null) {
+                this.cacheKeyPrefixes.computeIfAbsent(documentReference, key -> ConcurrentHashMap.newKeySet())
+                    .add(cacheKeyPrefix);
+            }
+
+            this.cache.set(cacheKeyPrefix, properties);
+        }
+
+        return properties;
     }
 
     /**
@@ -301,9 +445,11 @@ public <T> T getProperty(String key)
 
     protected <T> T getPropertyValue(String key, Class<T> valueClass)
     {
-        String cacheKey = getCacheKeyPrefix() + ':' + (valueClass != null ? valueClass.getName() : null) + ':' + key;
+        Map<String, Map<String, Object>> properties = getDocumentProperties(String.valueOf(getCacheKeyPrefix()));
+        String valueClassName = String.valueOf(valueClass != null ? valueClass.getName() : null);
 
-        Object result = this.cache.get(cacheKey);
+        Map<String, Object> values = properties.get(key);
+        Object result = values != null ? values.get(valueClassName) : null;
 
         if (result == null) {
             XWikiContext xcontext = this.xcontextProvider.get();
@@ -317,7 +463,8 @@ protected <T> T getPropertyValue(String key, Class<T> valueClass)
                     }
 
                     // Void.TYPE is used to keep track of fields that don't exist
-                    this.cache.set(cacheKey, result == null ? Void.TYPE : result);
+                    properties.computeIfAbsent(key, propertyName -> new ConcurrentHashMap<>()).put(valueClassName,
+                        result == null ? Void.TYPE : result);
                 } catch (XWikiException e) {
                     this.logger.error("Failed to access configuration property", e);
                 }
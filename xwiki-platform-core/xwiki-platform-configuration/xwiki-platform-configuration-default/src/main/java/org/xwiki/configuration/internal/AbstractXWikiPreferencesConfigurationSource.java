@@ -19,6 +19,8 @@
  */
 package org.xwiki.configuration.internal;
 
+import java.util.Set;
+
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.LocalDocumentReference;
 import org.xwiki.model.reference.SpaceReference;
@@ -50,6 +52,8 @@ public abstract class AbstractXWikiPreferencesConfigurationSource extends Abstra
     protected static final LocalDocumentReference CLASS_REFERENCE = new LocalDocumentReference(CLASS_SPACE_NAME,
         CLASS_PAGE_NAME);
 
+    private static final String DEFAULT_LANGUAGE = "default_language";
+
     @Override
     protected String getCacheKeyPrefix()
     {
@@ -95,7 +99,7 @@ protected BaseObject getBaseObject(String language) throws XWikiException
     protected BaseObject getBaseObject(XWikiDocument document, String language)
     {
         if (language != null) {
-            BaseObject object = document.getXObject(getClassReference(), "default_language", language, true);
+            BaseObject object = document.getXObject(getClassReference(), DEFAULT_LANGUAGE, language, true);
 
             if (object != null) {
                 return object;
@@ -168,4 +172,13 @@ protected Object getBaseProperty(String propertyName, boolean text) throws XWiki
 
         return propertyValue;
     }
+
+    @Override
+    protected Set<String> getModifiedProperties(BaseObject previousObject, BaseObject object)
+    {
+        Set<String> properties = super.getModifiedProperties(previousObject, object);
+
+        // The language decides which object the properties are taken from
+        return properties.contains(DEFAULT_LANGUAGE) ? null : properties;
+    }
 }
@@ -19,22 +19,35 @@
  */
 package org.xwiki.configuration.internal;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.configuration.internal.test.AbstractTestDocumentConfigurationSource;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.observation.EventListener;
 import org.xwiki.properties.converter.ConversionException;
 
+import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
 
 /**
  * Unit tests for {@link WikiPreferencesConfigurationSource}.
@@ -162,4 +175,44 @@ public void testIsEmpty() throws ComponentLookupException, XWikiException
 
         Assert.assertFalse(this.componentManager.getComponentUnderTest().isEmpty());
     }
+
+    @Test
+    public void testGetPropertyWhenPreferencesAreModified() throws Exception
+    {
+        Map<String, Object> cacheEntries = new HashMap<>();
+        when(this.mockCache.get(anyString())).then(invocation -> cacheEntries.get(invocation.getArgument(0)));
+        doAnswer(invocation -> cacheEntries.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(this.mockCache).set(anyString(), any());
+
+        DocumentReference preferencesReference = new DocumentReference(CURRENT_WIKI,
+            WikiPreferencesConfigurationSource.CLASS_SPACE_NAME, WikiPreferencesConfigurationSource.CLASS_PAGE_NAME);
+        setStringProperty(preferencesReference, "key1", "value1");
+        setStringProperty(preferencesReference, "key2", "value2");
+
+        ConfigurationSource source = this.componentManager.getComponentUnderTest();
+
+        Assert.assertEquals("value1", source.getProperty("key1"));
+        Assert.assertEquals("value2", source.getProperty("key2"));
+
+        ArgumentCaptor<EventListener> listenerCaptor = ArgumentCaptor.forClass(EventListener.class);
+        verify(this.oldcore.getObservationManager(), atLeastOnce()).addListener(listenerCaptor.capture());
+        EventListener listener = listenerCaptor.getAllValues().stream()
+            .filter(candidate -> "configuration.document.wiki".equals(candidate.getName())).findFirst().get();
+
+        setStringProperty(preferencesReference, "key1", "newvalue1");
+        setStringProperty(preferencesReference, "key2", "newvalue2");
+
+        // Only notify the modification of key1
+        XWikiContext xcontext = this.oldcore.getXWikiContext();
+        XWikiDocument document = xcontext.getWiki().getDocument(preferencesReference, xcontext);
+        XWikiDocument originalDocument = document.clone();
+        originalDocument.getXObject(getClassReference()).setStringValue("key1", "value1");
+        document.setOriginalDocument(originalDocument);
+
+        listener.onEvent(new XObjectUpdatedEvent(), document, xcontext);
+
+        // The value of key1 is reloaded but the value of key2 is still taken from the cache
+        Assert.assertEquals("newvalue1", source.getProperty("key1"));
+        Assert.assertEquals("value2", source.getProperty("key2"));
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.container.servlet;
+
+import java.util.Locale;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Helpers to handle the HTTP headers of the requests for the content served with conditional and compressed responses.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public final class HttpServletUtils
+{
+    /**
+     * The encoding of the compressed responses.
+     */
+    public static final String GZIP_ENCODING = "gzip";
+
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+
+    private static final String ANY = "*";
+
+    private HttpServletUtils()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param request the request
+     * @return {@code true} if the client accepts gzip encoded responses, taking into account the quality values of
+     *         the {@code Accept-Encoding} header (e.g. {@code gzip;q=0} refuses them)
+     */
+    public static boolean acceptsGzip(HttpServletRequest request)
+    {
+        String acceptEncoding = request.getHeader(ACCEPT_ENCODING_HEADER);
+
+        Boolean gzip = null;
+        Boolean any = null;
+
+        if (acceptEncoding != null) {
+            for (String coding : StringUtils.split(acceptEncoding, ',')) {
+                String[] parameters = StringUtils.split(coding, ';');
+                if (parameters.length == 0) {
+                    continue;
+                }
+
+                String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+                boolean accepted = getQuality(parameters) > 0;
+
+                if (name.equals(GZIP_ENCODING) || name.equals("x-gzip")) {
+                    gzip = accepted;
+                } else if (name.equals(ANY)) {
+                    any = accepted;
+                }
+            }
+        }
+
+        return gzip != null ? gzip : Boolean.TRUE.equals(any);
+    }
+
+    private static double getQuality(String[] parameters)
+    {
+        for (int i = 1; i < parameters.length; ++i) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+
+        return 1;
+    }
+
+    /**
+     * @param request the request
+     * @param etag the entity tag of the content to send, quoted
+     * @return {@code true} if one of the entity tags of the {@code If-None-Match} header matches the passed one, in
+     *         which case the client already has the content
+     */
+    public static boolean matchesETag(HttpServletRequest request, String etag)
+    {
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH_HEADER);
+
+        if (ifNoneMatch != null) {
+            for (String candidate : StringUtils.split(ifNoneMatch, ',')) {
+                // The weak comparison is enough for a conditional GET
+                String candidateTag = StringUtils.removeStart(candidate.trim(), "W/");
+                if (candidateTag.equals(etag) || candidateTag.equals(ANY)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
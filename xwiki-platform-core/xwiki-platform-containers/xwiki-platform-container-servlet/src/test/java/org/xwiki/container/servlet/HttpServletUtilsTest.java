@@ -0,0 +1,83 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.container.servlet;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link HttpServletUtils}.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class HttpServletUtilsTest
+{
+    @Test
+    public void acceptsGzip()
+    {
+        assertTrue(acceptsGzip("gzip"));
+        assertTrue(acceptsGzip("deflate, GZIP;q=0.5"));
+        assertTrue(acceptsGzip("x-gzip"));
+        assertTrue(acceptsGzip("br, *"));
+
+        assertFalse(acceptsGzip(null));
+        assertFalse(acceptsGzip(""));
+        assertFalse(acceptsGzip("identity"));
+        assertFalse(acceptsGzip("gzip;q=0"));
+        assertFalse(acceptsGzip("gzip; q=0.0, identity"));
+        assertFalse(acceptsGzip("*;q=0"));
+        assertFalse(acceptsGzip("gzip;q=0, *"));
+    }
+
+    @Test
+    public void matchesETag()
+    {
+        assertTrue(matchesETag("\"hash\"", "\"hash\""));
+        assertTrue(matchesETag("\"other\", W/\"hash\"", "\"hash\""));
+        assertTrue(matchesETag("*", "\"hash\""));
+
+        assertFalse(matchesETag(null, "\"hash\""));
+        assertFalse(matchesETag("\"other\"", "\"hash\""));
+        assertFalse(matchesETag("\"hash-gzip\"", "\"hash\""));
+    }
+
+    private boolean acceptsGzip(String acceptEncoding)
+    {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("Accept-Encoding")).thenReturn(acceptEncoding);
+
+        return HttpServletUtils.acceptsGzip(request);
+    }
+
+    private boolean matchesETag(String ifNoneMatch, String etag)
+    {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+
+        return HttpServletUtils.matchesETag(request, etag);
+    }
+}
@@ -20,8 +20,10 @@
 package org.xwiki.edit.internal;
 
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.xwiki.configuration.internal.AbstractDocumentConfigurationSource;
@@ -47,6 +49,10 @@ public abstract class AbstractEditorBindingsSource extends AbstractDocumentConfi
     private static final LocalDocumentReference CLASS_REFERENCE = new LocalDocumentReference("XWiki",
         "EditorBindingClass");
 
+    private static final String DATA_TYPE = "dataType";
+
+    private static final String ROLE_HINT = "roleHint";
+
     @Override
     protected LocalDocumentReference getClassReference()
     {
@@ -57,9 +63,9 @@ protected LocalDocumentReference getClassReference()
     protected Object getBaseProperty(String propertyName, boolean text) throws XWikiException
     {
         for (BaseObject baseObject : getBaseObjects()) {
-            String dataType = baseObject.getStringValue("dataType");
+            String dataType = baseObject.getStringValue(DATA_TYPE);
             if (Objects.equals(dataType, propertyName)) {
-                String roleHint = baseObject.getStringValue("roleHint");
+                String roleHint = baseObject.getStringValue(ROLE_HINT);
                 if (!StringUtils.isEmpty(roleHint)) {
                     return roleHint;
                 }
@@ -68,6 +74,23 @@ protected Object getBaseProperty(String propertyName, boolean text) throws XWiki
         return null;
     }
 
+    @Override
+    protected Set<String> getModifiedProperties(BaseObject previousObject, BaseObject object)
+    {
+        // The configuration properties are the data types, not the object properties
+        Set<String> dataTypes = new HashSet<>();
+        if (!super.getModifiedProperties(previousObject, object).isEmpty()) {
+            if (previousObject != null) {
+                dataTypes.add(previousObject.getStringValue(DATA_TYPE));
+            }
+            if (object != null) {
+                dataTypes.add(object.getStringValue(DATA_TYPE));
+            }
+        }
+
+        return dataTypes;
+    }
+
     private List<BaseObject> getBaseObjects() throws XWikiException
     {
         DocumentReference documentReference = getFailsafeDocumentReference();
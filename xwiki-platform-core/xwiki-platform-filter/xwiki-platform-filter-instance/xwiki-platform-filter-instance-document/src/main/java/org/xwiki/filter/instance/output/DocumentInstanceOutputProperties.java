@@ -76,6 +76,16 @@ public class DocumentInstanceOutputProperties extends InstanceOutputProperties
      */
     private boolean stoppedWhenSaveFail = true;
 
+    /**
+     * @see #getBatchSize()
+     */
+    private int batchSize = 1;
+
+    /**
+     * @see #isUnchangedSkipped()
+     */
+    private boolean unchangedSkipped;
+
     /**
      * @return The base reference to use to resolve reference from events
      */
@@ -237,4 +247,50 @@ public void setStoppedWhenSaveFail(boolean stoppedWhenSaveFail)
     {
         this.stoppedWhenSaveFail = stoppedWhenSaveFail;
     }
+
+    /**
+     * @return The number of documents saved in the same database transaction. The documents links and the search index
+     *         are updated at the end of each transaction. If a document fails to be saved, the whole transaction is
+     *         rolled back.
+     * @since 10.0RC1
+     */
+    @PropertyName("Batch size")
+    @PropertyDescription("The number of documents saved in the same database transaction. If a document fails to be"
+        + " saved, the whole transaction is rolled back.")
+    public int getBatchSize()
+    {
+        return this.batchSize;
+    }
+
+    /**
+     * @param batchSize The number of documents saved in the same database transaction
+     * @since 10.0RC1
+     */
+    public void setBatchSize(int batchSize)
+    {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return Indicate if the documents which would not be modified by the import should be left untouched (no new
+     *         version is created for them)
+     * @since 10.0RC1
+     */
+    @PropertyName("Skip unchanged documents")
+    @PropertyDescription("Indicate if the documents which would not be modified by the import should be left"
+        + " untouched")
+    public boolean isUnchangedSkipped()
+    {
+        return this.unchangedSkipped;
+    }
+
+    /**
+     * @param unchangedSkipped Indicate if the documents which would not be modified by the import should be left
+     *            untouched
+     * @since 10.0RC1
+     */
+    public void setUnchangedSkipped(boolean unchangedSkipped)
+    {
+        this.unchangedSkipped = unchangedSkipped;
+    }
 }
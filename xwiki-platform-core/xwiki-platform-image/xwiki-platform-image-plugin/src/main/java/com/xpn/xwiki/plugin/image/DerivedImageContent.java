@@ -0,0 +1,131 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.AutoCloseInputStream;
+
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiAttachmentContent;
+
+/**
+ * The content of an image attachment derived from another one, streamed from the file where the
+ * {@link DerivedImageStore} keeps it. The image is generated again when it was evicted from the store before being
+ * read. The file is left alone when the content is modified.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class DerivedImageContent extends XWikiAttachmentContent
+{
+    /**
+     * Identifies the derived image in the store.
+     */
+    private final String key;
+
+    /**
+     * Used to generate the derived image again when it's not stored anymore.
+     */
+    private final DerivedImageStore.Generator generator;
+
+    /**
+     * The number of bytes of the derived image.
+     */
+    private final long size;
+
+    /**
+     * The store where the derived image is kept.
+     */
+    private final DerivedImageStore store;
+
+    /**
+     * @param key identifies the derived image in the store
+     * @param generator used to generate the derived image again when it's not stored anymore
+     * @param size the number of bytes of the derived image
+     * @param store the store where the derived image is kept
+     * @param attachment the attachment to associate this content with
+     */
+    public DerivedImageContent(String key, DerivedImageStore.Generator generator, long size,
+        DerivedImageStore store, XWikiAttachment attachment)
+    {
+        super(attachment, null);
+
+        this.key = key;
+        this.generator = generator;
+        this.size = size;
+        this.store = store;
+    }
+
+    @Override
+    public DerivedImageContent clone()
+    {
+        return new DerivedImageContent(this.key, this.generator, this.size, this.store, getAttachment());
+    }
+
+    @Override
+    @Deprecated
+    public byte[] getContent()
+    {
+        if (getFileItem() != null) {
+            return super.getContent();
+        }
+
+        try (InputStream stream = getContentInputStream()) {
+            return IOUtils.toByteArray(stream);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read derived image content", e);
+        }
+    }
+
+    @Override
+    public InputStream getContentInputStream()
+    {
+        if (getFileItem() != null) {
+            return super.getContentInputStream();
+        }
+
+        InputStream stream;
+        try {
+            // Channel based stream, the content is never held in memory and the file is not deleted while it's read
+            stream = this.store.open(this.key, this.generator);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to get InputStream", e);
+        }
+
+        if (stream == null) {
+            throw new RuntimeException("The derived image [" + this.key + "] is not available anymore");
+        }
+
+        return new AutoCloseInputStream(stream);
+    }
+
+    @Override
+    public long getLongSize()
+    {
+        if (getFileItem() != null) {
+            return super.getLongSize();
+        }
+
+        return this.size;
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.input.ProxyInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the images derived from image attachments (e.g. thumbnails) on the filesystem so that they don't use heap
+ * memory and survive restarts. The total size of the stored images is bounded: the least recently used images are
+ * deleted when it's exceeded. Concurrent requests for an image which is not stored yet wait for a single generation.
+ * <p>
+ * The images should be read with {@link #open(String, Generator)} which pins the image while looking it up, so that an
+ * image being streamed is not deleted before all its readers are closed, and generates it again if it was evicted.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class DerivedImageStore
+{
+    /**
+     * Generates a derived image.
+     *
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface Generator
+    {
+        /**
+         * @param output where to write the derived image
+         * @return {@code true} if the derived image has been written, {@code false} if the original image should be
+         *         used as is (in which case nothing should be written)
+         * @throws Exception if generating the image fails
+         */
+        boolean generate(OutputStream output) throws Exception;
+    }
+
+    /**
+     * Logging helper object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(DerivedImageStore.class);
+
+    /**
+     * The suffix of the files in which derived images are being written.
+     */
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * The directory where the derived images are stored.
+     */
+    private final File directory;
+
+    /**
+     * The maximum number of bytes of the stored images.
+     */
+    private final long capacity;
+
+    /**
+     * The size of each stored image file, from the least recently used to the most recently used. An empty file
+     * indicates that the original image should be used as is.
+     */
+    private final Map<String, Long> sizes = new LinkedHashMap<>(16, 0.75F, true);
+
+    /**
+     * The total number of bytes of the stored images.
+     */
+    private long size;
+
+    /**
+     * The number of open readers of each image.
+     */
+    private final Map<String, Integer> readers = new HashMap<>();
+
+    /**
+     * The evicted images which will be deleted when their last reader is closed.
+     */
+    private final Set<String> deferredDeletions = new HashSet<>();
+
+    /**
+     * The generations in progress.
+     */
+    private final ConcurrentMap<String, FutureTask<Long>> generations = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a store, taking into account the images already stored in the passed directory.
+     *
+     * @param directory the directory where to store the derived images
+     * @param capacity the maximum number of bytes of the stored images
+     * @throws IOException if the directory cannot be created
+     */
+    public DerivedImageStore(File directory, long capacity) throws IOException
+    {
+        this.directory = directory;
+        this.capacity = capacity;
+
+        Files.createDirectories(directory.toPath());
+
+        load();
+    }
+
+    private void load()
+    {
+        File[] files = this.directory.listFiles();
+        if (files != null) {
+            // Consider the oldest images as the least recently used ones
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+            synchronized (this) {
+                for (File file : files) {
+                    if (file.getName().endsWith(TEMPORARY_SUFFIX)) {
+                        // Generation interrupted by a shutdown
+                        delete(file);
+                    } else {
+                        add(file.getName(), file.length());
+                    }
+                }
+            }
+
+            evict(null);
+        }
+    }
+
+    /**
+     * Return the derived image associated with the passed key, generating it if it's not stored yet. The returned file
+     * can be evicted at any time so it should be read with {@link #open(String, Generator)}.
+     *
+     * @param key identifies the derived image; it should contain all the parameters of the generation
+     * @param generator used to generate the image when it's not stored
+     * @return the file containing the derived image or {@code null} if the original image should be used as is
+     * @throws Exception if generating the image fails
+     */
+    public File get(String key, Generator generator) throws Exception
+    {
+        String name = DigestUtils.sha1Hex(key);
+
+        Long fileSize = touch(name);
+        if (fileSize == null) {
+            fileSize = store(name, generator);
+        }
+
+        return getFile(name, fileSize);
+    }
+
+    /**
+     * Open the derived image associated with the passed key for reading, generating it if it's not stored (anymore).
+     * The image is not deleted until the returned stream is closed, even if it's evicted in the meantime.
+     *
+     * @param key identifies the derived image; it should contain all the parameters of the generation
+     * @param generator used to generate the image when it's not stored
+     * @return the stream to read the derived image from or {@code null} if the original image should be used as is
+     * @throws Exception if generating or opening the image fails
+     */
+    public InputStream open(String key, Generator generator) throws Exception
+    {
+        String name = DigestUtils.sha1Hex(key);
+
+        Long fileSize = pin(name);
+        while (fileSize == null) {
+            // The image might be evicted again before being pinned
+            store(name, generator);
+            fileSize = pin(name);
+        }
+
+        return fileSize > 0 ? read(name) : null;
+    }
+
+    private Long store(String name, Generator generator) throws Exception
+    {
+        FutureTask<Long> generation = new FutureTask<>(() -> generate(name, generator));
+        FutureTask<Long> currentGeneration = this.generations.putIfAbsent(name, generation);
+        if (currentGeneration == null) {
+            try {
+                generation.run();
+            } finally {
+                this.generations.remove(name, generation);
+            }
+            currentGeneration = generation;
+        }
+
+        try {
+            return currentGeneration.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    private Long generate(String name, Generator generator) throws Exception
+    {
+        // The image might have been stored since it was looked for
+        Long fileSize = touch(name);
+        if (fileSize != null) {
+            return fileSize;
+        }
+
+        File file = new File(this.directory, name);
+        File temporaryFile = new File(this.directory, name + TEMPORARY_SUFFIX);
+        try {
+            boolean generated;
+            try (OutputStream output = Files.newOutputStream(temporaryFile.toPath())) {
+                generated = generator.generate(output);
+            }
+            if (!generated) {
+                // Remember that the original image should be used, with an empty file
+                Files.newOutputStream(temporaryFile.toPath()).close();
+            }
+
+            synchronized (this) {
+                // An evicted image still being read is going to be replaced
+                this.deferredDeletions.remove(name);
+            }
+
+            // Never expose a partially written image
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            delete(temporaryFile);
+        }
+
+        fileSize = file.length();
+        synchronized (this) {
+            add(name, fileSize);
+        }
+        evict(name);
+
+        return fileSize;
+    }
+
+    private File getFile(String name, long fileSize)
+    {
+        return fileSize > 0 ? new File(this.directory, name) : null;
+    }
+
+    private synchronized Long touch(String name)
+    {
+        return this.sizes.get(name);
+    }
+
+    /**
+     * Look for an image and prevent its deletion until it's {@link #release(String) released}, if it's stored and not
+     * empty.
+     */
+    private synchronized Long pin(String name)
+    {
+        Long fileSize = this.sizes.get(name);
+        if (fileSize != null && fileSize > 0) {
+            this.readers.merge(name, 1, Integer::sum);
+        }
+
+        return fileSize;
+    }
+
+    private void add(String name, long fileSize)
+    {
+        Long previousSize = this.sizes.put(name, fileSize);
+        this.size += fileSize - (previousSize != null ? previousSize : 0);
+    }
+
+    /**
+     * Delete the least recently used images until the total size is below the capacity.
+     *
+     * @param name the name of an image to keep, even if it's the only one left
+     */
+    private void evict(String name)
+    {
+        List<String> evicted = new ArrayList<>();
+
+        synchronized (this) {
+            Iterator<Map.Entry<String, Long>> iterator = this.sizes.entrySet().iterator();
+            while (this.size > this.capacity && iterator.hasNext()) {
+                Map.Entry<String, Long> entry = iterator.next();
+                if (!entry.getKey().equals(name)) {
+                    iterator.remove();
+                    this.size -= entry.getValue();
+                    evicted.add(entry.getKey());
+                }
+            }
+
+            deferReadImages(evicted);
+        }
+
+        for (String evictedName : evicted) {
+            delete(new File(this.directory, evictedName));
+        }
+    }
+
+    /**
+     * Remove from the passed list the images which are currently read to delete them when their last reader is closed.
+     */
+    private void deferReadImages(List<String> names)
+    {
+        for (Iterator<String> iterator = names.iterator(); iterator.hasNext();) {
+            String name = iterator.next();
+            if (this.readers.containsKey(name)) {
+                iterator.remove();
+                this.deferredDeletions.add(name);
+            }
+        }
+    }
+
+    /**
+     * Delete all the stored images.
+     */
+    public void clear()
+    {
+        List<String> names;
+        synchronized (this) {
+            names = new ArrayList<>(this.sizes.keySet());
+            this.sizes.clear();
+            this.size = 0;
+
+            deferReadImages(names);
+        }
+
+        for (String name : names) {
+            delete(new File(this.directory, name));
+        }
+    }
+
+    private InputStream read(String name) throws IOException
+    {
+        try {
+            return new ProxyInputStream(Files.newInputStream(new File(this.directory, name).toPath()))
+            {
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException
+                {
+                    if (!this.closed) {
+                        this.closed = true;
+                        try {
+                            super.close();
+                        } finally {
+                            release(name);
+                        }
+                    }
+                }
+            };
+        } catch (IOException e) {
+            release(name);
+
+            throw e;
+        }
+    }
+
+    private synchronized void release(String name)
+    {
+        Integer count = this.readers.get(name);
+        if (count != null && count > 1) {
+            this.readers.put(name, count - 1);
+        } else {
+            this.readers.remove(name);
+
+            if (this.deferredDeletions.remove(name)) {
+                // Deleted while holding the lock so that it cannot be a new version of the image
+                delete(new File(this.directory, name));
+            }
+        }
+    }
+
+    /**
+     * @return the total number of bytes of the stored images
+     */
+    public synchronized long getSize()
+    {
+        return this.size;
+    }
+
+    private void delete(File file)
+    {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            LOG.warn("Failed to delete derived image file [{}].", file, e);
+        }
+    }
+}
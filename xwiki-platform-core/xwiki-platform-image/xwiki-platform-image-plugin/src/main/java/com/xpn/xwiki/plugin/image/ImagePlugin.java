@@ -21,6 +21,7 @@
 
 import java.awt.Image;
 import java.awt.image.RenderedImage;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
@@ -29,11 +30,7 @@
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xwiki.cache.Cache;
-import org.xwiki.cache.CacheException;
-import org.xwiki.cache.CacheManager;
-import org.xwiki.cache.config.CacheConfiguration;
-import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.environment.Environment;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
@@ -63,14 +60,22 @@ public class ImagePlugin extends XWikiDefaultPlugin
     private static final String PLUGIN_NAME = "image";
 
     /**
-     * Cache for already served images.
+     * Filesystem cache for already served images.
      */
-    private Cache<XWikiAttachment> imageCache;
+    private DerivedImageStore imageCache;
 
     /**
-     * The size of the cache. This parameter can be configured using the key {@code xwiki.plugin.image.cache.capacity}.
+     * The estimated number of bytes of a resized image, used to convert the deprecated
+     * {@code xwiki.plugin.image.cache.capacity} configuration (a number of images) into a number of bytes.
      */
-    private int capacity = 50;
+    private static final long LEGACY_IMAGE_SIZE = 2L * 1024 * 1024;
+
+    /**
+     * The maximum number of bytes of the cached images. This parameter can be configured using the key
+     * {@code xwiki.plugin.image.cache.maxSize} (or, for backward compatibility, a number of images with the key
+     * {@code xwiki.plugin.image.cache.capacity}). The cache is disabled when it's not greater than zero.
+     */
+    private long capacity = 100L * 1024 * 1024;
 
     /**
      * Default JPEG image quality.
@@ -138,30 +143,46 @@ public void init(XWikiContext context)
     private void initCache(XWikiContext context)
     {
         if (this.imageCache == null) {
-            CacheConfiguration configuration = new CacheConfiguration();
-
-            configuration.setConfigurationId("xwiki.plugin.image");
-
-            // Set cache constraints.
-            LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
-            configuration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
-
-            String capacityParam = context.getWiki().Param("xwiki.plugin.image.cache.capacity");
+            String capacityParam = context.getWiki().Param("xwiki.plugin.image.cache.maxSize");
             if (!StringUtils.isBlank(capacityParam) && StringUtils.isNumeric(capacityParam.trim())) {
                 try {
-                    this.capacity = Integer.parseInt(capacityParam.trim());
+                    this.capacity = Long.parseLong(capacityParam.trim());
                 } catch (NumberFormatException e) {
                     LOG.warn(String.format(
-                        "Failed to parse xwiki.plugin.image.cache.capacity configuration parameter. "
-                            + "Using %s as the cache capacity.", this.capacity), e);
+                        "Failed to parse xwiki.plugin.image.cache.maxSize configuration parameter. "
+                            + "Using %s as the cache maximum size.", this.capacity), e);
+                }
+            } else {
+                initLegacyCapacity(context);
+            }
+
+            if (this.capacity > 0) {
+                File directory =
+                    new File(Utils.getComponent(Environment.class).getPermanentDirectory(), "cache/image");
+                try {
+                    this.imageCache = new DerivedImageStore(directory, this.capacity);
+                } catch (IOException e) {
+                    LOG.error("Error initializing the image cache.", e);
                 }
             }
-            lru.setMaxEntries(this.capacity);
+        }
+    }
 
+    /**
+     * Use the number of images configured with the deprecated {@code xwiki.plugin.image.cache.capacity} key, if any.
+     *
+     * @param context the XWiki context
+     */
+    private void initLegacyCapacity(XWikiContext context)
+    {
+        String capacityParam = context.getWiki().Param("xwiki.plugin.image.cache.capacity");
+        if (!StringUtils.isBlank(capacityParam) && StringUtils.isNumeric(capacityParam.trim())) {
             try {
-                this.imageCache = Utils.getComponent(CacheManager.class).createNewLocalCache(configuration);
-            } catch (CacheException e) {
-                LOG.error("Error initializing the image cache.", e);
+                this.capacity = Long.parseLong(capacityParam.trim()) * LEGACY_IMAGE_SIZE;
+            } catch (NumberFormatException e) {
+                LOG.warn(String.format(
+                    "Failed to parse xwiki.plugin.image.cache.capacity configuration parameter. "
+                        + "Using %s as the cache maximum size.", this.capacity), e);
             }
         }
     }
@@ -170,9 +191,8 @@ private void initCache(XWikiContext context)
     public void flushCache()
     {
         if (this.imageCache != null) {
-            this.imageCache.dispose();
+            this.imageCache.clear();
         }
-        this.imageCache = null;
     }
 
     /**
@@ -280,15 +300,22 @@ private XWikiAttachment downloadImage(XWikiAttachment image, int width, int heig
     private XWikiAttachment downloadImageFromCache(XWikiAttachment image, int width, int height,
         boolean keepAspectRatio, float quality, XWikiContext context) throws Exception
     {
-        String key =
-            String.format("%s;%s;%s;%s;%s;%s", image.getId(), image.getVersion(), width, height, keepAspectRatio,
-                quality);
-
-        XWikiAttachment thumbnail = this.imageCache.get(key);
-        if (thumbnail == null) {
-            thumbnail = shrinkImage(image, width, height, keepAspectRatio, quality, context);
-            this.imageCache.set(key, thumbnail);
+        String key = String.format("%s;%s;%s;%s;%s;%s", image.getReference(), image.getVersion(), width, height,
+            keepAspectRatio, quality);
+
+        // Concurrent requests for the same image are waiting for a single generation
+        DerivedImageStore.Generator generator =
+            output -> shrinkImage(image, width, height, keepAspectRatio, quality, output, context);
+        File file = this.imageCache.get(key, generator);
+        if (file == null) {
+            return image;
         }
+
+        XWikiAttachment thumbnail = (XWikiAttachment) image.clone();
+        long size = file.length();
+        thumbnail.setAttachment_content(new DerivedImageContent(key, generator, size, this.imageCache, thumbnail));
+        thumbnail.setLongSize(size);
+
         return thumbnail;
     }
 
@@ -311,6 +338,43 @@ private XWikiAttachment downloadImageFromCache(XWikiAttachment image, int width,
      */
     private XWikiAttachment shrinkImage(XWikiAttachment attachment, int requestedWidth, int requestedHeight,
         boolean keepAspectRatio, float requestedQuality, XWikiContext context) throws Exception
+    {
+        // Create an image attachment for the shrunk image.
+        XWikiAttachment thumbnail = (XWikiAttachment) attachment.clone();
+        thumbnail.loadAttachmentContent(context);
+
+        OutputStream acos = thumbnail.getAttachment_content().getContentOutputStream();
+        try {
+            if (!shrinkImage(attachment, requestedWidth, requestedHeight, keepAspectRatio, requestedQuality, acos,
+                context)) {
+                return attachment;
+            }
+        } finally {
+            IOUtils.closeQuietly(acos);
+        }
+
+        return thumbnail;
+    }
+
+    /**
+     * Writes the image obtained by scaling the width and height and by reducing the compression quality of an image.
+     *
+     * @param attachment the image to be shrunk
+     * @param requestedWidth the desired image width; this value is taken into account only if it is greater than zero
+     *            and less than the current image width
+     * @param requestedHeight the desired image height; this value is taken into account only if it is greater than zero
+     *            and less than the current image height
+     * @param keepAspectRatio {@code true} to preserve the image aspect ratio even when both requested dimensions are
+     *            properly specified (in this case the image will be resized to best fit the rectangle with the
+     *            requested width and height), {@code false} otherwise
+     * @param requestedQuality the desired compression quality
+     * @param output where to write the shrunk image
+     * @param context the XWiki context
+     * @return {@code false} if the image doesn't need to be modified, in which case nothing is written
+     * @throws Exception if shrinking the image fails
+     */
+    private boolean shrinkImage(XWikiAttachment attachment, int requestedWidth, int requestedHeight,
+        boolean keepAspectRatio, float requestedQuality, OutputStream output, XWikiContext context) throws Exception
     {
         Image image = this.imageProcessor.readImage(attachment.getContentInputStream(context));
 
@@ -324,7 +388,7 @@ private XWikiAttachment shrinkImage(XWikiAttachment attachment, int requestedWid
         if (quality < 0) {
             // If no scaling is needed and the quality parameter is not specified, return the original image.
             if (dimensions[0] == currentWidth && dimensions[1] == currentHeight) {
-                return attachment;
+                return false;
             }
             quality = this.defaultQuality;
         }
@@ -332,19 +396,12 @@ private XWikiAttachment shrinkImage(XWikiAttachment attachment, int requestedWid
         // Scale the image to the new dimensions.
         RenderedImage shrunkImage = this.imageProcessor.scaleImage(image, dimensions[0], dimensions[1]);
 
-        // Create an image attachment for the shrunk image.
-        XWikiAttachment thumbnail = (XWikiAttachment) attachment.clone();
-        thumbnail.loadAttachmentContent(context);
-
-        OutputStream acos = thumbnail.getAttachment_content().getContentOutputStream();
         this.imageProcessor.writeImage(shrunkImage,
             attachment.getMimeType(context),
             quality,
-            acos);
-
-        IOUtils.closeQuietly(acos);
+            output);
 
-        return thumbnail;
+        return true;
     }
 
     /**
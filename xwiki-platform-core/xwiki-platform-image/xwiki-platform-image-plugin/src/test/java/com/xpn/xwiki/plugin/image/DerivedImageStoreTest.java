@@ -0,0 +1,176 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.image;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for the {@link DerivedImageStore} class.
+ *
+ * @version $Id$
+ */
+public class DerivedImageStoreTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AtomicInteger generations = new AtomicInteger();
+
+    private DerivedImageStore.Generator generator(int size)
+    {
+        return output -> {
+            this.generations.incrementAndGet();
+            output.write(new byte[size]);
+            return true;
+        };
+    }
+
+    @Test
+    public void getGeneratesOnlyOnce() throws Exception
+    {
+        DerivedImageStore store = new DerivedImageStore(this.folder.getRoot(), 100);
+
+        File file = store.get("key", generator(10));
+        Assert.assertEquals(10, file.length());
+        Assert.assertEquals(file, store.get("key", generator(10)));
+        Assert.assertEquals(1, this.generations.get());
+
+        // The original image should be used
+        Assert.assertNull(store.get("original", output -> false));
+        Assert.assertNull(store.get("original", output -> {
+            throw new Exception("Should not be called");
+        }));
+    }
+
+    @Test
+    public void getEvictsLeastRecentlyUsed() throws Exception
+    {
+        DerivedImageStore store = new DerivedImageStore(this.folder.getRoot(), 25);
+
+        File first = store.get("first", generator(10));
+        File second = store.get("second", generator(10));
+        // Use the first image again so that the second one is the least recently used
+        store.get("first", generator(10));
+        store.get("third", generator(10));
+
+        Assert.assertTrue(first.exists());
+        Assert.assertFalse(second.exists());
+        Assert.assertEquals(20, store.getSize());
+    }
+
+    @Test
+    public void getReusesStoredImagesAfterRestart() throws Exception
+    {
+        File file = new DerivedImageStore(this.folder.getRoot(), 100).get("key", generator(10));
+
+        DerivedImageStore store = new DerivedImageStore(this.folder.getRoot(), 100);
+        Assert.assertEquals(10, store.getSize());
+        Assert.assertEquals(file, store.get("key", generator(10)));
+        Assert.assertEquals(1, this.generations.get());
+
+        store.clear();
+        Assert.assertFalse(file.exists());
+        Assert.assertEquals(0, FileUtils.listFiles(this.folder.getRoot(), null, false).size());
+    }
+
+    @Test
+    public void getWaitsForConcurrentGeneration() throws Exception
+    {
+        DerivedImageStore store = new DerivedImageStore(this.folder.getRoot(), 100);
+
+        CountDownLatch generating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<File> future = executor.submit(() -> store.get("key", output -> {
+                generating.countDown();
+                release.await();
+                return generator(10).generate(output);
+            }));
+
+            generating.await();
+            Future<File> waiting = executor.submit(() -> store.get("key", generator(10)));
+            Thread.sleep(100);
+            release.countDown();
+
+            Assert.assertEquals(future.get(10, TimeUnit.SECONDS), waiting.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals(1, this.generations.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void evictWaitsForReaders() throws Exception
+    {
+        DerivedImageStore store = new DerivedImageStore(this.folder.getRoot(), 15);
+
+        File first = store.get("first", generator(10));
+        try (InputStream stream = store.open("first", generator(10))) {
+            store.get("second", generator(10));
+
+            // Evicted but still being read
+            Assert.assertEquals(10, store.getSize());
+            Assert.assertTrue(first.exists());
+            Assert.assertEquals(10, IOUtils.toByteArray(stream).length);
+        }
+
+        Assert.assertFalse(first.exists());
+
+        // Images which are not read anymore are deleted right away
+        File second = store.get("second", generator(10));
+        store.open("second", generator(10)).close();
+        store.clear();
+        Assert.assertFalse(second.exists());
+    }
+
+    @Test
+    public void openGeneratesEvictedImage() throws Exception
+    {
+        DerivedImageStore store = new DerivedImageStore(this.folder.getRoot(), 15);
+
+        File first = store.get("first", generator(10));
+        // Evict the first image before it's opened
+        store.get("second", generator(10));
+        Assert.assertFalse(first.exists());
+
+        try (InputStream stream = store.open("first", generator(10))) {
+            Assert.assertEquals(10, IOUtils.toByteArray(stream).length);
+        }
+        Assert.assertEquals(3, this.generations.get());
+
+        // The original image should be used
+        Assert.assertNull(store.open("original", output -> false));
+    }
+}
@@ -30,10 +30,10 @@
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.apache.commons.io.IOUtils;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
-import org.xwiki.cache.Cache;
-import org.xwiki.cache.CacheManager;
 
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
@@ -97,11 +97,11 @@
     public void configure() throws Exception
     {
         XWiki xwiki = this.oldCore.getSpyXWiki();
-        Mockito.doReturn("10").when(xwiki).Param("xwiki.plugin.image.cache.capacity");
+        Mockito.doReturn("1000").when(xwiki).Param("xwiki.plugin.image.cache.maxSize");
         Mockito.doReturn("test").when(xwiki).Param(
                 ArgumentMatchers.eq("xwiki.plugin.image.processorHint"), ArgumentMatchers.anyString());
 
-        this.oldCore.getMocker().registerMockComponent(CacheManager.class);
+        this.oldCore.registerMockEnvironment();
 
         this.imageProcessor = this.oldCore.getMocker().registerMockComponent(ImageProcessor.class, "test");
         Mockito.when(this.imageProcessor.isMimeTypeSupported("image/png")).thenReturn(true);
@@ -124,19 +124,13 @@ public void testCacheOfScaledAttachment() throws Exception
 
         XWikiAttachment attachment = Mockito.mock(XWikiAttachment.class);
         Mockito.when(attachment.getMimeType(xcontext)).thenReturn("image/png");
+        Mockito.when(attachment.getVersion()).thenReturn("1.1");
         InputStream attachmentInputStream = new ByteArrayInputStream(testPngImageContent);
         Mockito.when(attachment.getContentInputStream(xcontext)).thenReturn(attachmentInputStream);
-        Mockito.when(attachment.clone()).thenReturn(attachment);
 
-        XWikiAttachmentContent attachmentContent = Mockito.mock(XWikiAttachmentContent.class);
-        Mockito.when(attachment.getAttachment_content()).thenReturn(attachmentContent);
-        Mockito.when(attachmentContent.getContentInputStream()).thenReturn(attachmentInputStream);
-        OutputStream attachmentOutputStream = Mockito.mock(OutputStream.class);
-        Mockito.when(attachmentContent.getContentOutputStream()).thenReturn(attachmentOutputStream);
-
-        CacheManager cacheManager = this.oldCore.getMocker().getInstance(CacheManager.class);
-        Cache<Object> imageCache = Mockito.mock(Cache.class);
-        Mockito.when(cacheManager.createNewLocalCache(ArgumentMatchers.any())).thenReturn(imageCache);
+        XWikiAttachment thumbnail = Mockito.mock(XWikiAttachment.class);
+        Mockito.when(thumbnail.getFilename()).thenReturn("image.png");
+        Mockito.when(attachment.clone()).thenReturn(thumbnail);
 
         XWikiServletRequest request = Mockito.mock(XWikiServletRequest.class);
         Mockito.when(request.getParameter("width")).thenReturn("30");
@@ -149,17 +143,26 @@ public void testCacheOfScaledAttachment() throws Exception
         Mockito.when(imageProcessor.readImage(attachmentInputStream)).thenReturn(image);
         RenderedImage renderedImage = Mockito.mock(RenderedImage.class);
         Mockito.when(imageProcessor.scaleImage(image, 30, 30)).thenReturn(renderedImage);
+        Mockito.doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(3).write(new byte[] { 1, 2, 3 });
+            return null;
+        }).when(imageProcessor).writeImage(ArgumentMatchers.eq(renderedImage), ArgumentMatchers.eq("image/png"),
+            ArgumentMatchers.eq(.5F), ArgumentMatchers.any(OutputStream.class));
 
-        XWikiAttachment scaled = plugin.downloadAttachment(attachment, xcontext);
-
-        String cacheKey = "0;null;30;30;false;-1.0";
-        Mockito.when(imageCache.get(cacheKey)).thenReturn(scaled);
+        Assert.assertSame(thumbnail, plugin.downloadAttachment(attachment, xcontext));
 
         // Load again, this time from cache.
-        Assert.assertSame(scaled, plugin.downloadAttachment(attachment, xcontext));
-
-        Mockito.verify(imageProcessor, Mockito.times(1)).writeImage(renderedImage,
-                "image/png", .5F, attachmentOutputStream);
-        Mockito.verify(imageCache, Mockito.times(1)).set(cacheKey, attachment);
+        Assert.assertSame(thumbnail, plugin.downloadAttachment(attachment, xcontext));
+
+        Mockito.verify(imageProcessor, Mockito.times(1)).readImage(attachmentInputStream);
+        Mockito.verify(imageProcessor, Mockito.times(1)).writeImage(ArgumentMatchers.eq(renderedImage),
+            ArgumentMatchers.eq("image/png"), ArgumentMatchers.eq(.5F), ArgumentMatchers.any(OutputStream.class));
+
+        ArgumentCaptor<XWikiAttachmentContent> contentCaptor = ArgumentCaptor.forClass(XWikiAttachmentContent.class);
+        Mockito.verify(thumbnail, Mockito.times(2)).setAttachment_content(contentCaptor.capture());
+        try (InputStream thumbnailInputStream = contentCaptor.getValue().getContentInputStream()) {
+            Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, IOUtils.toByteArray(thumbnailInputStream));
+        }
+        Mockito.verify(thumbnail, Mockito.times(2)).setLongSize(3);
     }
 }
@@ -56,4 +56,13 @@ public boolean isGenerateInlineSourceMaps()
     {
         return configurationSource.getProperty(CONFIGURATION_PREFIX + "generateInlineSourceMaps", false);
     }
+
+    /**
+     * @return whether the main LESS file of the skins should be compiled for every color theme at startup
+     * @since 10.0RC1
+     */
+    public boolean isWarmUpEnabled()
+    {
+        return configurationSource.getProperty(CONFIGURATION_PREFIX + "warmUp", true);
+    }
 }
@@ -19,13 +19,25 @@
  */
 package org.xwiki.lesscss.internal.cache;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.inject.Inject;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.lesscss.internal.colortheme.ColorThemeReference;
@@ -59,23 +71,37 @@
      * This map stores the list of the cached files keys corresponding to a skin, in order to clear the corresponding
      * cache when a skin is saved.
      */
-    private Map<Object, List<String>> cachedFilesKeysMapPerSkin = new HashMap<>();
+    private Map<String, List<String>> cachedFilesKeysMapPerSkin = new HashMap<>();
 
     /**
      * This map stores the list of the cached files keys corresponding to a color theme, in order to clear the
      * corresponding cache when a color theme is saved.
      */
-    private Map<Object, List<String>> cachedFilesKeysMapPerColorTheme = new HashMap<>();
+    private Map<String, List<String>> cachedFilesKeysMapPerColorTheme = new HashMap<>();
 
     /**
      * This map stores the list of the cached files keys corresponding to a LESS resource, in order to clear the
      * corresponding cache when a LESS resource is saved.
      */
-    private Map<Object, List<String>> cachedFilesKeysMapPerLESSResource = new HashMap<>();
+    private Map<String, List<String>> cachedFilesKeysMapPerLESSResource = new HashMap<>();
+
+    /**
+     * The serialized skin, color theme and LESS resource of each cached file key, as written in the index file.
+     */
+    private Map<String, String[]> indexEntries = new LinkedHashMap<>();
+
+    /**
+     * The file where the cached file keys are recorded when the cache is persistent, so that the entries stored
+     * before a restart can still be cleared when their skin, color theme or LESS resource is modified.
+     */
+    private File indexFile;
 
     @Inject
     private CacheKeyFactory cacheKeyFactory;
 
+    @Inject
+    private Logger logger;
+
     private Map<String, String> mutexList = new HashMap<>();
 
     @Override
@@ -85,7 +111,7 @@ public T get(LESSResourceReference lessResourceReference, SkinReference skin, Co
     }
 
     @Override
-    public void set(LESSResourceReference lessResourceReference, SkinReference skin,
+    public synchronized void set(LESSResourceReference lessResourceReference, SkinReference skin,
         ColorThemeReference colorTheme, T content)
     {
         // Store the content in the cache
@@ -93,9 +119,18 @@ public void set(LESSResourceReference lessResourceReference, SkinReference skin,
         cache.set(cacheKey, content);
 
         // Add the new key to maps
+        if (register(cacheKey, skin.serialize(), colorTheme.serialize(), lessResourceReference.serialize())) {
+            appendToIndex(cacheKey);
+        }
+    }
+
+    private boolean register(String cacheKey, String skin, String colorTheme, String lessResource)
+    {
         registerCacheKey(cachedFilesKeysMapPerSkin, cacheKey, skin);
         registerCacheKey(cachedFilesKeysMapPerColorTheme, cacheKey, colorTheme);
-        registerCacheKey(cachedFilesKeysMapPerLESSResource, cacheKey, lessResourceReference);
+        registerCacheKey(cachedFilesKeysMapPerLESSResource, cacheKey, lessResource);
+
+        return indexEntries.put(cacheKey, new String[] { skin, colorTheme, lessResource }) == null;
     }
 
     /**
@@ -104,9 +139,9 @@ public void set(LESSResourceReference lessResourceReference, SkinReference skin,
      *
      * @param cachedFilesKeysMap could be cachedFilesKeysMapPerSkin or cachedFilesKeysMapPerColorTheme
      * @param cacheKey the cache key to register
-     * @param reference name of the skin or of the color theme
+     * @param reference serialized reference of the skin or of the color theme
      */
-    private void registerCacheKey(Map<Object, List<String>> cachedFilesKeysMap, String cacheKey, Object reference)
+    private void registerCacheKey(Map<String, List<String>> cachedFilesKeysMap, String cacheKey, String reference)
     {
         List<String> cachedFilesKeys = cachedFilesKeysMap.get(reference);
         if (cachedFilesKeys == null) {
@@ -120,15 +155,17 @@ private void registerCacheKey(Map<Object, List<String>> cachedFilesKeysMap, Stri
     }
 
     @Override
-    public void clear()
+    public synchronized void clear()
     {
         cache.removeAll();
         cachedFilesKeysMapPerSkin.clear();
         cachedFilesKeysMapPerColorTheme.clear();
         cachedFilesKeysMapPerLESSResource.clear();
+        indexEntries.clear();
+        writeIndex();
     }
 
-    private void clearFromCriteria(Map<Object, List<String>> cachedFilesKeysMap, Object criteria)
+    private void clearFromCriteria(Map<String, List<String>> cachedFilesKeysMap, String criteria)
     {
         // Get the list of cached files keys corresponding to the criteria
         List<String> cachedFilesKeys = cachedFilesKeysMap.get(criteria);
@@ -138,27 +175,30 @@ private void clearFromCriteria(Map<Object, List<String>> cachedFilesKeysMap, Obj
         // Remove all the cached files corresponding to the cached keys
         for (String cachedFileKey : cachedFilesKeys) {
             cache.remove(cachedFileKey);
+            indexEntries.remove(cachedFileKey);
         }
         // Remove the list of cached keys corresponding to the criteria
         cachedFilesKeysMap.remove(criteria);
+
+        writeIndex();
     }
 
     @Override
-    public void clearFromSkin(SkinReference skin)
+    public synchronized void clearFromSkin(SkinReference skin)
     {
-        clearFromCriteria(cachedFilesKeysMapPerSkin, skin);
+        clearFromCriteria(cachedFilesKeysMapPerSkin, skin.serialize());
     }
 
     @Override
-    public void clearFromColorTheme(ColorThemeReference colorTheme)
+    public synchronized void clearFromColorTheme(ColorThemeReference colorTheme)
     {
-        clearFromCriteria(cachedFilesKeysMapPerColorTheme, colorTheme);
+        clearFromCriteria(cachedFilesKeysMapPerColorTheme, colorTheme.serialize());
     }
 
     @Override
-    public void clearFromLESSResource(LESSResourceReference lessResourceReference)
+    public synchronized void clearFromLESSResource(LESSResourceReference lessResourceReference)
     {
-        clearFromCriteria(cachedFilesKeysMapPerLESSResource, lessResourceReference);
+        clearFromCriteria(cachedFilesKeysMapPerLESSResource, lessResourceReference.serialize());
     }
     
     @Override
@@ -175,4 +215,82 @@ public synchronized Object getMutex(LESSResourceReference lessResourceReference,
         }
         return mutex;
     }
+
+    /**
+     * Record the cached file keys in the specified file and load the keys recorded there by a previous instance.
+     * Should be called by the implementations using a persistent cache, once the cache is created.
+     *
+     * @param file the index file
+     * @since 10.0RC1
+     */
+    protected synchronized void loadIndex(File file)
+    {
+        this.indexFile = file;
+
+        if (file.exists()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                while (true) {
+                    String cacheKey = input.readUTF();
+                    String skin = input.readUTF();
+                    String colorTheme = input.readUTF();
+                    String lessResource = input.readUTF();
+
+                    // Forget the entries which have been evicted from the cache in the meantime
+                    if (cache.get(cacheKey) != null) {
+                        register(cacheKey, skin, colorTheme, lessResource);
+                    }
+                }
+            } catch (EOFException e) {
+                // End of the index
+            } catch (IOException e) {
+                // We can't know anymore which entries to clear when a skin or a color theme is modified
+                logger.warn("Failed to read the LESS cache index [{}], clearing the cache. Root cause: [{}]", file,
+                    ExceptionUtils.getRootCauseMessage(e));
+
+                clear();
+
+                return;
+            }
+        }
+
+        writeIndex();
+    }
+
+    private void appendToIndex(String cacheKey)
+    {
+        if (indexFile != null) {
+            try (DataOutputStream output =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)))) {
+                writeIndexEntry(output, cacheKey, indexEntries.get(cacheKey));
+            } catch (IOException e) {
+                logger.warn("Failed to update the LESS cache index [{}]. Root cause: [{}]", indexFile,
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+    }
+
+    private void writeIndex()
+    {
+        if (indexFile != null) {
+            indexFile.getParentFile().mkdirs();
+
+            try (DataOutputStream output =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+                for (Map.Entry<String, String[]> entry : indexEntries.entrySet()) {
+                    writeIndexEntry(output, entry.getKey(), entry.getValue());
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to write the LESS cache index [{}]. Root cause: [{}]", indexFile,
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+    }
+
+    private void writeIndexEntry(DataOutputStream output, String cacheKey, String[] references) throws IOException
+    {
+        output.writeUTF(cacheKey);
+        for (String reference : references) {
+            output.writeUTF(reference);
+        }
+    }
 }
@@ -19,6 +19,8 @@
  */
 package org.xwiki.lesscss.internal.cache;
 
+import java.io.File;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -30,6 +32,7 @@
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.environment.Environment;
 
 /**
  * Default implementation for {@link org.xwiki.lesscss.internal.cache.LESSResourcesCache}.
@@ -49,6 +52,9 @@ public class DefaultLESSResourcesCache extends AbstractCache<String> implements
     @Inject
     private CacheManager cacheManager;
 
+    @Inject
+    private Environment environment;
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -60,5 +66,11 @@ public void initialize() throws InitializationException
             throw new InitializationException(
                     String.format("Failed to initialize LESS skin files cache [%s].", LESS_FILES_CACHE_ID), e);
         }
+
+        // The compiled files are persisted (see the cache configuration) so we need to remember their keys too
+        File permanentDirectory = this.environment.getPermanentDirectory();
+        if (permanentDirectory != null) {
+            loadIndex(new File(permanentDirectory, "cache/" + LESS_FILES_CACHE_ID + ".index"));
+        }
     }
 }
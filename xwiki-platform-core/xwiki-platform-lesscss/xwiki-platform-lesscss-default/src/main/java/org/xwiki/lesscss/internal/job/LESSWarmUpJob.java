@@ -0,0 +1,299 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.lesscss.internal.job;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.InstantiationStrategy;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.job.AbstractJob;
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.lesscss.compiler.LESSCompiler;
+import org.xwiki.lesscss.compiler.LESSCompilerException;
+import org.xwiki.lesscss.internal.LESSConfiguration;
+import org.xwiki.lesscss.internal.compiler.CachedLESSCompiler;
+import org.xwiki.lesscss.resources.LESSResourceReference;
+import org.xwiki.lesscss.resources.LESSResourceReferenceFactory;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.wiki.descriptor.WikiDescriptorManager;
+import org.xwiki.wiki.manager.WikiManagerException;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.web.XWikiRequest;
+import com.xpn.xwiki.web.XWikiServletRequest;
+import com.xpn.xwiki.web.XWikiServletRequestStub;
+
+/**
+ * Compile the main LESS file of every skin with every color theme of every wiki, so that the first requests after a
+ * restart don't have to wait for the compilation. The results end up in the LESS cache like any other compilation, so
+ * the combinations which are already cached (and persisted) are skipped.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Component
+@InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
+@Named(LESSWarmUpJob.JOBTYPE)
+public class LESSWarmUpJob extends AbstractJob<DefaultRequest, DefaultJobStatus<DefaultRequest>>
+{
+    /**
+     * The id of the job.
+     */
+    public static final String JOBTYPE = "lesscss.warmup";
+
+    private static final String COLOR_THEME_PARAMETER = "colorTheme";
+
+    private static final String SKIN_CONTEXT_KEY = "skin";
+
+    /**
+     * The classes of the objects which make a document a color theme.
+     */
+    private static final List<String> COLOR_THEME_CLASSES =
+        Arrays.asList("FlamingoThemesCode.ThemeClass", "ColorThemes.ColorThemeClass");
+
+    private static final String SKIN_CLASS = "XWiki.XWikiSkins";
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    private LESSCompiler lessCompiler;
+
+    @Inject
+    private LESSResourceReferenceFactory lessResourceReferenceFactory;
+
+    @Inject
+    private LESSConfiguration lessConfiguration;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private WikiDescriptorManager wikiDescriptorManager;
+
+    @Inject
+    private Execution execution;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    /**
+     * A combination to compile.
+     */
+    private static class WarmUpTarget
+    {
+        private final String wikiId;
+
+        private final String skin;
+
+        private final String colorTheme;
+
+        WarmUpTarget(String wikiId, String skin, String colorTheme)
+        {
+            this.wikiId = wikiId;
+            this.skin = skin;
+            this.colorTheme = colorTheme;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("skin [%s] and color theme [%s] of wiki [%s]", this.skin, this.colorTheme,
+                this.wikiId);
+        }
+    }
+
+    @Override
+    public String getType()
+    {
+        return JOBTYPE;
+    }
+
+    @Override
+    protected void runInternal() throws Exception
+    {
+        XWikiContext xcontext = this.xcontextProvider.get();
+        if (xcontext == null) {
+            this.logger.warn("No XWiki context available, skipping the LESS warm-up");
+
+            return;
+        }
+
+        List<WarmUpTarget> targets = getTargets(xcontext);
+
+        this.logger.info("Compiling the LESS skin files for [{}] skin and color theme combinations", targets.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, this.lessConfiguration.getMaximumSimultaneousCompilations()),
+            new BasicThreadFactory.Builder().namingPattern("XWiki LESS warm-up thread %d").daemon(true).build());
+        CompletionService<Void> compiler = new ExecutorCompletionService<>(executor);
+
+        this.progressManager.pushLevelProgress(targets.size(), this);
+
+        try {
+            for (WarmUpTarget target : targets) {
+                compiler.submit(createCompileTask(target, xcontext), null);
+            }
+
+            for (int i = 0; i < targets.size(); ++i) {
+                this.progressManager.startStep(this);
+
+                try {
+                    compiler.take().get();
+                } catch (ExecutionException e) {
+                    this.logger.warn("Failed to warm up a LESS skin file: {}", ExceptionUtils.getRootCauseMessage(e));
+                }
+
+                this.progressManager.endStep(this);
+            }
+        } finally {
+            // Also stops the remaining compilations when the job is interrupted
+            executor.shutdownNow();
+
+            this.progressManager.popLevelProgress(this);
+        }
+    }
+
+    private List<WarmUpTarget> getTargets(XWikiContext xcontext) throws WikiManagerException
+    {
+        List<WarmUpTarget> targets = new ArrayList<>();
+
+        String currentWikiId = xcontext.getWikiId();
+        try {
+            for (String wikiId : this.wikiDescriptorManager.getAllIds()) {
+                xcontext.setWikiId(wikiId);
+
+                Set<String> skins = new LinkedHashSet<>();
+                // The skin configured in the wiki preferences (which might be located on the filesystem), without the
+                // one remembered in the context for the previous wiki
+                xcontext.remove(SKIN_CONTEXT_KEY);
+                skins.add(xcontext.getWiki().getSkin(xcontext));
+                skins.addAll(getDocuments(wikiId, Collections.singletonList(SKIN_CLASS)));
+
+                List<String> colorThemes = getDocuments(wikiId, COLOR_THEME_CLASSES);
+                if (colorThemes.isEmpty()) {
+                    // Still compile the skin with the default color theme
+                    colorThemes = Collections.singletonList(null);
+                }
+
+                for (String skin : skins) {
+                    for (String colorTheme : colorThemes) {
+                        targets.add(new WarmUpTarget(wikiId, skin, colorTheme));
+                    }
+                }
+            }
+        } finally {
+            xcontext.setWikiId(currentWikiId);
+        }
+
+        return targets;
+    }
+
+    private List<String> getDocuments(String wikiId, List<String> classNames)
+    {
+        List<String> documents = new ArrayList<>();
+
+        for (String className : classNames) {
+            try {
+                Query query = this.queryManager.createQuery(
+                    "select distinct doc.fullName from Document doc, doc.object(" + className + ") as obj", Query.XWQL);
+                query.setWiki(wikiId);
+
+                documents.addAll(query.<String>execute());
+            } catch (QueryException e) {
+                this.logger.warn("Failed to search the documents with [{}] objects in wiki [{}]: {}", className,
+                    wikiId, ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+
+        return documents;
+    }
+
+    private Runnable createCompileTask(WarmUpTarget target, XWikiContext xcontext) throws ExecutionContextException
+    {
+        // Isolate the contexts since the compilations are done in parallel
+        XWikiContext compileContext = xcontext.clone();
+        compileContext.setWikiId(target.wikiId);
+        compileContext.setRequest(createRequest(xcontext.getRequest(), target.colorTheme));
+
+        ExecutionContext executionContext = this.executionContextManager.clone(this.execution.getContext());
+        compileContext.declareInExecutionContext(executionContext);
+
+        LESSResourceReference mainSkinFile =
+            this.lessResourceReferenceFactory.createReferenceForSkinFile(CachedLESSCompiler.MAIN_SKIN_STYLE_FILENAME);
+
+        return () -> {
+            this.execution.setContext(executionContext);
+
+            try {
+                // Same call as the one done by the skins to get their main style sheet
+                this.lessCompiler.compile(mainSkinFile, false, true, target.skin, false);
+
+                this.logger.debug("Compiled the LESS skin file for {}", target);
+            } catch (LESSCompilerException e) {
+                this.logger.warn("Failed to compile the LESS skin file for {}: {}", target,
+                    ExceptionUtils.getRootCauseMessage(e));
+            } finally {
+                this.execution.removeContext();
+            }
+        };
+    }
+
+    /**
+     * The color theme is taken from the request by both the compiler and the skin templates.
+     */
+    private XWikiRequest createRequest(XWikiRequest currentRequest, String colorTheme)
+    {
+        XWikiServletRequestStub stubRequest = new XWikiServletRequestStub(null,
+            colorTheme != null ? Collections.singletonMap(COLOR_THEME_PARAMETER, new String[] { colorTheme })
+                : Collections.<String, String[]>emptyMap());
+
+        if (currentRequest != null) {
+            stubRequest.setHost(currentRequest.getHeader("x-forwarded-host"));
+            stubRequest.setScheme(currentRequest.getScheme());
+        }
+
+        return new XWikiServletRequest(stubRequest);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.lesscss.internal.listeners;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.bridge.event.ApplicationReadyEvent;
+import org.xwiki.job.JobExecutor;
+import org.xwiki.job.Request;
+import org.xwiki.lesscss.internal.LESSConfiguration;
+import org.xwiki.lesscss.internal.job.LESSWarmUpJob;
+import org.xwiki.observation.event.Event;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for {@link LESSWarmUpListener}.
+ *
+ * @since 10.0RC1
+ * @version $Id$
+ */
+public class LESSWarmUpListenerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<LESSWarmUpListener> mocker =
+            new MockitoComponentMockingRule<>(LESSWarmUpListener.class);
+
+    @Test
+    public void getEvents() throws Exception
+    {
+        List<Event> events = mocker.getComponentUnderTest().getEvents();
+
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).matches(new ApplicationReadyEvent()));
+    }
+
+    @Test
+    public void onEventStartsTheJob() throws Exception
+    {
+        LESSConfiguration configuration = mocker.getInstance(LESSConfiguration.class);
+        when(configuration.isWarmUpEnabled()).thenReturn(true);
+
+        mocker.getComponentUnderTest().onEvent(new ApplicationReadyEvent(), null, null);
+
+        JobExecutor jobExecutor = mocker.getInstance(JobExecutor.class);
+        verify(jobExecutor).execute(eq(LESSWarmUpJob.JOBTYPE),
+            argThat((Request request) -> Arrays.asList("lesscss", "warmup").equals(request.getId())));
+    }
+
+    @Test
+    public void onEventWhenDisabled() throws Exception
+    {
+        mocker.getComponentUnderTest().onEvent(new ApplicationReadyEvent(), null, null);
+
+        JobExecutor jobExecutor = mocker.getInstance(JobExecutor.class);
+        verify(jobExecutor, never()).execute(any(), any());
+    }
+}
@@ -51,4 +51,32 @@
      * @since 9.6RC1
      */
     int liveNotificationsGraceTime();
+
+    /**
+     * @return true if the notifications displayed in the notification menu should be served from a per-user inbox
+     *         instead of being computed from the event stream for each request
+     * @since 10.0RC1
+     */
+    default boolean isInboxEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * @return the maximum number of events kept in the inbox of each user
+     * @since 10.0RC1
+     */
+    default int getInboxSize()
+    {
+        return 50;
+    }
+
+    /**
+     * @return the maximum number of users for which an inbox is kept at the same time
+     * @since 10.0RC1
+     */
+    default int getInboxUsers()
+    {
+        return 1000;
+    }
 }
@@ -23,6 +23,7 @@
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -81,6 +82,9 @@ public class DefaultNotificationManager implements NotificationManager
     @Inject
     private NotificationFilterManager notificationFilterManager;
 
+    @Inject
+    private NotificationInbox inbox;
+
     /**
      * For internal use, avoid to give more than 7 parameters to methods.
      */
@@ -112,9 +116,16 @@ public class DefaultNotificationManager implements NotificationManager
     public List<CompositeEvent> getEvents(String userId, boolean onlyUnread, int expectedCount)
             throws NotificationException
     {
+        DocumentReference user = documentReferenceResolver.resolve(userId);
+
+        List<CompositeEvent> events = getEventsFromInbox(user, onlyUnread, expectedCount);
+        if (events != null) {
+            return events;
+        }
+
         return getEvents(new ArrayList<>(),
                 new Parameters(
-                    documentReferenceResolver.resolve(userId),
+                    user,
                     NotificationFormat.ALERT,
                     onlyUnread,
                     expectedCount,
@@ -181,7 +192,12 @@ public long getEventsCount(String userId, boolean onlyUnread, int maxCount) thro
     {
         DocumentReference user = documentReferenceResolver.resolve(userId);
 
-        List<CompositeEvent> events = getEvents(new ArrayList<>(),
+        List<CompositeEvent> events = getEventsFromInbox(user, onlyUnread, maxCount);
+        if (events != null) {
+            return events.size();
+        }
+
+        events = getEvents(new ArrayList<>(),
                 new Parameters(
                         user,
                         NotificationFormat.ALERT,
@@ -196,6 +212,38 @@ public long getEventsCount(String userId, boolean onlyUnread, int maxCount) thro
         return events.size();
     }
 
+    /**
+     * @return the events computed from the inbox of the user or null if the inbox is disabled or does not contain
+     *         enough events
+     */
+    private List<CompositeEvent> getEventsFromInbox(DocumentReference user, boolean onlyUnread, int expectedCount)
+            throws NotificationException
+    {
+        if (!inbox.isEnabled()) {
+            return null;
+        }
+
+        List<Event> events = inbox.getEvents(user);
+        Set<String> readEventIds = onlyUnread ? inbox.getReadEventIds(events, user) : Collections.emptySet();
+
+        List<CompositeEvent> results = new ArrayList<>();
+        for (Event event : events) {
+            DocumentReference document = event.getDocument();
+            if (readEventIds.contains(event.getId()) || (document != null
+                    && !authorizationManager.hasAccess(Right.VIEW, user, document))) {
+                continue;
+            }
+
+            recordEvent(results, event);
+            if (results.size() >= expectedCount) {
+                return results;
+            }
+        }
+
+        // Older events might be missing from the inbox
+        return inbox.isComplete(events) ? results : null;
+    }
+
     private List<CompositeEvent> getEvents(List<CompositeEvent> results, Parameters parameters)
             throws NotificationException
     {
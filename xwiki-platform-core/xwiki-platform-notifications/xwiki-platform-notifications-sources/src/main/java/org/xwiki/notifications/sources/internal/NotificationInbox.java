@@ -0,0 +1,290 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.EventStatus;
+import org.xwiki.eventstream.EventStatusManager;
+import org.xwiki.eventstream.EventStream;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.notifications.NotificationConfiguration;
+import org.xwiki.notifications.NotificationException;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.notifications.filters.NotificationFilter;
+import org.xwiki.notifications.filters.NotificationFilterManager;
+import org.xwiki.query.Query;
+
+/**
+ * Keep, for the most recently active users, the most recent events matching their notification preferences and
+ * filters. The inbox of a user is filled the first time it's requested, after that only the events which happened
+ * since the previous request are searched in the event stream.
+ * <p>
+ * The view right is not checked when filling the inbox since it can change at any time: it has to be checked when
+ * reading it.
+ * <p>
+ * The inboxes are kept in memory and are not persisted: they are lost on restart and are not shared between the
+ * members of a cluster, so the first request of each user after a restart goes through the event stream again. The
+ * events are not dispatched to the inboxes when they are recorded either, since that would require evaluating the
+ * preferences and filters of every user for every event. Both a database table and a fan-out on write would be needed
+ * if the first request after a restart became a problem.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Component(roles = NotificationInbox.class)
+@Singleton
+public class NotificationInbox
+{
+    /**
+     * Events are not always stored in the order of their date (and the clock of the cluster members can be a bit
+     * different) so we search again the events which happened a bit before the previous refresh.
+     */
+    private static final long REFRESH_MARGIN = 60000L;
+
+    @Inject
+    private EventStream eventStream;
+
+    @Inject
+    private QueryGenerator queryGenerator;
+
+    @Inject
+    private NotificationFilterManager notificationFilterManager;
+
+    @Inject
+    private EventStatusManager eventStatusManager;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Inject
+    private NotificationConfiguration configuration;
+
+    private final Map<DocumentReference, UserInbox> inboxes = new LinkedHashMap<DocumentReference, UserInbox>(16,
+        0.75F, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<DocumentReference, UserInbox> eldest)
+        {
+            return size() > configuration.getInboxUsers();
+        }
+    };
+
+    /**
+     * The inbox of a single user.
+     */
+    private class UserInbox
+    {
+        /**
+         * The events sorted by date, the most recent first.
+         */
+        private List<Event> events;
+
+        private Date lastRefresh;
+
+        synchronized List<Event> refresh(DocumentReference user) throws NotificationException
+        {
+            Date now = new Date();
+
+            if (this.events == null) {
+                this.events = Collections.unmodifiableList(search(user, null, new ArrayList<>()));
+            } else {
+                Date startDate = new Date(this.lastRefresh.getTime() - REFRESH_MARGIN);
+
+                // Don't search again the events we already know
+                List<String> blackList = new ArrayList<>();
+                for (Event event : this.events) {
+                    if (event.getDate().after(startDate)) {
+                        blackList.add(event.getId());
+                    }
+                }
+
+                List<Event> newEvents = search(user, startDate, blackList);
+                if (!newEvents.isEmpty()) {
+                    List<Event> mergedEvents = new ArrayList<>(newEvents.size() + this.events.size());
+                    mergedEvents.addAll(newEvents);
+                    mergedEvents.addAll(this.events);
+                    Collections.sort(mergedEvents,
+                        (event1, event2) -> event2.getDate().compareTo(event1.getDate()));
+
+                    int size = configuration.getInboxSize();
+                    if (mergedEvents.size() > size) {
+                        mergedEvents = new ArrayList<>(mergedEvents.subList(0, size));
+                    }
+
+                    this.events = Collections.unmodifiableList(mergedEvents);
+                }
+            }
+
+            this.lastRefresh = now;
+
+            return this.events;
+        }
+    }
+
+    /**
+     * @return true if the inbox should be used to get the notifications of the users
+     */
+    public boolean isEnabled()
+    {
+        return this.configuration.isInboxEnabled();
+    }
+
+    /**
+     * Get the most recent events matching the preferences and filters of the given user, for the
+     * {@link NotificationFormat#ALERT} format. The events are sorted by date, the most recent first.
+     *
+     * @param user the user interested in the notifications
+     * @return the events of the inbox of the user, the view right has not been checked
+     * @throws NotificationException if the inbox of the user cannot be updated
+     */
+    public List<Event> getEvents(DocumentReference user) throws NotificationException
+    {
+        UserInbox inbox;
+        synchronized (this.inboxes) {
+            inbox = this.inboxes.get(user);
+            if (inbox == null) {
+                inbox = new UserInbox();
+                this.inboxes.put(user, inbox);
+            }
+        }
+
+        return inbox.refresh(user);
+    }
+
+    /**
+     * @param events the events returned by {@link #getEvents(DocumentReference)}
+     * @return true if the given events are all the events matching the user preferences, false if older events might
+     *         exist in the event stream
+     */
+    public boolean isComplete(List<Event> events)
+    {
+        return events.size() < this.configuration.getInboxSize();
+    }
+
+    /**
+     * @param events the events returned by {@link #getEvents(DocumentReference)}
+     * @param user the user interested in the notifications
+     * @return the identifiers of the events which have been marked as read by the user
+     * @throws NotificationException if the status of the events cannot be retrieved
+     */
+    public Set<String> getReadEventIds(List<Event> events, DocumentReference user) throws NotificationException
+    {
+        Set<String> readEventIds = new HashSet<>();
+        try {
+            for (EventStatus status : this.eventStatusManager.getEventStatus(events,
+                Collections.singletonList(this.serializer.serialize(user)))) {
+                if (status.isRead()) {
+                    readEventIds.add(status.getEvent().getId());
+                }
+            }
+        } catch (Exception e) {
+            throw new NotificationException("Fail to get the status of the notifications.", e);
+        }
+
+        return readEventIds;
+    }
+
+    /**
+     * Forget the inbox of the given user, it will be filled again the next time it's requested.
+     *
+     * @param user the user for which the preferences have changed
+     */
+    public void invalidate(DocumentReference user)
+    {
+        synchronized (this.inboxes) {
+            this.inboxes.remove(user);
+        }
+    }
+
+    /**
+     * Forget all the inboxes.
+     */
+    public void invalidateAll()
+    {
+        synchronized (this.inboxes) {
+            this.inboxes.clear();
+        }
+    }
+
+    private List<Event> search(DocumentReference user, Date startDate, List<String> blackList)
+        throws NotificationException
+    {
+        int size = this.configuration.getInboxSize();
+
+        List<Event> results = new ArrayList<>();
+        try {
+            while (true) {
+                Query query = this.queryGenerator.generateQuery(user, NotificationFormat.ALERT, false, null,
+                    startDate, blackList);
+                if (query == null) {
+                    return results;
+                }
+                query.setLimit(size);
+
+                List<Event> batch = this.eventStream.searchEvents(query);
+                for (Event event : batch) {
+                    if (!filterEvent(event, user)) {
+                        results.add(event);
+                        if (results.size() >= size) {
+                            return results;
+                        }
+                    }
+                }
+
+                if (batch.size() < size) {
+                    return results;
+                }
+
+                for (Event event : batch) {
+                    blackList.add(event.getId());
+                }
+            }
+        } catch (NotificationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new NotificationException("Fail to fill the notification inbox.", e);
+        }
+    }
+
+    private boolean filterEvent(Event event, DocumentReference user) throws NotificationException
+    {
+        for (NotificationFilter filter : this.notificationFilterManager.getAllFilters(user)) {
+            if (filter.filterEvent(event, user, NotificationFormat.ALERT)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
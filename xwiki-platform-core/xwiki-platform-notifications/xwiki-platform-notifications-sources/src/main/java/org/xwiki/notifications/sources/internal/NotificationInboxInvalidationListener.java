@@ -0,0 +1,149 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import java.util.Arrays;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.eventstream.events.EventStreamDeletedEvent;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.notifications.filters.NotificationFilter;
+import org.xwiki.notifications.filters.NotificationFilterPreferenceProvider;
+import org.xwiki.notifications.preferences.NotificationPreferenceProvider;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Drop the inboxes which might not match anymore the notification preferences and filters of their user.
+ * <ul>
+ * <li>the inbox of a user when the user profile (which contains the user preferences and filter preferences) is
+ * modified</li>
+ * <li>all the inboxes when a document holding notification preferences, filters or watch list objects which is not a
+ * user profile is modified, or when the wiki preferences are modified (wiki level preferences)</li>
+ * <li>all the inboxes when a notification filter or a preference provider is registered or unregistered (installed
+ * extensions, wiki components)</li>
+ * <li>all the inboxes when events are removed from the event stream</li>
+ * </ul>
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Component
+@Named(NotificationInboxInvalidationListener.NAME)
+@Singleton
+public class NotificationInboxInvalidationListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "NotificationInboxInvalidationListener";
+
+    private static final String XWIKI_SPACE = "XWiki";
+
+    private static final EntityReference NOTIFICATION_CODE_SPACE = new EntityReference("Code", EntityType.SPACE,
+        new EntityReference("Notifications", EntityType.SPACE, new EntityReference(XWIKI_SPACE, EntityType.SPACE)));
+
+    private static final LocalDocumentReference USER_CLASS = new LocalDocumentReference(XWIKI_SPACE, "XWikiUsers");
+
+    private static final LocalDocumentReference WATCHLIST_CLASS =
+        new LocalDocumentReference(XWIKI_SPACE, "WatchListClass");
+
+    private static final LocalDocumentReference WIKI_PREFERENCES =
+        new LocalDocumentReference(XWIKI_SPACE, "XWikiPreferences");
+
+    @Inject
+    private NotificationInbox inbox;
+
+    /**
+     * Default constructor.
+     */
+    public NotificationInboxInvalidationListener()
+    {
+        super(NAME, Arrays.asList(new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent(),
+            new ComponentDescriptorAddedEvent(NotificationFilter.class),
+            new ComponentDescriptorRemovedEvent(NotificationFilter.class),
+            new ComponentDescriptorAddedEvent(NotificationFilterPreferenceProvider.class),
+            new ComponentDescriptorRemovedEvent(NotificationFilterPreferenceProvider.class),
+            new ComponentDescriptorAddedEvent(NotificationPreferenceProvider.class),
+            new ComponentDescriptorRemovedEvent(NotificationPreferenceProvider.class),
+            new EventStreamDeletedEvent()));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (source instanceof XWikiDocument) {
+            onDocumentEvent((XWikiDocument) source);
+        } else {
+            this.inbox.invalidateAll();
+        }
+    }
+
+    private void onDocumentEvent(XWikiDocument document)
+    {
+        DocumentReference documentReference = document.getDocumentReference();
+
+        // The inboxes are indexed by user profile reference
+        this.inbox.invalidate(documentReference);
+
+        XWikiDocument originalDocument = document.getOriginalDocument();
+
+        if (documentReference.getLocalDocumentReference().equals(WIKI_PREFERENCES)) {
+            this.inbox.invalidateAll();
+        } else if (!isUserProfile(document) && !isUserProfile(originalDocument)
+            && (hasNotificationObjects(document) || hasNotificationObjects(originalDocument))) {
+            this.inbox.invalidateAll();
+        }
+    }
+
+    private boolean isUserProfile(XWikiDocument document)
+    {
+        return document != null && document.getXObject(USER_CLASS) != null;
+    }
+
+    private boolean hasNotificationObjects(XWikiDocument document)
+    {
+        if (document != null) {
+            for (DocumentReference classReference : document.getXObjects().keySet()) {
+                LocalDocumentReference localClassReference = classReference.getLocalDocumentReference();
+                if (localClassReference.equals(WATCHLIST_CLASS)
+                    || localClassReference.getParent().equals(NOTIFICATION_CODE_SPACE)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
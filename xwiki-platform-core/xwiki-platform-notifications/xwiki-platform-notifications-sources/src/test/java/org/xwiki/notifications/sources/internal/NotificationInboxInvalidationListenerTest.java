@@ -0,0 +1,154 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.notifications.filters.NotificationFilter;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link NotificationInboxInvalidationListener}.
+ *
+ * @version $Id$
+ */
+public class NotificationInboxInvalidationListenerTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<NotificationInboxInvalidationListener> mocker =
+        new MockitoComponentMockingRule<>(NotificationInboxInvalidationListener.class);
+
+    private static final String FILTER_CLASS = "XWiki.Notifications.Code.NotificationFilterPreferenceClass";
+
+    private NotificationInbox inbox;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.inbox = this.mocker.getInstance(NotificationInbox.class);
+    }
+
+    private XWikiDocument mockDocument(DocumentReference reference, boolean user, String... classes)
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getDocumentReference()).thenReturn(reference);
+
+        if (user) {
+            when(document.getXObject(any(EntityReference.class))).thenReturn(mock(BaseObject.class));
+        }
+
+        Map<DocumentReference, List<BaseObject>> objects = new HashMap<>();
+        for (String className : classes) {
+            List<String> elements = Arrays.asList(StringUtils.split(className, '.'));
+            objects.put(new DocumentReference("xwiki", elements.subList(0, elements.size() - 1),
+                elements.get(elements.size() - 1)), Collections.singletonList(mock(BaseObject.class)));
+        }
+        when(document.getXObjects()).thenReturn(objects);
+
+        return document;
+    }
+
+    @Test
+    public void onUserProfileUpdate() throws Exception
+    {
+        DocumentReference userReference = new DocumentReference("xwiki", "XWiki", "UserA");
+        XWikiDocument document =
+            mockDocument(userReference, true, "XWiki.Notifications.Code.NotificationPreferenceClass");
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, null);
+
+        verify(this.inbox).invalidate(userReference);
+        verify(this.inbox, never()).invalidateAll();
+    }
+
+    @Test
+    public void onWikiLevelFilterUpdate() throws Exception
+    {
+        DocumentReference reference = new DocumentReference("xwiki", "Main", "Filters");
+        XWikiDocument document = mockDocument(reference, false, FILTER_CLASS);
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, null);
+
+        verify(this.inbox).invalidateAll();
+    }
+
+    @Test
+    public void onWikiLevelFilterRemoved() throws Exception
+    {
+        DocumentReference reference = new DocumentReference("xwiki", "Main", "Filters");
+        XWikiDocument document = mockDocument(reference, false);
+        XWikiDocument originalDocument = mockDocument(reference, false, FILTER_CLASS);
+        when(document.getOriginalDocument()).thenReturn(originalDocument);
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, null);
+
+        verify(this.inbox).invalidateAll();
+    }
+
+    @Test
+    public void onWikiPreferencesUpdate() throws Exception
+    {
+        XWikiDocument document = mockDocument(new DocumentReference("subwiki", "XWiki", "XWikiPreferences"), false);
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, null);
+
+        verify(this.inbox).invalidateAll();
+    }
+
+    @Test
+    public void onOtherDocumentUpdate() throws Exception
+    {
+        XWikiDocument document = mockDocument(new DocumentReference("xwiki", "Main", "WebHome"), false, "XWiki.Tag");
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, null);
+
+        verify(this.inbox, never()).invalidateAll();
+    }
+
+    @Test
+    public void onFilterRegistration() throws Exception
+    {
+        this.mocker.getComponentUnderTest().onEvent(new ComponentDescriptorAddedEvent(NotificationFilter.class),
+            null, null);
+
+        verify(this.inbox).invalidateAll();
+    }
+}
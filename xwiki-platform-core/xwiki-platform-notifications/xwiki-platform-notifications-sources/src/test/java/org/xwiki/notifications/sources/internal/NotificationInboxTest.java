@@ -0,0 +1,147 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.notifications.sources.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.eventstream.Event;
+import org.xwiki.eventstream.EventStream;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.notifications.NotificationConfiguration;
+import org.xwiki.notifications.NotificationFormat;
+import org.xwiki.query.Query;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.notNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link NotificationInbox}.
+ *
+ * @version $Id$
+ */
+public class NotificationInboxTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<NotificationInbox> mocker =
+        new MockitoComponentMockingRule<>(NotificationInbox.class);
+
+    private EventStream eventStream;
+
+    private QueryGenerator queryGenerator;
+
+    private DocumentReference userReference = new DocumentReference("xwiki", "XWiki", "UserA");
+
+    private Query query;
+
+    private long now;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.eventStream = this.mocker.getInstance(EventStream.class);
+        this.queryGenerator = this.mocker.getInstance(QueryGenerator.class);
+
+        NotificationConfiguration configuration = this.mocker.getInstance(NotificationConfiguration.class);
+        when(configuration.getInboxSize()).thenReturn(3);
+        when(configuration.getInboxUsers()).thenReturn(10);
+
+        this.query = mock(Query.class);
+        when(this.queryGenerator.generateQuery(eq(this.userReference), eq(NotificationFormat.ALERT), eq(false),
+            isNull(), any(), any())).thenReturn(this.query);
+
+        this.now = System.currentTimeMillis();
+    }
+
+    private Event createMockedEvent(String id, long age)
+    {
+        Event event = mock(Event.class);
+        when(event.getId()).thenReturn(id);
+        when(event.getDate()).thenReturn(new Date(this.now - age));
+
+        return event;
+    }
+
+    @Test
+    public void getEventsOnlySearchNewEvents() throws Exception
+    {
+        Event event1 = createMockedEvent("event1", 2000);
+        Event event2 = createMockedEvent("event2", 1000);
+        Event event3 = createMockedEvent("event3", 0);
+
+        when(this.eventStream.searchEvents(this.query)).thenReturn(Arrays.asList(event2, event1),
+            Arrays.asList(event3), Collections.emptyList());
+
+        NotificationInbox inbox = this.mocker.getComponentUnderTest();
+
+        List<Event> events = inbox.getEvents(this.userReference);
+        assertEquals(Arrays.asList(event2, event1), events);
+        assertTrue(inbox.isComplete(events));
+
+        events = inbox.getEvents(this.userReference);
+        assertEquals(Arrays.asList(event3, event2, event1), events);
+        assertFalse(inbox.isComplete(events));
+
+        events = inbox.getEvents(this.userReference);
+        assertEquals(Arrays.asList(event3, event2, event1), events);
+
+        // The whole event stream is searched only once
+        verify(this.queryGenerator).generateQuery(eq(this.userReference), eq(NotificationFormat.ALERT), eq(false),
+            isNull(), isNull(), any());
+        verify(this.queryGenerator).generateQuery(eq(this.userReference), eq(NotificationFormat.ALERT), eq(false),
+            isNull(), notNull(), eq(Arrays.asList("event2", "event1")));
+        verify(this.queryGenerator).generateQuery(eq(this.userReference), eq(NotificationFormat.ALERT), eq(false),
+            isNull(), notNull(), eq(Arrays.asList("event3", "event2", "event1")));
+    }
+
+    @Test
+    public void getEventsAfterInvalidation() throws Exception
+    {
+        Event event1 = createMockedEvent("event1", 0);
+
+        when(this.eventStream.searchEvents(this.query)).thenReturn(Arrays.asList(event1));
+
+        NotificationInbox inbox = this.mocker.getComponentUnderTest();
+
+        assertEquals(Arrays.asList(event1), inbox.getEvents(this.userReference));
+
+        inbox.invalidate(this.userReference);
+
+        assertEquals(Arrays.asList(event1), inbox.getEvents(this.userReference));
+
+        verify(this.queryGenerator, times(2)).generateQuery(eq(this.userReference), eq(NotificationFormat.ALERT),
+            eq(false), isNull(), isNull(), any());
+    }
+}
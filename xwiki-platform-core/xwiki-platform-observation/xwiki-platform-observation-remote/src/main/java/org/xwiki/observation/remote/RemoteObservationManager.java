@@ -19,6 +19,8 @@
  */
 package org.xwiki.observation.remote;
 
+import java.util.Collection;
+
 import org.xwiki.component.annotation.Role;
 
 /**
@@ -50,6 +52,21 @@
      */
     void notify(RemoteEventData event);
 
+    /**
+     * Inject several remote events, in order, in the local {@link org.xwiki.observation.ObservationManager}.
+     * <p>
+     * This is used when the events are received in batch from the network.
+     *
+     * @param events the events
+     * @since 10.0RC1
+     */
+    default void notify(Collection<RemoteEventData> events)
+    {
+        for (RemoteEventData event : events) {
+            notify(event);
+        }
+    }
+
     /**
      * Stop a running channel.
      *
@@ -46,4 +46,32 @@
      * @return the identifier of the network adapter implementation to use to actually send and receive network messages
      */
     String getNetworkAdapter();
+
+    /**
+     * @return the maximum time in milliseconds to wait for other events before sending a batch of remote events, 0 to
+     *         send each remote event on its own
+     * @since 10.0RC1
+     */
+    default long getBatchDelay()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the maximum number of remote events sent in the same batch
+     * @since 10.0RC1
+     */
+    default int getBatchMaxSize()
+    {
+        return 500;
+    }
+
+    /**
+     * @return indicate if the batches of remote events should be compressed
+     * @since 10.0RC1
+     */
+    default boolean isBatchCompressed()
+    {
+        return false;
+    }
 }
@@ -19,6 +19,8 @@
  */
 package org.xwiki.observation.remote.internal;
 
+import java.util.Collection;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -173,6 +175,35 @@ public void notify(RemoteEventData remoteEvent)
         }
     }
 
+    @Override
+    public void notify(Collection<RemoteEventData> remoteEvents)
+    {
+        // Make sure the Execution context is properly initialized
+        initializeContext();
+
+        // Indicate all the following events are remote events
+        this.remoteEventManagerContext.pushRemoteState();
+
+        try {
+            for (RemoteEventData remoteEvent : remoteEvents) {
+                try {
+                    LocalEventData localEvent = this.eventConverterManager.createLocalEventData(remoteEvent);
+
+                    if (localEvent != null) {
+                        this.observationManager.notify(localEvent.getEvent(), localEvent.getSource(),
+                            localEvent.getData());
+                    }
+                } catch (Exception e) {
+                    // Don't lose the rest of the batch
+                    this.logger.error("Failed to inject remote event [{}]", remoteEvent, e);
+                }
+            }
+        } finally {
+            // Indicate all the following events are local events
+            this.remoteEventManagerContext.popRemoteState();
+        }
+    }
+
     @Override
     public void startChannel(String channelId) throws RemoteEventException
     {
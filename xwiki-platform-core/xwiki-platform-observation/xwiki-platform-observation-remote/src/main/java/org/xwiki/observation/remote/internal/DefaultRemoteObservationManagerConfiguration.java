@@ -69,4 +69,22 @@ public String getNetworkAdapter()
     {
         return this.configurationSource.getProperty("observation.remote.networkadapter", "jgroups");
     }
+
+    @Override
+    public long getBatchDelay()
+    {
+        return this.configurationSource.getProperty("observation.remote.batch.delay", 0L);
+    }
+
+    @Override
+    public int getBatchMaxSize()
+    {
+        return this.configurationSource.getProperty("observation.remote.batch.maxSize", 500);
+    }
+
+    @Override
+    public boolean isBatchCompressed()
+    {
+        return this.configurationSource.getProperty("observation.remote.batch.compress", false);
+    }
 }
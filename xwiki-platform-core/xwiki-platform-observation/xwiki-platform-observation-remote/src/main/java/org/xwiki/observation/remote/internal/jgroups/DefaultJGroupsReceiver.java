@@ -19,6 +19,8 @@
  */
 package org.xwiki.observation.remote.internal.jgroups;
 
+import java.util.List;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -79,10 +81,27 @@ public RemoteObservationManager getRemoteObservationManager()
     @Override
     public void receive(Message msg)
     {
-        RemoteEventData remoteEvent = (RemoteEventData) msg.getObject();
+        Object content = msg.getObject();
+
+        if (content instanceof RemoteEventBatch) {
+            this.logger.debug("Received JGroups remote events [{}]", content);
+
+            List<RemoteEventData> remoteEvents;
+            try {
+                remoteEvents = ((RemoteEventBatch) content).getEvents();
+            } catch (Exception e) {
+                this.logger.error("Failed to unserialize the remote events [{}]", content, e);
 
-        this.logger.debug("Received JGroups remote event [{}]", remoteEvent);
+                return;
+            }
+
+            getRemoteObservationManager().notify(remoteEvents);
+        } else {
+            RemoteEventData remoteEvent = (RemoteEventData) content;
 
-        getRemoteObservationManager().notify(remoteEvent);
+            this.logger.debug("Received JGroups remote event [{}]", remoteEvent);
+
+            getRemoteObservationManager().notify(remoteEvent);
+        }
     }
 }
@@ -21,6 +21,7 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
 import java.lang.management.ManagementFactory;
 import java.text.MessageFormat;
 import java.util.Map;
@@ -42,10 +43,13 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
 import org.xwiki.environment.Environment;
 import org.xwiki.observation.remote.NetworkAdapter;
 import org.xwiki.observation.remote.RemoteEventData;
 import org.xwiki.observation.remote.RemoteEventException;
+import org.xwiki.observation.remote.RemoteObservationManagerConfiguration;
 import org.xwiki.observation.remote.jgroups.JGroupsReceiver;
 
 /**
@@ -57,13 +61,18 @@
 @Component
 @Named("jgroups")
 @Singleton
-public class JGroupsNetworkAdapter implements NetworkAdapter
+public class JGroupsNetworkAdapter implements NetworkAdapter, Initializable
 {
     /**
      * Relative path where to find jgroups channels configurations.
      */
     public static final String CONFIGURATION_PATH = "observation/remote/jgroups/";
 
+    /**
+     * The maximum time to wait for the pending batches to be sent when stopping, in milliseconds.
+     */
+    private static final long FLUSH_TIMEOUT = 10000;
+
     /**
      * Used to lookup the receiver corresponding to the channel identifier.
      */
@@ -81,21 +90,91 @@ public class JGroupsNetworkAdapter implements NetworkAdapter
      */
     private Map<String, JChannel> channels = new ConcurrentHashMap<String, JChannel>();
 
+    /**
+     * Used to know if and how the remote events should be sent in batches.
+     */
+    @Inject
+    private RemoteObservationManagerConfiguration configuration;
+
+    /**
+     * Sends the events in batches, {@code null} when the events are not sent in batches or when the channels are
+     * stopped.
+     */
+    private volatile RemoteEventBatchSender batchSender;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        startBatches();
+    }
+
     @Override
     public void send(RemoteEventData remoteEvent)
     {
-        this.logger.debug("Send JGroups remote event [" + remoteEvent + "]");
+        RemoteEventBatchSender sender = this.batchSender;
 
-        // Send the message to the whole group
-        Message message = new Message(null, remoteEvent);
+        if (sender != null && sender.add(remoteEvent)) {
+            this.logger.debug("Queue JGroups remote event [{}]", remoteEvent);
+        } else {
+            this.logger.debug("Send JGroups remote event [" + remoteEvent + "]");
+
+            send(new Message(null, remoteEvent), remoteEvent);
+        }
+    }
+
+    private void sendMessage(Serializable content)
+    {
+        if (content instanceof RemoteEventBatch) {
+            this.logger.debug("Send JGroups remote events [{}]", content);
+        }
+
+        send(new Message(null, content), content);
+    }
 
+    private void send(Message message, Object content)
+    {
         // Send message to JGroups channels
         for (Map.Entry<String, JChannel> entry : this.channels.entrySet()) {
             try {
                 entry.getValue().send(message);
             } catch (Exception e) {
-                this.logger
-                    .error("Failed to send message [" + remoteEvent + "] to the channel [" + entry.getKey() + "]", e);
+                this.logger.error("Failed to send message [" + content + "] to the channel [" + entry.getKey() + "]",
+                    e);
+            }
+        }
+    }
+
+    /**
+     * Start sending the events in batches, if configured.
+     */
+    private synchronized void startBatches()
+    {
+        long batchDelay = this.configuration.getBatchDelay();
+
+        if (batchDelay > 0 && this.batchSender == null) {
+            RemoteEventBatchSender sender = new RemoteEventBatchSender(batchDelay,
+                this.configuration.getBatchMaxSize(), this.configuration.isBatchCompressed(), this::sendMessage);
+            sender.start();
+
+            this.batchSender = sender;
+        }
+    }
+
+    /**
+     * Send the events waiting in the batch queue before the channels are stopped. The events sent after that are not
+     * batched anymore, until a channel is started again.
+     */
+    private synchronized void flushBatches()
+    {
+        RemoteEventBatchSender sender = this.batchSender;
+
+        if (sender != null) {
+            this.batchSender = null;
+
+            try {
+                sender.stop(FLUSH_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
     }
@@ -117,6 +196,9 @@ public void startChannel(String channelId) throws RemoteEventException
             throw new RemoteEventException("Failed to create channel [" + channelId + "]", e);
         }
 
+        // The batches are stopped with the channels
+        startBatches();
+
         // Register the channel against the JMX Server
         try {
             MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
@@ -218,6 +300,8 @@ private ProtocolStackConfigurator loadChannelConfiguration(String channelId) thr
     @Override
     public void stopAllChannels() throws RemoteEventException
     {
+        flushBatches();
+
         for (Map.Entry<String, JChannel> channelEntry : this.channels.entrySet()) {
             channelEntry.getValue().close();
         }
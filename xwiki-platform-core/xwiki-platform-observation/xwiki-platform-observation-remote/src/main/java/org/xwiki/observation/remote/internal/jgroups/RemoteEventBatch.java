@@ -0,0 +1,158 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.xwiki.observation.remote.RemoteEventData;
+
+/**
+ * Several remote events sent in the same network message.
+ * <p>
+ * All the events of the batch are serialized in the same stream so that the class descriptors and the objects shared by
+ * the events (the keys of the maps, the references, etc.) are written only once for the whole batch.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class RemoteEventBatch implements Serializable
+{
+    /**
+     * The version identifier for this Serializable class. Increment only if the <i>serialized</i> form of the class
+     * changes.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Resolve the classes of the events with the context class loader, like JGroups does for single events.
+     *
+     * @version $Id$
+     */
+    private static class ContextObjectInputStream extends ObjectInputStream
+    {
+        ContextObjectInputStream(InputStream in) throws IOException
+        {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+        {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // Try with the default class loader
+                }
+            }
+
+            return super.resolveClass(desc);
+        }
+    }
+
+    private final int size;
+
+    private final boolean compressed;
+
+    private final byte[] payload;
+
+    /**
+     * @param events the events of the batch
+     * @param compressed true if the payload should be compressed
+     * @throws IOException when failing to serialize the events
+     */
+    public RemoteEventBatch(List<RemoteEventData> events, boolean compressed) throws IOException
+    {
+        this.size = events.size();
+        this.compressed = compressed;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(compressed ? new GZIPOutputStream(bytes) : bytes)) {
+            out.writeInt(events.size());
+            for (RemoteEventData event : events) {
+                out.writeObject(event);
+            }
+        }
+        this.payload = bytes.toByteArray();
+    }
+
+    /**
+     * @return the number of events in the batch
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return true if the payload is compressed
+     */
+    public boolean isCompressed()
+    {
+        return this.compressed;
+    }
+
+    /**
+     * @return the events of the batch, in the order they were sent
+     * @throws IOException when failing to unserialize the events
+     * @throws ClassNotFoundException when the class of an event is unknown
+     */
+    public List<RemoteEventData> getEvents() throws IOException, ClassNotFoundException
+    {
+        InputStream bytes = new ByteArrayInputStream(this.payload);
+        try (ObjectInputStream in = new ContextObjectInputStream(
+            this.compressed ? new GZIPInputStream(bytes) : bytes)) {
+            int count = in.readInt();
+            List<RemoteEventData> events = new ArrayList<>(count);
+            for (int i = 0; i < count; ++i) {
+                events.add((RemoteEventData) in.readObject());
+            }
+
+            return events;
+        }
+    }
+
+    /**
+     * @return the size of the serialized events, in bytes
+     */
+    public int getPayloadSize()
+    {
+        return this.payload.length;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "batch of [" + this.size + "] events in [" + this.payload.length + "] bytes"
+            + (this.compressed ? " (compressed)" : "");
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.observation.remote.RemoteEventData;
+
+/**
+ * Coalesce the remote events in batches, sent by a dedicated thread: a batch is sent when it's full or when the delay
+ * since its first event is elapsed.
+ * <p>
+ * Once stopped, the sender doesn't accept any new event, a new sender has to be created to batch the events again.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class RemoteEventBatchSender
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteEventBatchSender.class);
+
+    /**
+     * Marks the end of the queue.
+     */
+    private static final RemoteEventData STOP = new RemoteEventData();
+
+    private final long delay;
+
+    private final int maxSize;
+
+    private final boolean compressed;
+
+    private final Consumer<Serializable> sender;
+
+    /**
+     * The events waiting to be sent in a batch.
+     */
+    private final BlockingQueue<RemoteEventData> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * The thread sending the batches.
+     */
+    private final Thread thread;
+
+    private volatile boolean stopped;
+
+    /**
+     * @param delay the maximum time to wait for other events after the first event of a batch, in milliseconds
+     * @param maxSize the maximum number of events in a batch
+     * @param compressed true if the batches should be compressed
+     * @param sender sends a single {@link RemoteEventData} or a {@link RemoteEventBatch} to the network
+     */
+    public RemoteEventBatchSender(long delay, int maxSize, boolean compressed, Consumer<Serializable> sender)
+    {
+        this.delay = TimeUnit.MILLISECONDS.toNanos(delay);
+        this.maxSize = Math.max(1, maxSize);
+        this.compressed = compressed;
+        this.sender = sender;
+
+        this.thread = new Thread(this::run, "XWiki remote events batch thread");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Start the thread sending the batches.
+     */
+    public void start()
+    {
+        this.thread.start();
+    }
+
+    /**
+     * @param event the event to add to the next batch
+     * @return {@code false} if the sender is stopped, in which case the event has not been queued
+     */
+    public boolean add(RemoteEventData event)
+    {
+        if (this.stopped) {
+            return false;
+        }
+
+        this.queue.add(event);
+
+        return true;
+    }
+
+    /**
+     * Send the pending events and stop the thread sending the batches.
+     *
+     * @param timeout the maximum time to wait for the pending events to be sent, in milliseconds
+     * @throws InterruptedException if interrupted while waiting for the pending events to be sent
+     */
+    public void stop(long timeout) throws InterruptedException
+    {
+        this.stopped = true;
+
+        this.queue.add(STOP);
+        this.thread.join(timeout);
+
+        if (this.thread.isAlive()) {
+            LOGGER.warn("Timed out while waiting for the pending remote events to be sent");
+        } else {
+            // Events queued while stopping
+            List<RemoteEventData> remaining = new ArrayList<>();
+            this.queue.drainTo(remaining);
+            remaining.remove(STOP);
+            send(remaining);
+        }
+    }
+
+    private void run()
+    {
+        List<RemoteEventData> batch = new ArrayList<>();
+
+        try {
+            boolean stop = false;
+            while (!stop) {
+                RemoteEventData event = this.queue.take();
+
+                long deadline = System.nanoTime() + this.delay;
+                while (event != STOP) {
+                    batch.add(event);
+
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || batch.size() >= this.maxSize) {
+                        break;
+                    }
+
+                    event = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (event == null) {
+                        break;
+                    }
+                }
+
+                send(batch);
+                batch.clear();
+
+                stop = event == STOP;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(List<RemoteEventData> batch)
+    {
+        if (batch.size() == 1) {
+            this.sender.accept(batch.get(0));
+        } else if (!batch.isEmpty()) {
+            try {
+                this.sender.accept(new RemoteEventBatch(batch, this.compressed));
+            } catch (IOException e) {
+                LOGGER.error("Failed to serialize a batch of [{}] remote events", batch.size(), e);
+            }
+        }
+    }
+}
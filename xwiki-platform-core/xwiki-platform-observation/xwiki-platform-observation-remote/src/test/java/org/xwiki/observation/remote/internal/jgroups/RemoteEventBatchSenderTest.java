@@ -0,0 +1,160 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.io.Serializable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.xwiki.observation.remote.RemoteEventData;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link RemoteEventBatchSender}.
+ *
+ * @version $Id$
+ */
+public class RemoteEventBatchSenderTest
+{
+    private static final long TIMEOUT = 10000;
+
+    private BlockingQueue<Serializable> sent = new LinkedBlockingQueue<>();
+
+    private RemoteEventBatchSender sender;
+
+    @After
+    public void after() throws InterruptedException
+    {
+        if (this.sender != null) {
+            this.sender.stop(TIMEOUT);
+        }
+    }
+
+    private RemoteEventBatchSender start(long delay, int maxSize, boolean compressed)
+    {
+        this.sender = new RemoteEventBatchSender(delay, maxSize, compressed, this.sent::add);
+        this.sender.start();
+
+        return this.sender;
+    }
+
+    private RemoteEventData createEvent(String source)
+    {
+        RemoteEventData event = new RemoteEventData();
+        event.setSource(source);
+
+        return event;
+    }
+
+    private RemoteEventBatch nextBatch() throws Exception
+    {
+        Serializable message = this.sent.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+
+        assertTrue(message instanceof RemoteEventBatch);
+
+        return (RemoteEventBatch) message;
+    }
+
+    @Test
+    public void sendAfterDelay() throws Exception
+    {
+        start(200, 100, false);
+
+        long before = System.currentTimeMillis();
+        this.sender.add(createEvent("source1"));
+        this.sender.add(createEvent("source2"));
+
+        RemoteEventBatch batch = nextBatch();
+
+        assertTrue(System.currentTimeMillis() - before >= 200);
+        assertEquals(2, batch.size());
+        assertFalse(batch.isCompressed());
+        assertEquals("source1", batch.getEvents().get(0).getSource());
+        assertEquals("source2", batch.getEvents().get(1).getSource());
+    }
+
+    @Test
+    public void sendWhenFull() throws Exception
+    {
+        start(TimeUnit.HOURS.toMillis(1), 3, false);
+
+        for (int i = 0; i < 4; ++i) {
+            this.sender.add(createEvent("source" + i));
+        }
+
+        // The batch is sent without waiting for the delay
+        assertEquals(3, nextBatch().size());
+
+        // The last event waits for the delay or for other events
+        assertNull(this.sent.poll(200, TimeUnit.MILLISECONDS));
+
+        // Stopping the sender sends the pending events
+        this.sender.stop(TIMEOUT);
+
+        Serializable message = this.sent.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertTrue(message instanceof RemoteEventData);
+        assertEquals("source3", ((RemoteEventData) message).getSource());
+    }
+
+    @Test
+    public void sendCompressed() throws Exception
+    {
+        start(100, 100, true);
+
+        this.sender.add(createEvent("source1"));
+        this.sender.add(createEvent("source2"));
+
+        RemoteEventBatch batch = nextBatch();
+
+        assertTrue(batch.isCompressed());
+        assertEquals(2, batch.getEvents().size());
+    }
+
+    @Test
+    public void sendSingleEvent() throws Exception
+    {
+        start(100, 100, false);
+
+        RemoteEventData event = createEvent("source");
+        this.sender.add(event);
+
+        // A single event is not wrapped in a batch
+        assertSame(event, this.sent.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void addWhenStopped() throws Exception
+    {
+        start(100, 100, false);
+
+        this.sender.stop(TIMEOUT);
+
+        assertFalse(this.sender.add(createEvent("source")));
+        assertNull(this.sent.poll(200, TimeUnit.MILLISECONDS));
+    }
+}
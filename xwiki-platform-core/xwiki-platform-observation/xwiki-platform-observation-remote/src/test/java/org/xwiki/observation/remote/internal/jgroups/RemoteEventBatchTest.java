@@ -0,0 +1,88 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal.jgroups;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+import org.xwiki.observation.remote.RemoteEventData;
+import org.xwiki.observation.remote.test.TestEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link RemoteEventBatch}.
+ *
+ * @version $Id$
+ */
+public class RemoteEventBatchTest
+{
+    private List<RemoteEventData> createEvents(int count)
+    {
+        List<RemoteEventData> events = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            HashMap<String, String> data = new HashMap<>();
+            data.put("docname", "Space.Page" + i);
+
+            RemoteEventData event = new RemoteEventData();
+            event.setEvent(new TestEvent());
+            event.setSource("source" + i);
+            event.setData(data);
+            events.add(event);
+        }
+
+        return events;
+    }
+
+    private void assertEvents(List<RemoteEventData> expected, List<RemoteEventData> actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).getEvent(), actual.get(i).getEvent());
+            assertEquals(expected.get(i).getSource(), actual.get(i).getSource());
+            assertEquals(expected.get(i).getData(), actual.get(i).getData());
+        }
+    }
+
+    @Test
+    public void getEvents() throws Exception
+    {
+        List<RemoteEventData> events = createEvents(10);
+
+        RemoteEventBatch batch = new RemoteEventBatch(events, false);
+
+        assertEquals(10, batch.size());
+        assertEvents(events, batch.getEvents());
+    }
+
+    @Test
+    public void getCompressedEvents() throws Exception
+    {
+        List<RemoteEventData> events = createEvents(100);
+
+        RemoteEventBatch batch = new RemoteEventBatch(events, true);
+
+        assertEvents(events, batch.getEvents());
+        assertTrue(batch.getPayloadSize() < new RemoteEventBatch(events, false).getPayloadSize());
+    }
+}
@@ -37,6 +37,7 @@
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -50,6 +51,7 @@
 import java.util.TimeZone;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.zip.ZipOutputStream;
 
 import javax.annotation.Priority;
@@ -156,6 +158,7 @@
 import org.xwiki.skin.Resource;
 import org.xwiki.skin.Skin;
 import org.xwiki.skin.SkinManager;
+import org.xwiki.stability.Unstable;
 import org.xwiki.template.TemplateManager;
 import org.xwiki.url.ExtendedURL;
 import org.xwiki.velocity.VelocityManager;
@@ -182,6 +185,7 @@
 import com.xpn.xwiki.internal.XWikiCfgConfigurationSource;
 import com.xpn.xwiki.internal.XWikiConfigDelegate;
 import com.xpn.xwiki.internal.XWikiInitializerJob;
+import com.xpn.xwiki.internal.cache.rendering.RenderingDependencies;
 import com.xpn.xwiki.internal.event.XObjectPropertyAddedEvent;
 import com.xpn.xwiki.internal.event.XObjectPropertyDeletedEvent;
 import com.xpn.xwiki.internal.event.XObjectPropertyEvent;
@@ -1714,93 +1718,135 @@ public void saveDocument(XWikiDocument document, String comment, boolean isMinor
             // Switch to document wiki
             context.setWikiId(document.getDocumentReference().getWikiReference().getName());
 
-            // Setting comment & minor edit before saving
-            document.setComment(StringUtils.defaultString(comment));
-            document.setMinorEdit(isMinorEdit);
-
-            // We need to save the original document since saveXWikiDoc() will reset it and we
-            // need that original document for the notification below.
-            XWikiDocument originalDocument = document.getOriginalDocument();
-
-            // Make sure to always have an original document for listeners that need to compare with it.
-            // The only case where we have a null original document is supposedly when the document
-            // instance has been crafted and passed #saveDocument without using #getDocument
-            // (which is not a good practice)
-            if (originalDocument == null) {
-                originalDocument =
-                    getDocument(new DocumentReference(document.getDocumentReference(), document.getLocale()), context);
-                document.setOriginalDocument(originalDocument);
-            }
-
             ObservationManager om = getObservationManager();
 
-            // Notify listeners about the document about to be created or updated
-
             // Note that for the moment the event being send is a bridge event, as we are still passing around
             // an XWikiDocument as source and an XWikiContext as data.
-
-            if (om != null) {
-                CancelableEvent documentEvent;
-                if (originalDocument.isNew()) {
-                    documentEvent = new DocumentCreatingEvent(document.getDocumentReference());
-                } else {
-                    documentEvent = new DocumentUpdatingEvent(document.getDocumentReference());
-                }
-                om.notify(documentEvent, document, context);
-
-                // If the action has been canceled by the user then don't perform any save and throw an exception
-                if (documentEvent.isCanceled()) {
-                    throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
-                        XWikiException.ERROR_XWIKI_STORE_HIBERNATE_SAVING_DOC,
-                        String.format("An Event Listener has cancelled the document save for [%s]. Reason: [%s]",
-                            document.getDocumentReference(), documentEvent.getReason()));
-                }
-            }
-
-            // Put attachments to remove in recycle bin
-            if (hasAttachmentRecycleBin(context)) {
-                for (XWikiAttachmentToRemove attachment : document.getAttachmentsToRemove()) {
-                    if (attachment.isToRecycleBin()) {
-                        getAttachmentRecycleBinStore().saveToRecycleBin(attachment.getAttachment(), context.getUser(),
-                            new Date(), context, true);
-                    }
+            XWikiDocument originalDocument = beforeSaveDocument(document, comment, isMinorEdit, event -> {
+                if (om != null) {
+                    om.notify(event, document, context);
                 }
-            }
+            }, context);
 
             // Actually save the document.
             getStore().saveXWikiDoc(document, context);
 
-            // Since the store#saveXWikiDoc resets originalDocument, we need to temporarily put it
-            // back to send notifications.
-            XWikiDocument newOriginal = document.getOriginalDocument();
+            afterSaveDocument(document, originalDocument, context);
+        } finally {
+            context.setWikiId(currentWiki);
+        }
+    }
 
-            try {
-                document.setOriginalDocument(originalDocument);
+    /**
+     * Execute what comes before the actual save of a document in the store: set the comment and the minor edit flag,
+     * make sure the document has an original document, notify the listeners that the document is about to be created
+     * or updated and put the attachments to remove in the recycle bin.
+     * <p>
+     * The current wiki must be the wiki of the document.
+     *
+     * @param document the document to save
+     * @param comment the comment to associated to the new version of the saved document
+     * @param isMinorEdit true if the new version is a minor version
+     * @param notifier sends the passed event to the listeners, with the document as source and the context as data
+     * @param context see {@link XWikiContext}
+     * @return the original document, to pass to {@link #afterSaveDocument(XWikiDocument, XWikiDocument, XWikiContext)}
+     *         once the document is saved
+     * @throws XWikiException when a listener cancels the save or when the attachments to remove cannot be put in the
+     *             recycle bin
+     * @since 10.0RC1
+     */
+    @Unstable
+    public XWikiDocument beforeSaveDocument(XWikiDocument document, String comment, boolean isMinorEdit,
+        Consumer<CancelableEvent> notifier, XWikiContext context) throws XWikiException
+    {
+        // Setting comment & minor edit before saving
+        document.setComment(StringUtils.defaultString(comment));
+        document.setMinorEdit(isMinorEdit);
+
+        // We need to save the original document since saveXWikiDoc() will reset it and we
+        // need that original document for the notification below.
+        XWikiDocument originalDocument = document.getOriginalDocument();
+
+        // Make sure to always have an original document for listeners that need to compare with it.
+        // The only case where we have a null original document is supposedly when the document
+        // instance has been crafted and passed #saveDocument without using #getDocument
+        // (which is not a good practice)
+        if (originalDocument == null) {
+            originalDocument =
+                getDocument(new DocumentReference(document.getDocumentReference(), document.getLocale()), context);
+            document.setOriginalDocument(originalDocument);
+        }
+
+        // Notify listeners about the document about to be created or updated
+        CancelableEvent documentEvent;
+        if (originalDocument.isNew()) {
+            documentEvent = new DocumentCreatingEvent(document.getDocumentReference());
+        } else {
+            documentEvent = new DocumentUpdatingEvent(document.getDocumentReference());
+        }
+        notifier.accept(documentEvent);
 
-                // Notify listeners about the document having been created or updated
+        // If the action has been canceled by the user then don't perform any save and throw an exception
+        if (documentEvent.isCanceled()) {
+            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
+                XWikiException.ERROR_XWIKI_STORE_HIBERNATE_SAVING_DOC,
+                String.format("An Event Listener has cancelled the document save for [%s]. Reason: [%s]",
+                    document.getDocumentReference(), documentEvent.getReason()));
+        }
 
-                // First the legacy notification mechanism
+        // Put attachments to remove in recycle bin
+        if (hasAttachmentRecycleBin(context)) {
+            for (XWikiAttachmentToRemove attachment : document.getAttachmentsToRemove()) {
+                if (attachment.isToRecycleBin()) {
+                    getAttachmentRecycleBinStore().saveToRecycleBin(attachment.getAttachment(), context.getUser(),
+                        new Date(), context, true);
+                }
+            }
+        }
 
-                // Then the new observation module
-                // Note that for the moment the event being send is a bridge event, as we are still passing around
-                // an XWikiDocument as source and an XWikiContext as data.
-                // The old version is made available using doc.getOriginalDocument()
+        return originalDocument;
+    }
 
-                if (om != null) {
-                    if (originalDocument.isNew()) {
-                        om.notify(new DocumentCreatedEvent(document.getDocumentReference()), document, context);
-                    } else {
-                        om.notify(new DocumentUpdatedEvent(document.getDocumentReference()), document, context);
-                    }
+    /**
+     * Notify the listeners that a document has been created or updated, once it's saved in the store.
+     * <p>
+     * The current wiki must be the wiki of the document.
+     *
+     * @param document the saved document
+     * @param originalDocument the original document returned by
+     *            {@link #beforeSaveDocument(XWikiDocument, String, boolean, Consumer, XWikiContext)}
+     * @param context see {@link XWikiContext}
+     * @since 10.0RC1
+     */
+    @Unstable
+    public void afterSaveDocument(XWikiDocument document, XWikiDocument originalDocument, XWikiContext context)
+    {
+        // Since the store#saveXWikiDoc resets originalDocument, we need to temporarily put it
+        // back to send notifications.
+        XWikiDocument newOriginal = document.getOriginalDocument();
+
+        try {
+            document.setOriginalDocument(originalDocument);
+
+            // Notify listeners about the document having been created or updated
+
+            // Note that for the moment the event being send is a bridge event, as we are still passing around
+            // an XWikiDocument as source and an XWikiContext as data.
+            // The old version is made available using doc.getOriginalDocument()
+
+            ObservationManager om = getObservationManager();
+            if (om != null) {
+                if (originalDocument.isNew()) {
+                    om.notify(new DocumentCreatedEvent(document.getDocumentReference()), document, context);
+                } else {
+                    om.notify(new DocumentUpdatedEvent(document.getDocumentReference()), document, context);
                 }
-            } catch (Exception ex) {
-                LOGGER.error("Failed to send document save notification for document ["
-                    + getDefaultEntityReferenceSerializer().serialize(document.getDocumentReference()) + "]", ex);
-            } finally {
-                document.setOriginalDocument(newOriginal);
             }
+        } catch (Exception ex) {
+            LOGGER.error("Failed to send document save notification for document ["
+                + getDefaultEntityReferenceSerializer().serialize(document.getDocumentReference()) + "]", ex);
         } finally {
-            context.setWikiId(currentWiki);
+            document.setOriginalDocument(newOriginal);
         }
     }
 
@@ -1832,6 +1878,9 @@ public XWikiDocument getDocument(XWikiDocument doc, XWikiContext context) throws
         try {
             context.setWikiId(doc.getDocumentReference().getWikiReference().getName());
 
+            // Let the fragment being rendered, if any, know that it depends on this document
+            RenderingDependencies.recordDocument(doc.getDocumentReference(), context);
+
             return getStore().loadXWikiDoc(doc, context);
         } finally {
             context.setWikiId(currentWiki);
@@ -5647,6 +5696,46 @@ public boolean exists(DocumentReference documentReference, XWikiContext context)
         }
     }
 
+    /**
+     * Check the existence of several documents at once, which is faster than calling
+     * {@link #exists(DocumentReference, XWikiContext)} for each of them.
+     *
+     * @param documentReferences the references of the documents to check
+     * @param context the XWiki context
+     * @return the references of the passed documents which exist
+     * @since 10.0RC1
+     */
+    @Unstable
+    public Set<DocumentReference> getExistingDocuments(Collection<DocumentReference> documentReferences,
+        XWikiContext context)
+    {
+        Map<String, List<DocumentReference>> referencesByWiki = new HashMap<>();
+        for (DocumentReference documentReference : documentReferences) {
+            referencesByWiki.computeIfAbsent(documentReference.getWikiReference().getName(), k -> new ArrayList<>())
+                .add(documentReference);
+        }
+
+        Set<DocumentReference> existingDocuments = new HashSet<>();
+
+        String currentWiki = context.getWikiId();
+        try {
+            for (Map.Entry<String, List<DocumentReference>> entry : referencesByWiki.entrySet()) {
+                context.setWikiId(entry.getKey());
+
+                try {
+                    existingDocuments.addAll(getStore().getExistingDocuments(entry.getValue(), context));
+                } catch (XWikiException e) {
+                    // Consider the documents don't exist, like exists(DocumentReference, XWikiContext)
+                    LOGGER.debug("Failed to check the existence of documents in wiki [{}]", entry.getKey(), e);
+                }
+            }
+        } finally {
+            context.setWikiId(currentWiki);
+        }
+
+        return existingDocuments;
+    }
+
     public String getAdType(XWikiContext context)
     {
         String adtype = "";
@@ -22,9 +22,11 @@
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -199,6 +201,17 @@ public boolean exists(DocumentReference documentReference)
         }
     }
 
+    @Override
+    public Set<DocumentReference> getExistingDocuments(Collection<DocumentReference> documentReferences)
+    {
+        XWikiContext context = getContext();
+        if (context != null) {
+            return context.getWiki().getExistingDocuments(documentReferences, context);
+        } else {
+            return Collections.emptySet();
+        }
+    }
+
     @Override
     @Deprecated
     public boolean exists(String documentReference)
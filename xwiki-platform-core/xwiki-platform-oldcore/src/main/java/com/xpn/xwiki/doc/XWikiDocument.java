@@ -127,6 +127,7 @@
 import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.block.match.ClassBlockMatcher;
 import org.xwiki.rendering.block.match.MacroBlockMatcher;
+import org.xwiki.rendering.internal.wiki.DocumentExistencePreloader;
 import org.xwiki.rendering.listener.reference.ResourceReference;
 import org.xwiki.rendering.listener.reference.ResourceType;
 import org.xwiki.rendering.parser.ContentParser;
@@ -2136,7 +2137,7 @@ public void setDocumentArchive(XWikiDocumentArchive arch)
     public void setDocumentArchive(String sarch) throws XWikiException
     {
         XWikiDocumentArchive xda = new XWikiDocumentArchive(getId());
-        xda.setArchive(sarch);
+        xda.setArchive(sarch, getXWikiContext());
         setDocumentArchive(xda);
     }
 
@@ -8422,6 +8423,11 @@ private static String performSyntaxConversion(XDOM content, Syntax targetSyntax,
     protected static String renderXDOM(XDOM content, Syntax targetSyntax) throws XWikiException
     {
         try {
+            // Check the existence of all the linked documents at once instead of while rendering each link
+            if (Utils.getContextComponentManager().hasComponent(DocumentExistencePreloader.class)) {
+                Utils.getComponent(DocumentExistencePreloader.class).preload(content, targetSyntax);
+            }
+
             BlockRenderer renderer = Utils.getComponent(BlockRenderer.class, targetSyntax.toIdString());
             WikiPrinter printer = new DefaultWikiPrinter();
             renderer.render(content, printer);
@@ -48,6 +48,9 @@
  */
 public class XWikiDocumentArchive
 {
+    /** Default number of versions between two versions stored in full. */
+    private static final int DEFAULT_NODES_PER_FULL = 5;
+
     /** =docId. */
     private long id;
 
@@ -130,9 +133,7 @@ protected XWikiRCSNodeContent makePatch(XWikiRCSNodeInfo newnode, XWikiDocument
         XWikiRCSNodeInfo latestNode = getLatestNode();
         if (latestNode != null) {
             int nodesCount = getNodes().size();
-            int nodesPerFull =
-                context.getWiki() == null ? 5 : Integer.parseInt(context.getWiki().getConfig()
-                    .getProperty("xwiki.store.rcs.nodesPerFull", "5"));
+            int nodesPerFull = getNodesPerFull(context);
             if (nodesPerFull <= 0 || (nodesCount % nodesPerFull) != 0) {
                 XWikiRCSNodeContent latestContent = latestNode.getContent(context);
                 latestContent.getPatch().setDiffVersion(latestContent.getPatch().getContent(),
@@ -145,6 +146,71 @@ protected XWikiRCSNodeContent makePatch(XWikiRCSNodeInfo newnode, XWikiDocument
         return result;
     }
 
+    /**
+     * @param context - used to read the configuration, can be null
+     * @return the number of versions between two versions stored in full, {@code 0} or less to store only the latest
+     *         version in full
+     */
+    protected int getNodesPerFull(XWikiContext context)
+    {
+        return context == null || context.getWiki() == null ? DEFAULT_NODES_PER_FULL : Integer.parseInt(context
+            .getWiki().getConfig().getProperty("xwiki.store.rcs.nodesPerFull", String.valueOf(DEFAULT_NODES_PER_FULL)));
+    }
+
+    /**
+     * Store in full the versions needed so that no version requires applying more than
+     * {@code xwiki.store.rcs.nodesPerFull} patches to be restored. The history built version by version already
+     * respects this bound but not the history imported from an archive (where only the latest version is full) or the
+     * history from which some versions were removed. Modified nodes need to be saved after.
+     *
+     * @param context - used for loading nodes content and reading the configuration, can be null if all the contents
+     *            are already loaded
+     * @throws XWikiException if any error
+     * @since 10.0RC1
+     */
+    public void updateFullVersions(XWikiContext context) throws XWikiException
+    {
+        int nodesPerFull = getNodesPerFull(context);
+        if (nodesPerFull <= 0 || !hasLongPatchChain(nodesPerFull)) {
+            return;
+        }
+
+        // Restore each version from the latest one, storing in full the version reached after too many patches
+        List<String> text = new ArrayList<String>();
+        int patches = 0;
+        for (XWikiRCSNodeInfo node : new ArrayList<XWikiRCSNodeInfo>(getNodes())) {
+            XWikiRCSNodeContent content = node.getContent(context);
+            content.getPatch().patch(text);
+            if (!node.isDiff()) {
+                patches = 0;
+            } else if (++patches >= nodesPerFull) {
+                content.getPatch().setFullVersion(ToString.arrayToString(text.toArray()));
+                node.setContent(content);
+                updateNode(node);
+                getUpdatedNodeContents().add(content);
+                patches = 0;
+            }
+        }
+    }
+
+    /**
+     * @param nodesPerFull - the maximum number of patches to apply to restore a version
+     * @return true if some version requires applying more patches, checked without loading any content
+     */
+    private boolean hasLongPatchChain(int nodesPerFull)
+    {
+        int patches = 0;
+        for (XWikiRCSNodeInfo node : getNodes()) {
+            if (!node.isDiff()) {
+                patches = 0;
+            } else if (++patches >= nodesPerFull) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /** @return {@link XWikiDocument#getId()} - primary key */
     public long getId()
     {
@@ -207,6 +273,20 @@ public String getArchive(XWikiContext context) throws XWikiException
      * @throws XWikiException if parse error
      */
     public void setArchive(String text) throws XWikiException
+    {
+        setArchive(text, null);
+    }
+
+    /**
+     * Deserialize class, storing in full some versions so that restoring any version is bounded (see
+     * {@link #updateFullVersions(XWikiContext)}).
+     *
+     * @param text - archive in JRCS format
+     * @param context - used for reading the configuration, can be null
+     * @throws XWikiException if parse error
+     * @since 10.0RC1
+     */
+    public void setArchive(String text, XWikiContext context) throws XWikiException
     {
         try {
             XWikiRCSArchive archive = new XWikiRCSArchive(text);
@@ -219,6 +299,7 @@ public void setArchive(String text) throws XWikiException
                 this.updatedNodeInfos.add(nodeInfo);
                 this.updatedNodeContents.add(nodeContent);
             }
+            updateFullVersions(context);
         } catch (Exception e) {
             Object[] args = { text, Long.valueOf(getId()) };
             throw new XWikiException(XWikiException.MODULE_XWIKI_DIFF,
@@ -310,6 +391,8 @@ public void removeVersions(Version newerVersion, Version olderVersion, XWikiCont
             this.deletedNodes.add(ni);
             it.remove();
         }
+        // The removed versions might have been the ones stored in full
+        updateFullVersions(context);
     }
 
     /**
@@ -486,7 +569,7 @@ public Set<XWikiRCSNodeContent> getUpdatedNodeContents()
     public XWikiDocumentArchive clone(long docId, XWikiContext context) throws XWikiException
     {
         XWikiDocumentArchive result = new XWikiDocumentArchive(docId);
-        result.setArchive(getArchive(context));
+        result.setArchive(getArchive(context), context);
         return result;
     }
 }
@@ -26,7 +26,14 @@
 import java.lang.reflect.Type;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -37,6 +44,7 @@
 import org.apache.commons.io.filefilter.SuffixFileFilter;
 import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.component.util.DefaultParameterizedType;
@@ -45,6 +53,7 @@
 import org.xwiki.context.ExecutionContextException;
 import org.xwiki.context.ExecutionContextManager;
 import org.xwiki.environment.Environment;
+import org.xwiki.job.event.status.JobProgressManager;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.model.reference.EntityReference;
@@ -58,6 +67,11 @@
 import com.xpn.xwiki.util.Util;
 import com.xpn.xwiki.web.ExportURLFactory;
 import com.xpn.xwiki.web.Utils;
+import com.xpn.xwiki.web.XWikiRequest;
+import com.xpn.xwiki.web.XWikiServletRequest;
+import com.xpn.xwiki.web.XWikiServletRequestStub;
+import com.xpn.xwiki.web.XWikiServletResponse;
+import com.xpn.xwiki.web.XWikiServletResponseStub;
 
 /**
  * Create a ZIP package containing a range of HTML pages with skin and attachment dependencies.
@@ -99,6 +113,27 @@
      */
     private static final String ZIPPATH_SEPARATOR = "/";
 
+    /**
+     * The maximum number of threads used by default to render the documents.
+     */
+    private static final int DEFAULT_MAX_RENDER_THREADS = 4;
+
+    /**
+     * A rendered document, waiting to be added to the ZIP stream.
+     */
+    private static final class RenderedDocument
+    {
+        private final String zipname;
+
+        private final byte[] content;
+
+        RenderedDocument(String zipname, byte[] content)
+        {
+            this.zipname = zipname;
+            this.content = content;
+        }
+    }
+
     /**
      * The name of the package for which packager append ".zip".
      */
@@ -216,23 +251,23 @@ private DocumentReference resolvePage(String pageName)
     }
 
     /**
-     * Add rendered document to ZIP stream.
+     * Render a document.
      *
      * @param pageReference the reference of the page to render.
-     * @param zos the ZIP output stream.
      * @param exportContext the context object for the export
      * @param context the clean XWiki context for rendering
+     * @return the rendered document or {@code null} if the document doesn't exist
      * @throws XWikiException error when rendering document.
      * @throws IOException error when rendering document.
      */
-    private void renderDocument(DocumentReference pageReference, ZipOutputStream zos,
-        FilesystemExportContext exportContext, XWikiContext context) throws XWikiException, IOException
+    private RenderedDocument renderDocument(DocumentReference pageReference, FilesystemExportContext exportContext,
+        XWikiContext context) throws XWikiException, IOException
     {
         XWikiDocument doc = context.getWiki().getDocument(pageReference, context);
 
         if (doc.isNew()) {
             // Skip non-existing documents.
-            return;
+            return null;
         }
 
         // Compute the location of the page inside the zip. We put pages inside directories for scalability as
@@ -244,9 +279,6 @@ private void renderDocument(DocumentReference pageReference, ZipOutputStream zos
         }
         zipname += ".html";
 
-        ZipEntry zipentry = new ZipEntry(zipname);
-        zos.putNextEntry(zipentry);
-
         try {
             context.setWikiId(doc.getDocumentReference().getWikiReference().getName());
             context.setDoc(doc);
@@ -261,8 +293,7 @@ private void renderDocument(DocumentReference pageReference, ZipOutputStream zos
 
             String content = evaluateDocumentContent(context);
 
-            zos.write(content.getBytes(context.getWiki().getEncoding()));
-            zos.closeEntry();
+            return new RenderedDocument(zipname, content.getBytes(context.getWiki().getEncoding()));
         } catch (Exception e) {
             throw new IOException(String.format("Failed to render document [%s] for HTML export", pageReference), e);
         }
@@ -296,6 +327,9 @@ private String evaluateDocumentContent(XWikiContext context) throws IOException
 
     /**
      * Init provided {@link ExportURLFactory} and add rendered documents to ZIP stream.
+     * <p>
+     * The documents are rendered concurrently (see {@link #getRenderThreads(XWikiContext)}) and written to the ZIP
+     * stream as soon as they are rendered, keeping only a few rendered documents in memory at the same time.
      *
      * @param zos the ZIP output stream.
      * @param urlf the {@link com.xpn.xwiki.web.XWikiURLFactory} used to render the documents.
@@ -308,27 +342,123 @@ private void renderDocuments(ZipOutputStream zos, ExportURLFactory urlf, XWikiCo
     {
         ExecutionContextManager ecm = Utils.getComponent(ExecutionContextManager.class);
         Execution execution = Utils.getComponent(Execution.class);
+        JobProgressManager progress = Utils.getComponent(JobProgressManager.class);
+
+        int threads = getRenderThreads(context);
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+            new BasicThreadFactory.Builder().namingPattern("XWiki HTML export thread %d").daemon(true).build());
+        CompletionService<RenderedDocument> renderer = new ExecutorCompletionService<>(executor);
+
+        progress.pushLevelProgress(this.pageReferences.size(), this);
+
+        try {
+            Iterator<DocumentReference> pageIterator = this.pageReferences.iterator();
+            int pending = 0;
+            while (pageIterator.hasNext() || pending > 0) {
+                // Don't render too many documents in advance to keep the memory usage bounded
+                while (pageIterator.hasNext() && pending < threads * 2) {
+                    renderer.submit(createRenderTask(pageIterator.next(), ecm, execution, urlf, context));
+                    pending++;
+                }
+
+                RenderedDocument renderedDocument = renderer.take().get();
+                pending--;
+
+                progress.startStep(this);
+
+                if (renderedDocument != null) {
+                    zos.putNextEntry(new ZipEntry(renderedDocument.zipname));
+                    zos.write(renderedDocument.content);
+                    zos.closeEntry();
+                }
+
+                progress.endStep(this);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new XWikiException(XWikiException.MODULE_XWIKI_EXPORT, XWikiException.ERROR_XWIKI_UNKNOWN,
+                "The HTML export has been interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof XWikiException) {
+                throw (XWikiException) e.getCause();
+            } else if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new IOException("Failed to render the documents for HTML export", e.getCause());
+        } finally {
+            // Also stops the rendering of the remaining documents when the export failed or has been interrupted
+            executor.shutdownNow();
+
+            progress.popLevelProgress(this);
+        }
+    }
+
+    private Callable<RenderedDocument> createRenderTask(DocumentReference pageReference, ExecutionContextManager ecm,
+        Execution execution, ExportURLFactory urlf, XWikiContext context)
+    {
+        // Isolate and initialize Contexts
+        XWikiContext renderContext = createRenderContext(urlf, context);
+
+        return () -> {
+            // Use a clean new Execution Context since we don't want the main Execution Context to be used for
+            // rendering the HTML pages to export. It's cleaner to isolate it as we do. Note that the new
+            // Execution Context automatically gets initialized with a new Velocity Context by
+            // the VelocityRequestInitializer class.
+            ExecutionContext executionContext = new ExecutionContext();
+
+            // Bridge with old XWiki Context, required for legacy code.
+            renderContext.declareInExecutionContext(executionContext);
+
+            // Share the state of the export (exported pages, skins, etc.) between the rendering threads
+            executionContext.newProperty(FilesystemExportContext.EXECUTION_CONTEXT_KEY).inherited()
+                .initial(urlf.getFilesystemExportContext()).declare();
+
+            execution.setContext(executionContext);
 
-        for (DocumentReference pageReference : this.pageReferences) {
             try {
-                // Isolate and initialize Contexts
-                XWikiContext renderContext = initializeContexts(ecm, execution, urlf, context);
+                ecm.initialize(executionContext);
+
+                // Use the filesystem URL format for all code using the url module to generate URLs (webjars, etc).
+                Utils.getComponent(URLContextManager.class).setURLFormatId("filesystem");
 
-                renderDocument(pageReference, zos, urlf.getFilesystemExportContext(), renderContext);
+                return renderDocument(pageReference, urlf.getFilesystemExportContext(), renderContext);
             } catch (ExecutionContextException e) {
                 throw new XWikiException(XWikiException.MODULE_XWIKI_EXPORT, XWikiException.ERROR_XWIKI_INIT_FAILED,
                     "Failed to initialize Execution Context", e);
             } finally {
                 // Clean up context
-                execution.popContext();
+                execution.removeContext();
             }
-        }
+        };
     }
 
-    private XWikiContext initializeContexts(ExecutionContextManager ecm, Execution execution, ExportURLFactory urlf,
-        XWikiContext originalContext) throws ExecutionContextException
+    /**
+     * Create the XWiki context used to render a document. Since the documents are rendered by several threads, it
+     * must not share anything mutable with the context of the export request (same as the stub contexts of the daemon
+     * threads, see {@link com.xpn.xwiki.internal.DefaultXWikiStubContextProvider}).
+     *
+     * @param urlf the {@link com.xpn.xwiki.web.XWikiURLFactory} used to render the documents
+     * @param context the XWiki context of the export request
+     * @return the XWiki context to use to render a document
+     */
+    private XWikiContext createRenderContext(ExportURLFactory urlf, XWikiContext context)
     {
-        XWikiContext renderContext = originalContext.clone();
+        XWikiContext renderContext = context.clone();
+
+        // Don't share the request and the response of the export with the rendering threads
+        XWikiRequest request = context.getRequest();
+        if (request != null) {
+            XWikiServletRequestStub stubRequest =
+                new XWikiServletRequestStub(context.getURL(), request.getParameterMap());
+            stubRequest.setContextPath(request.getContextPath());
+            renderContext.setRequest(new XWikiServletRequest(stubRequest));
+        }
+        renderContext.setResponse(new XWikiServletResponse(new XWikiServletResponseStub()));
+
+        // Each rendering thread gets its own Velocity Context when its Execution Context is initialized
+        renderContext.remove(XWikiContext.KEY_LEGACY_VELOCITYCONTEXT);
 
         // Override the current action to ensure we always render a view action.
         renderContext.put("action", "view");
@@ -336,21 +466,20 @@ private XWikiContext initializeContexts(ExecutionContextManager ecm, Execution e
         // Set the URL Factories/Serializer to use
         renderContext.setURLFactory(urlf);
 
-        ExecutionContext executionContext = ecm.clone(execution.getContext());
-
-        // Bridge with old XWiki Context, required for legacy code.
-        executionContext.setProperty("xwikicontext", renderContext);
-
-        // Push a clean new Execution Context since we don't want the main Execution Context to be used for
-        // rendering the HTML pages to export. It's cleaner to isolate it as we do. Note that the new
-        // Execution Context automatically gets initialized with a new Velocity Context by
-        // the VelocityRequestInitializer class.
-        execution.pushContext(executionContext);
+        return renderContext;
+    }
 
-        // Use the filesystem URL format for all code using the url module to generate URLs (webjars, etc).
-        Utils.getComponent(URLContextManager.class).setURLFormatId("filesystem");
+    /**
+     * @param context the XWiki context
+     * @return the number of threads to use to render the documents, configured with the
+     *         {@code xwiki.export.html.threads} property in xwiki.cfg
+     */
+    private int getRenderThreads(XWikiContext context)
+    {
+        long threads = context.getWiki().ParamAsLong("xwiki.export.html.threads",
+            Math.min(DEFAULT_MAX_RENDER_THREADS, Runtime.getRuntime().availableProcessors()));
 
-        return renderContext;
+        return (int) Math.max(1, Math.min(threads, this.pageReferences.size()));
     }
 
     /**
@@ -379,10 +508,8 @@ public void export(XWikiContext context) throws IOException, XWikiException
         ExportURLFactory urlf = new ExportURLFactory();
         Provider<FilesystemExportContext> exportContextProvider = Utils.getComponent(
             new DefaultParameterizedType(null, Provider.class, FilesystemExportContext.class));
-        // Note that the following line will set a FilesystemExportContext instance in the Execution Context
-        // and this Execution Context will be cloned for each document rendered below.
-        // TODO: to be cleaner we should set the FilesystemExportContext in the EC used to render each document.
-        // However we also need to initialize the ExportURLFactory.
+        // Note that the following line will set a FilesystemExportContext instance in the Execution Context. The same
+        // instance is then set in the Execution Context used to render each document.
         FilesystemExportContext exportContext = exportContextProvider.get();
         urlf.init(this.pageReferences, tempdir, exportContext, context);
 
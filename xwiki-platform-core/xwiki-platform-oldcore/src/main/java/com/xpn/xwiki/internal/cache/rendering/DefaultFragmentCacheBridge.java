@@ -0,0 +1,375 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.rendering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.FragmentCacheBridge;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.DisposableCacheValue;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Default implementation of {@link FragmentCacheBridge}.
+ * <p>
+ * Each cached fragment is indexed by the documents and classes it depends on and by the wikis whose rights were
+ * involved. Saving or deleting a document removes the fragments which read that document, the fragments which depend
+ * on a class whose objects were modified in that document and, when rights or groups were modified, all the fragments
+ * involving the rights of the document's wiki.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Component
+@Singleton
+public class DefaultFragmentCacheBridge implements FragmentCacheBridge, Initializable
+{
+    /**
+     * Identifier of the fragment cache.
+     */
+    private static final String NAME = "core.renderingcache.fragment";
+
+    private static final String DOCUMENT_PREFIX = "document:";
+
+    private static final String CLASS_PREFIX = "class:";
+
+    private static final String RIGHTS_PREFIX = "rights:";
+
+    /**
+     * The classes whose objects impact the rights of the wiki they are located in.
+     */
+    private static final List<LocalDocumentReference> RIGHTS_CLASSES =
+        Arrays.asList(new LocalDocumentReference(XWiki.SYSTEM_SPACE, "XWikiRights"),
+            new LocalDocumentReference(XWiki.SYSTEM_SPACE, "XWikiGlobalRights"),
+            new LocalDocumentReference(XWiki.SYSTEM_SPACE, "XWikiGroups"));
+
+    /**
+     * Event listened by the component.
+     */
+    private static final List<Event> EVENTS = Arrays.<Event>asList(new DocumentCreatedEvent(),
+        new DocumentUpdatedEvent(), new DocumentDeletedEvent());
+
+    /**
+     * Used to listen to document modification events.
+     *
+     * @version $Id$
+     */
+    protected class Listener implements EventListener
+    {
+        @Override
+        public String getName()
+        {
+            return NAME;
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return EVENTS;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            invalidate((XWikiDocument) source);
+        }
+    }
+
+    /**
+     * A cached fragment.
+     *
+     * @version $Id$
+     */
+    private class CachedFragment implements DisposableCacheValue
+    {
+        private final String key;
+
+        private final Object content;
+
+        private final RenderingDependencies dependencies;
+
+        private final Set<String> dependencyKeys;
+
+        private final long date = System.currentTimeMillis();
+
+        CachedFragment(String key, Object content, RenderingDependencies dependencies, Set<String> dependencyKeys)
+        {
+            this.key = key;
+            this.content = content;
+            this.dependencies = dependencies;
+            this.dependencyKeys = dependencyKeys;
+        }
+
+        boolean isExpired(int timeToLive)
+        {
+            return timeToLive > 0 && System.currentTimeMillis() - this.date > timeToLive * 1000L;
+        }
+
+        @Override
+        public void dispose() throws Exception
+        {
+            // Forget about this fragment in the index
+            for (String dependency : this.dependencyKeys) {
+                DefaultFragmentCacheBridge.this.dependents.computeIfPresent(dependency, (k, keys) -> {
+                    keys.remove(this.key);
+                    return keys.isEmpty() ? null : keys;
+                });
+            }
+        }
+    }
+
+    /**
+     * A fragment being produced.
+     *
+     * @version $Id$
+     */
+    private static class Production
+    {
+        /**
+         * The dependencies invalidated since the production started.
+         */
+        private final Set<String> invalidatedKeys = ConcurrentHashMap.newKeySet();
+    }
+
+    @Inject
+    private RenderingCacheConfiguration configuration;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private ObservationManager observationManager;
+
+    @Inject
+    private Provider<XWikiContext> xcontextProvider;
+
+    @Inject
+    @Named("current")
+    private DocumentReferenceResolver<String> currentResolver;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    private Cache<CachedFragment> cache;
+
+    /**
+     * The keys of the cached fragments associated to each dependency.
+     */
+    private final Map<String, Set<String>> dependents = new ConcurrentHashMap<>();
+
+    /**
+     * The fragments currently being produced, to avoid caching a fragment produced while one of its dependencies was
+     * modified.
+     */
+    private final Set<Production> productions = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache =
+                this.cacheManager.createNewCache(new LRUCacheConfiguration(NAME, this.configuration.getFragmentSize()));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to initialize the fragment cache", e);
+        }
+
+        this.observationManager.addListener(new Listener());
+    }
+
+    @Override
+    public <T> T getFragment(String key, int timeToLive, Collection<String> classes, Callable<T> producer)
+        throws Exception
+    {
+        XWikiContext xcontext = this.xcontextProvider.get();
+
+        String fragmentKey = getFragmentKey(key, xcontext);
+        CachedFragment fragment = this.cache.get(fragmentKey);
+        if (fragment != null && !fragment.isExpired(timeToLive)) {
+            // The enclosing fragment, if any, depends on what this fragment depends on
+            RenderingDependencies enclosingDependencies = RenderingDependencies.getCurrent(xcontext);
+            if (enclosingDependencies != null) {
+                enclosingDependencies.addAll(fragment.dependencies);
+            }
+
+            @SuppressWarnings("unchecked")
+            T content = (T) fragment.content;
+
+            return content;
+        }
+
+        Production production = new Production();
+        this.productions.add(production);
+        try {
+            RenderingDependencies dependencies = RenderingDependencies.start(xcontext);
+            T content;
+            try {
+                if (classes != null) {
+                    for (String classReference : classes) {
+                        dependencies.addClass(this.currentResolver.resolve(classReference));
+                    }
+                }
+
+                content = producer.call();
+            } finally {
+                dependencies.stop(xcontext);
+            }
+
+            if (content != null) {
+                Set<String> dependencyKeys = set(fragmentKey, content, dependencies, xcontext.getWikiId());
+
+                if (!Collections.disjoint(dependencyKeys, production.invalidatedKeys)) {
+                    // One of the dependencies was modified while the fragment was produced
+                    this.cache.remove(fragmentKey);
+                }
+            }
+
+            return content;
+        } finally {
+            this.productions.remove(production);
+        }
+    }
+
+    private String getFragmentKey(String key, XWikiContext xcontext)
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append(xcontext.getWikiId());
+        builder.append(':');
+        if (xcontext.getUserReference() != null) {
+            builder.append(this.serializer.serialize(xcontext.getUserReference()));
+        }
+        builder.append(':');
+        builder.append(key);
+
+        return builder.toString();
+    }
+
+    private Set<String> set(String fragmentKey, Object content, RenderingDependencies dependencies, String wiki)
+    {
+        Set<String> dependencyKeys = new HashSet<>();
+        // The fragment was produced with the rights of the current user in the current wiki
+        dependencyKeys.add(RIGHTS_PREFIX + wiki);
+        for (DocumentReference documentReference : dependencies.getDocuments()) {
+            dependencyKeys.add(DOCUMENT_PREFIX + this.serializer.serialize(documentReference));
+        }
+        for (DocumentReference classReference : dependencies.getClasses()) {
+            dependencyKeys.add(CLASS_PREFIX + this.serializer.serialize(classReference));
+        }
+        for (String dependencyWiki : dependencies.getWikis()) {
+            dependencyKeys.add(RIGHTS_PREFIX + dependencyWiki);
+        }
+
+        // Dispose the expired fragment, if any, before indexing the new one since disposing a fragment removes its key
+        // from the index
+        this.cache.remove(fragmentKey);
+
+        // Index the fragment before caching it so that it cannot miss an invalidation
+        for (String dependencyKey : dependencyKeys) {
+            this.dependents.computeIfAbsent(dependencyKey, k -> ConcurrentHashMap.newKeySet()).add(fragmentKey);
+        }
+
+        this.cache.set(fragmentKey, new CachedFragment(fragmentKey, content, dependencies, dependencyKeys));
+
+        return dependencyKeys;
+    }
+
+    /**
+     * Remove the fragments depending on the passed document, on the classes whose objects were modified in that
+     * document and, if rights or groups were modified, on the rights of the document's wiki.
+     *
+     * @param document the created, updated or deleted document
+     */
+    private void invalidate(XWikiDocument document)
+    {
+        invalidate(DOCUMENT_PREFIX + this.serializer.serialize(document.getDocumentReference()));
+
+        XWikiDocument previousDocument = document.getOriginalDocument();
+
+        Set<DocumentReference> classReferences = new HashSet<>(document.getXObjects().keySet());
+        if (previousDocument != null) {
+            classReferences.addAll(previousDocument.getXObjects().keySet());
+        }
+
+        boolean rightsModified = false;
+        for (DocumentReference classReference : classReferences) {
+            List<?> previousObjects =
+                previousDocument != null ? previousDocument.getXObjects().get(classReference) : null;
+            if (!Objects.equals(document.getXObjects().get(classReference), previousObjects)) {
+                invalidate(CLASS_PREFIX + this.serializer.serialize(classReference));
+
+                rightsModified |= RIGHTS_CLASSES.contains(new LocalDocumentReference(classReference));
+            }
+        }
+
+        if (rightsModified) {
+            invalidate(RIGHTS_PREFIX + document.getDocumentReference().getWikiReference().getName());
+        }
+    }
+
+    private void invalidate(String dependencyKey)
+    {
+        // Remembered first so that a fragment being produced at the same time is either found in the index or
+        // removed right after being cached
+        for (Production production : this.productions) {
+            production.invalidatedKeys.add(dependencyKey);
+        }
+
+        Set<String> keys = this.dependents.remove(dependencyKey);
+
+        if (keys != null) {
+            for (String key : new ArrayList<>(keys)) {
+                this.cache.remove(key);
+            }
+        }
+    }
+}
@@ -78,6 +78,16 @@ public class DefaultRenderingCacheConfiguration implements RenderingCacheConfigu
      */
     private static final int PROPVALUE_SIZE = 100;
 
+    /**
+     * Name of the property indication the size of the fragment cache.
+     */
+    private static final String PROPNAME_FRAGMENT_SIZE = PREFIX + "fragment.size";
+
+    /**
+     * The default size of the fragment cache.
+     */
+    private static final int PROPVALUE_FRAGMENT_SIZE = 1000;
+
     /**
      * xwiki.properties file configurations.
      */
@@ -150,6 +160,12 @@ public int getSize()
         return this.farmConfiguration.getProperty(PROPNAME_SIZE, PROPVALUE_SIZE);
     }
 
+    @Override
+    public int getFragmentSize()
+    {
+        return this.farmConfiguration.getProperty(PROPNAME_FRAGMENT_SIZE, PROPVALUE_FRAGMENT_SIZE);
+    }
+
     @Override
     public boolean isCached(DocumentReference documentReference)
     {
@@ -46,6 +46,12 @@
      */
     int getSize();
 
+    /**
+     * @return the maximum number of fragments kept by the fragment cache
+     * @since 10.0RC1
+     */
+    int getFragmentSize();
+
     /**
      * Indicate if the provided document's rendering result should be cached.
      *
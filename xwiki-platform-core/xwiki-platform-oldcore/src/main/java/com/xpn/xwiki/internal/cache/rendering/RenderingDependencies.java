@@ -0,0 +1,170 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.rendering;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * The documents and classes read while producing a fragment of rendered content.
+ * <p>
+ * The dependencies being recorded are stored in the {@link XWikiContext} so that
+ * {@link com.xpn.xwiki.XWiki#getDocument(com.xpn.xwiki.doc.XWikiDocument, XWikiContext)} can report the documents it
+ * loads without any lookup when nothing is recorded. Recordings can be nested: the dependencies of a fragment are also
+ * dependencies of the fragments containing it.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class RenderingDependencies
+{
+    /**
+     * The key under which the dependencies being recorded are stored in the {@link XWikiContext}.
+     */
+    private static final String CONTEXT_KEY = "renderingDependencies";
+
+    private RenderingDependencies parent;
+
+    private final Set<DocumentReference> documents = new HashSet<>();
+
+    private final Set<DocumentReference> classes = new HashSet<>();
+
+    private RenderingDependencies(RenderingDependencies parent)
+    {
+        this.parent = parent;
+    }
+
+    /**
+     * Start recording the dependencies of a new fragment.
+     *
+     * @param xcontext the XWiki context
+     * @return the dependencies which are going to be recorded, to pass to {@link #stop(XWikiContext)}
+     */
+    public static RenderingDependencies start(XWikiContext xcontext)
+    {
+        RenderingDependencies dependencies = new RenderingDependencies(getCurrent(xcontext));
+        xcontext.put(CONTEXT_KEY, dependencies);
+
+        return dependencies;
+    }
+
+    /**
+     * @param xcontext the XWiki context
+     * @return the dependencies currently being recorded or {@code null} if nothing is recorded
+     */
+    public static RenderingDependencies getCurrent(XWikiContext xcontext)
+    {
+        return (RenderingDependencies) xcontext.get(CONTEXT_KEY);
+    }
+
+    /**
+     * Record that a document has been read, if a recording is in progress.
+     *
+     * @param documentReference the reference of the document
+     * @param xcontext the XWiki context
+     */
+    public static void recordDocument(DocumentReference documentReference, XWikiContext xcontext)
+    {
+        RenderingDependencies dependencies = getCurrent(xcontext);
+        if (dependencies != null) {
+            dependencies.addDocument(documentReference);
+        }
+    }
+
+    /**
+     * Stop recording these dependencies and add them to the dependencies of the enclosing fragment, if any.
+     *
+     * @param xcontext the XWiki context
+     */
+    public void stop(XWikiContext xcontext)
+    {
+        if (this.parent != null) {
+            xcontext.put(CONTEXT_KEY, this.parent);
+            this.parent.addAll(this);
+        } else {
+            xcontext.remove(CONTEXT_KEY);
+        }
+
+        // Don't keep the enclosing recording alive with the cached fragment
+        this.parent = null;
+    }
+
+    /**
+     * @param documentReference the reference of a document read while producing the fragment
+     */
+    public void addDocument(DocumentReference documentReference)
+    {
+        this.documents.add(documentReference);
+    }
+
+    /**
+     * @param classReference the reference of a class whose objects were read while producing the fragment
+     */
+    public void addClass(DocumentReference classReference)
+    {
+        this.classes.add(classReference);
+    }
+
+    /**
+     * @param dependencies other dependencies to add to these ones
+     */
+    public void addAll(RenderingDependencies dependencies)
+    {
+        this.documents.addAll(dependencies.getDocuments());
+        this.classes.addAll(dependencies.getClasses());
+    }
+
+    /**
+     * @return the references of the documents read while producing the fragment
+     */
+    public Set<DocumentReference> getDocuments()
+    {
+        return Collections.unmodifiableSet(this.documents);
+    }
+
+    /**
+     * @return the references of the classes whose objects were read while producing the fragment
+     */
+    public Set<DocumentReference> getClasses()
+    {
+        return Collections.unmodifiableSet(this.classes);
+    }
+
+    /**
+     * @return the wikis whose rights were involved in producing the fragment
+     */
+    public Set<String> getWikis()
+    {
+        Set<String> wikis = new HashSet<>();
+        for (DocumentReference documentReference : this.documents) {
+            wikis.add(documentReference.getWikiReference().getName());
+        }
+        for (DocumentReference classReference : this.classes) {
+            wikis.add(classReference.getWikiReference().getName());
+        }
+
+        return wikis;
+    }
+}
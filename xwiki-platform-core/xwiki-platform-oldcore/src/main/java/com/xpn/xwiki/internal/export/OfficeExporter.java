@@ -74,6 +74,13 @@ public ExportType getExportType(String extension)
         return null;
     }
 
+    @Override
+    protected boolean isStreaming(XWikiContext context)
+    {
+        // The office server needs the serialized XHTML
+        return false;
+    }
+
     @Override
     protected void exportXHTML(String xhtml, OutputStream out, ExportType type, XWikiContext context)
         throws XWikiException
@@ -20,13 +20,19 @@
 package com.xpn.xwiki.internal.filter.output;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 
+import org.hibernate.Session;
+import org.hibernate.Transaction;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
@@ -44,11 +50,17 @@
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceResolver;
 import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
 
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiAttachment;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.doc.XWikiDocumentArchive;
+import com.xpn.xwiki.internal.event.DocumentsBatchSavedEvent;
+import com.xpn.xwiki.internal.event.DocumentsBatchSavingEvent;
+import com.xpn.xwiki.store.XWikiHibernateStore;
 
 /**
  * @version $Id$
@@ -66,6 +78,9 @@ public class DocumentInstanceOutputFilterStream extends AbstractBeanOutputFilter
     private static final TranslationMarker LOG_DOCUMENT_UPDATED =
         new TranslationMarker("filter.instance.log.document.updated", WikiDocumentFilter.LOG_DOCUMENT_UPDATED);
 
+    private static final TranslationMarker LOG_DOCUMENT_SKIPPED =
+        new TranslationMarker("filter.instance.log.document.skipped", WikiDocumentFilter.LOG_DOCUMENT_SKIPPED);
+
     private static final TranslationMarker LOG_DOCUMENT_FAILSAVE =
         new TranslationMarker("filter.instance.log.document.failsave", WikiDocumentFilter.LOG_DOCUMENT_ERROR);
 
@@ -90,11 +105,36 @@ public class DocumentInstanceOutputFilterStream extends AbstractBeanOutputFilter
     @Inject
     private EntityOutputFilterStream<XWikiDocument> documentListener;
 
+    @Inject
+    private ObservationManager observation;
+
     @Inject
     private Logger logger;
 
     private boolean documentDeleted;
 
+    /**
+     * The store of the current batch of documents, {@code null} when no batch is started.
+     */
+    private XWikiHibernateStore batchStore;
+
+    private WikiReference batchWiki;
+
+    /**
+     * The documents saved in the current batch, indexed by reference (with locale).
+     */
+    private final Map<DocumentReference, XWikiDocument> batchDocuments = new LinkedHashMap<>();
+
+    /**
+     * The revisions saved in the current batch, with the version of the document they replaced, to notify once the
+     * batch is committed.
+     */
+    private final List<XWikiDocument[]> batchRevisions = new ArrayList<>();
+
+    private int savedDocuments;
+
+    private long startTime;
+
     private FilterEventParameters currentLocaleParameters;
 
     private FilterEventParameters currentRevisionParameters;
@@ -113,7 +153,21 @@ protected Object createFilter() throws FilterException
     @Override
     public void close() throws IOException
     {
-        // Nothing to close
+        if (this.batchStore != null) {
+            XWikiContext xcontext = this.xcontextProvider.get();
+            try {
+                commitBatch(xcontext);
+            } catch (Exception e) {
+                endBatch(false, xcontext);
+
+                throw new IOException("Failed to commit the last batch of documents", e);
+            }
+        }
+
+        if (this.savedDocuments > 0) {
+            this.logger.info("Saved [{}] documents ([{}] documents per second)", this.savedDocuments,
+                getThroughput());
+        }
     }
 
     @Override
@@ -188,10 +242,30 @@ private void maybeSaveDocument() throws FilterException
 
         XWikiContext xcontext = this.xcontextProvider.get();
 
+        if (this.startTime == 0) {
+            this.startTime = System.currentTimeMillis();
+        }
+
         try {
+            if (this.properties.getBatchSize() > 1) {
+                beginBatch(inputDocument.getDocumentReference().getWikiReference(), xcontext);
+            }
+
             XWikiDocument document =
                 xcontext.getWiki().getDocument(inputDocument.getDocumentReferenceWithLocale(), xcontext);
 
+            // Only documents without history are compared since each revision is saved
+            if (this.properties.isUnchangedSkipped() && !this.documentDeleted && !document.isNew()
+                && this.currentRevisionParameters == this.currentLocaleParameters
+                && isUnchanged(document, inputDocument, xcontext)) {
+                if (this.properties.isVerbose()) {
+                    this.logger.info(LOG_DOCUMENT_SKIPPED, "Skipped unchanged document [{}]",
+                        document.getDocumentReferenceWithLocale());
+                }
+
+                return;
+            }
+
             if (!this.documentDeleted && !document.isNew() && this.properties.isPreviousDeleted()) {
                 XWikiDocument originalDocument = document;
 
@@ -273,13 +347,12 @@ private void maybeSaveDocument() throws FilterException
                 document.setMetaDataDirty(false);
                 document.setContentDirty(false);
 
-                xcontext.getWiki().saveDocument(document, inputDocument.getComment(), inputDocument.isMinorEdit(),
-                    xcontext);
+                saveDocument(document, inputDocument.getComment(), inputDocument.isMinorEdit(), xcontext);
             } else {
                 // Forget the input history to let the store do its standard job
                 document.setDocumentArchive((XWikiDocumentArchive) null);
 
-                xcontext.getWiki().saveDocument(document, this.properties.getSaveComment(), xcontext);
+                saveDocument(document, this.properties.getSaveComment(), false, xcontext);
             }
 
             if (this.properties.isVerbose()) {
@@ -291,16 +364,215 @@ private void maybeSaveDocument() throws FilterException
                         document.getDocumentReferenceWithLocale());
                 }
             }
+
+            if (this.batchStore == null) {
+                ++this.savedDocuments;
+            } else if (this.batchDocuments.size() >= this.properties.getBatchSize()) {
+                commitBatch(xcontext);
+            }
         } catch (Exception e) {
             this.logger.error(LOG_DOCUMENT_FAILSAVE, "Failed to save document [{}]",
                 inputDocument.getDocumentReferenceWithLocale(), e);
 
+            if (this.batchStore != null) {
+                // The database session can't be trusted anymore
+                this.logger.error(LOG_DOCUMENT_FAILSAVE, "Cancelled the save of the documents [{}]",
+                    this.batchDocuments.keySet());
+
+                endBatch(false, xcontext);
+            }
+
             if (this.properties.isStoppedWhenSaveFail()) {
                 throw new FilterException("Failed to save document", e);
             }
         }
     }
 
+    private boolean isUnchanged(XWikiDocument document, XWikiDocument inputDocument, XWikiContext xcontext)
+        throws XWikiException
+    {
+        XWikiDocument currentDocument = document.clone();
+        currentDocument.loadAttachmentsContent(xcontext);
+
+        return !currentDocument.apply(inputDocument);
+    }
+
+    /**
+     * Start a database transaction for the next documents, unless there's already one for the same wiki.
+     */
+    private void beginBatch(WikiReference wiki, XWikiContext xcontext) throws XWikiException
+    {
+        if (this.batchStore != null && !wiki.equals(this.batchWiki)) {
+            // A database transaction is bound to a single wiki
+            commitBatch(xcontext);
+        }
+
+        XWikiHibernateStore store = xcontext.getWiki().getHibernateStore();
+        if (this.batchStore == null && store != null) {
+            WikiReference currentWiki = xcontext.getWikiReference();
+            try {
+                xcontext.setWikiReference(wiki);
+
+                store.checkHibernate(xcontext);
+                if (store.beginTransaction(xcontext)) {
+                    this.batchStore = store;
+                    this.batchWiki = wiki;
+
+                    // The links of the documents are saved once at the end of the batch, whatever the number of
+                    // revisions of each document
+                    xcontext.put(XWikiHibernateStore.DEFERRED_LINKS_CONTEXT_KEY, this.batchDocuments.keySet());
+
+                    this.observation.notify(new DocumentsBatchSavingEvent(), null, null);
+                }
+            } finally {
+                xcontext.setWikiReference(currentWiki);
+            }
+        }
+    }
+
+    private void saveDocument(XWikiDocument document, String comment, boolean minorEdit, XWikiContext xcontext)
+        throws XWikiException
+    {
+        if (this.batchStore != null) {
+            saveBatchDocument(document, comment, minorEdit, xcontext);
+        } else {
+            xcontext.getWiki().saveDocument(document, comment, minorEdit, xcontext);
+        }
+    }
+
+    /**
+     * Save the document in the database transaction of the current batch. The listeners are notified that the
+     * document has been saved only once the batch is committed, and never with the database session of the batch so
+     * that they can't write in (or end) the transaction of the batch.
+     */
+    private void saveBatchDocument(XWikiDocument document, String comment, boolean minorEdit, XWikiContext xcontext)
+        throws XWikiException
+    {
+        // Write the changes of the previous documents and forget the loaded entities since the document which is
+        // about to be saved is a clone of one of them
+        Session session = this.batchStore.getSession(xcontext);
+        session.flush();
+        session.clear();
+
+        WikiReference currentWiki = xcontext.getWikiReference();
+        try {
+            xcontext.setWikiReference(this.batchWiki);
+
+            XWikiDocument originalDocument = xcontext.getWiki().beforeSaveDocument(document, comment, minorEdit,
+                event -> notifyOutsideBatch(event, document, xcontext), xcontext);
+
+            xcontext.getWiki().getStore().saveXWikiDoc(document, xcontext);
+
+            this.batchDocuments.put(document.getDocumentReferenceWithLocale(), document);
+            this.batchRevisions.add(new XWikiDocument[] { document, originalDocument });
+        } finally {
+            xcontext.setWikiReference(currentWiki);
+        }
+    }
+
+    /**
+     * Notify the listeners with the database session of the batch put aside, so that the store opens a new session
+     * (targeting the right database) if they need it.
+     */
+    private void notifyOutsideBatch(Event event, XWikiDocument document, XWikiContext xcontext)
+    {
+        Session session = this.batchStore.getSession(xcontext);
+        Transaction transaction = this.batchStore.getTransaction(xcontext);
+        this.batchStore.setSession(null, xcontext);
+        this.batchStore.setTransaction(null, xcontext);
+
+        try {
+            this.observation.notify(event, document, xcontext);
+        } finally {
+            this.batchStore.setSession(session, xcontext);
+            this.batchStore.setTransaction(transaction, xcontext);
+        }
+    }
+
+    /**
+     * Notify the listeners about the revisions of the batch, which has just been committed. The current wiki must be
+     * the wiki of the batch.
+     */
+    private void notifyBatchRevisions(XWikiContext xcontext)
+    {
+        for (XWikiDocument[] revision : this.batchRevisions) {
+            xcontext.getWiki().afterSaveDocument(revision[0], revision[1], xcontext);
+        }
+    }
+
+    /**
+     * Save the links of the documents of the current batch and commit its database transaction.
+     */
+    private void commitBatch(XWikiContext xcontext) throws XWikiException
+    {
+        WikiReference currentWiki = xcontext.getWikiReference();
+        try {
+            xcontext.setWikiReference(this.batchWiki);
+
+            if (xcontext.getWiki().hasBacklinks(xcontext)) {
+                for (XWikiDocument document : this.batchDocuments.values()) {
+                    this.batchStore.saveLinks(document, xcontext, false);
+                }
+            }
+        } finally {
+            xcontext.setWikiReference(currentWiki);
+        }
+
+        this.savedDocuments += this.batchDocuments.size();
+
+        endBatch(true, xcontext);
+
+        if (this.properties.isVerbose()) {
+            this.logger.info("Saved [{}] documents ([{}] documents per second)", this.savedDocuments,
+                getThroughput());
+        }
+    }
+
+    /**
+     * Commit or roll back the database transaction of the current batch.
+     */
+    private void endBatch(boolean commit, XWikiContext xcontext)
+    {
+        boolean committed = false;
+
+        WikiReference currentWiki = xcontext.getWikiReference();
+        try {
+            xcontext.setWikiReference(this.batchWiki);
+
+            this.batchStore.endTransaction(xcontext, commit);
+
+            committed = commit;
+        } finally {
+            xcontext.remove(XWikiHibernateStore.DEFERRED_LINKS_CONTEXT_KEY);
+
+            try {
+                // The revisions of a rolled back batch were never actually saved. The listeners are notified in the
+                // wiki of the documents, like when the documents are saved one by one.
+                if (committed) {
+                    notifyBatchRevisions(xcontext);
+                }
+
+                // Also sent when the transaction is rolled back so that the caches forget the documents
+                this.observation.notify(new DocumentsBatchSavedEvent(), null,
+                    new ArrayList<>(this.batchDocuments.keySet()));
+            } finally {
+                xcontext.setWikiReference(currentWiki);
+
+                this.batchDocuments.clear();
+                this.batchRevisions.clear();
+                this.batchStore = null;
+                this.batchWiki = null;
+            }
+        }
+    }
+
+    private long getThroughput()
+    {
+        long duration = System.currentTimeMillis() - this.startTime;
+
+        return duration > 0 ? this.savedDocuments * 1000L / duration : this.savedDocuments;
+    }
+
     private void setAuthorReference(XWikiDocument document, DocumentReference authorReference)
     {
         // Document author
@@ -19,8 +19,12 @@
  */
 package com.xpn.xwiki.internal.pdf;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -33,7 +37,14 @@
 import java.util.HashMap;
 import java.util.List;
 
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -42,6 +53,7 @@
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.velocity.VelocityContext;
 import org.dom4j.Element;
+import org.dom4j.io.DocumentSource;
 import org.dom4j.io.OutputFormat;
 import org.dom4j.io.SAXReader;
 import org.dom4j.io.XMLWriter;
@@ -160,7 +172,14 @@ public void export(XWikiDocument doc, OutputStream out, ExportType type, XWikiCo
     @Override
     public void exportHtml(String html, OutputStream out, ExportType type, XWikiContext context) throws XWikiException
     {
-        exportXHTML(applyCSS(convertToStrictXHtml(html), context), out, type, context);
+        String xhtml = convertToStrictXHtml(html);
+
+        if (isStreaming(context)) {
+            // The styled document is transformed directly, without serializing it first
+            exportXHTMLStreaming(getStyledXHtmlSource(xhtml, context), out, type, context);
+        } else {
+            exportXHTML(applyCSS(xhtml, context), out, type, context);
+        }
     }
 
     /**
@@ -201,13 +220,63 @@ protected void exportXHTML(String xhtml, OutputStream out, ExportType type, XWik
     {
         LOGGER.debug("Final XHTML for export:\n{}", xhtml);
 
-        // XSL Transformation to XML-FO
-        String xmlfo = convertXHtmlToXMLFO(xhtml, context);
+        if (isStreaming(context)) {
+            exportXHTMLStreaming(createXMLSource(new InputSource(new StringReader(xhtml))), out, type, context);
+        } else {
+            // XSL Transformation to XML-FO
+            String xmlfo = convertXHtmlToXMLFO(xhtml, context);
+
+            // Debug output
+            LOGGER.debug("Final XSL-FO source:\n{}", xmlfo);
+
+            renderXSLFO(xmlfo, out, type, context);
+        }
+    }
+
+    /**
+     * The XSL-FO of a big document can be several times bigger than its XHTML so in streaming mode neither the styled
+     * XHTML nor the XSL-FO are serialized in memory: the styled document is passed to the chained XSLT transformations
+     * which write the XSL-FO to a temporary file, which is then streamed to FOP. It's used unless disabled with the
+     * {@code xwiki.pdf.export.streaming} property in xwiki.cfg, or when the debug log is enabled since it displays the
+     * intermediary XSL-FO.
+     *
+     * @param context the current request context
+     * @return {@code true} if the XSL-FO should be streamed through a temporary file
+     * @since 10.0RC1
+     */
+    protected boolean isStreaming(XWikiContext context)
+    {
+        return !LOGGER.isDebugEnabled() && context != null && context.getWiki() != null
+            && context.getWiki().ParamAsLong("xwiki.pdf.export.streaming", 1) == 1;
+    }
+
+    private void exportXHTMLStreaming(Source xhtml, OutputStream out, ExportType type, XWikiContext context)
+        throws XWikiException
+    {
+        File dir = this.environment.getTemporaryDirectory();
+        File tempdir = new File(dir, RandomStringUtils.randomAlphanumeric(8));
+        try {
+            tempdir.mkdirs();
 
-        // Debug output
-        LOGGER.debug("Final XSL-FO source:\n{}", xmlfo);
+            // XSL Transformations to XML-FO
+            File xmlfo = new File(tempdir, "final.fo");
+            convertXHtmlToXMLFO(xhtml, xmlfo, context);
 
-        renderXSLFO(xmlfo, out, type, context);
+            try (InputStream xmlfoStream = new BufferedInputStream(new FileInputStream(xmlfo))) {
+                this.xslFORenderer.render(xmlfoStream, out, type.getMimeType());
+            } catch (IllegalStateException e) {
+                throw createException(e, type, XWikiException.ERROR_XWIKI_APP_SEND_RESPONSE_EXCEPTION);
+            } catch (Exception e) {
+                throw createException(e, type, XWikiException.ERROR_XWIKI_EXPORT_PDF_FOP_FAILED);
+            }
+        } finally {
+            try {
+                FileUtils.deleteDirectory(tempdir);
+            } catch (IOException ex) {
+                // Should not happen, but it's nothing serious, just that temporary files are left on the disk.
+                LOGGER.warn("Failed to cleanup temporary XSL-FO files after a PDF export", ex);
+            }
+        }
     }
 
     /**
@@ -275,6 +344,45 @@ protected String applyXSLT(String xml, InputStream xslt) throws XWikiException
         }
     }
 
+    /**
+     * Same as {@link #convertXHtmlToXMLFO(String, XWikiContext)} but the intermediary XSL-FO is passed as SAX events
+     * to the post-processing transformation and the resulting XSL-FO is written to a file.
+     *
+     * @param xhtml the XHTML document to convert
+     * @param output the file where to write the resulting XSL-FO document
+     * @param context the current request context
+     * @throws XWikiException if the conversion fails for any reason
+     */
+    private void convertXHtmlToXMLFO(Source xhtml, File output, XWikiContext context) throws XWikiException
+    {
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(output))) {
+            SAXTransformerFactory factory = (SAXTransformerFactory) TransformerFactory.newInstance();
+
+            TransformerHandler cleanup =
+                factory.newTransformerHandler(createXMLSource(new InputSource(getFopCleanupXslt(context))));
+            cleanup.setResult(new StreamResult(outputStream));
+
+            Transformer xhtml2fo = factory.newTransformer(createXMLSource(new InputSource(getXhtml2FopXslt(context))));
+            xhtml2fo.transform(xhtml, new SAXResult(cleanup));
+        } catch (Exception e) {
+            throw new XWikiException(XWikiException.MODULE_XWIKI_EXPORT, XWikiException.ERROR_XWIKI_EXPORT_XSL_FAILED,
+                "XSL Transformation Failed", e);
+        }
+    }
+
+    private SAXSource createXMLSource(InputSource source) throws XWikiException
+    {
+        try {
+            XMLReader xmlReader = Utils.getComponent(XMLReaderFactory.class).createXMLReader();
+            xmlReader.setEntityResolver(Utils.getComponent(EntityResolver.class));
+
+            return new SAXSource(xmlReader, source);
+        } catch (Exception e) {
+            throw new XWikiException(XWikiException.MODULE_XWIKI_EXPORT, XWikiException.ERROR_XWIKI_EXPORT_XSL_FAILED,
+                "Failed to create an XML reader", e);
+        }
+    }
+
     /**
      * Apply CSS styling to an XHTML document. The style to apply is taken from:
      * <ol>
@@ -290,6 +398,37 @@ protected String applyXSLT(String xml, InputStream xslt) throws XWikiException
      * @return the document with inlined style
      */
     private String applyCSS(String html, XWikiContext context)
+    {
+        String css = getCSS(context);
+        // Don't apply CSS if there's no CSS to apply!
+        return StringUtils.isBlank(css) ? html : applyCSS(html, css, context);
+    }
+
+    /**
+     * Same as {@link #applyCSS(String, XWikiContext)} but the styled document is returned as a source for the XSLT
+     * transformations instead of being serialized.
+     *
+     * @param html the valid XHTML document to style
+     * @param context the current request context
+     * @return the document with inlined style
+     * @throws XWikiException if failing to create the source of the document
+     */
+    private Source getStyledXHtmlSource(String html, XWikiContext context) throws XWikiException
+    {
+        String css = getCSS(context);
+        // Don't apply CSS if there's no CSS to apply!
+        if (!StringUtils.isBlank(css)) {
+            try {
+                return new DocumentSource(createStyledDocument(html, css, context));
+            } catch (Exception e) {
+                LOGGER.warn("Failed to apply CSS [{}] to HTML [{}]", css, html, e);
+            }
+        }
+
+        return createXMLSource(new InputSource(new StringReader(html)));
+    }
+
+    private String getCSS(XWikiContext context)
     {
         String css =
             (context == null || context.getWiki() == null) ? "" : context.getWiki().parseTemplate("pdf.css", context);
@@ -297,8 +436,8 @@ private String applyCSS(String html, XWikiContext context)
         if (style != null) {
             css += style;
         }
-        // Don't apply CSS if there's no CSS to apply!
-        return StringUtils.isBlank(css) ? html : applyCSS(html, css, context);
+
+        return css;
     }
 
     /**
@@ -314,21 +453,7 @@ String applyCSS(String html, String css, XWikiContext context)
     {
         LOGGER.debug("Applying the following CSS [{}] to HTML [{}]", css, html);
         try {
-            //System.setProperty("org.w3c.css.sac.parser", "org.apache.batik.css.parser.Parser");
-
-            // Prepare the input
-            Reader re = new StringReader(html);
-            InputSource source = new InputSource(re);
-            SAXReader reader = new SAXReader(XHTMLDocumentFactory.getInstance());
-            reader.setEntityResolver(new DefaultEntityResolver());
-            XHTMLDocument document = (XHTMLDocument) reader.read(source);
-
-            // Set the base URL so that CSS4J can resolve URLs in CSS. Use the current document in the XWiki Context
-            document.setBaseURL(new URL(context.getDoc().getExternalURL("view", context)));
-
-            // Apply the style sheet
-            document.addStyleSheet(new org.w3c.css.sac.InputSource(new StringReader(css)));
-            applyInlineStyle(document.getRootElement());
+            XHTMLDocument document = createStyledDocument(html, css, context);
             OutputFormat outputFormat = new OutputFormat("", false);
             if ((context == null) || (context.getWiki() == null)) {
                 outputFormat.setEncoding("UTF-8");
@@ -350,6 +475,27 @@ String applyCSS(String html, String css, XWikiContext context)
         }
     }
 
+    private XHTMLDocument createStyledDocument(String html, String css, XWikiContext context) throws Exception
+    {
+        //System.setProperty("org.w3c.css.sac.parser", "org.apache.batik.css.parser.Parser");
+
+        // Prepare the input
+        Reader re = new StringReader(html);
+        InputSource source = new InputSource(re);
+        SAXReader reader = new SAXReader(XHTMLDocumentFactory.getInstance());
+        reader.setEntityResolver(new DefaultEntityResolver());
+        XHTMLDocument document = (XHTMLDocument) reader.read(source);
+
+        // Set the base URL so that CSS4J can resolve URLs in CSS. Use the current document in the XWiki Context
+        document.setBaseURL(new URL(context.getDoc().getExternalURL("view", context)));
+
+        // Apply the style sheet
+        document.addStyleSheet(new org.w3c.css.sac.InputSource(new StringReader(css)));
+        applyInlineStyle(document.getRootElement());
+
+        return document;
+    }
+
     /**
      * Recursively inline the computed style that applies to a DOM Element into the {@code style} attribute of that
      * Element.
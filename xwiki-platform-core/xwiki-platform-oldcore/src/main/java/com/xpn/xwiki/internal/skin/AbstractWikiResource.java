@@ -69,6 +69,16 @@ protected XWikiDocument getDocument() throws XWikiException
         return xcontext.getWiki().getDocument(documentReference, xcontext);
     }
 
+    /**
+     * @return the date of the last modification of the document containing the resource, in milliseconds
+     * @throws XWikiException when failing to load the document
+     * @since 10.0RC1
+     */
+    public long getLastModified() throws XWikiException
+    {
+        return getDocument().getDate().getTime();
+    }
+
     @Override
     public I getInputSource() throws Exception
     {
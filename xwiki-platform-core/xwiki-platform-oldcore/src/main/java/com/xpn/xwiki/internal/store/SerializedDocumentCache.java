@@ -0,0 +1,280 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.filter.input.DefaultInputStreamInputSource;
+import org.xwiki.filter.instance.input.DocumentInstanceInputProperties;
+import org.xwiki.filter.instance.output.DocumentInstanceOutputProperties;
+import org.xwiki.filter.output.DefaultOutputStreamOutputTarget;
+import org.xwiki.filter.xar.input.XARInputProperties;
+import org.xwiki.filter.xar.output.XAROutputProperties;
+import org.xwiki.model.reference.WikiReference;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.filter.XWikiDocumentFilterUtils;
+
+/**
+ * Second level document cache keeping documents in a compact serialized form outside of the Java heap.
+ * <p>
+ * Documents are stored as compressed XML (without attachment content nor history) in direct {@link ByteBuffer}s. The
+ * cache is bounded by the total number of stored bytes and evicts the least recently used entries first.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class SerializedDocumentCache
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SerializedDocumentCache.class);
+
+    private final XWikiDocumentFilterUtils filterUtils;
+
+    private final long capacity;
+
+    private final Map<String, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75F, true);
+
+    private long size;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param capacity the maximum number of bytes to keep in the cache
+     * @param filterUtils the tool used to serialize and parse documents
+     */
+    public SerializedDocumentCache(long capacity, XWikiDocumentFilterUtils filterUtils)
+    {
+        this.capacity = capacity;
+        this.filterUtils = filterUtils;
+    }
+
+    /**
+     * @param key the key of the document
+     * @param wikiReference the wiki of the document (the serialized form does not contain it)
+     * @return the parsed document or null if it's not in the cache
+     */
+    public XWikiDocument get(String key, WikiReference wikiReference)
+    {
+        ByteBuffer buffer;
+        synchronized (this) {
+            buffer = this.entries.get(key);
+        }
+
+        if (buffer == null) {
+            this.missCount.incrementAndGet();
+
+            return null;
+        }
+
+        try {
+            XWikiDocument document = parse(buffer, wikiReference);
+
+            this.hitCount.incrementAndGet();
+
+            return document;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to parse document [{}] from the serialized document cache: {}", key,
+                e.getMessage());
+
+            remove(key);
+            this.missCount.incrementAndGet();
+
+            return null;
+        }
+    }
+
+    /**
+     * @param key the key of the document
+     * @param document the document to store
+     */
+    public void set(String key, XWikiDocument document)
+    {
+        ByteBuffer buffer;
+        try {
+            buffer = serialize(document);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to serialize document [{}] in the serialized document cache: {}", key,
+                e.getMessage());
+
+            remove(key);
+
+            return;
+        }
+
+        // Don't store entries which would evict the whole cache
+        if (buffer.capacity() > this.capacity) {
+            remove(key);
+
+            return;
+        }
+
+        synchronized (this) {
+            ByteBuffer previous = this.entries.put(key, buffer);
+            if (previous != null) {
+                this.size -= previous.capacity();
+            }
+            this.size += buffer.capacity();
+
+            evict();
+        }
+    }
+
+    /**
+     * @param key the key of the document to remove
+     */
+    public synchronized void remove(String key)
+    {
+        ByteBuffer previous = this.entries.remove(key);
+        if (previous != null) {
+            this.size -= previous.capacity();
+        }
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public synchronized void removeAll()
+    {
+        this.entries.clear();
+        this.size = 0;
+    }
+
+    private void evict()
+    {
+        for (Iterator<ByteBuffer> it = this.entries.values().iterator(); this.size > this.capacity && it.hasNext();) {
+            this.size -= it.next().capacity();
+            it.remove();
+
+            this.evictionCount.incrementAndGet();
+        }
+    }
+
+    private ByteBuffer serialize(XWikiDocument document) throws Exception
+    {
+        DocumentInstanceInputProperties documentProperties = new DocumentInstanceInputProperties();
+        documentProperties.setWithWikiObjects(true);
+        documentProperties.setWithWikiDocumentContentHTML(false);
+        documentProperties.setWithWikiAttachmentsContent(false);
+        documentProperties.setWithJRCSRevisions(false);
+        documentProperties.setWithRevisions(false);
+
+        XAROutputProperties xarProperties = new XAROutputProperties();
+        xarProperties.setPreserveVersion(true);
+        xarProperties.setEncoding(StandardCharsets.UTF_8.name());
+        xarProperties.setFormat(false);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream stream = new GZIPOutputStream(bytes)) {
+            this.filterUtils.exportEntity(document, new DefaultOutputStreamOutputTarget(stream), xarProperties,
+                documentProperties);
+        }
+
+        byte[] array = bytes.toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(array.length);
+        buffer.put(array);
+        buffer.flip();
+
+        return buffer;
+    }
+
+    private XWikiDocument parse(ByteBuffer buffer, WikiReference wikiReference) throws Exception
+    {
+        // Work on a duplicate to not impact concurrent readers
+        ByteBuffer readBuffer = buffer.duplicate();
+        byte[] array = new byte[readBuffer.remaining()];
+        readBuffer.get(array);
+
+        DocumentInstanceOutputProperties documentProperties = new DocumentInstanceOutputProperties();
+        documentProperties.setDefaultReference(wikiReference);
+        documentProperties.setVersionPreserved(true);
+
+        XARInputProperties xarProperties = new XARInputProperties();
+        xarProperties.setWithHistory(false);
+
+        try (InputStream stream = new GZIPInputStream(new ByteArrayInputStream(array))) {
+            return this.filterUtils.importDocument(new DefaultInputStreamInputSource(stream), xarProperties,
+                documentProperties);
+        }
+    }
+
+    /**
+     * @return the maximum number of bytes stored in the cache
+     */
+    public long getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * @return the number of bytes currently stored in the cache
+     */
+    public synchronized long getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return the number of documents currently stored in the cache
+     */
+    public synchronized int getEntryCount()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * @return the number of lookups which found the document in the cache
+     */
+    public long getHitCount()
+    {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return the number of lookups which did not find the document in the cache
+     */
+    public long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    /**
+     * @return the number of entries removed to respect the capacity
+     */
+    public long getEvictionCount()
+    {
+        return this.evictionCount.get();
+    }
+}
@@ -33,6 +33,8 @@
  */
 public class ClassloaderResource extends AbstractInputSourceResource<URLInputSource>
 {
+    private final URL url;
+
     /**
      * @param url the URL of the resource
      * @param resourceName the name of the resource
@@ -40,6 +42,17 @@ public class ClassloaderResource extends AbstractInputSourceResource<URLInputSou
     public ClassloaderResource(URL url, String resourceName)
     {
         super(url.toExternalForm(), resourceName, null, new DefaultURLInputSource(url));
+
+        this.url = url;
+    }
+
+    /**
+     * @return the URL of the resource
+     * @since 10.0RC1
+     */
+    public URL getResourceURL()
+    {
+        return this.url;
     }
 
     @Override
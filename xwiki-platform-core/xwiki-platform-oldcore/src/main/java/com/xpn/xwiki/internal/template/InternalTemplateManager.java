@@ -19,6 +19,7 @@
  */
 package com.xpn.xwiki.internal.template;
 
+import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -41,11 +42,18 @@
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
 import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.environment.Environment;
 import org.xwiki.filter.input.InputSource;
@@ -55,6 +63,9 @@
 import org.xwiki.job.event.status.JobProgressManager;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
 import org.xwiki.properties.BeanManager;
 import org.xwiki.properties.ConverterManager;
 import org.xwiki.properties.PropertyException;
@@ -82,10 +93,13 @@
 import org.xwiki.skin.Skin;
 import org.xwiki.template.Template;
 import org.xwiki.template.TemplateContent;
+import org.xwiki.template.event.TemplateDeletedEvent;
+import org.xwiki.template.event.TemplateUpdatedEvent;
 import org.xwiki.velocity.VelocityManager;
 
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.internal.skin.AbstractEnvironmentResource;
+import com.xpn.xwiki.internal.skin.AbstractWikiResource;
 import com.xpn.xwiki.internal.skin.InternalSkinManager;
 import com.xpn.xwiki.internal.skin.WikiResource;
 import com.xpn.xwiki.user.api.XWikiRightService;
@@ -98,10 +112,25 @@
  */
 @Component(roles = InternalTemplateManager.class)
 @Singleton
-public class InternalTemplateManager
+public class InternalTemplateManager implements Initializable
 {
     private static final Pattern PROPERTY_LINE = Pattern.compile("^##!(.+)=(.*)$\r?\n?", Pattern.MULTILINE);
 
+    /**
+     * Identifier of the cache of the template contents.
+     */
+    private static final String CACHE_NAME = "template.content";
+
+    private static final String CACHE_CAPACITY_PROPERTY = "xwiki.template.cache.capacity";
+
+    private static final int DEFAULT_CACHE_CAPACITY = 500;
+
+    /**
+     * Event listened to invalidate the cache.
+     */
+    private static final List<Event> EVENTS =
+        Arrays.<Event>asList(new TemplateUpdatedEvent(), new TemplateDeletedEvent());
+
     /**
      * The reference of the superadmin user.
      */
@@ -161,10 +190,68 @@
     @Inject
     private JobProgressManager progress;
 
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private ObservationManager observation;
+
     @Inject
     private Logger logger;
 
-    private static abstract class AbtractTemplate<T extends TemplateContent, R extends Resource<?>> implements Template
+    /**
+     * The templates are looked up and read again each time they are used (many times per request for the most common
+     * ones) so we keep the content of their resources, with their properties already parsed. Only the content is kept:
+     * the Velocity code it contains is still parsed each time the template is evaluated.
+     */
+    private Cache<CachedTemplateContent> contentCache;
+
+    /**
+     * A template content with the date of the last modification of its resource when it was read.
+     *
+     * @version $Id$
+     */
+    private static class CachedTemplateContent
+    {
+        private final TemplateContent content;
+
+        private final long lastModified;
+
+        CachedTemplateContent(TemplateContent content, long lastModified)
+        {
+            this.content = content;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Clear the cached template contents when a wiki template is modified.
+     *
+     * @version $Id$
+     */
+    protected class Listener implements EventListener
+    {
+        @Override
+        public String getName()
+        {
+            return CACHE_NAME;
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return EVENTS;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            // The keys of the wiki templates also contain their author so we can't remove only the modified one
+            InternalTemplateManager.this.contentCache.removeAll();
+        }
+    }
+
+    private abstract class AbtractTemplate<T extends TemplateContent, R extends Resource<?>> implements Template
     {
         protected R resource;
 
@@ -188,9 +275,25 @@ public String getPath()
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         public TemplateContent getContent() throws Exception
         {
             if (this.content == null) {
+                String cacheKey = getCacheKey();
+                long lastModified = 0;
+                if (cacheKey != null) {
+                    lastModified = getLastModified(this.resource);
+
+                    // The resource might have been modified since it was cached (modified skin or filesystem template,
+                    // upgraded extension, etc.)
+                    CachedTemplateContent cachedContent = InternalTemplateManager.this.contentCache.get(cacheKey);
+                    if (cachedContent != null && cachedContent.lastModified == lastModified) {
+                        this.content = (T) cachedContent.content;
+
+                        return this.content;
+                    }
+                }
+
                 // TODO: work with streams instead of forcing String
                 String strinContent;
 
@@ -210,11 +313,35 @@ public TemplateContent getContent() throws Exception
                 }
 
                 this.content = getContentInternal(strinContent);
+
+                if (cacheKey != null) {
+                    InternalTemplateManager.this.contentCache.set(cacheKey,
+                        new CachedTemplateContent(this.content, lastModified));
+                }
             }
 
             return this.content;
         }
 
+        /**
+         * @return the key of the content in the cache, {@code null} if the content should not be cached
+         */
+        private String getCacheKey()
+        {
+            if (InternalTemplateManager.this.contentCache == null || this.resource instanceof StringResource) {
+                return null;
+            }
+
+            // The rights of a wiki template depend on its author so the content must be reloaded when it changes
+            if (this.resource instanceof WikiResource) {
+                DocumentReference authorReference = ((WikiResource<?>) this.resource).getAuthorReference();
+
+                return this.resource.getId() + '@' + authorReference;
+            }
+
+            return this.resource.getId();
+        }
+
         protected abstract T getContentInternal(String content) throws Exception;
 
         @Override
@@ -442,6 +569,52 @@ public void setPrivileged(boolean privileged)
         }
     }
 
+    @Override
+    public void initialize() throws InitializationException
+    {
+        int capacity = this.xwikicfg.getProperty(CACHE_CAPACITY_PROPERTY, DEFAULT_CACHE_CAPACITY);
+        if (capacity > 0) {
+            try {
+                this.contentCache = this.cacheManager.createNewCache(new LRUCacheConfiguration(CACHE_NAME, capacity));
+            } catch (CacheException e) {
+                throw new InitializationException("Failed to initialize the template content cache", e);
+            }
+
+            this.observation.addListener(new Listener());
+        }
+    }
+
+    /**
+     * @param resource the template resource
+     * @return the date of the last modification of the resource, in milliseconds, or 0 if unknown
+     * @throws Exception when failing to get the date of the resource
+     */
+    private long getLastModified(Resource<?> resource) throws Exception
+    {
+        if (resource instanceof AbstractWikiResource) {
+            return ((AbstractWikiResource<?, ?>) resource).getLastModified();
+        }
+
+        URL url = null;
+        if (resource instanceof AbstractEnvironmentResource) {
+            url = this.environment.getResource(resource.getPath());
+        } else if (resource instanceof ClassloaderResource) {
+            url = ((ClassloaderResource) resource).getResourceURL();
+        }
+
+        if (url != null) {
+            File file = FileUtils.toFile(url);
+            if (file != null) {
+                return file.lastModified();
+            }
+
+            // The jar files opened by the connections are cached by the JVM
+            return url.openConnection().getLastModified();
+        }
+
+        return 0;
+    }
+
     private String getResourcePath(String suffixPath, String templateName, boolean testExist)
     {
         String templatePath = suffixPath + templateName;
@@ -0,0 +1,415 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.user;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentCreatingEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentDeletingEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.bridge.event.DocumentUpdatingEvent;
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.event.DocumentsBatchSavedEvent;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.user.impl.xwiki.XWikiGroupServiceImpl;
+
+/**
+ * Keep in memory, for each wiki, the groups each member (user or group, from any wiki) is directly part of, so that
+ * the groups of a member can be found without querying the database.
+ * <p>
+ * The index of a wiki is loaded with a single query the first time it's needed and then maintained incrementally from
+ * the document events. The groups being saved are remembered between the "ing" and the "ed" events: as long as a
+ * group of a wiki is being saved the index of this wiki is not used (the caller is expected to query the database
+ * instead), so that a component reacting to the saved event before this index never gets outdated memberships. A
+ * failed save does not send the "ed" event so a group still being saved after a minute is forgotten
+ * and the index of its wiki reloaded.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Component(roles = GroupMembershipIndex.class)
+@Singleton
+public class GroupMembershipIndex implements Initializable
+{
+    private static final String NAME = "groupmembershipindex";
+
+    private static final String FIELD_MEMBER = "member";
+
+    private static final String DEFAULT_MEMBER_SPACE = "XWiki";
+
+    /**
+     * The time in milliseconds after which a group save which was never notified as finished is considered failed.
+     */
+    static final long SAVING_TIMEOUT = 60000L;
+
+    /**
+     * Event listened by the component.
+     */
+    private static final List<Event> EVENTS = Arrays.<Event>asList(new DocumentCreatingEvent(),
+        new DocumentUpdatingEvent(), new DocumentDeletingEvent(), new DocumentCreatedEvent(),
+        new DocumentUpdatedEvent(), new DocumentDeletedEvent(), new DocumentsBatchSavedEvent(),
+        new WikiDeletedEvent());
+
+    /**
+     * Used to listen to document events.
+     *
+     * @version $Id$
+     */
+    protected class Listener implements EventListener
+    {
+        @Override
+        public String getName()
+        {
+            return NAME;
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return EVENTS;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            GroupMembershipIndex.this.onEvent(event, source, data);
+        }
+    }
+
+    /**
+     * A group being saved.
+     *
+     * @version $Id$
+     */
+    private static class SavingGroup
+    {
+        /**
+         * The number of concurrent saves.
+         */
+        private int count;
+
+        /**
+         * The time when the oldest save started.
+         */
+        private long start;
+    }
+
+    /**
+     * The groups of a wiki. All the accesses are synchronized on the instance.
+     *
+     * @version $Id$
+     */
+    private static class WikiGroups
+    {
+        /**
+         * The groups of each member, {@code null} until the index is loaded.
+         */
+        private Map<DocumentReference, Set<DocumentReference>> memberGroups;
+
+        /**
+         * The members of each group, used to know what changed when a group is saved.
+         */
+        private final Map<DocumentReference, Set<DocumentReference>> groupMembers = new HashMap<>();
+
+        /**
+         * The groups currently being saved.
+         */
+        private final Map<DocumentReference, SavingGroup> savingGroups = new HashMap<>();
+
+        void reset()
+        {
+            this.memberGroups = null;
+            this.groupMembers.clear();
+        }
+
+        void setMembers(DocumentReference groupReference, Set<DocumentReference> members)
+        {
+            Set<DocumentReference> previousMembers =
+                members.isEmpty() ? this.groupMembers.remove(groupReference)
+                    : this.groupMembers.put(groupReference, members);
+
+            if (previousMembers != null) {
+                for (DocumentReference previousMember : previousMembers) {
+                    if (!members.contains(previousMember)) {
+                        Set<DocumentReference> groups = this.memberGroups.get(previousMember);
+                        if (groups != null) {
+                            groups.remove(groupReference);
+                            if (groups.isEmpty()) {
+                                this.memberGroups.remove(previousMember);
+                            }
+                        }
+                    }
+                }
+            }
+
+            for (DocumentReference member : members) {
+                this.memberGroups.computeIfAbsent(member, key -> new HashSet<>()).add(groupReference);
+            }
+        }
+    }
+
+    /**
+     * The current time, overwritten by the tests.
+     */
+    LongSupplier clock = System::currentTimeMillis;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    private DocumentReferenceResolver<String> resolver;
+
+    @Inject
+    private ObservationManager observationManager;
+
+    private final Map<String, WikiGroups> wikis = new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.observationManager.addListener(new Listener());
+    }
+
+    /**
+     * @param memberReference the reference of the user or group
+     * @param wikiId the identifier of the wiki where to search the groups
+     * @return the groups of the passed wiki which explicitly list the passed member, or {@code null} if the index
+     *         cannot be trusted right now because some groups of the wiki are being saved
+     * @throws QueryException when failing to load the index of the wiki
+     */
+    public Collection<DocumentReference> getGroups(DocumentReference memberReference, String wikiId)
+        throws QueryException
+    {
+        WikiGroups wikiGroups = this.wikis.computeIfAbsent(wikiId, key -> new WikiGroups());
+
+        synchronized (wikiGroups) {
+            if (!wikiGroups.savingGroups.isEmpty() && !expireSavingGroups(wikiGroups)) {
+                return null;
+            }
+
+            if (wikiGroups.memberGroups == null) {
+                load(wikiGroups, wikiId);
+            }
+
+            Set<DocumentReference> groups = wikiGroups.memberGroups.get(memberReference);
+
+            return groups != null ? new HashSet<>(groups) : new HashSet<>();
+        }
+    }
+
+    /**
+     * Forget the saves which are too old to still be running (the save failed and no "ed" event will ever come).
+     *
+     * @return true if no group of the wiki is being saved anymore
+     */
+    private boolean expireSavingGroups(WikiGroups wikiGroups)
+    {
+        long expired = this.clock.getAsLong() - SAVING_TIMEOUT;
+        if (wikiGroups.savingGroups.values().removeIf(savingGroup -> savingGroup.start <= expired)) {
+            // Don't trust what was indexed since the failed save
+            wikiGroups.reset();
+        }
+
+        return wikiGroups.savingGroups.isEmpty();
+    }
+
+    /**
+     * Forget everything indexed so far, the index of each wiki will be loaded again the next time it's needed.
+     */
+    public void reset()
+    {
+        this.wikis.clear();
+    }
+
+    private void load(WikiGroups wikiGroups, String wikiId) throws QueryException
+    {
+        Query query = this.queryManager.getNamedQuery("getAllGroupsMembers");
+        query.setWiki(wikiId);
+
+        WikiReference wikiReference = new WikiReference(wikiId);
+        EntityReference memberBase = getMemberBase(wikiReference);
+
+        Map<DocumentReference, Set<DocumentReference>> groupMembers = new HashMap<>();
+        for (Object[] result : query.<Object[]>execute()) {
+            String member = (String) result[1];
+            if (StringUtils.isNotBlank(member)) {
+                DocumentReference groupReference = this.resolver.resolve((String) result[0], wikiReference);
+
+                groupMembers.computeIfAbsent(groupReference, key -> new HashSet<>())
+                    .add(this.resolver.resolve(member, memberBase));
+            }
+        }
+
+        wikiGroups.memberGroups = new HashMap<>();
+        for (Map.Entry<DocumentReference, Set<DocumentReference>> entry : groupMembers.entrySet()) {
+            wikiGroups.setMembers(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * The members are usually stored relative to the "XWiki" space of the wiki of the group.
+     */
+    private EntityReference getMemberBase(WikiReference wikiReference)
+    {
+        return new EntityReference(DEFAULT_MEMBER_SPACE, EntityType.SPACE, wikiReference);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onEvent(Event event, Object source, Object data)
+    {
+        if (event instanceof DocumentsBatchSavedEvent) {
+            // The documents of the batch were notified before being committed (and maybe rolled back after that)
+            onBatchSaved((Collection<DocumentReference>) data);
+        } else if (event instanceof WikiDeletedEvent) {
+            this.wikis.remove(((WikiDeletedEvent) event).getWikiId());
+        } else {
+            XWikiDocument document = (XWikiDocument) source;
+
+            // Only the default locale of a document holds its objects
+            if (Locale.ROOT.equals(document.getLocale())) {
+                if (event instanceof DocumentCreatingEvent || event instanceof DocumentUpdatingEvent
+                    || event instanceof DocumentDeletingEvent) {
+                    onGroupSaving(document);
+                } else {
+                    onGroupSaved(document);
+                }
+            }
+        }
+    }
+
+    private void onBatchSaved(Collection<DocumentReference> documentReferences)
+    {
+        if (documentReferences != null) {
+            for (DocumentReference documentReference : documentReferences) {
+                WikiGroups wikiGroups = this.wikis.get(documentReference.getWikiReference().getName());
+                if (wikiGroups != null) {
+                    synchronized (wikiGroups) {
+                        wikiGroups.reset();
+                    }
+                }
+            }
+        }
+    }
+
+    private void onGroupSaving(XWikiDocument document)
+    {
+        if (isGroup(document) || isGroup(document.getOriginalDocument())) {
+            DocumentReference groupReference = document.getDocumentReference();
+            WikiGroups wikiGroups =
+                this.wikis.computeIfAbsent(groupReference.getWikiReference().getName(), key -> new WikiGroups());
+
+            synchronized (wikiGroups) {
+                SavingGroup savingGroup = wikiGroups.savingGroups.get(groupReference);
+                if (savingGroup == null) {
+                    savingGroup = new SavingGroup();
+                    savingGroup.start = this.clock.getAsLong();
+                    wikiGroups.savingGroups.put(groupReference, savingGroup);
+                }
+                ++savingGroup.count;
+            }
+        }
+    }
+
+    private void onGroupSaved(XWikiDocument document)
+    {
+        DocumentReference groupReference = document.getDocumentReference();
+        WikiGroups wikiGroups = this.wikis.get(groupReference.getWikiReference().getName());
+
+        if (wikiGroups != null && (isGroup(document) || isGroup(document.getOriginalDocument()))) {
+            synchronized (wikiGroups) {
+                if (wikiGroups.memberGroups != null) {
+                    wikiGroups.setMembers(groupReference, getMembers(document));
+                }
+
+                // The "ing" event is not always received (remote events for example)
+                SavingGroup savingGroup = wikiGroups.savingGroups.get(groupReference);
+                if (savingGroup != null && --savingGroup.count <= 0) {
+                    wikiGroups.savingGroups.remove(groupReference);
+                }
+            }
+        }
+    }
+
+    private boolean isGroup(XWikiDocument document)
+    {
+        if (document != null) {
+            List<BaseObject> groupObjects = document.getXObjects(XWikiGroupServiceImpl.GROUPCLASS_REFERENCE);
+
+            return groupObjects != null && groupObjects.stream().anyMatch(Objects::nonNull);
+        }
+
+        return false;
+    }
+
+    private Set<DocumentReference> getMembers(XWikiDocument document)
+    {
+        List<BaseObject> groupObjects = document.getXObjects(XWikiGroupServiceImpl.GROUPCLASS_REFERENCE);
+        if (groupObjects == null || groupObjects.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        EntityReference memberBase = getMemberBase(document.getDocumentReference().getWikiReference());
+
+        Set<DocumentReference> members = new HashSet<>();
+        for (BaseObject groupObject : groupObjects) {
+            if (groupObject != null) {
+                String member = groupObject.getStringValue(FIELD_MEMBER);
+                if (StringUtils.isNotBlank(member)) {
+                    members.add(this.resolver.resolve(member, memberBase));
+                }
+            }
+        }
+
+        return members;
+    }
+}
@@ -36,6 +36,7 @@
 import org.xwiki.display.internal.DocumentDisplayer;
 import org.xwiki.display.internal.DocumentDisplayerParameters;
 import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.internal.wiki.DocumentExistencePreloader;
 import org.xwiki.rendering.renderer.BlockRenderer;
 import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
 import org.xwiki.rendering.renderer.printer.WikiPrinter;
@@ -274,6 +275,13 @@ private DocumentModelBridge getDocument(Document document)
     private String renderXDOM(XDOM content, Syntax targetSyntax) throws XWikiException
     {
         try {
+            // Check the existence of all the linked documents at once instead of while rendering each link
+            if (this.componentManager.hasComponent(DocumentExistencePreloader.class)) {
+                DocumentExistencePreloader preloader =
+                    this.componentManager.getInstance(DocumentExistencePreloader.class);
+                preloader.preload(content, targetSyntax);
+            }
+
             BlockRenderer renderer = this.componentManager.getInstance(BlockRenderer.class, targetSyntax.toIdString());
             WikiPrinter printer = new DefaultWikiPrinter();
             renderer.render(content, printer);
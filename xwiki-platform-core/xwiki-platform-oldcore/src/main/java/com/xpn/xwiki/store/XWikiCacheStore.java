@@ -20,7 +20,13 @@
 package com.xpn.xwiki.store;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,12 +51,18 @@
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.doc.XWikiLink;
 import com.xpn.xwiki.doc.XWikiLock;
+import com.xpn.xwiki.internal.event.DocumentsBatchSavedEvent;
+import com.xpn.xwiki.internal.filter.XWikiDocumentFilterUtils;
+import com.xpn.xwiki.internal.store.SerializedDocumentCache;
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.web.Utils;
 
 /**
  * A proxy store implementation that caches Documents when they are first fetched and subsequently return them from a
  * cache. It delegates all write and search operations to an underlying store without doing any caching on them.
+ * <p>
+ * Optionally a second level cache keeping documents serialized outside of the heap can be enabled with the
+ * {@code xwiki.store.cache.serialized.capacity} property. Documents found in it are promoted to the first level cache.
  *
  * @version $Id$
  */
@@ -64,6 +76,14 @@ public class XWikiCacheStore implements XWikiCacheStoreInterface, EventListener
 
     private Cache<Boolean> pageExistCache;
 
+    private SerializedDocumentCache serializedCache;
+
+    private final AtomicLong cacheHitCount = new AtomicLong();
+
+    private final AtomicLong cacheMissCount = new AtomicLong();
+
+    private final AtomicLong promotionCount = new AtomicLong();
+
     /**
      * Used to know if a received event is a local or remote one.
      */
@@ -98,7 +118,7 @@ public String getName()
     public List<Event> getEvents()
     {
         return Arrays.<Event>asList(new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent(),
-            new WikiDeletedEvent());
+            new WikiDeletedEvent(), new DocumentsBatchSavedEvent());
     }
 
     public void initCache(XWikiContext context) throws XWikiException
@@ -114,6 +134,12 @@ public void initCache(XWikiContext context) throws XWikiException
                 (int) context.getWiki().ParamAsLong("xwiki.store.cache.pageexistcapacity", 10000);
             this.pageExistCache = cacheManager
                 .createNewCache(new LRUCacheConfiguration("xwiki.store.pageexistcache", pageExistCacheCapacity));
+
+            long serializedCacheCapacity = context.getWiki().ParamAsLong("xwiki.store.cache.serialized.capacity", 0);
+            if (serializedCacheCapacity > 0) {
+                this.serializedCache = new SerializedDocumentCache(serializedCacheCapacity,
+                    Utils.getComponent(XWikiDocumentFilterUtils.class));
+            }
         } catch (CacheException e) {
             throw new XWikiException(XWikiException.MODULE_XWIKI_CACHE, XWikiException.ERROR_CACHE_INITIALIZING,
                 "Failed to initialize cache", e);
@@ -157,6 +183,9 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext context, boolean bTrans
         String key = getKey(doc, context);
         getCache().remove(key);
         getPageExistCache().remove(key);
+        if (this.serializedCache != null) {
+            this.serializedCache.remove(key);
+        }
 
         /*
          * We do not want to save the document in the cache at this time. If we did, this would introduce the
@@ -171,30 +200,45 @@ public void flushCache()
     {
         getCache().removeAll();
         getPageExistCache().removeAll();
+        if (this.serializedCache != null) {
+            this.serializedCache.removeAll();
+        }
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void onEvent(Event event, Object source, Object data)
     {
-        // only react to remote events since local actions are already taken into account
-        if (this.remoteObservationManagerContext.isRemoteState()) {
+        if (event instanceof DocumentsBatchSavedEvent) {
+            // Other threads might have loaded the previous version of the documents before they were committed
+            for (DocumentReference reference : (List<DocumentReference>) data) {
+                remove(this.uidStringEntityReferenceSerializer.serialize(reference));
+            }
+        } else if (this.remoteObservationManagerContext.isRemoteState()) {
+            // only react to remote events since local actions are already taken into account
             if (event instanceof WikiDeletedEvent) {
                 flushCache();
             } else {
                 XWikiDocument doc = (XWikiDocument) source;
 
-                String key = doc.getKey();
-
-                if (getCache() != null) {
-                    getCache().remove(key);
-                }
-                if (getPageExistCache() != null) {
-                    getPageExistCache().remove(key);
-                }
+                remove(doc.getKey());
             }
         }
     }
 
+    private void remove(String key)
+    {
+        if (getCache() != null) {
+            getCache().remove(key);
+        }
+        if (getPageExistCache() != null) {
+            getPageExistCache().remove(key);
+        }
+        if (this.serializedCache != null) {
+            this.serializedCache.remove(key);
+        }
+    }
+
     /**
      * @deprecated since 4.0M1, use {@link com.xpn.xwiki.doc.XWikiDocument#getKey()}
      */
@@ -259,10 +303,23 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext context) throw
         }
 
         if (cachedoc != null) {
+            this.cacheHitCount.incrementAndGet();
+
             cachedoc.setFromCache(true);
 
             LOGGER.debug("Cache: got doc {} from cache", key);
+        } else if ((cachedoc = getSerializedDocument(key, context)) != null) {
+            this.promotionCount.incrementAndGet();
+
+            // Promote the document to the first level cache
+            getCache().set(key, cachedoc);
+
+            cachedoc.setFromCache(true);
+
+            LOGGER.debug("Cache: got doc {} from serialized cache", key);
         } else {
+            this.cacheMissCount.incrementAndGet();
+
             Boolean result = getPageExistCache().get(key);
 
             if (result == Boolean.FALSE) {
@@ -285,6 +342,9 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext context) throw
                     getPageExistCache().set(key, Boolean.FALSE);
                 } else {
                     getCache().set(key, cachedoc);
+                    if (this.serializedCache != null) {
+                        this.serializedCache.set(key, cachedoc);
+                    }
 
                     // Also update exist cache
                     getPageExistCache().set(key, Boolean.TRUE);
@@ -301,6 +361,28 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext context) throw
         return cachedoc;
     }
 
+    private XWikiDocument getSerializedDocument(String key, XWikiContext context)
+    {
+        if (this.serializedCache == null) {
+            return null;
+        }
+
+        XWikiDocument document = this.serializedCache.get(key, context.getWikiReference());
+
+        if (document != null) {
+            document.setNew(false);
+            document.setMostRecent(true);
+            document.setStore(this.store);
+            document.setContentDirty(false);
+            document.setMetaDataDirty(false);
+
+            // Same as when the document is loaded from the database
+            document.setOriginalDocument(document.clone());
+        }
+
+        return document;
+    }
+
     @Override
     public void deleteXWikiDoc(XWikiDocument doc, XWikiContext context) throws XWikiException
     {
@@ -310,6 +392,9 @@ public void deleteXWikiDoc(XWikiDocument doc, XWikiContext context) throws XWiki
         this.store.deleteXWikiDoc(doc, context);
 
         getCache().remove(key);
+        if (this.serializedCache != null) {
+            this.serializedCache.remove(key);
+        }
         getPageExistCache().remove(key);
         getPageExistCache().set(key, Boolean.FALSE);
     }
@@ -633,6 +718,40 @@ public boolean exists(XWikiDocument doc, XWikiContext context) throws XWikiExcep
         return result;
     }
 
+    @Override
+    public Set<DocumentReference> getExistingDocuments(Collection<DocumentReference> documentReferences,
+        XWikiContext context) throws XWikiException
+    {
+        Set<DocumentReference> existingDocuments = new HashSet<>();
+
+        Map<String, DocumentReference> missingReferences = new HashMap<>();
+        for (DocumentReference documentReference : documentReferences) {
+            String key = getKey(new XWikiDocument(documentReference, documentReference.getLocale()), context);
+
+            Boolean result = getPageExistCache().get(key);
+            if (result == null) {
+                missingReferences.put(key, documentReference);
+            } else if (result) {
+                existingDocuments.add(documentReference);
+            }
+        }
+
+        if (!missingReferences.isEmpty()) {
+            // Check all the documents which are not in the cache with a single request
+            Set<DocumentReference> existingMissingDocuments =
+                this.store.getExistingDocuments(missingReferences.values(), context);
+            for (Map.Entry<String, DocumentReference> entry : missingReferences.entrySet()) {
+                boolean result = existingMissingDocuments.contains(entry.getValue());
+                getPageExistCache().set(entry.getKey(), Boolean.valueOf(result));
+                if (result) {
+                    existingDocuments.add(entry.getValue());
+                }
+            }
+        }
+
+        return existingDocuments;
+    }
+
     public Cache<XWikiDocument> getCache()
     {
         return this.cache;
@@ -653,6 +772,42 @@ public void setPageExistCache(Cache<Boolean> pageExistCache)
         this.pageExistCache = pageExistCache;
     }
 
+    /**
+     * @return the second level cache keeping serialized documents, null if disabled
+     * @since 10.0RC1
+     */
+    public SerializedDocumentCache getSerializedCache()
+    {
+        return this.serializedCache;
+    }
+
+    /**
+     * @return the number of documents found in the first level cache
+     * @since 10.0RC1
+     */
+    public long getCacheHitCount()
+    {
+        return this.cacheHitCount.get();
+    }
+
+    /**
+     * @return the number of documents which were not found in any cache level
+     * @since 10.0RC1
+     */
+    public long getCacheMissCount()
+    {
+        return this.cacheMissCount.get();
+    }
+
+    /**
+     * @return the number of documents found in the serialized cache and promoted to the first level cache
+     * @since 10.0RC1
+     */
+    public long getPromotionCount()
+    {
+        return this.promotionCount.get();
+    }
+
     @Override
     public List<String> getCustomMappingPropertyList(BaseClass bclass)
     {
@@ -94,6 +94,7 @@
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.BaseProperty;
 import com.xpn.xwiki.objects.BaseStringProperty;
+import com.xpn.xwiki.objects.DBStringListProperty;
 import com.xpn.xwiki.objects.LargeStringProperty;
 import com.xpn.xwiki.objects.ListProperty;
 import com.xpn.xwiki.objects.PropertyInterface;
@@ -116,6 +117,22 @@
 @Singleton
 public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWikiStoreInterface
 {
+    /**
+     * The key of the {@link Collection} of document references (with locale) in the context whose links should not be
+     * saved along with the document because the caller takes care of it later (see
+     * {@link #saveLinks(XWikiDocument, XWikiContext, boolean)}).
+     *
+     * @since 10.0RC1
+     */
+    public static final String DEFERRED_LINKS_CONTEXT_KEY = "store.deferredLinks";
+
+    /**
+     * The maximum number of documents checked by a single query in
+     * {@link #getExistingDocuments(Collection, XWikiContext)}, since some databases limit the number of values in a
+     * {@code in} clause.
+     */
+    private static final int EXISTS_BATCH_SIZE = 500;
+
     @Inject
     private Logger logger;
 
@@ -501,6 +518,82 @@ public boolean exists(XWikiDocument doc, XWikiContext inputxcontext) throws XWik
         }
     }
 
+    @Override
+    public Set<DocumentReference> getExistingDocuments(Collection<DocumentReference> documentReferences,
+        XWikiContext inputxcontext) throws XWikiException
+    {
+        XWikiContext context = getXWikiContext(inputxcontext);
+
+        Set<DocumentReference> existingDocuments = new HashSet<>();
+
+        Map<String, List<DocumentReference>> referencesByFullName = new HashMap<>();
+        for (DocumentReference documentReference : documentReferences) {
+            XWikiDocument doc = new XWikiDocument(documentReference, documentReference.getLocale());
+            if (doc.getLocale().equals(Locale.ROOT)) {
+                referencesByFullName.computeIfAbsent(doc.getFullName(), k -> new ArrayList<>())
+                    .add(documentReference);
+            } else if (exists(doc, context)) {
+                // Translations are rarely checked, no need to batch them
+                existingDocuments.add(documentReference);
+            }
+        }
+
+        if (referencesByFullName.isEmpty()) {
+            return existingDocuments;
+        }
+
+        boolean bTransaction = true;
+        MonitorPlugin monitor = Util.getMonitorPlugin(context);
+        try {
+            checkHibernate(context);
+
+            // Start monitoring timer
+            if (monitor != null) {
+                monitor.startTimer(HINT);
+            }
+
+            bTransaction = bTransaction && beginTransaction(null, context);
+            Session session = getSession(context);
+
+            String sql = "select distinct doc.fullName from XWikiDocument as doc where doc.fullName in (:fullNames)";
+            if (monitor != null) {
+                monitor.setTimerDesc(HINT, sql);
+            }
+
+            List<String> fullNames = new ArrayList<>(referencesByFullName.keySet());
+            for (int i = 0; i < fullNames.size(); i += EXISTS_BATCH_SIZE) {
+                Query query = session.createQuery(sql);
+                query.setParameterList("fullNames",
+                    fullNames.subList(i, Math.min(i + EXISTS_BATCH_SIZE, fullNames.size())));
+                for (Object fullName : query.list()) {
+                    // The database might be case insensitive
+                    List<DocumentReference> references = referencesByFullName.get(fullName);
+                    if (references != null) {
+                        existingDocuments.addAll(references);
+                    }
+                }
+            }
+
+            return existingDocuments;
+        } catch (Exception e) {
+            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
+                XWikiException.ERROR_XWIKI_STORE_HIBERNATE_CHECK_EXISTS_DOC,
+                "Exception while checking the existence of documents", e);
+        } finally {
+            // End monitoring timer
+            if (monitor != null) {
+                monitor.endTimer(HINT);
+            }
+
+            try {
+                if (bTransaction) {
+                    endTransaction(context, false);
+                }
+            } catch (Exception e) {
+            }
+        }
+    }
+
     @Override
     public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean bTransaction) throws XWikiException
     {
@@ -654,7 +747,7 @@ public void saveXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext, boolean
                 }
             }
 
-            if (context.getWiki().hasBacklinks(context)) {
+            if (context.getWiki().hasBacklinks(context) && !isLinksSavingDeferred(doc, context)) {
                 try {
                     saveLinks(doc, context, true);
                 } catch (Exception e) {
@@ -929,6 +1022,9 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
                 DocumentReference groupsDocumentReference = new DocumentReference(context.getWikiId(),
                     localGroupEntityReference.getParent().getName(), localGroupEntityReference.getName());
 
+                boolean batchLoading = isBatchObjectLoadingEnabled(context);
+                List<BaseObject> batchedObjects = new ArrayList<>();
+
                 boolean hasGroups = false;
                 while (it.hasNext()) {
                     BaseObject object = it.next();
@@ -959,7 +1055,9 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
                         object = newobject;
                     }
 
-                    if (classReference.equals(groupsDocumentReference)) {
+                    if (batchLoading) {
+                        batchedObjects.add(object);
+                    } else if (classReference.equals(groupsDocumentReference)) {
                         // Groups objects are handled differently.
                         hasGroups = true;
                     } else {
@@ -968,6 +1066,10 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext inputxcontext)
                     doc.setXObject(object.getNumber(), object);
                 }
 
+                if (!batchedObjects.isEmpty()) {
+                    loadXWikiObjectsProperties(batchedObjects, doc, session, context);
+                }
+
                 // AFAICT this was added as an emergency patch because loading of objects has proven
                 // too slow and the objects which cause the most overhead are the XWikiGroups objects
                 // as each group object (each group member) would otherwise cost 2 database queries.
@@ -1371,53 +1473,7 @@ private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument d
                         continue;
                     }
                     String classType = (String) result[1];
-                    BaseProperty property = null;
-
-                    try {
-                        property = (BaseProperty) Class.forName(classType).newInstance();
-                        property.setObject(object);
-                        property.setName(name);
-                        loadXWikiProperty(property, context, false);
-                    } catch (Exception e) {
-                        // WORKAROUND IN CASE OF MIXMATCH BETWEEN STRING AND LARGESTRING
-                        try {
-                            if (property instanceof StringProperty) {
-                                LargeStringProperty property2 = new LargeStringProperty();
-                                property2.setObject(object);
-                                property2.setName(name);
-                                loadXWikiProperty(property2, context, false);
-                                property.setValue(property2.getValue());
-
-                                if (bclass != null) {
-                                    if (bclass.get(name) instanceof TextAreaClass) {
-                                        property = property2;
-                                    }
-                                }
-
-                            } else if (property instanceof LargeStringProperty) {
-                                StringProperty property2 = new StringProperty();
-                                property2.setObject(object);
-                                property2.setName(name);
-                                loadXWikiProperty(property2, context, false);
-                                property.setValue(property2.getValue());
-
-                                if (bclass != null) {
-                                    if (bclass.get(name) instanceof StringClass) {
-                                        property = property2;
-                                    }
-                                }
-                            } else {
-                                throw e;
-                            }
-                        } catch (Throwable e2) {
-                            Object[] args =
-                                { object.getName(), object.getClass(), Integer.valueOf(object.getNumber() + ""), name };
-                            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
-                                XWikiException.ERROR_XWIKI_STORE_HIBERNATE_LOADING_OBJECT,
-                                "Exception while loading object '{0}' of class '{1}', number '{2}' and property '{3}'",
-                                e, args);
-                        }
-                    }
+                    BaseProperty property = loadXWikiProperty(object, bclass, name, classType, context);
 
                     object.addField(name, property);
                 }
@@ -1443,6 +1499,187 @@ private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument d
 
     }
 
+    /**
+     * @return true if the properties of the objects of a document should be loaded with a constant number of queries
+     *         instead of a couple of queries per object and property
+     */
+    private boolean isBatchObjectLoadingEnabled(XWikiContext context)
+    {
+        return context.getWiki().ParamAsLong("xwiki.store.hibernate.batchobjectloading", 1) == 1;
+    }
+
+    /**
+     * Load the properties of all the passed objects of a document with one query listing the properties and one query
+     * per property type found in that list, instead of two queries per property. XWikiGroups objects, which used to
+     * have their own single query shortcut, are simply a case of this loading.
+     * <p>
+     * Objects of classes with a custom mapping and properties which cannot be found in the table of their declared
+     * type are loaded one by one, like before.
+     *
+     * @param objects the objects to load the properties of
+     * @param doc the document holding the objects
+     * @param session the current Hibernate session
+     * @param context the XWiki context
+     * @throws XWikiException when failing to load the properties
+     */
+    protected void loadXWikiObjectsProperties(List<BaseObject> objects, XWikiDocument doc, Session session,
+        XWikiContext context) throws XWikiException
+    {
+        Map<Long, BaseObject> objectsById = new HashMap<>();
+        for (BaseObject object : objects) {
+            BaseClass bclass = getObjectXClass(object, doc, context);
+            if (bclass != null && bclass.hasCustomMapping() && context.getWiki().hasCustomMappings()) {
+                loadXWikiCollectionInternal(object, doc, context, false, true);
+            } else {
+                objectsById.put(object.getId(), object);
+            }
+        }
+
+        if (objectsById.isEmpty()) {
+            return;
+        }
+
+        Query query = session.createQuery("select prop.id.id, prop.name, prop.classType from BaseProperty as prop, "
+            + "BaseObject as bobject where bobject.name = :name and bobject.id = prop.id.id");
+        query.setText("name", doc.getFullName());
+        @SuppressWarnings("unchecked")
+        List<Object[]> descriptors = query.list();
+
+        Set<String> classTypes = new LinkedHashSet<>();
+        for (Object[] descriptor : descriptors) {
+            if (objectsById.containsKey(descriptor[0])) {
+                classTypes.add((String) descriptor[2]);
+            }
+        }
+
+        // Load the values of each property type at once
+        Map<Long, Map<String, BaseProperty>> loadedProperties = new HashMap<>();
+        for (String classType : classTypes) {
+            if (session.getSessionFactory().getClassMetadata(classType) == null) {
+                // Not a mapped property type, let the fallback below deal with it
+                continue;
+            }
+
+            StringBuilder statement = new StringBuilder("select prop from ");
+            statement.append(classType);
+            statement.append(" as prop");
+            if (DBStringListProperty.class.getName().equals(classType)) {
+                // Avoid loading the list items of each property with a dedicated query
+                statement.append(" left join fetch prop.list");
+            }
+            statement.append(", BaseObject as bobject where bobject.name = :name and bobject.id = prop.id.id"
+                + " and prop.classType = :classType");
+
+            Query propertiesQuery = session.createQuery(statement.toString());
+            propertiesQuery.setText("name", doc.getFullName());
+            propertiesQuery.setText("classType", classType);
+            for (Object result : propertiesQuery.list()) {
+                BaseProperty property = (BaseProperty) result;
+                Map<String, BaseProperty> objectProperties = loadedProperties.get(property.getId());
+                if (objectProperties == null) {
+                    objectProperties = new HashMap<>();
+                    loadedProperties.put(property.getId(), objectProperties);
+                }
+                objectProperties.put(property.getName(), property);
+            }
+        }
+
+        // Assemble the objects, in the same order as the one by one loading
+        for (Object[] descriptor : descriptors) {
+            BaseObject object = objectsById.get(descriptor[0]);
+            if (object == null) {
+                continue;
+            }
+
+            String name = (String) descriptor[1];
+            Map<String, BaseProperty> objectProperties = loadedProperties.get(object.getId());
+            BaseProperty property = objectProperties != null ? objectProperties.get(name) : null;
+            if (property != null) {
+                property.setObject(object);
+                // In Oracle, empty string are converted to NULL. Since an undefined property is not found at all, it is
+                // safe to assume that a retrieved NULL value should actually be an empty string.
+                if (property instanceof BaseStringProperty && ((BaseStringProperty) property).getValue() == null) {
+                    ((BaseStringProperty) property).setValue("");
+                }
+                property.setValueDirty(false);
+            } else {
+                property = loadXWikiProperty(object, getObjectXClass(object, doc, context), name,
+                    (String) descriptor[2], context);
+            }
+
+            object.addField(name, property);
+        }
+    }
+
+    private BaseClass getObjectXClass(BaseObject object, XWikiDocument doc, XWikiContext context)
+    {
+        // The class of an object stored in the class document itself has to be taken from the document otherwise we
+        // would go in an endless loop
+        if (object.getXClassReference().equals(doc.getDocumentReference())) {
+            return doc.getXClass();
+        }
+
+        return object.getXClass(context);
+    }
+
+    /**
+     * Load a property of the passed object, taking care of a possible mismatch between the declared property type and
+     * the table actually holding the value.
+     */
+    private BaseProperty loadXWikiProperty(BaseCollection object, BaseClass bclass, String name, String classType,
+        XWikiContext context) throws XWikiException
+    {
+        BaseProperty property = null;
+
+        try {
+            property = (BaseProperty) Class.forName(classType).newInstance();
+            property.setObject(object);
+            property.setName(name);
+            loadXWikiProperty(property, context, false);
+        } catch (Exception e) {
+            // WORKAROUND IN CASE OF MIXMATCH BETWEEN STRING AND LARGESTRING
+            try {
+                if (property instanceof StringProperty) {
+                    LargeStringProperty property2 = new LargeStringProperty();
+                    property2.setObject(object);
+                    property2.setName(name);
+                    loadXWikiProperty(property2, context, false);
+                    property.setValue(property2.getValue());
+
+                    if (bclass != null) {
+                        if (bclass.get(name) instanceof TextAreaClass) {
+                            property = property2;
+                        }
+                    }
+
+                } else if (property instanceof LargeStringProperty) {
+                    StringProperty property2 = new StringProperty();
+                    property2.setObject(object);
+                    property2.setName(name);
+                    loadXWikiProperty(property2, context, false);
+                    property.setValue(property2.getValue());
+
+                    if (bclass != null) {
+                        if (bclass.get(name) instanceof StringClass) {
+                            property = property2;
+                        }
+                    }
+                } else {
+                    throw e;
+                }
+            } catch (Throwable e2) {
+                Object[] args =
+                    { object.getName(), object.getClass(), Integer.valueOf(object.getNumber() + ""), name };
+                throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
+                    XWikiException.ERROR_XWIKI_STORE_HIBERNATE_LOADING_OBJECT,
+                    "Exception while loading object '{0}' of class '{1}', number '{2}' and property '{3}'",
+                    e, args);
+            }
+        }
+
+        return property;
+    }
+
     /**
      * @deprecated This is internal to XWikiHibernateStore and may be removed in the future.
      */
@@ -2115,6 +2352,13 @@ public void saveLinks(XWikiDocument doc, XWikiContext inputxcontext, boolean bTr
         }
     }
 
+    private boolean isLinksSavingDeferred(XWikiDocument doc, XWikiContext context)
+    {
+        Collection<?> deferredLinks = (Collection<?>) context.get(DEFERRED_LINKS_CONTEXT_KEY);
+
+        return deferredLinks != null && deferredLinks.contains(doc.getDocumentReferenceWithLocale());
+    }
+
     @Override
     public void deleteLinks(long docId, XWikiContext inputxcontext, boolean bTransaction) throws XWikiException
     {
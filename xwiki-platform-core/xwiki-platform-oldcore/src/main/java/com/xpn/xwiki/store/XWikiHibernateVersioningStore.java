@@ -24,6 +24,7 @@
 import java.util.Iterator;
 import java.util.List;
 
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
@@ -33,7 +34,12 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.suigeneris.jrcs.rcs.Version;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.InitializationException;
 
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
@@ -57,6 +63,16 @@ public class XWikiHibernateVersioningStore extends XWikiHibernateBaseStore imple
     /** Logger. */
     private static final Logger LOGGER = LoggerFactory.getLogger(XWikiHibernateVersioningStore.class);
 
+    /** Used to create the cache of document versions. */
+    @Inject
+    private CacheManager cacheManager;
+
+    /**
+     * The document versions restored from the archives, to avoid applying the same patches again and again when
+     * browsing the history. Null when disabled or when the store is not a component.
+     */
+    private Cache<XWikiDocument> versionCache;
+
     /**
      * This allows to initialize our storage engine. The hibernate config file path is taken from xwiki.cfg or directly
      * in the WEB-INF directory.
@@ -101,6 +117,23 @@ public XWikiHibernateVersioningStore()
     {
     }
 
+    @Override
+    public void initialize() throws InitializationException
+    {
+        super.initialize();
+
+        XWikiContext context = getXWikiContext(null);
+        int capacity = (int) context.getWiki().ParamAsLong("xwiki.store.versioncache.capacity", 100);
+        if (capacity > 0) {
+            try {
+                this.versionCache =
+                    this.cacheManager.createNewCache(new LRUCacheConfiguration("xwiki.store.versioncache", capacity));
+            } catch (CacheException e) {
+                throw new InitializationException("Failed to initialize the document version cache", e);
+            }
+        }
+    }
+
     @Override
     public Version[] getXWikiDocVersions(XWikiDocument doc, XWikiContext context) throws XWikiException
     {
@@ -200,7 +233,8 @@ public XWikiDocument loadXWikiDoc(XWikiDocument basedoc, String sversion, XWikiC
         XWikiDocumentArchive archive = getXWikiDocumentArchive(basedoc, context);
         Version version = new Version(sversion);
 
-        XWikiDocument doc = archive.loadDocument(version, context);
+        XWikiDocument doc = loadDocument(archive, version, basedoc.getDocumentReference().getWikiReference().getName(),
+            context);
         if (doc == null) {
             Object[] args = { basedoc.getDocumentReferenceWithLocale(), version.toString() };
             throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
@@ -218,6 +252,59 @@ public XWikiDocument loadXWikiDoc(XWikiDocument basedoc, String sversion, XWikiC
         return doc;
     }
 
+    /**
+     * Restore a version from an archive, using the version cache when enabled.
+     *
+     * @param archive the archive of the document
+     * @param version the version to restore
+     * @param wiki the wiki of the document
+     * @param context the XWiki context
+     * @return the restored version, null if the version is not found
+     * @throws XWikiException if any error
+     */
+    private XWikiDocument loadDocument(XWikiDocumentArchive archive, Version version, String wiki,
+        XWikiContext context)
+        throws XWikiException
+    {
+        if (this.versionCache == null || archive.getNode(version) == null) {
+            return archive.loadDocument(version, context);
+        }
+
+        String key = getVersionCacheKey(archive, version, wiki);
+        XWikiDocument doc = this.versionCache.get(key);
+        if (doc == null) {
+            doc = archive.loadDocument(version, context);
+            this.versionCache.set(key, doc);
+        }
+
+        // The caller is free to modify the returned document
+        return doc.clone();
+    }
+
+    /**
+     * The key identifies the state of the history through its latest node so that saving, resetting or deleting the
+     * history does not require to invalidate anything.
+     *
+     * @param archive the archive of the document
+     * @param version the version to restore
+     * @param wiki the wiki of the document
+     * @return the key of the version in the version cache
+     */
+    private String getVersionCacheKey(XWikiDocumentArchive archive, Version version, String wiki)
+    {
+        XWikiRCSNodeInfo latestNode = archive.getLatestNode();
+
+        StringBuilder key = new StringBuilder();
+        key.append(wiki).append(':');
+        key.append(archive.getId()).append(':');
+        key.append(archive.getNodes().size()).append(':');
+        key.append(latestNode.getVersion()).append(':');
+        key.append(latestNode.getDate() != null ? latestNode.getDate().getTime() : 0).append(':');
+        key.append(version);
+
+        return key.toString();
+    }
+
     @Override
     public void resetRCSArchive(final XWikiDocument doc, boolean bTransaction, final XWikiContext inputxcontext)
         throws XWikiException
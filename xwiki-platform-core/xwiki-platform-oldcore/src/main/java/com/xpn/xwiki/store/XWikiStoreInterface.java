@@ -19,11 +19,15 @@
  */
 package com.xpn.xwiki.store;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.query.QueryManager;
+import org.xwiki.stability.Unstable;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
@@ -500,6 +504,30 @@ <T> List<T> search(String sql, int nb, int start, Object[][] whereParams, List<?
 
     boolean exists(XWikiDocument doc, XWikiContext context) throws XWikiException;
 
+    /**
+     * Check the existence of several documents of the current wiki at once, which is faster than calling
+     * {@link #exists(XWikiDocument, XWikiContext)} for each of them.
+     *
+     * @param documentReferences the references of the documents to check, located in the current wiki
+     * @param context the XWiki context
+     * @return the references of the passed documents which exist
+     * @throws XWikiException when failing to check the existence of the documents
+     * @since 10.0RC1
+     */
+    @Unstable
+    default Set<DocumentReference> getExistingDocuments(Collection<DocumentReference> documentReferences,
+        XWikiContext context) throws XWikiException
+    {
+        Set<DocumentReference> existingDocuments = new HashSet<>();
+        for (DocumentReference documentReference : documentReferences) {
+            if (exists(new XWikiDocument(documentReference, documentReference.getLocale()), context)) {
+                existingDocuments.add(documentReference);
+            }
+        }
+
+        return existingDocuments;
+    }
+
     boolean isCustomMappingValid(BaseClass bclass, String custommapping1, XWikiContext context) throws XWikiException;
 
     boolean injectCustomMapping(BaseClass doc1class, XWikiContext xWikiContext) throws XWikiException;
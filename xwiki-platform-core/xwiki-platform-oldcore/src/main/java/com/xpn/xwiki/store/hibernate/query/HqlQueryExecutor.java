@@ -19,6 +19,7 @@
  */
 package com.xpn.xwiki.store.hibernate.query;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -26,6 +27,11 @@
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -34,10 +40,17 @@
 
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.engine.NamedQueryDefinition;
 import org.hibernate.engine.NamedSQLQueryDefinition;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
@@ -57,7 +70,9 @@
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.internal.store.hibernate.HibernateStore;
 import com.xpn.xwiki.internal.store.hibernate.query.HqlQueryUtils;
+import com.xpn.xwiki.store.DatabaseProduct;
 import com.xpn.xwiki.store.XWikiHibernateBaseStore.HibernateCallback;
 import com.xpn.xwiki.store.XWikiHibernateStore;
 import com.xpn.xwiki.store.hibernate.HibernateSessionFactory;
@@ -81,6 +96,16 @@ public class HqlQueryExecutor implements QueryExecutor, Initializable
 
     private static final String ESCAPE_LIKE_PARAMETERS_FILTER = "escapeLikeParameters";
 
+    private static final String SAFE_STATEMENTS_CACHE_ID = "query.hql.safeStatements";
+
+    private static final int SAFE_STATEMENTS_CACHE_CAPACITY = 1000;
+
+    /**
+     * The number of rows fetched at once when streaming the results, also the number of rows after which the session
+     * is cleared.
+     */
+    private static final int STREAM_FETCH_SIZE = 100;
+
     /**
      * Session factory needed for register named queries mapping.
      */
@@ -103,14 +128,32 @@ public class HqlQueryExecutor implements QueryExecutor, Initializable
     @Named("context")
     private Provider<ComponentManager> componentManagerProvider;
 
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private HibernateStore hibernateStore;
+
     private volatile Set<String> allowedNamedQueries;
 
+    /**
+     * The result of the (costly to parse) safety check of the statements executed without programming right.
+     */
+    private Cache<Boolean> safeStatements;
+
     @Override
     public void initialize() throws InitializationException
     {
         Configuration configuration = this.sessionFactory.getConfiguration();
 
         configuration.addInputStream(Util.getResourceAsStream(MAPPING_PATH));
+
+        try {
+            this.safeStatements = this.cacheManager.createNewCache(
+                new LRUCacheConfiguration(SAFE_STATEMENTS_CACHE_ID, SAFE_STATEMENTS_CACHE_CAPACITY));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the safe HQL statements cache", e);
+        }
     }
 
     private Set<String> getAllowedNamedQueries()
@@ -145,6 +188,18 @@ protected static boolean isSafeSelect(String statementString)
         return HqlQueryUtils.isShortFormStatement(statementString) || HqlQueryUtils.isSafe(statementString);
     }
 
+    private boolean isSafe(String statement)
+    {
+        Boolean safe = this.safeStatements.get(statement);
+
+        if (safe == null) {
+            safe = isSafeSelect(statement);
+            this.safeStatements.set(statement, safe);
+        }
+
+        return safe;
+    }
+
     protected void checkAllowed(final Query query) throws QueryException
     {
         if (query instanceof SecureQuery && ((SecureQuery) query).isCurrentAuthorChecked()) {
@@ -153,7 +208,7 @@ protected void checkAllowed(final Query query) throws QueryException
                     throw new QueryException("Named queries requires programming right", query, null);
                 }
 
-                if (!isSafeSelect(query.getStatement())) {
+                if (!isSafe(query.getStatement())) {
                     throw new QueryException("The query requires programming right", query, null);
                 }
             }
@@ -182,13 +237,7 @@ public List<T> doInHibernate(Session session)
                 {
                     org.hibernate.Query hquery = createHibernateQuery(session, query);
 
-                    List<T> results = hquery.list();
-                    if (query.getFilters() != null && !query.getFilters().isEmpty()) {
-                        for (QueryFilter filter : query.getFilters()) {
-                            results = filter.filterResults(results);
-                        }
-                    }
-                    return results;
+                    return filterResults(query, hquery.list());
                 }
             });
         } catch (XWikiException e) {
@@ -200,6 +249,144 @@ public List<T> doInHibernate(Session session)
         }
     }
 
+    @Override
+    public <T> Stream<T> stream(Query query) throws QueryException
+    {
+        // Make sure the query is allowed in the current context
+        checkAllowed(query);
+
+        // The results are read from a dedicated session which stays open until the stream is closed, whatever is
+        // done with the current session in the meantime
+        Session originalSession = this.hibernateStore.getCurrentSession();
+        Transaction originalTransaction = this.hibernateStore.getCurrentTransaction();
+        this.hibernateStore.setCurrentSession(null);
+        this.hibernateStore.setCurrentTransaction(null);
+
+        String oldDatabase = getContext().getWikiId();
+        Session session = null;
+        Transaction transaction = null;
+        try {
+            this.progress.startStep(query, "query.hql.progress.execute", "Execute HQL query [{}]", query);
+
+            if (query.getWiki() != null) {
+                getContext().setWikiId(query.getWiki());
+            }
+
+            this.hibernateStore.beginTransaction();
+            session = this.hibernateStore.getCurrentSession();
+            transaction = this.hibernateStore.getCurrentTransaction();
+
+            org.hibernate.Query hquery = createHibernateQuery(session, query);
+            hquery.setReadOnly(true);
+            hquery.setFetchSize(getStreamFetchSize());
+
+            return stream(query, session, transaction, hquery.scroll(ScrollMode.FORWARD_ONLY));
+        } catch (Exception e) {
+            close(session, transaction, null);
+
+            throw new QueryException("Exception while executing query", query, e);
+        } finally {
+            getContext().setWikiId(oldDatabase);
+
+            this.hibernateStore.setCurrentSession(originalSession);
+            this.hibernateStore.setCurrentTransaction(originalTransaction);
+
+            this.progress.endStep(query);
+        }
+    }
+
+    private int getStreamFetchSize()
+    {
+        // MySQL loads all the rows in memory unless this special fetch size is used
+        return this.hibernateStore.getDatabaseProductName() == DatabaseProduct.MYSQL ? Integer.MIN_VALUE
+            : STREAM_FETCH_SIZE;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Stream<T> stream(Query query, Session session, Transaction transaction, ScrollableResults results)
+    {
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED)
+        {
+            private int count;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action)
+            {
+                while (results.next()) {
+                    Object[] row = results.get();
+
+                    // Don't keep all the loaded entities in the session
+                    if (++this.count % STREAM_FETCH_SIZE == 0) {
+                        session.clear();
+                    }
+
+                    // Same as Query#list(), which returns the value instead of an array when one column is selected
+                    List<Object> filteredRow = new ArrayList<>(1);
+                    filteredRow.add(row.length == 1 ? row[0] : row);
+                    filteredRow = filterStreamedResults(query, filteredRow);
+
+                    // The filters work row by row and may remove some of them
+                    if (!filteredRow.isEmpty()) {
+                        action.accept((T) filteredRow.get(0));
+
+                        return true;
+                    }
+                }
+
+                return false;
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> close(session, transaction, results));
+    }
+
+    private void close(Session session, Transaction transaction, ScrollableResults results)
+    {
+        try {
+            if (results != null) {
+                results.close();
+            }
+            if (transaction != null) {
+                // Nothing to commit
+                transaction.rollback();
+            }
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private <T> List<T> filterStreamedResults(Query query, List<T> results)
+    {
+        // The rows are filtered while the stream is consumed, after the current wiki has been restored
+        if (query.getWiki() == null) {
+            return filterResults(query, results);
+        }
+
+        String currentWiki = getContext().getWikiId();
+        try {
+            getContext().setWikiId(query.getWiki());
+
+            return filterResults(query, results);
+        } finally {
+            getContext().setWikiId(currentWiki);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> filterResults(Query query, List<T> results)
+    {
+        List<T> filteredResults = results;
+        if (query.getFilters() != null && !query.getFilters().isEmpty()) {
+            for (QueryFilter filter : query.getFilters()) {
+                filteredResults = filter.filterResults(filteredResults);
+            }
+        }
+
+        return filteredResults;
+    }
+
     protected org.hibernate.Query createHibernateQuery(Session session, Query query)
     {
         org.hibernate.Query hquery;
@@ -32,19 +32,13 @@
 import org.xwiki.bridge.event.DocumentCreatedEvent;
 import org.xwiki.bridge.event.DocumentDeletedEvent;
 import org.xwiki.bridge.event.DocumentUpdatedEvent;
-import org.xwiki.cache.Cache;
-import org.xwiki.cache.CacheException;
-import org.xwiki.cache.CacheManager;
-import org.xwiki.cache.config.CacheConfiguration;
-import org.xwiki.cache.eviction.EntryEvictionConfiguration;
-import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
 import org.xwiki.observation.EventListener;
-import org.xwiki.observation.ObservationManager;
 import org.xwiki.observation.event.Event;
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryException;
@@ -54,6 +48,7 @@
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.user.GroupMembershipIndex;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.store.XWikiStoreInterface;
 import com.xpn.xwiki.user.api.XWikiGroupService;
@@ -134,8 +129,6 @@ public class XWikiGroupServiceImpl implements XWikiGroupService, EventListener
         }
     };
 
-    protected Cache<Collection<DocumentReference>> memberGroupsCache;
-
     /**
      * Used to convert a string into a proper Document Reference.
      */
@@ -148,51 +141,43 @@ public class XWikiGroupServiceImpl implements XWikiGroupService, EventListener
     private EntityReferenceSerializer<String> localWikiEntityReferenceSerializer = Utils.getComponent(
         EntityReferenceSerializer.TYPE_STRING, "local");
 
+    /**
+     * Used to find the groups of a member without querying the database.
+     */
+    private GroupMembershipIndex groupMembershipIndex;
+
     @Override
     public synchronized void init(XWiki xwiki, XWikiContext context) throws XWikiException
     {
-        initCache(context);
-
-        Utils.getComponent(ObservationManager.class).addListener(this);
+        // The group memberships are maintained by GroupMembershipIndex which listens to the document events itself
     }
 
     @Override
     public synchronized void initCache(XWikiContext context) throws XWikiException
     {
-        int iCapacity = 100;
-        try {
-            String capacity = context.getWiki().Param("xwiki.authentication.group.cache.capacity");
-            if (capacity != null) {
-                iCapacity = Integer.parseInt(capacity);
-            }
-        } catch (Exception e) {
-        }
-        initCache(iCapacity, context);
+        flushCache();
     }
 
     @Override
     public synchronized void initCache(int iCapacity, XWikiContext context) throws XWikiException
     {
-        try {
-            CacheConfiguration configuration = new CacheConfiguration();
-            configuration.setConfigurationId("xwiki.groupservice.usergroups");
-            LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
-            lru.setMaxEntries(iCapacity);
-            configuration.put(EntryEvictionConfiguration.CONFIGURATIONID, lru);
-
-            this.memberGroupsCache = Utils.getComponent(CacheManager.class).createNewCache(configuration);
-        } catch (CacheException e) {
-            throw new XWikiException(XWikiException.MODULE_XWIKI_CACHE, XWikiException.ERROR_CACHE_INITIALIZING,
-                "Failed to initialize cache", e);
-        }
+        // The groups are indexed by GroupMembershipIndex which does not have any capacity
+        flushCache();
     }
 
     @Override
     public void flushCache()
     {
-        if (this.memberGroupsCache != null) {
-            this.memberGroupsCache.removeAll();
+        getGroupMembershipIndex().reset();
+    }
+
+    private GroupMembershipIndex getGroupMembershipIndex()
+    {
+        if (this.groupMembershipIndex == null) {
+            this.groupMembershipIndex = Utils.getComponent(GroupMembershipIndex.class);
         }
+
+        return this.groupMembershipIndex;
     }
 
     /**
@@ -394,13 +379,7 @@ public List<Event> getEvents()
     @Override
     public void onEvent(Event event, Object source, Object data)
     {
-        XWikiDocument document = (XWikiDocument) source;
-        XWikiDocument oldDocument = document.getOriginalDocument();
-
-        // if there is any chance some group changed, flush the group cache
-        if (document.getXObject(GROUPCLASS_REFERENCE) != null || oldDocument.getXObject(GROUPCLASS_REFERENCE) != null) {
-            flushCache();
-        }
+        // GroupMembershipIndex already maintains the group memberships from the document events
     }
 
     @Override
@@ -715,72 +694,55 @@ public Collection<DocumentReference> getAllGroupsReferencesForMember(DocumentRef
 
         String prefixedFullName = this.entityReferenceSerializer.serialize(memberReference);
 
-        String key = context.getWikiId() + "/" + prefixedFullName;
-        synchronized (key) {
-            if (this.memberGroupsCache == null) {
-                initCache(context);
-            }
+        boolean sameWiki = memberReference.getWikiReference().getName().equals(context.getWikiId());
+        boolean guest = memberReference.getLastSpaceReference().getName().equals(DEFAULT_MEMBER_SPACE)
+            && memberReference.getName().equals(XWikiRightService.GUEST_USER);
 
-            // TODO: add cache support for customized limit/offset ?
-            boolean supportCache = limit <= 0 && offset <= 0;
+        try {
+            if (limit <= 0 && offset <= 0) {
+                // The guest user of any wiki is listed as a local member
+                DocumentReference indexedReference = guest && !sameWiki
+                    ? memberReference.setWikiReference(new WikiReference(context.getWikiId())) : memberReference;
 
-            if (supportCache) {
-                groupReferences = this.memberGroupsCache.get(key);
+                groupReferences = getGroupMembershipIndex().getGroups(indexedReference, context.getWikiId());
             }
 
             if (groupReferences == null) {
-                List<String> groupNames;
-                try {
-                    Query query;
-                    if (memberReference.getWikiReference().getName().equals(context.getWikiId())
-                        || (memberReference.getLastSpaceReference().getName().equals("XWiki") && memberReference
-                            .getName().equals(XWikiRightService.GUEST_USER))) {
-                        query =
-                            context
-                                .getWiki()
-                                .getStore()
-                                .getQueryManager()
-                                .getNamedQuery("listGroupsForUser")
-                                .bindValue("username", prefixedFullName)
-                                .bindValue("shortname",
-                                    this.localWikiEntityReferenceSerializer.serialize(memberReference))
-                                .bindValue("veryshortname", memberReference.getName());
-                    } else {
-                        query =
-                            context.getWiki().getStore().getQueryManager()
-                                .getNamedQuery("listGroupsForUserInOtherWiki")
-                                .bindValue("prefixedmembername", prefixedFullName);
-                    }
+                Query query;
+                if (sameWiki || guest) {
+                    query = context.getWiki().getStore().getQueryManager().getNamedQuery("listGroupsForUser")
+                        .bindValue("username", prefixedFullName)
+                        .bindValue("shortname", this.localWikiEntityReferenceSerializer.serialize(memberReference))
+                        .bindValue("veryshortname", memberReference.getName());
+                } else {
+                    query = context.getWiki().getStore().getQueryManager()
+                        .getNamedQuery("listGroupsForUserInOtherWiki")
+                        .bindValue("prefixedmembername", prefixedFullName);
+                }
 
-                    query.setOffset(offset);
-                    query.setLimit(limit);
+                query.setOffset(offset);
+                query.setLimit(limit);
 
-                    groupNames = query.execute();
-                } catch (QueryException ex) {
-                    throw new XWikiException(0, 0, ex.getMessage(), ex);
-                }
+                List<String> groupNames = query.execute();
 
                 groupReferences = new HashSet<DocumentReference>(groupNames.size());
                 for (String groupName : groupNames) {
                     groupReferences.add(this.currentMixedDocumentReferenceResolver.resolve(groupName));
                 }
+            }
+        } catch (QueryException ex) {
+            throw new XWikiException(0, 0, ex.getMessage(), ex);
+        }
 
-                // If the 'XWiki.XWikiAllGroup' is implicit, all users/groups except XWikiGuest and XWikiAllGroup
-                // itself are part of it.
-                if (isAllGroupImplicit(context)
-                    && memberReference.getWikiReference().getName().equals(context.getWikiId())
-                    && !memberReference.getName().equals(XWikiRightService.GUEST_USER)) {
-                    DocumentReference currentXWikiAllGroup =
-                        new DocumentReference(context.getWikiId(), "XWiki", XWikiRightService.ALLGROUP_GROUP);
-
-                    if (!currentXWikiAllGroup.equals(memberReference)) {
-                        groupReferences.add(currentXWikiAllGroup);
-                    }
-                }
+        // If the 'XWiki.XWikiAllGroup' is implicit, all users/groups except XWikiGuest and XWikiAllGroup
+        // itself are part of it.
+        if (isAllGroupImplicit(context) && sameWiki
+            && !memberReference.getName().equals(XWikiRightService.GUEST_USER)) {
+            DocumentReference currentXWikiAllGroup =
+                new DocumentReference(context.getWikiId(), DEFAULT_MEMBER_SPACE, XWikiRightService.ALLGROUP_GROUP);
 
-                if (supportCache) {
-                    this.memberGroupsCache.set(key, groupReferences);
-                }
+            if (!currentXWikiAllGroup.equals(memberReference)) {
+                groupReferences.add(currentXWikiAllGroup);
             }
         }
 
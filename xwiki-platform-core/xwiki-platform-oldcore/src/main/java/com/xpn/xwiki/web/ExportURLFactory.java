@@ -33,6 +33,8 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -100,6 +102,12 @@ public class ExportURLFactory extends XWikiServletURLFactory
 
     private FilesystemExportContext exportContext;
 
+    /**
+     * Used to write each resource and attachment file only once when the pages are rendered by several threads, without
+     * blocking the threads exporting other files.
+     */
+    private final ConcurrentMap<File, Object> fileLocks = new ConcurrentHashMap<>();
+
     /**
      * ExportURLFactory constructor.
      */
@@ -265,9 +273,8 @@ public URL createSkinURL(String fileName, String spaces, String name, String wik
 
             String filePath = filePathBuffer.toString();
 
-            if (!getFilesystemExportContext().hasExportedSkinFile(filePath)) {
-                getFilesystemExportContext().addExportedSkinFile(filePath);
-
+            // Several threads can render the pages of the same export so only one of them must export the file
+            if (getFilesystemExportContext().claimExportedSkinFile(filePath)) {
                 File file = new File(getFilesystemExportContext().getExportDir(), filePath);
                 if (!file.exists()) {
                     // Make sure the folder exists
@@ -394,25 +401,27 @@ public URL createResourceURL(String filename, boolean forceSkinAction, XWikiCont
     {
         try {
             File targetFile = new File(getFilesystemExportContext().getExportDir(), "resources/" + filename);
-            if (!targetFile.exists()) {
-                if (!targetFile.getParentFile().exists()) {
-                    targetFile.getParentFile().mkdirs();
-                }
+            synchronized (getFileLock(targetFile)) {
+                if (!targetFile.exists()) {
+                    if (!targetFile.getParentFile().exists()) {
+                        targetFile.getParentFile().mkdirs();
+                    }
 
-                // Step 1: Copy the resource
-                // If forceSkinAction is false then there's no velocity in the resource and we can just copy it simply.
-                // Otherwise we need to go through the Skin Action to perform the rendering.
-                if (forceSkinAction) {
-                    // Extract the first path as the wiki page
-                    int pos = filename.indexOf('/', 0);
-                    String page = filename.substring(0, pos);
-                    renderSkinFile("resource/" + filename, "resources", page, context.getDatabase(), targetFile,
-                        StringUtils.countMatches(filename, "/") + 1, context);
-                } else {
-                    FileOutputStream fos = new FileOutputStream(targetFile);
-                    InputStream source = context.getEngineContext().getResourceAsStream("/resources/" + filename);
-                    IOUtils.copy(source, fos);
-                    fos.close();
+                    // Step 1: Copy the resource
+                    // If forceSkinAction is false then there's no velocity in the resource and we can just copy it
+                    // simply. Otherwise we need to go through the Skin Action to perform the rendering.
+                    if (forceSkinAction) {
+                        // Extract the first path as the wiki page
+                        int pos = filename.indexOf('/', 0);
+                        String page = filename.substring(0, pos);
+                        renderSkinFile("resource/" + filename, "resources", page, context.getDatabase(), targetFile,
+                            StringUtils.countMatches(filename, "/") + 1, context);
+                    } else {
+                        FileOutputStream fos = new FileOutputStream(targetFile);
+                        InputStream source = context.getEngineContext().getResourceAsStream("/resources/" + filename);
+                        IOUtils.copy(source, fos);
+                        fos.close();
+                    }
                 }
             }
 
@@ -510,13 +519,15 @@ private URL createAttachmentURL(String filename, String spaces, String name, Str
         String path = "attachment/" + serializedReference;
 
         File file = new File(getFilesystemExportContext().getExportDir(), path);
-        if (!file.exists()) {
-            XWikiDocument doc = context.getWiki().getDocument(documentReference, context);
-            XWikiAttachment attachment = doc.getAttachment(filename);
-            file.getParentFile().mkdirs();
-            FileOutputStream fos = new FileOutputStream(file);
-            IOUtils.copy(attachment.getContentInputStream(context), fos);
-            fos.close();
+        synchronized (getFileLock(file)) {
+            if (!file.exists()) {
+                XWikiDocument doc = context.getWiki().getDocument(documentReference, context);
+                XWikiAttachment attachment = doc.getAttachment(filename);
+                file.getParentFile().mkdirs();
+                FileOutputStream fos = new FileOutputStream(file);
+                IOUtils.copy(attachment.getContentInputStream(context), fos);
+                fos.close();
+            }
         }
 
         StringBuilder newPath = new StringBuilder("file://");
@@ -531,6 +542,15 @@ private URL createAttachmentURL(String filename, String spaces, String name, Str
         return new URL(newPath.toString());
     }
 
+    /**
+     * @param file the exported file
+     * @return the lock to hold while checking if the file exists and writing it
+     */
+    private Object getFileLock(File file)
+    {
+        return this.fileLocks.computeIfAbsent(file, key -> new Object());
+    }
+
     @Override
     public URL createAttachmentURL(String filename, String spaces, String name, String action, String querystring,
         String xwikidb, XWikiContext context)
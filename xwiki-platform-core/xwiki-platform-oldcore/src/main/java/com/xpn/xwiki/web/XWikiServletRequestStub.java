@@ -101,7 +101,7 @@ public XWikiServletRequestStub(URL requestURL, Map<String, String[]> requestPara
     private Map<String, String[]> clone(Map<String, String[]> map)
     {
         Map<String, String[]> clone;
-        if (this.parameters != null) {
+        if (map != null) {
             clone = new LinkedHashMap<>(map.size());
             for (Map.Entry<String, String[]> entry : map.entrySet()) {
                 clone.put(entry.getKey(), entry.getValue().clone());
@@ -326,6 +326,39 @@ public void testVerifyDiffAndFullRevisionAlgorithm() throws Exception
         assertFalse(archive.getNode(new Version(6, 1)).isDiff());
     }
 
+    public void testSetArchiveStoresFullVersionsPeriodically() throws Exception
+    {
+        XWikiDocument doc = new XWikiDocument(new DocumentReference("Test", "Test", "Test"));
+        XWikiDocumentArchive archive = new XWikiDocumentArchive(doc.getId());
+        doc.setDocumentArchive(archive);
+        String author = "XWiki.some author";
+
+        for (int i = 1; i <= 12; i++) {
+            addRevisionToHistory(archive, doc, "content " + i + ".1", author, i + ".1");
+        }
+
+        // Only the latest version is full in the exported archive
+        XWikiDocumentArchive importedArchive = new XWikiDocumentArchive(doc.getId());
+        importedArchive.setArchive(archive.getArchive(context), context);
+
+        // No version requires applying more than 4 patches
+        assertFalse(importedArchive.getNode(new Version(12, 1)).isDiff());
+        for (int i = 8; i <= 11; i++) {
+            assertTrue(importedArchive.getNode(new Version(i, 1)).isDiff());
+        }
+        assertFalse(importedArchive.getNode(new Version(7, 1)).isDiff());
+        for (int i = 3; i <= 6; i++) {
+            assertTrue(importedArchive.getNode(new Version(i, 1)).isDiff());
+        }
+        assertFalse(importedArchive.getNode(new Version(2, 1)).isDiff());
+        assertTrue(importedArchive.getNode(new Version(1, 1)).isDiff());
+        assertEquals(new Version(2, 1), importedArchive.getNearestFullVersion(new Version(1, 1)));
+
+        for (int i = 1; i <= 12; i++) {
+            assertEquals("content " + i + ".1", importedArchive.loadDocument(new Version(i, 1), context).getContent());
+        }
+    }
+
     private void addRevisionToHistory(XWikiDocumentArchive archive, XWikiDocument document, String content,
         String author, String comment) throws XWikiException
     {
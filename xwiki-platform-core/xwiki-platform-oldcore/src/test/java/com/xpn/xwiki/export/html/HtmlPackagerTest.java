@@ -0,0 +1,150 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.export.html;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.inject.Provider;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.annotation.AllComponents;
+import org.xwiki.url.filesystem.FilesystemExportContext;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.plugin.XWikiPluginManager;
+import com.xpn.xwiki.test.MockitoOldcoreRule;
+import com.xpn.xwiki.web.XWikiRequest;
+import com.xpn.xwiki.web.XWikiServletResponseStub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link HtmlPackager}.
+ *
+ * @version $Id$
+ */
+@AllComponents
+public class HtmlPackagerTest
+{
+    @Rule
+    public MockitoOldcoreRule oldcore = new MockitoOldcoreRule();
+
+    @Test
+    public void exportRendersTheDocumentsConcurrentlyWithIsolatedContexts() throws Exception
+    {
+        XWikiContext xcontext = this.oldcore.getXWikiContext();
+        xcontext.setURL(new URL("http://www.xwiki.org/xwiki/bin/export/Space/Page"));
+        XWikiRequest request = mock(XWikiRequest.class);
+        xcontext.setRequest(request);
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        XWikiServletResponseStub response = new XWikiServletResponseStub();
+        response.setOutpuStream(zip);
+        xcontext.setResponse(response);
+
+        doReturn("/xwiki").when(this.oldcore.getSpyXWiki()).getWebAppPath(any(XWikiContext.class));
+        this.oldcore.getMockXWikiCfg().setProperty("xwiki.export.html.threads", "3");
+
+        XWikiPluginManager pluginManager = mock(XWikiPluginManager.class);
+        when(pluginManager.endParsing(anyString(), any(XWikiContext.class)))
+            .then(invocation -> invocation.getArgument(0));
+        doReturn(pluginManager).when(this.oldcore.getSpyXWiki()).getPluginManager();
+
+        HtmlPackager packager = new HtmlPackager();
+        for (int i = 1; i <= 3; ++i) {
+            DocumentReference reference = new DocumentReference("xwiki", "Space", "Page" + i);
+            this.oldcore.getSpyXWiki().saveDocument(new XWikiDocument(reference), xcontext);
+            packager.addPageReference(reference);
+        }
+
+        Execution execution = this.oldcore.getMocker().getInstance(Execution.class);
+        ExecutionContext exportExecutionContext = execution.getContext();
+
+        Set<ExecutionContext> executionContexts = ConcurrentHashMap.newKeySet();
+        Set<Object> exportContexts = ConcurrentHashMap.newKeySet();
+        CountDownLatch rendering = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            XWikiContext renderContext = invocation.getArgument(1);
+
+            // Make sure at least two documents are rendered at the same time
+            rendering.countDown();
+            assertTrue(rendering.await(10, TimeUnit.SECONDS));
+
+            assertNotSame(xcontext, renderContext);
+            assertNotSame(xcontext.getRequest(), renderContext.getRequest());
+            assertNotSame(xcontext.getResponse(), renderContext.getResponse());
+            assertEquals("view", renderContext.getAction());
+
+            ExecutionContext executionContext = execution.getContext();
+            assertNotSame(exportExecutionContext, executionContext);
+            assertSame(renderContext, executionContext.getProperty(XWikiContext.EXECUTIONCONTEXT_KEY));
+            executionContexts.add(executionContext);
+            exportContexts.add(executionContext.getProperty(FilesystemExportContext.EXECUTION_CONTEXT_KEY));
+
+            return "content of " + renderContext.getDoc().getDocumentReference().getName();
+        }).when(this.oldcore.getSpyXWiki()).evaluateTemplate(eq("view.vm"), any(XWikiContext.class));
+
+        packager.export(xcontext);
+
+        // Each document is rendered with its own Execution Context, sharing the state of the export
+        assertEquals(3, executionContexts.size());
+        Provider<FilesystemExportContext> exportContextProvider = this.oldcore.getMocker().getInstance(
+            new DefaultParameterizedType(null, Provider.class, FilesystemExportContext.class));
+        assertEquals(1, exportContexts.size());
+        assertSame(exportContextProvider.get(), exportContexts.iterator().next());
+
+        Map<String, String> entries = new HashMap<>();
+        try (ZipInputStream zipStream = new ZipInputStream(new ByteArrayInputStream(zip.toByteArray()))) {
+            for (ZipEntry entry = zipStream.getNextEntry(); entry != null; entry = zipStream.getNextEntry()) {
+                entries.put(entry.getName(), IOUtils.toString(zipStream, "UTF-8"));
+            }
+        }
+
+        for (int i = 1; i <= 3; ++i) {
+            assertEquals("content of Page" + i, entries.get("pages/xwiki/Space/Page" + i + ".html"));
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.cache.rendering;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.bridge.FragmentCacheBridge;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.DisposableCacheValue;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultFragmentCacheBridge}.
+ *
+ * @version $Id$
+ */
+public class DefaultFragmentCacheBridgeTest
+{
+    @Rule
+    public MockitoComponentMockingRule<FragmentCacheBridge> mocker =
+        new MockitoComponentMockingRule<>(DefaultFragmentCacheBridge.class);
+
+    private XWikiContext xcontext = new XWikiContext();
+
+    private Map<String, Object> cacheContent = new HashMap<>();
+
+    private EventListener listener;
+
+    private DocumentReference documentReference = new DocumentReference("wiki", "Space", "Page");
+
+    private DocumentReference classReference = new DocumentReference("wiki", "Space", "Class");
+
+    private AtomicInteger productions = new AtomicInteger();
+
+    @Before
+    public void before() throws Exception
+    {
+        this.xcontext.setWikiId("wiki");
+
+        Provider<XWikiContext> xcontextProvider = this.mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        when(xcontextProvider.get()).thenReturn(this.xcontext);
+
+        RenderingCacheConfiguration configuration = this.mocker.getInstance(RenderingCacheConfiguration.class);
+        when(configuration.getFragmentSize()).thenReturn(10);
+
+        EntityReferenceSerializer<String> serializer = this.mocker.getInstance(EntityReferenceSerializer.TYPE_STRING);
+        when(serializer.serialize(any())).then(invocation -> String.valueOf(invocation.getArgument(0)));
+
+        DocumentReferenceResolver<String> resolver =
+            this.mocker.getInstance(DocumentReferenceResolver.TYPE_STRING, "current");
+        when(resolver.resolve("Space.Class")).thenReturn(this.classReference);
+
+        // Simple cache backed by a map, disposing the removed values like the actual caches
+        Cache<Object> cache = mock(Cache.class);
+        when(cache.get(anyString())).then(invocation -> this.cacheContent.get(invocation.getArgument(0)));
+        doAnswer(invocation -> this.cacheContent.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(cache).set(anyString(), any());
+        doAnswer(invocation -> {
+            Object value = this.cacheContent.remove(invocation.getArgument(0));
+            if (value instanceof DisposableCacheValue) {
+                ((DisposableCacheValue) value).dispose();
+            }
+            return null;
+        }).when(cache).remove(anyString());
+
+        CacheManager cacheManager = this.mocker.getInstance(CacheManager.class);
+        when(cacheManager.<Object>createNewCache(any(CacheConfiguration.class))).thenReturn(cache);
+
+        this.mocker.getComponentUnderTest();
+
+        ObservationManager observationManager = this.mocker.getInstance(ObservationManager.class);
+        ArgumentCaptor<EventListener> listenerCaptor = ArgumentCaptor.forClass(EventListener.class);
+        verify(observationManager).addListener(listenerCaptor.capture());
+        this.listener = listenerCaptor.getValue();
+    }
+
+    private String getFragment(List<String> classes) throws Exception
+    {
+        return this.mocker.getComponentUnderTest().getFragment("key", 0, classes, () -> {
+            // Simulate the loading of a document while producing the fragment
+            RenderingDependencies.recordDocument(this.documentReference, this.xcontext);
+
+            return "fragment" + this.productions.incrementAndGet();
+        });
+    }
+
+    private XWikiDocument mockDocument(DocumentReference reference, Map<DocumentReference, List<BaseObject>> objects,
+        Map<DocumentReference, List<BaseObject>> previousObjects)
+    {
+        XWikiDocument previousDocument = mock(XWikiDocument.class);
+        when(previousDocument.getXObjects()).thenReturn(previousObjects);
+
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getDocumentReference()).thenReturn(reference);
+        when(document.getXObjects()).thenReturn(objects);
+        when(document.getOriginalDocument()).thenReturn(previousDocument);
+
+        return document;
+    }
+
+    @Test
+    public void getFragmentIsInvalidatedByReadDocument() throws Exception
+    {
+        List<String> classes = Collections.emptyList();
+
+        assertEquals("fragment1", getFragment(classes));
+        assertEquals("fragment1", getFragment(classes));
+
+        // Modifying a document which was not read does not change anything
+        this.listener.onEvent(new DocumentUpdatedEvent(), mockDocument(new DocumentReference("wiki", "Space", "Other"),
+            new TreeMap<>(), new TreeMap<>()), this.xcontext);
+        assertEquals("fragment1", getFragment(classes));
+
+        this.listener.onEvent(new DocumentUpdatedEvent(),
+            mockDocument(this.documentReference, new TreeMap<>(), new TreeMap<>()), this.xcontext);
+        assertEquals("fragment2", getFragment(classes));
+    }
+
+    @Test
+    public void getFragmentIsInvalidatedByModifiedObjectOfClass() throws Exception
+    {
+        List<String> classes = Arrays.asList("Space.Class");
+        DocumentReference otherDocumentReference = new DocumentReference("wiki", "Space", "Other");
+
+        assertEquals("fragment1", getFragment(classes));
+
+        // Saving a document with unmodified objects of the class does not change anything
+        BaseObject object = mock(BaseObject.class);
+        Map<DocumentReference, List<BaseObject>> objects = new TreeMap<>();
+        objects.put(this.classReference, Arrays.asList(object));
+        this.listener.onEvent(new DocumentUpdatedEvent(), mockDocument(otherDocumentReference, objects, objects),
+            this.xcontext);
+        assertEquals("fragment1", getFragment(classes));
+
+        this.listener.onEvent(new DocumentUpdatedEvent(),
+            mockDocument(otherDocumentReference, objects, new TreeMap<>()), this.xcontext);
+        assertEquals("fragment2", getFragment(classes));
+    }
+
+    @Test
+    public void getFragmentIsInvalidatedByModifiedRights() throws Exception
+    {
+        List<String> classes = Collections.emptyList();
+
+        assertEquals("fragment1", getFragment(classes));
+
+        Map<DocumentReference, List<BaseObject>> objects = new TreeMap<>();
+        objects.put(new DocumentReference("wiki", "XWiki", "XWikiGlobalRights"), Arrays.asList(mock(BaseObject.class)));
+        this.listener.onEvent(new DocumentUpdatedEvent(),
+            mockDocument(new DocumentReference("wiki", "XWiki", "XWikiPreferences"), objects, new TreeMap<>()),
+            this.xcontext);
+        assertEquals("fragment2", getFragment(classes));
+    }
+
+    @Test
+    public void getFragmentAddsDependenciesToEnclosingFragment() throws Exception
+    {
+        List<String> classes = Collections.emptyList();
+
+        // Cache the inner fragment first so that the enclosing fragment gets its dependencies from the cache
+        assertEquals("fragment1", getFragment(classes));
+
+        FragmentCacheBridge fragmentCache = this.mocker.getComponentUnderTest();
+        assertEquals("outer fragment1",
+            fragmentCache.getFragment("outer", 0, classes, () -> "outer " + getFragment(classes)));
+        assertEquals("outer fragment1",
+            fragmentCache.getFragment("outer", 0, classes, () -> "outer " + getFragment(classes)));
+
+        this.listener.onEvent(new DocumentUpdatedEvent(),
+            mockDocument(this.documentReference, new TreeMap<>(), new TreeMap<>()), this.xcontext);
+        assertEquals("outer fragment2",
+            fragmentCache.getFragment("outer", 0, classes, () -> "outer " + getFragment(classes)));
+    }
+
+    @Test
+    public void getFragmentWhenDocumentIsModifiedDuringProduction() throws Exception
+    {
+        FragmentCacheBridge fragmentCache = this.mocker.getComponentUnderTest();
+        List<String> classes = Collections.emptyList();
+
+        // Modifying an unrelated document while the fragment is produced does not prevent caching it
+        assertEquals("fragment1", fragmentCache.getFragment("key", 0, classes, () -> {
+            RenderingDependencies.recordDocument(this.documentReference, this.xcontext);
+            this.listener.onEvent(new DocumentUpdatedEvent(), mockDocument(
+                new DocumentReference("wiki", "Space", "Other"), new TreeMap<>(), new TreeMap<>()), this.xcontext);
+            return "fragment" + this.productions.incrementAndGet();
+        }));
+        assertEquals("fragment1", getFragment(classes));
+
+        this.listener.onEvent(new DocumentUpdatedEvent(),
+            mockDocument(this.documentReference, new TreeMap<>(), new TreeMap<>()), this.xcontext);
+
+        // Modifying a document read by the fragment while it is produced prevents caching it
+        assertEquals("fragment2", fragmentCache.getFragment("key", 0, classes, () -> {
+            RenderingDependencies.recordDocument(this.documentReference, this.xcontext);
+            this.listener.onEvent(new DocumentUpdatedEvent(),
+                mockDocument(this.documentReference, new TreeMap<>(), new TreeMap<>()), this.xcontext);
+            return "fragment" + this.productions.incrementAndGet();
+        }));
+        assertEquals("fragment3", getFragment(classes));
+    }
+}
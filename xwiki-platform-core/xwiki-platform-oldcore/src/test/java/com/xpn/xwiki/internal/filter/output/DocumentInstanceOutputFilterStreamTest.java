@@ -20,20 +20,28 @@
 package com.xpn.xwiki.internal.filter.output;
 
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.hibernate.Session;
 import org.junit.Assert;
 import org.junit.Test;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.filter.FilterException;
 import org.xwiki.filter.instance.output.DocumentInstanceOutputProperties;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.rendering.syntax.SyntaxType;
 import org.xwiki.test.annotation.AllComponents;
 
+import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiAttachment;
 import com.xpn.xwiki.doc.XWikiDocument;
@@ -42,6 +50,16 @@
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.objects.classes.NumberClass;
+import com.xpn.xwiki.store.XWikiHibernateStore;
+
+import static com.xpn.xwiki.test.mockito.OldcoreMatchers.anyXWikiContext;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Validate {@link DocumentInstanceOutputFilterStream}.
@@ -419,4 +437,101 @@ public void testDocumentwithobjectwithoutnumberandclass() throws FilterException
         Assert.assertEquals(1, documentObject.getFieldList().size());
         Assert.assertEquals("propvalue", documentObject.getStringValue("prop"));
     }
+
+    @Test
+    public void testImportUnchangedDocument() throws FilterException, XWikiException
+    {
+        DocumentInstanceOutputProperties outputProperties = new DocumentInstanceOutputProperties();
+
+        outputProperties.setVersionPreserved(false);
+        outputProperties.setPreviousDeleted(false);
+        outputProperties.setUnchangedSkipped(true);
+        outputProperties.setVerbose(false);
+
+        importFromXML("document1-2", outputProperties);
+        importFromXML("document1-2", outputProperties);
+
+        XWikiDocument document =
+            this.oldcore.getSpyXWiki().getDocument(new DocumentReference("wiki", "space", "page"),
+                this.oldcore.getXWikiContext());
+
+        // The second import did not create a new version
+        Assert.assertEquals("1.1", document.getVersion());
+    }
+
+    @Test
+    public void testImportDocumentsInBatchWithListenerUsingTheStore() throws Exception
+    {
+        // Simulate the sessions of the store
+        XWikiHibernateStore store = this.oldcore.getSpyXWiki().getHibernateStore();
+        AtomicReference<Session> currentSession = new AtomicReference<>();
+        List<Session> sessions = new ArrayList<>();
+        List<String> calls = new ArrayList<>();
+        when(store.getSession(anyXWikiContext())).then(invocation -> currentSession.get());
+        doAnswer(invocation -> {
+            currentSession.set(invocation.getArgument(0));
+            return null;
+        }).when(store).setSession(any(), anyXWikiContext());
+        when(store.beginTransaction(anyXWikiContext())).then(invocation -> {
+            if (currentSession.get() != null) {
+                return false;
+            }
+            Session session = mock(Session.class, "session" + sessions.size());
+            sessions.add(session);
+            currentSession.set(session);
+            return true;
+        });
+        doAnswer(invocation -> {
+            calls.add((invocation.<Boolean>getArgument(1) ? "commit " : "rollback ") + currentSession.get());
+            currentSession.set(null);
+            return null;
+        }).when(store).endTransaction(anyXWikiContext(), anyBoolean());
+
+        // A listener writing through the store, like the activity stream does
+        this.oldcore.getObservationManager().addListener(new EventListener()
+        {
+            @Override
+            public String getName()
+            {
+                return "test";
+            }
+
+            @Override
+            public List<Event> getEvents()
+            {
+                return Arrays.<Event>asList(new DocumentCreatedEvent(), new DocumentUpdatedEvent());
+            }
+
+            @Override
+            public void onEvent(Event event, Object source, Object data)
+            {
+                XWikiContext xcontext = (XWikiContext) data;
+                try {
+                    store.beginTransaction(xcontext);
+                    calls.add("event " + ((XWikiDocument) source).getDocumentReference().getName() + " in "
+                        + xcontext.getWikiId());
+                    store.endTransaction(xcontext, true);
+                } catch (XWikiException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        DocumentInstanceOutputProperties outputProperties = new DocumentInstanceOutputProperties();
+
+        outputProperties.setVersionPreserved(false);
+        outputProperties.setBatchSize(10);
+        outputProperties.setVerbose(false);
+
+        importFromXML("document1-2", outputProperties);
+
+        // The documents are notified once the batch is committed, in the wiki of the documents (and not the current
+        // wiki), and the listener never ends the batch transaction
+        Assert.assertEquals("commit session0", calls.get(0));
+        Assert.assertNotEquals("wiki", this.oldcore.getXWikiContext().getWikiId());
+        Assert.assertTrue(calls.contains("event page in wiki"));
+        Assert.assertEquals(1, calls.stream().filter(call -> call.endsWith(" session0")).count());
+
+        verify(sessions.get(0), atLeastOnce()).flush();
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.io.OutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.filter.output.OutputStreamOutputTarget;
+import org.xwiki.model.reference.WikiReference;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.filter.XWikiDocumentFilterUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link SerializedDocumentCache}.
+ *
+ * @version $Id$
+ */
+public class SerializedDocumentCacheTest
+{
+    private static final WikiReference WIKI = new WikiReference("wiki");
+
+    private XWikiDocumentFilterUtils filterUtils;
+
+    private XWikiDocument parsedDocument;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.filterUtils = mock(XWikiDocumentFilterUtils.class);
+
+        doAnswer(invocation -> {
+            XWikiDocument document = invocation.getArgument(0);
+            OutputStream stream = ((OutputStreamOutputTarget) invocation.getArgument(1)).getOutputStream();
+            // Write enough bytes to make the compressed size depend on the document content
+            for (int i = 0; i < 100; ++i) {
+                stream.write(document.getContent().getBytes());
+            }
+
+            return null;
+        }).when(this.filterUtils).exportEntity(any(), any(OutputStreamOutputTarget.class), any(), any());
+
+        this.parsedDocument = mock(XWikiDocument.class);
+        when(this.filterUtils.importDocument(any(), any(), any())).thenReturn(this.parsedDocument);
+    }
+
+    private XWikiDocument document(String content)
+    {
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getContent()).thenReturn(content);
+
+        return document;
+    }
+
+    @Test
+    public void setAndGet()
+    {
+        SerializedDocumentCache cache = new SerializedDocumentCache(10000, this.filterUtils);
+
+        assertNull(cache.get("key", WIKI));
+        assertEquals(1, cache.getMissCount());
+
+        cache.set("key", document("content"));
+
+        assertEquals(1, cache.getEntryCount());
+        assertSame(this.parsedDocument, cache.get("key", WIKI));
+        assertEquals(1, cache.getHitCount());
+
+        cache.remove("key");
+
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getSize());
+        assertNull(cache.get("key", WIKI));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed()
+    {
+        SerializedDocumentCache cache = new SerializedDocumentCache(10000, this.filterUtils);
+
+        cache.set("key1", document("content1"));
+        long entrySize = cache.getSize();
+
+        cache = new SerializedDocumentCache(entrySize * 2, this.filterUtils);
+        cache.set("key1", document("content1"));
+        cache.set("key2", document("content2"));
+
+        // Access key1 so that key2 become the least recently used entry
+        cache.get("key1", WIKI);
+
+        cache.set("key3", document("content3"));
+
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get("key2", WIKI));
+        assertSame(this.parsedDocument, cache.get("key1", WIKI));
+        assertSame(this.parsedDocument, cache.get("key3", WIKI));
+    }
+
+    @Test
+    public void skipTooBigEntries()
+    {
+        SerializedDocumentCache cache = new SerializedDocumentCache(1, this.filterUtils);
+
+        cache.set("key", document("content"));
+
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getSize());
+    }
+}
@@ -19,18 +19,25 @@
  */
 package com.xpn.xwiki.internal.template;
 
-import java.io.ByteArrayInputStream;
-import java.io.UnsupportedEncodingException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.Writer;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.velocity.VelocityContext;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.configuration.internal.MemoryConfigurationSource;
@@ -48,7 +55,11 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -63,8 +74,13 @@
     public final MockitoComponentMockingRule<TemplateManager> mocker =
         new MockitoComponentMockingRule<TemplateManager>(DefaultTemplateManager.class);
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     private Environment environmentMock;
 
+    private File templateFile;
+
     private VelocityManager velocityManagerMock;
 
     @Before
@@ -85,13 +101,30 @@ public void afterComponent() throws Exception
         this.velocityManagerMock = this.mocker.registerMockComponent(VelocityManager.class);
         this.mocker.registerMockComponent(ConfigurationSource.class);
         this.mocker.registerMockComponent(TransformationManager.class);
+
+        Map<String, Object> entries = new HashMap<>();
+        Cache<Object> cache = mock(Cache.class);
+        when(cache.get(anyString())).then(invocation -> entries.get(invocation.getArgument(0)));
+        doAnswer(invocation -> entries.put(invocation.getArgument(0), invocation.getArgument(1))).when(cache)
+            .set(anyString(), any());
+        doAnswer(invocation -> {
+            entries.clear();
+            return null;
+        }).when(cache).removeAll();
+        CacheManager cacheManager = this.mocker.registerMockComponent(CacheManager.class);
+        when(cacheManager.createNewCache(any(CacheConfiguration.class))).thenReturn(cache);
     }
 
-    private void setTemplateContent(String content) throws UnsupportedEncodingException, MalformedURLException
+    private void setTemplateContent(String content) throws IOException
     {
+        if (this.templateFile == null) {
+            this.templateFile = this.folder.newFile("template");
+        }
+        FileUtils.write(this.templateFile, content, StandardCharsets.UTF_8);
+
         when(this.environmentMock.getResourceAsStream("/templates/template"))
-            .thenReturn(new ByteArrayInputStream(content.getBytes("UTF8")));
-        when(this.environmentMock.getResource("/templates/template")).thenReturn(new URL("http://url"));
+            .then(invocation -> new FileInputStream(this.templateFile));
+        when(this.environmentMock.getResource("/templates/template")).thenReturn(this.templateFile.toURI().toURL());
     }
 
     private void mockVelocity(String source, String result) throws XWikiVelocityException
@@ -131,6 +164,37 @@ public void testRenderWiki() throws Exception
         assertEquals("<p>first line<br/>second line</p>", mocker.getComponentUnderTest().render("template"));
     }
 
+    @Test
+    public void testRenderCachedTemplate() throws Exception
+    {
+        mockVelocity("source", "OK");
+
+        setTemplateContent("source");
+
+        assertEquals("OK", mocker.getComponentUnderTest().render("template"));
+        assertEquals("OK", mocker.getComponentUnderTest().render("template"));
+
+        // The content of the template is read only once
+        verify(this.environmentMock).getResourceAsStream("/templates/template");
+    }
+
+    @Test
+    public void testRenderModifiedTemplate() throws Exception
+    {
+        mockVelocity("source", "OK");
+        mockVelocity("modified source", "modified OK");
+
+        setTemplateContent("source");
+        this.templateFile.setLastModified(1000000L);
+
+        assertEquals("OK", mocker.getComponentUnderTest().render("template"));
+
+        setTemplateContent("modified source");
+        this.templateFile.setLastModified(2000000L);
+
+        assertEquals("modified OK", mocker.getComponentUnderTest().render("template"));
+    }
+
     @Test
     public void testRenderClassloaderTemplate() throws ComponentLookupException, Exception
     {
@@ -0,0 +1,216 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.user;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.bridge.event.DocumentUpdatingEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.test.MockitoOldcoreRule;
+import com.xpn.xwiki.test.reference.ReferenceComponentList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link GroupMembershipIndex}.
+ *
+ * @version $Id$
+ */
+@ReferenceComponentList
+public class GroupMembershipIndexTest
+{
+    public MockitoComponentMockingRule<GroupMembershipIndex> mocker =
+        new MockitoComponentMockingRule<>(GroupMembershipIndex.class, Arrays.asList(DocumentReferenceResolver.class));
+
+    @Rule
+    public MockitoOldcoreRule oldcore = new MockitoOldcoreRule(this.mocker);
+
+    private DocumentReference userReference = new DocumentReference("wiki", "XWiki", "user");
+
+    private DocumentReference otherUserReference = new DocumentReference("otherwiki", "XWiki", "user");
+
+    private DocumentReference group1Reference = new DocumentReference("wiki", "XWiki", "group1");
+
+    private DocumentReference group2Reference = new DocumentReference("wiki", "XWiki", "group2");
+
+    private Query query;
+
+    private EventListener listener;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.query = mock(Query.class);
+        doReturn(Arrays.asList(new Object[] { "XWiki.group1", "XWiki.user" },
+            new Object[] { "XWiki.group1", "group2" }, new Object[] { "XWiki.group2", "wiki:XWiki.user" },
+            new Object[] { "XWiki.group2", "otherwiki:XWiki.user" }, new Object[] { "XWiki.group2", "" }))
+                .when(this.query).execute();
+
+        QueryManager queryManager = this.mocker.getInstance(QueryManager.class);
+        when(queryManager.getNamedQuery("getAllGroupsMembers")).thenReturn(this.query);
+
+        this.mocker.getComponentUnderTest();
+
+        ObservationManager observationManager = this.mocker.getInstance(ObservationManager.class);
+        ArgumentCaptor<EventListener> listenerCaptor = ArgumentCaptor.forClass(EventListener.class);
+        verify(observationManager).addListener(listenerCaptor.capture());
+        this.listener = listenerCaptor.getValue();
+    }
+
+    private XWikiDocument createGroup(DocumentReference groupReference, String... members)
+    {
+        XWikiDocument group = new XWikiDocument(groupReference);
+
+        for (String member : members) {
+            BaseObject groupObject = new BaseObject();
+            groupObject.setXClassReference(new DocumentReference("wiki", "XWiki", "XWikiGroups"));
+            groupObject.setStringValue("member", member);
+            group.addXObject(groupObject);
+        }
+
+        return group;
+    }
+
+    @Test
+    public void getGroups() throws Exception
+    {
+        GroupMembershipIndex index = this.mocker.getComponentUnderTest();
+
+        assertEquals(new HashSet<>(Arrays.asList(this.group1Reference, this.group2Reference)),
+            index.getGroups(this.userReference, "wiki"));
+        assertEquals(Collections.singleton(this.group2Reference), index.getGroups(this.otherUserReference, "wiki"));
+        assertEquals(Collections.singleton(this.group1Reference), index.getGroups(this.group2Reference, "wiki"));
+        assertEquals(Collections.emptySet(), index.getGroups(this.group1Reference, "wiki"));
+
+        // The index of the wiki is loaded only once
+        verify(this.query, times(1)).execute();
+        verify(this.query).setWiki("wiki");
+    }
+
+    @Test
+    public void getGroupsWhenGroupIsUpdated() throws Exception
+    {
+        GroupMembershipIndex index = this.mocker.getComponentUnderTest();
+
+        index.getGroups(this.userReference, "wiki");
+
+        XWikiDocument group = createGroup(this.group2Reference, "XWiki.group1");
+        group.setOriginalDocument(createGroup(this.group2Reference, "XWiki.user", "otherwiki:XWiki.user"));
+
+        this.listener.onEvent(new DocumentUpdatingEvent(this.group2Reference), group,
+            this.oldcore.getXWikiContext());
+
+        // The index cannot be trusted while the group is being saved
+        assertNull(index.getGroups(this.userReference, "wiki"));
+
+        this.listener.onEvent(new DocumentUpdatedEvent(this.group2Reference), group, this.oldcore.getXWikiContext());
+
+        assertEquals(Collections.singleton(this.group1Reference), index.getGroups(this.userReference, "wiki"));
+        assertEquals(Collections.emptySet(), index.getGroups(this.otherUserReference, "wiki"));
+        assertEquals(Collections.singleton(this.group2Reference), index.getGroups(this.group1Reference, "wiki"));
+
+        verify(this.query, times(1)).execute();
+    }
+
+    @Test
+    public void getGroupsWhenGroupIsDeleted() throws Exception
+    {
+        GroupMembershipIndex index = this.mocker.getComponentUnderTest();
+
+        index.getGroups(this.userReference, "wiki");
+
+        XWikiDocument deletedGroup = new XWikiDocument(this.group1Reference);
+        deletedGroup.setOriginalDocument(createGroup(this.group1Reference, "XWiki.user", "group2"));
+
+        this.listener.onEvent(new DocumentDeletedEvent(this.group1Reference), deletedGroup,
+            this.oldcore.getXWikiContext());
+
+        assertEquals(Collections.singleton(this.group2Reference), index.getGroups(this.userReference, "wiki"));
+        assertEquals(Collections.emptySet(), index.getGroups(this.group2Reference, "wiki"));
+    }
+
+    @Test
+    public void getGroupsWhenGroupSaveFailed() throws Exception
+    {
+        GroupMembershipIndex index = this.mocker.getComponentUnderTest();
+        index.clock = () -> 0L;
+
+        index.getGroups(this.userReference, "wiki");
+
+        XWikiDocument group = createGroup(this.group2Reference, "XWiki.group1");
+        group.setOriginalDocument(createGroup(this.group2Reference, "XWiki.user"));
+
+        // The "ed" event never comes
+        this.listener.onEvent(new DocumentUpdatingEvent(this.group2Reference), group,
+            this.oldcore.getXWikiContext());
+
+        index.clock = () -> GroupMembershipIndex.SAVING_TIMEOUT - 1;
+        assertNull(index.getGroups(this.userReference, "wiki"));
+
+        index.clock = () -> GroupMembershipIndex.SAVING_TIMEOUT;
+        assertEquals(new HashSet<>(Arrays.asList(this.group1Reference, this.group2Reference)),
+            index.getGroups(this.userReference, "wiki"));
+
+        // The index is reloaded after the failed save
+        verify(this.query, times(2)).execute();
+    }
+
+    @Test
+    public void reset() throws Exception
+    {
+        GroupMembershipIndex index = this.mocker.getComponentUnderTest();
+
+        index.getGroups(this.userReference, "wiki");
+
+        XWikiDocument group = createGroup(this.group2Reference, "XWiki.group1");
+        this.listener.onEvent(new DocumentUpdatingEvent(this.group2Reference), group,
+            this.oldcore.getXWikiContext());
+
+        index.reset();
+
+        assertEquals(new HashSet<>(Arrays.asList(this.group1Reference, this.group2Reference)),
+            index.getGroups(this.userReference, "wiki"));
+
+        verify(this.query, times(2)).execute();
+    }
+}
@@ -19,9 +19,15 @@
  */
 package com.xpn.xwiki.store;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.model.internal.reference.UidStringEntityReferenceSerializer;
@@ -34,6 +40,7 @@
 import com.xpn.xwiki.test.MockitoOldcoreRule;
 
 import static com.xpn.xwiki.test.mockito.OldcoreMatchers.isCacheConfiguration;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -115,4 +122,32 @@ public void testLoadXWikiDoc() throws Exception
         verifyNoMoreInteractions(this.cache);
         verifyNoMoreInteractions(this.existCache);
     }
+
+    @Test
+    public void testGetExistingDocuments() throws Exception
+    {
+        this.oldcore.getXWikiContext().setWikiId("wiki");
+
+        DocumentReference cachedReference = new DocumentReference("wiki", "space", "cached");
+        DocumentReference existingReference = new DocumentReference("wiki", "space", "page");
+        DocumentReference missingReference = new DocumentReference("wiki", "space", "nopage");
+
+        when(this.existCache.get("4:wiki5:space6:cached")).thenReturn(Boolean.TRUE);
+        when(this.oldcore.getMockStore().getExistingDocuments(any(), any()))
+            .thenReturn(Collections.singleton(existingReference));
+
+        XWikiCacheStore store = new XWikiCacheStore(this.oldcore.getMockStore(), this.oldcore.getXWikiContext());
+
+        assertEquals(new HashSet<>(Arrays.asList(cachedReference, existingReference)),
+            store.getExistingDocuments(Arrays.asList(cachedReference, existingReference, missingReference),
+                this.oldcore.getXWikiContext()));
+
+        // Only the documents which were not in the cache are checked, with a single request
+        verify(this.existCache).set("4:wiki5:space4:page", Boolean.TRUE);
+        verify(this.existCache).set("4:wiki5:space6:nopage", Boolean.FALSE);
+        ArgumentCaptor<Collection<DocumentReference>> referencesCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(this.oldcore.getMockStore()).getExistingDocuments(referencesCaptor.capture(), any());
+        assertEquals(new HashSet<>(Arrays.asList(existingReference, missingReference)),
+            new HashSet<>(referencesCaptor.getValue()));
+    }
 }
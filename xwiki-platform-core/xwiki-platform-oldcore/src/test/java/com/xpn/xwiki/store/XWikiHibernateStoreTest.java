@@ -29,13 +29,16 @@
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
 import org.hibernate.dialect.Dialect;
 import org.hibernate.engine.SessionFactoryImplementor;
 import org.hibernate.id.SequenceGenerator;
+import org.hibernate.metadata.ClassMetadata;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.xwiki.bridge.event.ActionExecutingEvent;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
@@ -47,15 +50,22 @@
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.BaseProperty;
+import com.xpn.xwiki.objects.DBStringListProperty;
+import com.xpn.xwiki.objects.IntegerProperty;
 import com.xpn.xwiki.objects.LargeStringProperty;
 import com.xpn.xwiki.objects.StringProperty;
+import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.store.migration.DataMigrationManager;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -330,4 +340,110 @@ public void getTranslationList() throws Exception
         verify(query).bindValue("space", "Path.To");
         verify(query).bindValue("name", documentReference.getName());
     }
+
+    @Test
+    public void loadXWikiObjectsProperties() throws Exception
+    {
+        DocumentReference documentReference = new DocumentReference("wiki", "Space", "Page");
+        XWikiDocument doc = mock(XWikiDocument.class);
+        when(doc.getDocumentReference()).thenReturn(documentReference);
+        when(doc.getFullName()).thenReturn("Space.Page");
+        when(this.xcontext.getWiki().hasCustomMappings()).thenReturn(true);
+
+        BaseClass standardClass = mock(BaseClass.class);
+        BaseObject standardObject = mockObject(1L, new DocumentReference("wiki", "Space", "StandardClass"),
+            standardClass);
+        // An object without any property
+        BaseObject emptyObject = mockObject(2L, new DocumentReference("wiki", "Space", "StandardClass"),
+            standardClass);
+        BaseClass customClass = mock(BaseClass.class);
+        when(customClass.hasCustomMapping()).thenReturn(true);
+        BaseObject customObject = mockObject(3L, new DocumentReference("wiki", "Space", "CustomClass"), customClass);
+
+        // Properties of different types, listed with one query
+        Query descriptorsQuery = mock(Query.class);
+        when(session.createQuery("select prop.id.id, prop.name, prop.classType from BaseProperty as prop, "
+            + "BaseObject as bobject where bobject.name = :name and bobject.id = prop.id.id"))
+                .thenReturn(descriptorsQuery);
+        when(descriptorsQuery.list()).thenReturn(Arrays.asList(
+            new Object[] { 1L, "title", StringProperty.class.getName() },
+            new Object[] { 1L, "count", IntegerProperty.class.getName() },
+            new Object[] { 1L, "tags", DBStringListProperty.class.getName() },
+            new Object[] { 1L, "description", StringProperty.class.getName() },
+            new Object[] { 3L, "custom", StringProperty.class.getName() }));
+
+        SessionFactory sessionFactory = mock(SessionFactory.class);
+        when(session.getSessionFactory()).thenReturn(sessionFactory);
+        when(sessionFactory.getClassMetadata(any(String.class))).thenReturn(mock(ClassMetadata.class));
+
+        // The values of each property type, loaded with one query per type
+        StringProperty title = new StringProperty();
+        title.setId(1L);
+        title.setName("title");
+        title.setValue("Title");
+        // Oracle returns NULL for empty strings
+        StringProperty description = new StringProperty();
+        description.setId(1L);
+        description.setName("description");
+        mockPropertiesQuery("select prop from " + StringProperty.class.getName() + " as prop",
+            StringProperty.class.getName(), title, description);
+        IntegerProperty count = new IntegerProperty();
+        count.setId(1L);
+        count.setName("count");
+        count.setValue(42);
+        mockPropertiesQuery("select prop from " + IntegerProperty.class.getName() + " as prop",
+            IntegerProperty.class.getName(), count);
+        DBStringListProperty tags = new DBStringListProperty();
+        tags.setId(1L);
+        tags.setName("tags");
+        tags.setList(Arrays.asList("a", "b"));
+        mockPropertiesQuery("select prop from " + DBStringListProperty.class.getName()
+            + " as prop left join fetch prop.list", DBStringListProperty.class.getName(), tags);
+
+        // The object of the custom mapped class is loaded on its own
+        Query customPropertiesQuery = mock(Query.class);
+        when(session.createQuery("select prop.name, prop.classType from BaseProperty as prop where prop.id.id = :id"))
+            .thenReturn(customPropertiesQuery);
+        when(customPropertiesQuery.list()).thenReturn(Collections.emptyList());
+
+        this.store.loadXWikiObjectsProperties(Arrays.asList(standardObject, emptyObject, customObject), doc,
+            session, xcontext);
+
+        // The properties are added in the listed order
+        InOrder inOrder = inOrder(standardObject);
+        inOrder.verify(standardObject).addField("title", title);
+        inOrder.verify(standardObject).addField("count", count);
+        inOrder.verify(standardObject).addField("tags", tags);
+        inOrder.verify(standardObject).addField("description", description);
+
+        assertSame(standardObject, title.getObject());
+        assertEquals("", description.getValue());
+        assertEquals(Arrays.asList("a", "b"), tags.getList());
+        assertFalse(title.isValueDirty());
+
+        verify(emptyObject, never()).addField(any(), any());
+
+        verify(customPropertiesQuery).setLong("id", 3L);
+        verify(customObject, never()).addField(any(), any());
+        // The custom mapped object is not part of the batch, so no query is needed for its property type alone
+        verify(session, times(1)).createQuery(startsWith("select prop from " + StringProperty.class.getName()));
+    }
+
+    private BaseObject mockObject(long id, DocumentReference classReference, BaseClass xclass)
+    {
+        BaseObject object = mock(BaseObject.class);
+        when(object.getId()).thenReturn(id);
+        when(object.getXClassReference()).thenReturn(classReference);
+        when(object.getXClass(xcontext)).thenReturn(xclass);
+
+        return object;
+    }
+
+    private void mockPropertiesQuery(String select, String classType, BaseProperty... properties)
+    {
+        Query query = mock(Query.class);
+        when(session.createQuery(select + ", BaseObject as bobject where bobject.name = :name"
+            + " and bobject.id = prop.id.id and prop.classType = :classType")).thenReturn(query);
+        when(query.list()).thenReturn(Arrays.asList(properties));
+    }
 }
@@ -19,17 +19,24 @@
  */
 package com.xpn.xwiki.store.hibernate.query;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.inject.Provider;
 
 import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.engine.NamedSQLQueryDefinition;
 import org.junit.Before;
@@ -37,6 +44,9 @@
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.util.DefaultParameterizedType;
 import org.xwiki.context.Execution;
@@ -52,6 +62,7 @@
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.internal.store.hibernate.HibernateStore;
 import com.xpn.xwiki.store.XWikiHibernateBaseStore;
 import com.xpn.xwiki.store.XWikiHibernateStore;
 import com.xpn.xwiki.store.hibernate.HibernateSessionFactory;
@@ -62,7 +73,9 @@
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -89,12 +102,17 @@
 
     private XWikiHibernateStore store;
 
+    private XWikiContext xwikiContext;
+
     @Before
     public void before() throws Exception
     {
         HibernateSessionFactory sessionFactory = this.mocker.getInstance(HibernateSessionFactory.class);
         when(sessionFactory.getConfiguration()).thenReturn(new Configuration());
 
+        CacheManager cacheManager = this.mocker.getInstance(CacheManager.class);
+        when(cacheManager.<Boolean>createNewCache(any(CacheConfiguration.class))).thenReturn(mock(Cache.class));
+
         this.executor = this.mocker.getComponentUnderTest();
         this.authorization = this.mocker.getInstance(ContextualAuthorizationManager.class);
 
@@ -114,12 +132,12 @@ public Boolean answer(InvocationOnMock invocation) throws Throwable
         Execution execution = this.mocker.getInstance(Execution.class);
         ExecutionContext executionContext = mock(ExecutionContext.class);
         when(execution.getContext()).thenReturn(executionContext);
-        XWikiContext xwikiContext = mock(XWikiContext.class);
-        when(executionContext.getProperty(XWikiContext.EXECUTIONCONTEXT_KEY)).thenReturn(xwikiContext);
-        when(xwikiContext.getWikiId()).thenReturn("currentwikid");
+        this.xwikiContext = mock(XWikiContext.class);
+        when(executionContext.getProperty(XWikiContext.EXECUTIONCONTEXT_KEY)).thenReturn(this.xwikiContext);
+        when(this.xwikiContext.getWikiId()).thenReturn("currentwikid");
 
         com.xpn.xwiki.XWiki xwiki = mock(com.xpn.xwiki.XWiki.class);
-        when(xwikiContext.getWiki()).thenReturn(xwiki);
+        when(this.xwikiContext.getWiki()).thenReturn(xwiki);
         this.store = mock(XWikiHibernateStore.class);
         when(xwiki.getHibernateStore()).thenReturn(store);
     }
@@ -328,6 +346,94 @@ public void createHibernateQueryWhenFilter() throws Exception
         verify(session).createQuery("select doc.fullName from XWikiDocument doc where doc.space='Main3'");
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void streamWithFilter() throws Exception
+    {
+        HibernateStore hibernateStore = this.mocker.getInstance(HibernateStore.class);
+        Session session = mock(Session.class);
+        Transaction transaction = mock(Transaction.class);
+        when(hibernateStore.getCurrentSession()).thenReturn(null, session);
+        when(hibernateStore.getCurrentTransaction()).thenReturn(null, transaction);
+
+        org.hibernate.Query hquery = mock(org.hibernate.Query.class);
+        when(session.createQuery("select doc.fullName from XWikiDocument doc")).thenReturn(hquery);
+        ScrollableResults results = mock(ScrollableResults.class);
+        when(hquery.scroll(ScrollMode.FORWARD_ONLY)).thenReturn(results);
+        when(results.next()).thenReturn(true, true, true, false);
+        when(results.get()).thenReturn(new Object[] { "A" }, new Object[] { "B" }, new Object[] { "C" });
+
+        // The filters are applied row by row
+        QueryFilter filter = mock(QueryFilter.class);
+        when(filter.filterStatement(anyString(), anyString())).then(returnsFirstArg());
+        when(filter.filterQuery(any(Query.class))).then(returnsFirstArg());
+        when(filter.filterResults(any(List.class))).then(invocation -> {
+            List<String> rows = invocation.getArgument(0);
+            rows.remove("B");
+            return rows;
+        });
+
+        DefaultQuery query = new DefaultQuery("select doc.fullName from XWikiDocument doc", Query.HQL, this.executor);
+        query.addFilter(filter);
+
+        try (Stream<String> stream = query.stream()) {
+            assertEquals(Arrays.asList("A", "C"), stream.collect(Collectors.toList()));
+
+            verify(session, never()).close();
+        }
+
+        verify(hquery).setReadOnly(true);
+        verify(results).close();
+        verify(transaction).rollback();
+        verify(session).close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void streamWithFilterOnOtherWiki() throws Exception
+    {
+        AtomicReference<String> currentWiki = new AtomicReference<>("currentwikid");
+        when(this.xwikiContext.getWikiId()).then(invocation -> currentWiki.get());
+        doAnswer(invocation -> {
+            currentWiki.set(invocation.getArgument(0));
+            return null;
+        }).when(this.xwikiContext).setWikiId(anyString());
+
+        HibernateStore hibernateStore = this.mocker.getInstance(HibernateStore.class);
+        Session session = mock(Session.class);
+        when(hibernateStore.getCurrentSession()).thenReturn(null, session);
+
+        org.hibernate.Query hquery = mock(org.hibernate.Query.class);
+        when(session.createQuery("select doc.fullName from XWikiDocument doc")).thenReturn(hquery);
+        ScrollableResults results = mock(ScrollableResults.class);
+        when(hquery.scroll(ScrollMode.FORWARD_ONLY)).thenReturn(results);
+        when(results.next()).thenReturn(true, true, false);
+        when(results.get()).thenReturn(new Object[] { "A" }, new Object[] { "B" });
+
+        // The filters must be executed in the wiki of the query
+        List<String> filterWikis = new ArrayList<>();
+        QueryFilter filter = mock(QueryFilter.class);
+        when(filter.filterStatement(anyString(), anyString())).then(returnsFirstArg());
+        when(filter.filterQuery(any(Query.class))).then(returnsFirstArg());
+        when(filter.filterResults(any(List.class))).then(invocation -> {
+            filterWikis.add(currentWiki.get());
+            return invocation.getArgument(0);
+        });
+
+        DefaultQuery query = new DefaultQuery("select doc.fullName from XWikiDocument doc", Query.HQL, this.executor);
+        query.setWiki("otherwiki");
+        query.addFilter(filter);
+
+        try (Stream<String> stream = query.stream()) {
+            assertEquals("currentwikid", currentWiki.get());
+
+            assertEquals(Arrays.asList("A", "B"), stream.collect(Collectors.toList()));
+        }
+
+        assertEquals(Arrays.asList("otherwiki", "otherwiki"), filterWikis);
+        assertEquals("currentwikid", currentWiki.get());
+    }
+
     @Test
     public void createHibernateQueryAutomaticallyAddEscapeLikeParametersFilterWhenQueryParameter() throws Exception
     {
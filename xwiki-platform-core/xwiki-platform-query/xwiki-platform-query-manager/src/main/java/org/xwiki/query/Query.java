@@ -21,6 +21,7 @@
 
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * This is a Query interface, representing all queries in various languages for various stores.
@@ -177,4 +178,22 @@ default QueryParameter bindValue(String var)
      * @throws QueryException if something goes wrong.
      */
     <T> List<T> execute() throws QueryException;
+
+    /**
+     * Execute the query and return its results as they are read from the storage instead of loading all of them in
+     * memory first. It's the recommended way to walk a big number of results (instead of paginating with
+     * {@link #setOffset(int)}).
+     * <p>
+     * The returned stream hold resources (like a database cursor) until it's closed so it must always be closed,
+     * typically with a try-with-resources statement.
+     *
+     * @param <T> expected type of elements in the result stream.
+     * @return the results of the query. If several fields are selected then T=Object[].
+     * @throws QueryException if something goes wrong.
+     * @since 10.0RC1
+     */
+    default <T> Stream<T> stream() throws QueryException
+    {
+        return this.<T>execute().stream();
+    }
 }
@@ -20,6 +20,7 @@
 package org.xwiki.query;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.xwiki.component.annotation.Role;
 
@@ -41,4 +42,17 @@
      * @see Query#execute()
      */
     <T> List<T> execute(Query query) throws QueryException;
+
+    /**
+     * @param <T> expected type of elements in the result stream
+     * @param query query to execute
+     * @return the results of the query, to close when done
+     * @throws QueryException if something goes wrong
+     * @see Query#stream()
+     * @since 10.0RC1
+     */
+    default <T> Stream<T> stream(Query query) throws QueryException
+    {
+        return this.<T>execute(query).stream();
+    }
 }
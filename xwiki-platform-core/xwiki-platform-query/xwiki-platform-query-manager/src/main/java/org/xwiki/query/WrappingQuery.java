@@ -21,6 +21,7 @@
 
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Make it simple to change the behavior of a {@link Query} by extending this class and overriding only the behavior
@@ -157,4 +158,10 @@ public <T> List<T> execute() throws QueryException
     {
         return getWrappedQuery().execute();
     }
+
+    @Override
+    public <T> Stream<T> stream() throws QueryException
+    {
+        return getWrappedQuery().stream();
+    }
 }
@@ -21,6 +21,7 @@
 
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.stream.Stream;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -60,6 +61,9 @@ public class XWQLQueryExecutor implements QueryExecutor
     @Inject
     private JobProgressManager progress;
 
+    @Inject
+    private XWQLTranslationCache translationCache;
+
     public QueryManager getQueryManager() throws ComponentLookupException
     {
         // We can't inject QueryManager because of cyclic dependency.
@@ -78,12 +82,32 @@ public static boolean isShortFormStatement(String statement)
     @Override
     public <T> List<T> execute(Query query) throws QueryException
     {
-        EntityReference currentEntityReference = this.context.getCurrentEntityReference();
+        this.progress.startStep(query, "query.xwql.progress.execute", "Execute XWQL query [{}]", query);
 
-        Query nativeQuery;
         try {
-            this.progress.startStep(query, "query.xwql.progress.execute", "Execute XWQL query [{}]", query);
+            return createNativeQuery(query).execute();
+        } finally {
+            this.progress.endStep(query);
+        }
+    }
 
+    @Override
+    public <T> Stream<T> stream(Query query) throws QueryException
+    {
+        this.progress.startStep(query, "query.xwql.progress.execute", "Execute XWQL query [{}]", query);
+
+        try {
+            return createNativeQuery(query).stream();
+        } finally {
+            this.progress.endStep(query);
+        }
+    }
+
+    private Query createNativeQuery(Query query) throws QueryException
+    {
+        EntityReference currentEntityReference = this.context.getCurrentEntityReference();
+
+        try {
             if (query.getWiki() != null) {
                 if (currentEntityReference.getType() == EntityType.WIKI) {
                     this.context.setCurrentEntityReference(new WikiReference(query.getWiki()));
@@ -93,9 +117,8 @@ public <T> List<T> execute(Query query) throws QueryException
                 }
             }
 
-            nativeQuery =
-                getQueryManager().createQuery(this.translator.translate(query.getStatement()),
-                    this.translator.getOutputLanguage());
+            Query nativeQuery =
+                getQueryManager().createQuery(translate(query.getStatement()), this.translator.getOutputLanguage());
             nativeQuery.setLimit(query.getLimit());
             nativeQuery.setOffset(query.getOffset());
             nativeQuery.setWiki(query.getWiki());
@@ -121,7 +144,7 @@ public <T> List<T> execute(Query query) throws QueryException
                 ((SecureQuery) nativeQuery).checkCurrentUser(((SecureQuery) query).isCurrentUserChecked());
             }
 
-            return nativeQuery.execute();
+            return nativeQuery;
         } catch (Exception e) {
             if (e instanceof QueryException) {
                 throw (QueryException) e;
@@ -130,9 +153,21 @@ public <T> List<T> execute(Query query) throws QueryException
                 + this.translator.getOutputLanguage() + "] language", query, e);
         } finally {
             this.context.setCurrentEntityReference(currentEntityReference);
+        }
+    }
 
-            this.progress.endStep(query);
+    private String translate(String statement) throws Exception
+    {
+        EntityReference currentEntityReference = this.context.getCurrentEntityReference();
+        EntityReference wikiReference =
+            currentEntityReference != null ? currentEntityReference.extractReference(EntityType.WIKI) : null;
+
+        // The translation depends on the classes of the current wiki
+        if (wikiReference == null) {
+            return this.translator.translate(statement);
         }
+
+        return this.translationCache.translate(statement, wikiReference.getName(), this.translator);
     }
 
     public QueryTranslator getTranslator()
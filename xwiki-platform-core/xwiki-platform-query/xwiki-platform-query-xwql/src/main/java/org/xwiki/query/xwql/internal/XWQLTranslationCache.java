@@ -0,0 +1,216 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.query.xwql.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Cache the translations of the XWQL statements so that the same statement is not parsed and analyzed again each time
+ * it's executed.
+ * <p>
+ * The translation of a statement depends on the definition of the classes it uses (the type of the properties decides
+ * the table to join) so the cache is cleared as soon as one of these classes is modified.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Component(roles = XWQLTranslationCache.class)
+@Singleton
+public class XWQLTranslationCache implements Initializable, Disposable
+{
+    private static final String NAME = "query.xwql.translations";
+
+    private static final int CAPACITY = 1000;
+
+    /**
+     * Event listened by the component.
+     */
+    private static final List<Event> EVENTS =
+        Arrays.<Event>asList(new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent());
+
+    /**
+     * Used to listen to class modifications.
+     *
+     * @version $Id$
+     */
+    protected class Listener implements EventListener
+    {
+        @Override
+        public String getName()
+        {
+            return NAME;
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return EVENTS;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            onDocumentModified(((DocumentModelBridge) source).getDocumentReference());
+        }
+    }
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private ObservationManager observationManager;
+
+    @Inject
+    private DocumentReferenceResolver<String> resolver;
+
+    /**
+     * The cached translations, keyed by wiki, output language and statement.
+     */
+    private Cache<String> cache;
+
+    /**
+     * The classes the cached translations depend on. All the accesses are synchronized on this component.
+     */
+    private final Set<DocumentReference> classReferences = new HashSet<>();
+
+    /**
+     * The documents modified during each translation in progress, to not cache a translation made with an outdated
+     * class. All the accesses are synchronized on this component.
+     */
+    private final Set<Set<DocumentReference>> translations = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache = this.cacheManager.createNewCache(new LRUCacheConfiguration(NAME, CAPACITY));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the XWQL translations cache", e);
+        }
+
+        this.observationManager.addListener(new Listener());
+    }
+
+    @Override
+    public void dispose()
+    {
+        this.observationManager.removeListener(NAME);
+
+        if (this.cache != null) {
+            this.cache.dispose();
+        }
+    }
+
+    /**
+     * @param statement the XWQL statement to translate
+     * @param wikiId the wiki where the statement is executed
+     * @param translator the translator to use when the statement is not in the cache
+     * @return the translated statement
+     * @throws Exception when failing to translate the statement
+     */
+    public String translate(String statement, String wikiId, QueryTranslator translator) throws Exception
+    {
+        String key = wikiId + ':' + translator.getOutputLanguage() + ':' + statement;
+
+        String translation = this.cache.get(key);
+
+        if (translation == null) {
+            Set<DocumentReference> modifiedDocuments = new HashSet<>();
+            synchronized (this) {
+                this.translations.add(modifiedDocuments);
+            }
+
+            List<String> classNames = new ArrayList<>();
+            List<DocumentReference> translationClassReferences;
+            try {
+                translation = translator.translate(statement, classNames);
+
+                WikiReference wikiReference = new WikiReference(wikiId);
+                translationClassReferences = new ArrayList<>(classNames.size());
+                for (String className : classNames) {
+                    translationClassReferences.add(this.resolver.resolve(className, wikiReference));
+                }
+            } catch (Exception e) {
+                synchronized (this) {
+                    this.translations.remove(modifiedDocuments);
+                }
+
+                throw e;
+            }
+
+            // Stopping to collect the modifications, registering the classes and checking them in the same block as
+            // the modifications makes sure a class modification is either seen here or clears the cached translation
+            synchronized (this) {
+                this.translations.remove(modifiedDocuments);
+                this.classReferences.addAll(translationClassReferences);
+
+                if (Collections.disjoint(translationClassReferences, modifiedDocuments)) {
+                    this.cache.set(key, translation);
+                }
+            }
+        }
+
+        return translation;
+    }
+
+    private void onDocumentModified(DocumentReference documentReference)
+    {
+        // Ignore the locale of the document
+        DocumentReference reference = new DocumentReference(documentReference, null);
+
+        synchronized (this) {
+            for (Set<DocumentReference> modifiedDocuments : this.translations) {
+                modifiedDocuments.add(reference);
+            }
+
+            if (this.classReferences.remove(reference)) {
+                this.cache.removeAll();
+            }
+        }
+    }
+}
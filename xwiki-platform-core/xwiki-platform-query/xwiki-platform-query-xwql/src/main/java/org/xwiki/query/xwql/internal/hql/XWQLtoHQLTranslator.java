@@ -19,6 +19,9 @@
  */
 package org.xwiki.query.xwql.internal.hql;
 
+import java.util.ArrayList;
+import java.util.Collection;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -27,6 +30,7 @@
 import org.xwiki.query.jpql.node.Start;
 import org.xwiki.query.xwql.internal.QueryAnalyzer;
 import org.xwiki.query.xwql.internal.QueryContext;
+import org.xwiki.query.xwql.internal.QueryContext.ObjectInfo;
 import org.xwiki.query.xwql.internal.QueryTranslator;
 import org.xwiki.query.Query;
 import org.xwiki.bridge.DocumentAccessBridge;
@@ -42,6 +46,12 @@ public class XWQLtoHQLTranslator implements QueryTranslator
 
     @Override
     public String translate(String input) throws Exception
+    {
+        return translate(input, new ArrayList<String>());
+    }
+
+    @Override
+    public String translate(String input, Collection<String> classNames) throws Exception
     {
         input = input.trim();
         String lcInput = input.toLowerCase();
@@ -56,6 +66,9 @@ public String translate(String input) throws Exception
         QueryContext context = new QueryContext(tree, getDocumentAccessBridge());
         // analize query and store info in context
         tree.apply(new QueryAnalyzer(context));
+        for (ObjectInfo object : context.getObjects()) {
+            classNames.add(object.className);
+        }
 
         Printer printer = getPrinter(context);
         return printer.print();
@@ -0,0 +1,207 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.query.xwql.internal;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.bridge.DocumentModelBridge;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link XWQLTranslationCache}.
+ *
+ * @version $Id$
+ */
+public class XWQLTranslationCacheTest
+{
+    @Rule
+    public MockitoComponentMockingRule<XWQLTranslationCache> mocker =
+        new MockitoComponentMockingRule<>(XWQLTranslationCache.class);
+
+    private static final String STATEMENT = "from doc.object(Space.Class) as obj where obj.prop = 1";
+
+    private DocumentReference classReference = new DocumentReference("wiki", "Space", "Class");
+
+    private DocumentReferenceResolver<String> resolver;
+
+    private QueryTranslator translator;
+
+    private EventListener listener;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void before() throws Exception
+    {
+        Map<String, String> entries = new HashMap<>();
+        Cache<String> cache = mock(Cache.class);
+        when(cache.get(anyString())).then(invocation -> entries.get(invocation.getArgument(0)));
+        doAnswer(invocation -> entries.put(invocation.getArgument(0), invocation.getArgument(1))).when(cache)
+            .set(anyString(), anyString());
+        doAnswer(invocation -> {
+            entries.clear();
+            return null;
+        }).when(cache).removeAll();
+
+        CacheManager cacheManager = this.mocker.getInstance(CacheManager.class);
+        when(cacheManager.<String>createNewCache(any(CacheConfiguration.class))).thenReturn(cache);
+
+        this.resolver = this.mocker.getInstance(DocumentReferenceResolver.TYPE_STRING);
+        when(this.resolver.resolve("Space.Class", new WikiReference("wiki"))).thenReturn(this.classReference);
+
+        this.translator = mock(QueryTranslator.class);
+        when(this.translator.getOutputLanguage()).thenReturn("hql");
+        when(this.translator.translate(anyString(), anyCollection())).then(invocation -> {
+            invocation.<Collection<String>>getArgument(1).add("Space.Class");
+            return "translated";
+        });
+
+        this.mocker.getComponentUnderTest();
+
+        ObservationManager observationManager = this.mocker.getInstance(ObservationManager.class);
+        ArgumentCaptor<EventListener> listenerCaptor = ArgumentCaptor.forClass(EventListener.class);
+        verify(observationManager).addListener(listenerCaptor.capture());
+        this.listener = listenerCaptor.getValue();
+    }
+
+    private void updateDocument(DocumentReference documentReference)
+    {
+        DocumentModelBridge document = mock(DocumentModelBridge.class);
+        when(document.getDocumentReference()).thenReturn(documentReference);
+
+        this.listener.onEvent(new DocumentUpdatedEvent(documentReference), document, null);
+    }
+
+    @Test
+    public void translate() throws Exception
+    {
+        XWQLTranslationCache translationCache = this.mocker.getComponentUnderTest();
+
+        assertEquals("translated", translationCache.translate(STATEMENT, "wiki", this.translator));
+        assertEquals("translated", translationCache.translate(STATEMENT, "wiki", this.translator));
+
+        verify(this.translator, times(1)).translate(anyString(), anyCollection());
+
+        // The translation is not shared between wikis
+        translationCache.translate(STATEMENT, "otherwiki", this.translator);
+
+        verify(this.translator, times(2)).translate(anyString(), anyCollection());
+    }
+
+    @Test
+    public void translateWhenClassIsModified() throws Exception
+    {
+        XWQLTranslationCache translationCache = this.mocker.getComponentUnderTest();
+
+        translationCache.translate(STATEMENT, "wiki", this.translator);
+
+        // Documents which are not used by the cached translations don't clear the cache
+        updateDocument(new DocumentReference("wiki", "Space", "Page"));
+        translationCache.translate(STATEMENT, "wiki", this.translator);
+
+        verify(this.translator, times(1)).translate(anyString(), anyCollection());
+
+        updateDocument(this.classReference);
+        translationCache.translate(STATEMENT, "wiki", this.translator);
+
+        verify(this.translator, times(2)).translate(anyString(), anyCollection());
+    }
+
+    @Test
+    public void translateWhenClassIsModifiedDuringTranslation() throws Exception
+    {
+        XWQLTranslationCache translationCache = this.mocker.getComponentUnderTest();
+
+        // The class is modified after being read by the translator but before the translation is cached
+        when(this.translator.translate(anyString(), anyCollection())).then(invocation -> {
+            invocation.<Collection<String>>getArgument(1).add("Space.Class");
+            updateDocument(this.classReference);
+            return "translated";
+        });
+
+        translationCache.translate(STATEMENT, "wiki", this.translator);
+        translationCache.translate(STATEMENT, "wiki", this.translator);
+
+        verify(this.translator, times(2)).translate(anyString(), anyCollection());
+    }
+
+    @Test
+    public void translateWhenClassIsModifiedBeforeTranslationIsCached() throws Exception
+    {
+        XWQLTranslationCache translationCache = this.mocker.getComponentUnderTest();
+
+        // The class is modified after the translator returned but before the translation is cached
+        when(this.resolver.resolve("Space.Class", new WikiReference("wiki"))).then(invocation -> {
+            updateDocument(this.classReference);
+            return this.classReference;
+        });
+
+        translationCache.translate(STATEMENT, "wiki", this.translator);
+        translationCache.translate(STATEMENT, "wiki", this.translator);
+
+        verify(this.translator, times(2)).translate(anyString(), anyCollection());
+    }
+
+    @Test
+    public void translateWhenTranslationFails() throws Exception
+    {
+        XWQLTranslationCache translationCache = this.mocker.getComponentUnderTest();
+
+        when(this.translator.translate(anyString(), anyCollection())).thenThrow(new IllegalArgumentException())
+            .thenReturn("translated");
+
+        try {
+            translationCache.translate(STATEMENT, "wiki", this.translator);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+
+        assertEquals("translated", translationCache.translate(STATEMENT, "wiki", this.translator));
+        assertEquals("translated", translationCache.translate(STATEMENT, "wiki", this.translator));
+
+        verify(this.translator, times(2)).translate(anyString(), anyCollection());
+    }
+}
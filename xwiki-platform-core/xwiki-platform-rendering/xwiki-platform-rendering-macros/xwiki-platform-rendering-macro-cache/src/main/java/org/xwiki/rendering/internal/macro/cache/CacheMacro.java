@@ -19,14 +19,18 @@
  */
 package org.xwiki.rendering.internal.macro.cache;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.xwiki.bridge.FragmentCacheBridge;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.CacheManager;
@@ -83,6 +87,13 @@ public class CacheMacro extends AbstractMacro<CacheMacroParameters>
     @Named("plain/1.0")
     private BlockRenderer plainTextBlockRenderer;
 
+    /**
+     * Used to cache the content until one of its dependencies is modified. Resolved lazily since it's only available
+     * in XWiki.
+     */
+    @Inject
+    private Provider<FragmentCacheBridge> fragmentCacheProvider;
+
     /**
      * Map of all caches. There's one cache per timeToLive/maxEntry combination since currently we cannot set these
      * configuration values at the cache entry level but only for the whole cache.
@@ -122,6 +133,10 @@ public List<Block> execute(CacheMacroParameters parameters, String content, Macr
             cacheKey = content;
         }
 
+        if (parameters.isTrackDependencies()) {
+            return getFragment(cacheKey, parameters, content, context);
+        }
+
         Cache<List<Block>> contentCache = getContentCache(parameters.getTimeToLive(), parameters.getMaxEntries());
         List<Block> result = contentCache.get(cacheKey);
         if (result == null) {
@@ -135,6 +150,33 @@ public List<Block> execute(CacheMacroParameters parameters, String content, Macr
         return result;
     }
 
+    /**
+     * Get the content from the fragment cache, which invalidates it when one of the documents, objects or rights used
+     * to produce it is modified.
+     *
+     * @param cacheKey the key under which the content is cached
+     * @param parameters the macro parameters
+     * @param content the content of the macro
+     * @param context the macro transformation context
+     * @return the cached or newly produced content
+     * @throws MacroExecutionException when failing to produce the content
+     */
+    private List<Block> getFragment(String cacheKey, CacheMacroParameters parameters, String content,
+        MacroTransformationContext context) throws MacroExecutionException
+    {
+        List<String> classes = parameters.getClasses() != null
+            ? Arrays.asList(parameters.getClasses().trim().split("\\s*,\\s*")) : Collections.<String>emptyList();
+
+        try {
+            return this.fragmentCacheProvider.get().getFragment(cacheKey, parameters.getTimeToLive(), classes,
+                () -> this.contentParser.parse(content, context, true, context.isInline()).getChildren());
+        } catch (MacroExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MacroExecutionException("Failed to get the cached content", e);
+        }
+    }
+
     /**
      * Get a cache matching the passed time to live and max entries.
      * <p>
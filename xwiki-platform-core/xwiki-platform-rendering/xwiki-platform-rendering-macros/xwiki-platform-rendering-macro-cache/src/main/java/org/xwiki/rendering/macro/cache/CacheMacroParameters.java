@@ -44,6 +44,16 @@
      */
     private int maxEntries = 1000;
 
+    /**
+     * @see #isTrackDependencies()
+     */
+    private boolean trackDependencies;
+
+    /**
+     * @see #getClasses()
+     */
+    private String classes;
+
     /**
      * @return the optional unique id to use to cache the content. If not defined then use the content itself as the id
      *         but this doesn't guarantee unicity since the same content could be located on several pages with
@@ -97,4 +107,47 @@ public void setMaxEntries(int maxEntries)
     {
         this.maxEntries = maxEntries;
     }
+
+    /**
+     * @return true if the content should be cached until one of the documents, objects or rights used to produce it
+     *         is modified (or the time to live expires). The content is then cached per user and the maximum number of
+     *         entries is the one of the fragment cache
+     * @since 10.0RC1
+     */
+    public boolean isTrackDependencies()
+    {
+        return this.trackDependencies;
+    }
+
+    /**
+     * @param trackDependencies refer to {@link #isTrackDependencies()}
+     * @since 10.0RC1
+     */
+    @PropertyDescription("invalidate the cached content when a document, object or right used to produce it is "
+        + "modified")
+    public void setTrackDependencies(boolean trackDependencies)
+    {
+        this.trackDependencies = trackDependencies;
+    }
+
+    /**
+     * @return the comma separated references of the classes whose objects are used by the content without loading
+     *         their documents (e.g. through a query), only taken into account when dependencies are tracked
+     * @since 10.0RC1
+     */
+    public String getClasses()
+    {
+        return this.classes;
+    }
+
+    /**
+     * @param classes refer to {@link #getClasses()}
+     * @since 10.0RC1
+     */
+    @PropertyDescription("the comma separated references of the classes whose objects are used by the content (e.g. "
+        + "through a query)")
+    public void setClasses(String classes)
+    {
+        this.classes = classes;
+    }
 }
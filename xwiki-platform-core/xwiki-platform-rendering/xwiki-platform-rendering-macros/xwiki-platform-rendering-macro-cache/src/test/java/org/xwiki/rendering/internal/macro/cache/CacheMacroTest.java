@@ -20,10 +20,15 @@
 package org.xwiki.rendering.internal.macro.cache;
 
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
 
+import org.jmock.Expectations;
 import org.junit.Test;
+import org.xwiki.bridge.FragmentCacheBridge;
 import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.WordBlock;
 import org.xwiki.rendering.internal.transformation.macro.MacroTransformation;
 import org.xwiki.rendering.macro.Macro;
 import org.xwiki.rendering.macro.cache.CacheMacroParameters;
@@ -52,12 +57,15 @@ public class CacheMacroTest extends AbstractComponentTestCase
 
     private PrintRendererFactory rendererFactory;
 
+    private FragmentCacheBridge fragmentCache;
+
     @Override
     protected void registerComponents() throws Exception
     {
         super.registerComponents();
 
         this.mockSetup = new ScriptMockSetup(getMockery(), getComponentManager());
+        this.fragmentCache = registerMockComponent(FragmentCacheBridge.class);
         this.cacheMacro = getComponentManager().getInstance(Macro.class, "cache");
         this.rendererFactory = getComponentManager().getInstance(PrintRendererFactory.class, "event/1.0");
     }
@@ -215,6 +223,30 @@ public void executeWithDifferentMaxEntries() throws Exception
         assertFalse(result2.equals(result1));
     }
 
+    @Test
+    public void executeWhenTrackingDependencies() throws Exception
+    {
+        final List<Block> fragment = Arrays.<Block>asList(new WordBlock("fragment"));
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                oneOf(fragmentCache).getFragment(with(equal("id")), with(equal(100)),
+                    with(equal(Arrays.asList("Space.FirstClass", "Space.SecondClass"))), with(any(Callable.class)));
+                will(returnValue(fragment));
+            }
+        });
+
+        CacheMacroParameters params = new CacheMacroParameters();
+        params.setId("id");
+        params.setTimeToLive(100);
+        params.setTrackDependencies(true);
+        params.setClasses("Space.FirstClass, Space.SecondClass");
+
+        // The content is taken from the fragment cache instead of the cache dedicated to the time to live
+        assertSame(fragment, this.cacheMacro.execute(params, "content", createMacroTransformationContext()));
+    }
+
     private MacroTransformationContext createMacroTransformationContext() throws Exception
     {
         MacroTransformation macroTransformation = getComponentManager().getInstance(Transformation.class, "macro");
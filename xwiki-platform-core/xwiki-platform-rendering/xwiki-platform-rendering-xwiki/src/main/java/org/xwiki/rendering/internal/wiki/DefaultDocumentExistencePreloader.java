@@ -0,0 +1,106 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.wiki;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.bridge.DocumentAccessBridge;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.LinkBlock;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.syntax.SyntaxType;
+
+/**
+ * Default implementation of {@link DocumentExistencePreloader}, relying on
+ * {@link DocumentAccessBridge#getExistingDocuments(java.util.Collection)} to fill the document existence cache.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Component
+@Singleton
+public class DefaultDocumentExistencePreloader implements DocumentExistencePreloader
+{
+    /**
+     * The types of link references whose existence is checked by the wiki model.
+     */
+    private static final List<ResourceType> DOCUMENT_TYPES = Arrays.asList(ResourceType.DOCUMENT, ResourceType.SPACE);
+
+    /**
+     * The types of syntaxes whose renderers check the existence of the linked documents.
+     */
+    private static final List<SyntaxType> SYNTAX_TYPES = Arrays.asList(Syntax.XHTML_1_0.getType(),
+        Syntax.HTML_4_01.getType(), Syntax.ANNOTATED_XHTML_1_0.getType());
+
+    @Inject
+    private DocumentAccessBridge documentAccessBridge;
+
+    @Inject
+    private EntityReferenceResolver<ResourceReference> resourceReferenceEntityReferenceResolver;
+
+    @Inject
+    private Logger logger;
+
+    @Override
+    public void preload(Block block, Syntax targetSyntax)
+    {
+        if (!SYNTAX_TYPES.contains(targetSyntax.getType())) {
+            return;
+        }
+
+        Set<DocumentReference> documentReferences = new HashSet<>();
+        for (LinkBlock linkBlock : block.<LinkBlock>getBlocks(new ClassBlockMatcher(LinkBlock.class),
+            Block.Axes.DESCENDANT_OR_SELF)) {
+            ResourceReference reference = linkBlock.getReference();
+            if (DOCUMENT_TYPES.contains(reference.getType())) {
+                try {
+                    EntityReference documentReference =
+                        this.resourceReferenceEntityReferenceResolver.resolve(reference, EntityType.DOCUMENT);
+                    if (documentReference != null) {
+                        documentReferences.add(new DocumentReference(documentReference));
+                    }
+                } catch (Exception e) {
+                    // The wiki model will report the problem when rendering the link
+                    this.logger.debug("Failed to resolve link reference [{}]", reference, e);
+                }
+            }
+        }
+
+        // No need to batch a single check
+        if (documentReferences.size() > 1) {
+            this.documentAccessBridge.getExistingDocuments(documentReferences);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.wiki;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Checks at once the existence of the documents targeted by the links of some content, before rendering it, so that
+ * {@link XWikiWikiModel#isDocumentAvailable(org.xwiki.rendering.listener.reference.ResourceReference)} gets its answers
+ * from the cache instead of checking the links one by one.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Role
+public interface DocumentExistencePreloader
+{
+    /**
+     * @param block the content which is going to be rendered
+     * @param targetSyntax the syntax in which the content is going to be rendered; nothing is done for syntaxes whose
+     *            renderers don't check the existence of the linked documents
+     */
+    void preload(Block block, Syntax targetSyntax);
+}
@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.wiki;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.bridge.DocumentAccessBridge;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.ImageBlock;
+import org.xwiki.rendering.block.LinkBlock;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.internal.resolver.DefaultResourceReferenceEntityReferenceResolver;
+import org.xwiki.rendering.listener.reference.DocumentResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultDocumentExistencePreloader}.
+ *
+ * @version $Id$
+ */
+public class DefaultDocumentExistencePreloaderTest
+{
+    @Rule
+    public MockitoComponentMockingRule<DocumentExistencePreloader> mocker =
+        new MockitoComponentMockingRule<>(DefaultDocumentExistencePreloader.class);
+
+    private EntityReferenceResolver<ResourceReference> referenceResolver;
+
+    private DocumentAccessBridge documentAccessBridge;
+
+    private XDOM xdom;
+
+    private DocumentReference firstReference = new DocumentReference("wiki", "Space", "First");
+
+    private DocumentReference secondReference = new DocumentReference("wiki", "Space", "Second");
+
+    @Before
+    public void configure() throws Exception
+    {
+        this.referenceResolver =
+            this.mocker.getInstance(DefaultResourceReferenceEntityReferenceResolver.TYPE_RESOURCEREFERENCE);
+        this.documentAccessBridge = this.mocker.getInstance((Type) DocumentAccessBridge.class);
+
+        ResourceReference firstLink = new DocumentResourceReference("First");
+        ResourceReference secondLink = new DocumentResourceReference("Second");
+        ResourceReference urlLink = new ResourceReference("http://xwiki.org", ResourceType.URL);
+        ResourceReference image = new ResourceReference("image.png", ResourceType.ATTACHMENT);
+
+        when(this.referenceResolver.resolve(firstLink, EntityType.DOCUMENT)).thenReturn(this.firstReference);
+        when(this.referenceResolver.resolve(secondLink, EntityType.DOCUMENT)).thenReturn(this.secondReference);
+
+        this.xdom = new XDOM(Arrays.<Block>asList(
+            new ParagraphBlock(Arrays.<Block>asList(new LinkBlock(Collections.<Block>emptyList(), firstLink, false),
+                new LinkBlock(Collections.<Block>emptyList(), urlLink, false), new ImageBlock(image, false))),
+            new LinkBlock(Collections.<Block>emptyList(), secondLink, false),
+            new LinkBlock(Collections.<Block>emptyList(), firstLink, false)));
+    }
+
+    @Test
+    public void preload() throws Exception
+    {
+        this.mocker.getComponentUnderTest().preload(this.xdom, Syntax.XHTML_1_0);
+
+        verify(this.documentAccessBridge)
+            .getExistingDocuments(new HashSet<>(Arrays.asList(this.firstReference, this.secondReference)));
+    }
+
+    @Test
+    public void preloadWhenRenderingWikiSyntax() throws Exception
+    {
+        this.mocker.getComponentUnderTest().preload(this.xdom, Syntax.XWIKI_2_1);
+
+        verify(this.documentAccessBridge, never()).getExistingDocuments(any());
+    }
+}
@@ -206,8 +206,9 @@ protected InputStream filterResource(R resourceReference, InputStream resourceSt
      * 
      * @param response the response
      * @param resourceReference the resource that is being served
+     * @since 10.0RC1
      */
-    private void setResponseHeaders(Response response, R resourceReference)
+    protected void setResponseHeaders(Response response, R resourceReference)
     {
         // Cache the resource if possible.
         if (response instanceof ServletResponse && isResourceCacheable(resourceReference)) {
@@ -24,13 +24,17 @@
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Formatter;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 import javax.xml.parsers.ParserConfigurationException;
@@ -44,8 +48,14 @@
 import org.xwiki.logging.LogQueue;
 import org.xwiki.logging.event.LogEvent;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.model.reference.ObjectReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryFilter;
+import org.xwiki.query.QueryManager;
 import org.xwiki.rest.Relations;
 import org.xwiki.rest.XWikiRestException;
 import org.xwiki.rest.model.jaxb.Attachment;
@@ -123,6 +133,11 @@
 @Singleton
 public class ModelFactory
 {
+    /**
+     * The maximum number of documents covered by each query when loading information for several documents.
+     */
+    private static final int BATCH_SIZE = 500;
+
     private final ObjectFactory objectFactory;
 
     @Inject
@@ -134,6 +149,21 @@
     @Inject
     private JAXBConverter jaxbConverter;
 
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    @Inject
+    @Named("current")
+    private DocumentReferenceResolver<String> currentResolver;
+
+    @Inject
+    private QueryManager queryManager;
+
+    @Inject
+    @Named("hidden")
+    private Provider<QueryFilter> hiddenFilterProvider;
+
     public ModelFactory()
     {
         this.objectFactory = new ObjectFactory();
@@ -455,9 +485,12 @@ public Space toRestSpace(URI baseUri, String wikiName, List<String> spaces, Docu
 
     public Translations toRestTranslations(URI baseUri, Document doc) throws XWikiException
     {
-        Translations translations = this.objectFactory.createTranslations();
+        return toRestTranslations(baseUri, doc, doc.getTranslationList());
+    }
 
-        List<String> languages = doc.getTranslationList();
+    private Translations toRestTranslations(URI baseUri, Document doc, List<String> languages)
+    {
+        Translations translations = this.objectFactory.createTranslations();
 
         List<String> spaces = Utils.getSpacesFromSpaceId(doc.getSpace());
 
@@ -517,6 +550,12 @@ public Translations toRestTranslations(URI baseUri, Document doc) throws XWikiEx
      */
     private void toRestPageSummary(PageSummary pageSummary, URI baseUri, Document doc, boolean useVersion,
         Boolean withPrettyNames) throws XWikiException
+    {
+        toRestPageSummary(pageSummary, baseUri, doc, useVersion, withPrettyNames, null);
+    }
+
+    private void toRestPageSummary(PageSummary pageSummary, URI baseUri, Document doc, boolean useVersion,
+        Boolean withPrettyNames, PageSummaryBatch batch) throws XWikiException
     {
         XWikiContext xwikiContext = this.xcontextProvider.get();
 
@@ -528,7 +567,12 @@ private void toRestPageSummary(PageSummary pageSummary, URI baseUri, Document do
         pageSummary.setTitle(doc.getDisplayTitle());
         pageSummary.setXwikiRelativeUrl(doc.getURL("view"));
         pageSummary.setXwikiAbsoluteUrl(doc.getExternalURL("view"));
-        pageSummary.setTranslations(toRestTranslations(baseUri, doc));
+        if (batch != null) {
+            pageSummary.setTranslations(
+                toRestTranslations(baseUri, doc, batch.getTranslations(doc.getDocumentReference())));
+        } else {
+            pageSummary.setTranslations(toRestTranslations(baseUri, doc));
+        }
         pageSummary.setSyntax(doc.getSyntax().toIdString());
         pageSummary.setVersion(doc.getVersion());
         pageSummary.setAuthor(doc.getAuthor());
@@ -538,7 +582,8 @@ private void toRestPageSummary(PageSummary pageSummary, URI baseUri, Document do
 
         pageSummary.setParent(doc.getParent());
         DocumentReference parentReference = doc.getParentReference();
-        boolean parentExist = parentReference != null && xwikiContext.getWiki().exists(parentReference, xwikiContext);
+        boolean parentExist = parentReference != null && (batch != null ? batch.isExistingParent(parentReference)
+            : xwikiContext.getWiki().exists(parentReference, xwikiContext));
         // parentId must not be set if the parent document does not exist.
         if (parentExist) {
             pageSummary.setParentId(this.serializer.serialize(parentReference));
@@ -569,7 +614,7 @@ private void toRestPageSummary(PageSummary pageSummary, URI baseUri, Document do
         historyLink.setRel(Relations.HISTORY);
         pageSummary.getLinks().add(historyLink);
 
-        if (!doc.getChildren().isEmpty()) {
+        if (batch != null ? batch.hasChildren(doc.getDocumentReference()) : !doc.getChildren().isEmpty()) {
             String pageChildrenUri =
                 Utils.createURI(baseUri, PageChildrenResource.class, doc.getWiki(), spaces, doc.getName()).toString();
             Link pageChildrenLink = this.objectFactory.createLink();
@@ -646,9 +691,21 @@ private void toRestPageSummary(PageSummary pageSummary, URI baseUri, Document do
     }
 
     public PageSummary toRestPageSummary(URI baseUri, Document doc, Boolean withPrettyNames) throws XWikiException
+    {
+        return toRestPageSummary(baseUri, doc, withPrettyNames, null);
+    }
+
+    /**
+     * Same as {@link #toRestPageSummary(URI, Document, Boolean)} but taking the translations, children and parent
+     * existence from the passed batch instead of querying them for the document.
+     *
+     * @since 10.0RC1
+     */
+    public PageSummary toRestPageSummary(URI baseUri, Document doc, Boolean withPrettyNames, PageSummaryBatch batch)
+        throws XWikiException
     {
         PageSummary pageSummary = this.objectFactory.createPageSummary();
-        toRestPageSummary(pageSummary, baseUri, doc, false, withPrettyNames);
+        toRestPageSummary(pageSummary, baseUri, doc, false, withPrettyNames, batch);
 
         String pageUri = Utils.createURI(baseUri, PageResource.class, doc.getWiki(),
             Utils.getSpacesFromSpaceId(doc.getSpace()), doc.getName()).toString();
@@ -660,6 +717,132 @@ public PageSummary toRestPageSummary(URI baseUri, Document doc, Boolean withPret
         return pageSummary;
     }
 
+    /**
+     * Load with a few queries the information needed to create the summaries of the passed documents which is not held
+     * by the documents themselves.
+     *
+     * @param documents the documents to create summaries for
+     * @return the information needed to create the summaries
+     * @throws QueryException when failing to query the information
+     * @since 10.0RC1
+     */
+    public PageSummaryBatch loadPageSummaryBatch(Collection<Document> documents) throws QueryException
+    {
+        PageSummaryBatch batch = new PageSummaryBatch();
+
+        Map<String, List<Document>> documentsByWiki = new HashMap<>();
+        Map<String, Set<DocumentReference>> parentsByWiki = new HashMap<>();
+        for (Document document : documents) {
+            documentsByWiki.computeIfAbsent(document.getWiki(), key -> new ArrayList<>()).add(document);
+
+            DocumentReference parentReference = document.getParentReference();
+            if (parentReference != null) {
+                parentsByWiki.computeIfAbsent(parentReference.getWikiReference().getName(), key -> new HashSet<>())
+                    .add(parentReference);
+            }
+        }
+
+        for (Map.Entry<String, List<Document>> entry : documentsByWiki.entrySet()) {
+            for (List<Document> chunk : chunk(entry.getValue())) {
+                loadTranslations(entry.getKey(), chunk, batch);
+                loadChildren(entry.getKey(), chunk, batch);
+            }
+        }
+
+        for (Map.Entry<String, Set<DocumentReference>> entry : parentsByWiki.entrySet()) {
+            for (List<DocumentReference> chunk : chunk(entry.getValue())) {
+                loadExistingDocuments(entry.getKey(), chunk, batch);
+            }
+        }
+
+        return batch;
+    }
+
+    private <T> List<List<T>> chunk(Collection<T> elements)
+    {
+        List<T> list = new ArrayList<>(elements);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += BATCH_SIZE) {
+            chunks.add(list.subList(i, Math.min(i + BATCH_SIZE, list.size())));
+        }
+
+        return chunks;
+    }
+
+    private void loadTranslations(String wiki, List<Document> documents, PageSummaryBatch batch)
+        throws QueryException
+    {
+        List<String> fullNames = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            fullNames.add(document.getFullName());
+        }
+
+        // Note that the query is made to work with Oracle which treats empty strings as null.
+        Query query = this.queryManager.createQuery("select doc.fullName, doc.language from XWikiDocument as doc "
+            + "where doc.fullName in (:fullNames) and (doc.language <> '' or (doc.language is not null and '' is null))",
+            Query.HQL);
+        query.setWiki(wiki);
+        query.bindValue("fullNames", fullNames);
+
+        WikiReference wikiReference = new WikiReference(wiki);
+        for (Object[] result : query.<Object[]>execute()) {
+            batch.addTranslation(this.currentResolver.resolve((String) result[0], wikiReference), (String) result[1]);
+        }
+    }
+
+    private void loadChildren(String wiki, List<Document> documents, PageSummaryBatch batch) throws QueryException
+    {
+        // Same matching as Document#getChildren(): the parent of a child is either the prefixed full name, the full name
+        // or the name of the document (in which case the child must be in the same space)
+        Map<String, List<Document>> documentsByParentValue = new HashMap<>();
+        for (Document document : documents) {
+            DocumentReference documentReference = document.getDocumentReference();
+            documentsByParentValue.computeIfAbsent(this.serializer.serialize(documentReference),
+                key -> new ArrayList<>()).add(document);
+            documentsByParentValue.computeIfAbsent(this.localSerializer.serialize(documentReference),
+                key -> new ArrayList<>()).add(document);
+            documentsByParentValue.computeIfAbsent(documentReference.getName(), key -> new ArrayList<>())
+                .add(document);
+        }
+
+        Query query = this.queryManager.createQuery(
+            "select distinct doc.parent, doc.space from XWikiDocument doc where doc.parent in (:parents)", Query.HQL);
+        query.addFilter(this.hiddenFilterProvider.get());
+        query.setWiki(wiki);
+        query.bindValue("parents", new ArrayList<>(documentsByParentValue.keySet()));
+
+        for (Object[] result : query.<Object[]>execute()) {
+            String parent = (String) result[0];
+            // The database might compare the strings ignoring the case
+            List<Document> parentDocuments = documentsByParentValue.getOrDefault(parent, Collections.emptyList());
+            for (Document document : parentDocuments) {
+                DocumentReference documentReference = document.getDocumentReference();
+                if (!parent.equals(documentReference.getName()) || document.getSpace().equals(result[1])) {
+                    batch.addDocumentWithChildren(documentReference);
+                }
+            }
+        }
+    }
+
+    private void loadExistingDocuments(String wiki, List<DocumentReference> documentReferences,
+        PageSummaryBatch batch) throws QueryException
+    {
+        List<String> fullNames = new ArrayList<>(documentReferences.size());
+        for (DocumentReference documentReference : documentReferences) {
+            fullNames.add(this.localSerializer.serialize(documentReference));
+        }
+
+        Query query = this.queryManager.createQuery("select doc.fullName from XWikiDocument as doc "
+            + "where doc.fullName in (:fullNames) and (doc.language = '' or doc.language is null)", Query.HQL);
+        query.setWiki(wiki);
+        query.bindValue("fullNames", fullNames);
+
+        WikiReference wikiReference = new WikiReference(wiki);
+        for (String fullName : query.<String>execute()) {
+            batch.addExistingDocument(this.currentResolver.resolve(fullName, wikiReference));
+        }
+    }
+
     public Page toRestPage(URI baseUri, URI self, Document doc, boolean useVersion, Boolean withPrettyNames,
         Boolean withObjects, Boolean withXClass, Boolean withAttachments) throws XWikiException
     {
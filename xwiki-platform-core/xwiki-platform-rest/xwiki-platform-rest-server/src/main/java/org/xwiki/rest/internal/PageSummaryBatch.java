@@ -0,0 +1,90 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * The information needed to create the summaries of a list of pages which is not held by the documents themselves
+ * (translations, children and parent existence), loaded with a few queries for the whole list instead of several
+ * queries per page.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ * @see ModelFactory#loadPageSummaryBatch(java.util.Collection)
+ */
+public class PageSummaryBatch
+{
+    private final Map<DocumentReference, List<String>> translations = new HashMap<>();
+
+    private final Set<DocumentReference> documentsWithChildren = new HashSet<>();
+
+    private final Set<DocumentReference> existingDocuments = new HashSet<>();
+
+    void addTranslation(DocumentReference documentReference, String language)
+    {
+        this.translations.computeIfAbsent(documentReference, key -> new ArrayList<>()).add(language);
+    }
+
+    void addDocumentWithChildren(DocumentReference documentReference)
+    {
+        this.documentsWithChildren.add(documentReference);
+    }
+
+    void addExistingDocument(DocumentReference documentReference)
+    {
+        this.existingDocuments.add(documentReference);
+    }
+
+    /**
+     * @param documentReference the reference of one of the pages
+     * @return the languages of the translations of the page
+     */
+    public List<String> getTranslations(DocumentReference documentReference)
+    {
+        return this.translations.getOrDefault(documentReference, Collections.emptyList());
+    }
+
+    /**
+     * @param documentReference the reference of one of the pages
+     * @return {@code true} if other documents have the page as parent
+     */
+    public boolean hasChildren(DocumentReference documentReference)
+    {
+        return this.documentsWithChildren.contains(documentReference);
+    }
+
+    /**
+     * @param parentReference the parent of one of the pages
+     * @return {@code true} if the parent exists
+     */
+    public boolean isExistingParent(DocumentReference parentReference)
+    {
+        return this.existingDocuments.contains(parentReference);
+    }
+}
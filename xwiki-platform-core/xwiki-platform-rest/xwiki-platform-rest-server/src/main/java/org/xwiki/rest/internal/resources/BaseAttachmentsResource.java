@@ -31,6 +31,8 @@
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryException;
 import org.xwiki.rest.Relations;
@@ -169,6 +171,10 @@ public Attachments getAttachments(String wikiName, String name, String page, Str
                 }
             }
 
+            // Many attachments usually share the same page or author so we avoid checking or loading them again
+            Map<String, Boolean> viewableDocuments = new HashMap<>();
+            Map<String, String> authorNames = new HashMap<>();
+
             for (Object object : queryResult) {
                 Object[] fields = (Object[]) object;
                 String pageSpaceId = (String) fields[0];
@@ -180,10 +186,11 @@ public Attachments getAttachments(String wikiName, String name, String page, Str
 
                 String mimeType = xwikiAttachment.getMimeType(Utils.getXWikiContext(componentManager));
 
-                boolean add = true;
+                /* Only list the attachments of the pages we have the right to view */
+                boolean add = viewableDocuments.computeIfAbsent(pageId, this::canView);
 
                 /* Check the mime type filter */
-                if (acceptedMimeTypes.size() > 0) {
+                if (add && acceptedMimeTypes.size() > 0) {
                     add = false;
 
                     for (String type : acceptedMimeTypes) {
@@ -208,8 +215,8 @@ public Attachments getAttachments(String wikiName, String name, String page, Str
                     attachment.setMimeType(mimeType);
                     attachment.setAuthor(xwikiAttachment.getAuthor());
                     if (withPrettyNames) {
-                        attachment
-                            .setAuthorName(Utils.getAuthorName(xwikiAttachment.getAuthorReference(), componentManager));
+                        attachment.setAuthorName(authorNames.computeIfAbsent(xwikiAttachment.getAuthor(),
+                            key -> Utils.getAuthorName(xwikiAttachment.getAuthorReference(), componentManager)));
                     }
 
                     Calendar calendar = Calendar.getInstance();
@@ -251,6 +258,18 @@ public Attachments getAttachments(String wikiName, String name, String page, Str
         return attachments;
     }
 
+    private boolean canView(String pageId)
+    {
+        try {
+            return Utils.getXWikiApi(componentManager).hasAccessLevel("view", pageId);
+        } catch (XWikiException e) {
+            getLogger().warn("Failed to check the view right on page [{}]: {}", pageId,
+                ExceptionUtils.getRootCauseMessage(e));
+
+            return false;
+        }
+    }
+
     protected Attachments getAttachmentsForDocument(Document doc, int start, int number, Boolean withPrettyNames)
     {
         Attachments attachments = objectFactory.createAttachments();
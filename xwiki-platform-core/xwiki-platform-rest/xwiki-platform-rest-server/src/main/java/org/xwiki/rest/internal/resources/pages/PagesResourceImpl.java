@@ -19,22 +19,29 @@
  */
 package org.xwiki.rest.internal.resources.pages;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
 
+import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryFilter;
 import org.xwiki.rest.XWikiResource;
 import org.xwiki.rest.XWikiRestException;
-import org.xwiki.rest.internal.DomainObjectFactory;
+import org.xwiki.rest.internal.ModelFactory;
+import org.xwiki.rest.internal.PageSummaryBatch;
 import org.xwiki.rest.internal.Utils;
 import org.xwiki.rest.model.jaxb.Pages;
 import org.xwiki.rest.resources.pages.PagesResource;
 
+import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.api.Document;
+import com.xpn.xwiki.api.XWiki;
 
 /**
  * @version $Id$
@@ -43,6 +50,12 @@
 @Named("org.xwiki.rest.internal.resources.pages.PagesResourceImpl")
 public class PagesResourceImpl extends XWikiResource implements PagesResource
 {
+    @Inject
+    private ModelFactory modelFactory;
+
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
     @Override
     public Pages getPages(String wikiName, String spaceName, Integer start, Integer number,
             String parentFilterExpression, String order, Boolean withPrettyNames)
@@ -75,36 +88,34 @@ public Pages getPages(String wikiName, String spaceName, Integer start, Integer
                 }
             }
 
+            XWiki xwikiApi = Utils.getXWikiApi(componentManager);
+
+            List<Document> documents = new ArrayList<>(pageNames.size());
             for (String pageName : pageNames) {
                 String pageFullName = Utils.getPageId(wikiName, spaces, pageName);
 
-                if (!Utils.getXWikiApi(componentManager).exists(pageFullName)) {
-                    getLogger().warn("Page [{}] appears to be in space [{}] but no information is available.", pageName,
-                        spaceId);
-                } else {
-                    Document doc = Utils.getXWikiApi(componentManager).getDocument(pageFullName);
-
-                    /* We only add pages we have the right to access */
-                    if (doc != null) {
-                        boolean add = true;
-
-                        Document parent = Utils.getParentDocument(doc, Utils.getXWikiApi(componentManager));
-
-                        if (parentFilter != null) {
-                            String parentId = "";
-                            if (parent != null && !parent.isNew()) {
-                                parentId = parent.getPrefixedFullName();
-                            }
-                            add = parentFilter.matcher(parentId).matches();
-                        }
-
-                        if (add) {
-                            pages.getPageSummaries().add(DomainObjectFactory.createPageSummary(objectFactory,
-                                    uriInfo.getBaseUri(), doc, Utils.getXWikiApi(componentManager), withPrettyNames));
-                        }
+                /* We only add pages we have the right to access, checked before loading them */
+                if (xwikiApi.hasAccessLevel("view", pageFullName)) {
+                    Document doc = xwikiApi.getDocument(pageFullName);
+
+                    if (doc == null || doc.isNew()) {
+                        getLogger().warn("Page [{}] appears to be in space [{}] but no information is available.",
+                            pageName, spaceId);
+                    } else {
+                        documents.add(doc);
                     }
                 }
             }
+
+            /* Load what the summaries need besides the documents with a few queries for the whole page */
+            PageSummaryBatch batch = this.modelFactory.loadPageSummaryBatch(documents);
+
+            for (Document doc : documents) {
+                if (parentFilter == null || parentFilter.matcher(getParentId(doc, batch, xwikiApi)).matches()) {
+                    pages.getPageSummaries().add(
+                        this.modelFactory.toRestPageSummary(uriInfo.getBaseUri(), doc, withPrettyNames, batch));
+                }
+            }
         } catch (Exception e) {
             throw new XWikiRestException(e);
         } finally {
@@ -113,4 +124,17 @@ public Pages getPages(String wikiName, String spaceName, Integer start, Integer
 
         return pages;
     }
+
+    private String getParentId(Document doc, PageSummaryBatch batch, XWiki xwikiApi) throws XWikiException
+    {
+        DocumentReference parentReference = doc.getParentReference();
+        if (parentReference != null && batch.isExistingParent(parentReference)) {
+            String parentId = this.serializer.serialize(parentReference);
+            if (xwikiApi.hasAccessLevel("view", parentId)) {
+                return parentId;
+            }
+        }
+
+        return "";
+    }
 }
@@ -19,21 +19,28 @@
  */
 package org.xwiki.rest.internal.resources.spaces;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.query.Query;
 import org.xwiki.query.QueryFilter;
 import org.xwiki.rest.XWikiResource;
 import org.xwiki.rest.XWikiRestException;
-import org.xwiki.rest.internal.DomainObjectFactory;
+import org.xwiki.rest.internal.ModelFactory;
 import org.xwiki.rest.internal.Utils;
 import org.xwiki.rest.model.jaxb.Spaces;
 import org.xwiki.rest.resources.spaces.SpacesResource;
 
+import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.api.Document;
 import com.xpn.xwiki.api.XWiki;
+import com.xpn.xwiki.doc.XWikiDocument;
 
 /**
  * @version $Id$
@@ -42,6 +49,11 @@
 @Named("org.xwiki.rest.internal.resources.spaces.SpacesResourceImpl")
 public class SpacesResourceImpl extends XWikiResource implements SpacesResource
 {
+    private static final String HOME_PAGE_NAME = "WebHome";
+
+    @Inject
+    private ModelFactory modelFactory;
+
     @Override
     public Spaces getSpaces(String wikiName, Integer start, Integer number)
             throws XWikiRestException
@@ -53,18 +65,32 @@ public Spaces getSpaces(String wikiName, Integer start, Integer number)
                     componentManager.<QueryFilter>getInstance(QueryFilter.class, "hidden")).setOffset(start)
                     .setLimit(number).setWiki(wikiName).execute();
 
+            // Check the existence of all the space home pages at once
+            Set<String> spacesWithHome = new HashSet<>();
+            if (!spaceNames.isEmpty()) {
+                Query homeQuery = queryManager.createQuery(
+                    "select doc.space from XWikiDocument as doc where doc.name = :name and doc.space in (:spaces) "
+                        + "and (doc.language = '' or doc.language is null)", Query.HQL);
+                homeQuery.bindValue("name", HOME_PAGE_NAME).bindValue("spaces", spaceNames).setWiki(wikiName);
+                spacesWithHome.addAll(homeQuery.<String>execute());
+            }
+
+            XWikiContext xcontext = Utils.getXWikiContext(componentManager);
+            XWiki xwikiApi = Utils.getXWikiApi(componentManager);
             for (String spaceName : spaceNames) {
                 List<String> spaceList = Utils.getSpacesFromSpaceId(spaceName);
-                String homeId = Utils.getPageId(wikiName, spaceList, "WebHome");
+                String homeId = Utils.getPageId(wikiName, spaceList, HOME_PAGE_NAME);
                 Document home = null;
 
-                XWiki xwikiApi = Utils.getXWikiApi(componentManager);
                 if (xwikiApi.hasAccessLevel("view", homeId)) {
-                    if (xwikiApi.exists(homeId)) {
-                        home = Utils.getXWikiApi(componentManager).getDocument(homeId);
+                    if (spacesWithHome.contains(spaceName)) {
+                        // The space only needs the name and the URLs of its home page so we don't load it
+                        DocumentReference homeReference =
+                            new DocumentReference(wikiName, spaceList, HOME_PAGE_NAME);
+                        home = new Document(new XWikiDocument(homeReference), xcontext);
                     }
-                    spaces.getSpaces().add(DomainObjectFactory
-                            .createSpace(objectFactory, uriInfo.getBaseUri(), wikiName, spaceList, home));
+                    spaces.getSpaces().add(this.modelFactory.toRestSpace(uriInfo.getBaseUri(), wikiName, spaceList,
+                        home));
                 }
             }
         } catch (Exception e) {
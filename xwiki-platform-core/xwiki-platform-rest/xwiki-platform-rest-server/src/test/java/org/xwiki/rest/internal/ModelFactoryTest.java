@@ -0,0 +1,146 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryFilter;
+import org.xwiki.query.QueryManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.api.Document;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ModelFactory}.
+ * 
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class ModelFactoryTest
+{
+    @Rule
+    public MockitoComponentMockingRule<ModelFactory> mocker =
+        new MockitoComponentMockingRule<ModelFactory>(ModelFactory.class);
+
+    private DocumentReference documentReference = new DocumentReference("wiki", Arrays.asList("Space"), "Page");
+
+    private DocumentReference parentReference = new DocumentReference("wiki", Arrays.asList("Space"), "Parent");
+
+    private Query translationsQuery = mock(Query.class, "translations");
+
+    private Query childrenQuery = mock(Query.class, "children");
+
+    private Query existingQuery = mock(Query.class, "existing");
+
+    private QueryFilter hiddenFilter = mock(QueryFilter.class);
+
+    private Document document = mock(Document.class);
+
+    @Before
+    public void configure() throws Exception
+    {
+        QueryManager queryManager = this.mocker.getInstance(QueryManager.class);
+        when(queryManager.createQuery(contains("doc.language <> ''"), eq(Query.HQL)))
+            .thenReturn(this.translationsQuery);
+        when(queryManager.createQuery(contains("doc.parent in"), eq(Query.HQL))).thenReturn(this.childrenQuery);
+        when(queryManager.createQuery(contains("doc.language = ''"), eq(Query.HQL))).thenReturn(this.existingQuery);
+
+        Provider<QueryFilter> hiddenFilterProvider =
+            this.mocker.getInstance(new DefaultParameterizedType(null, Provider.class, QueryFilter.class), "hidden");
+        when(hiddenFilterProvider.get()).thenReturn(this.hiddenFilter);
+
+        EntityReferenceSerializer<String> serializer = this.mocker.getInstance(EntityReferenceSerializer.TYPE_STRING);
+        when(serializer.serialize(this.documentReference)).thenReturn("wiki:Space.Page");
+        EntityReferenceSerializer<String> localSerializer =
+            this.mocker.getInstance(EntityReferenceSerializer.TYPE_STRING, "local");
+        when(localSerializer.serialize(this.documentReference)).thenReturn("Space.Page");
+        when(localSerializer.serialize(this.parentReference)).thenReturn("Space.Parent");
+        DocumentReferenceResolver<String> currentResolver =
+            this.mocker.getInstance(DocumentReferenceResolver.TYPE_STRING, "current");
+        when(currentResolver.resolve("Space.Page", new WikiReference("wiki"))).thenReturn(this.documentReference);
+        when(currentResolver.resolve("Space.Parent", new WikiReference("wiki"))).thenReturn(this.parentReference);
+
+        when(this.document.getWiki()).thenReturn("wiki");
+        when(this.document.getSpace()).thenReturn("Space");
+        when(this.document.getFullName()).thenReturn("Space.Page");
+        when(this.document.getDocumentReference()).thenReturn(this.documentReference);
+        when(this.document.getParentReference()).thenReturn(this.parentReference);
+    }
+
+    @Test
+    public void loadPageSummaryBatch() throws Exception
+    {
+        when(this.translationsQuery.<Object[]>execute())
+            .thenReturn(Collections.singletonList(new Object[] {"Space.Page", "fr"}));
+        when(this.childrenQuery.<Object[]>execute())
+            .thenReturn(Collections.singletonList(new Object[] {"Space.Page", "Other"}));
+        when(this.existingQuery.<String>execute()).thenReturn(Collections.singletonList("Space.Parent"));
+
+        PageSummaryBatch batch = this.mocker.getComponentUnderTest().loadPageSummaryBatch(Arrays.asList(this.document));
+
+        assertEquals(Arrays.asList("fr"), batch.getTranslations(this.documentReference));
+        assertTrue(batch.hasChildren(this.documentReference));
+        assertTrue(batch.isExistingParent(this.parentReference));
+
+        // The hidden children are not taken into account
+        verify(this.childrenQuery).addFilter(this.hiddenFilter);
+        ArgumentCaptor<Object> parents = ArgumentCaptor.forClass(Object.class);
+        verify(this.childrenQuery).bindValue(eq("parents"), parents.capture());
+        assertEquals(new HashSet<>(Arrays.asList("wiki:Space.Page", "Space.Page", "Page")),
+            new HashSet<>((List<?>) parents.getValue()));
+        verify(this.existingQuery).bindValue("fullNames", Arrays.asList("Space.Parent"));
+        verify(this.childrenQuery).setWiki("wiki");
+    }
+
+    @Test
+    public void loadPageSummaryBatchWhenOnlyHiddenChildren() throws Exception
+    {
+        when(this.translationsQuery.<Object[]>execute()).thenReturn(Collections.emptyList());
+        // The hidden filter removes all the children
+        when(this.childrenQuery.<Object[]>execute()).thenReturn(Collections.emptyList());
+        when(this.existingQuery.<String>execute()).thenReturn(Collections.emptyList());
+
+        PageSummaryBatch batch = this.mocker.getComponentUnderTest().loadPageSummaryBatch(Arrays.asList(this.document));
+
+        assertTrue(batch.getTranslations(this.documentReference).isEmpty());
+        assertFalse(batch.hasChildren(this.documentReference));
+        assertFalse(batch.isExistingParent(this.parentReference));
+        verify(this.childrenQuery).addFilter(this.hiddenFilter);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal.resources.pages;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.inject.Provider;
+import javax.ws.rs.core.UriInfo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryFilter;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rest.internal.ModelFactory;
+import org.xwiki.rest.internal.PageSummaryBatch;
+import org.xwiki.rest.model.jaxb.PageSummary;
+import org.xwiki.rest.model.jaxb.Pages;
+import org.xwiki.rest.resources.pages.PagesResource;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.api.Document;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.user.api.XWikiRightService;
+import com.xpn.xwiki.web.Utils;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link PagesResourceImpl}.
+ * 
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class PagesResourceImplTest
+{
+    @Rule
+    public MockitoComponentMockingRule<PagesResource> mocker =
+        new MockitoComponentMockingRule<PagesResource>(PagesResourceImpl.class);
+
+    private XWikiContext xcontext = mock(XWikiContext.class);
+
+    private XWiki xwiki = mock(XWiki.class);
+
+    private XWikiRightService rightService = mock(XWikiRightService.class);
+
+    private EntityReferenceSerializer<String> serializer = mock(EntityReferenceSerializer.class);
+
+    private DocumentReferenceResolver<String> resolver = mock(DocumentReferenceResolver.class);
+
+    private QueryFilter hiddenFilter = mock(QueryFilter.class);
+
+    private Query query = mock(Query.class);
+
+    private ModelFactory modelFactory;
+
+    private PagesResource resource;
+
+    @Before
+    public void configure() throws Exception
+    {
+        when(this.xcontext.getWiki()).thenReturn(this.xwiki);
+        when(this.xcontext.getWikiId()).thenReturn("wiki");
+        when(this.xcontext.getUser()).thenReturn("XWiki.Alice");
+        when(this.xwiki.getRightService()).thenReturn(this.rightService);
+
+        ExecutionContext executionContext = new ExecutionContext();
+        executionContext.setProperty("xwikicontext", this.xcontext);
+        Execution execution = mock(Execution.class);
+        ComponentManager componentManager = this.mocker.getInstance(ComponentManager.class, "context");
+        when(componentManager.getInstance(Execution.class)).thenReturn(execution);
+        when(execution.getContext()).thenReturn(executionContext);
+        when(componentManager.<QueryFilter>getInstance(QueryFilter.class, "hidden")).thenReturn(this.hiddenFilter);
+
+        Provider<XWikiContext> xcontextProvider = this.mocker.getInstance(XWikiContext.TYPE_PROVIDER);
+        when(xcontextProvider.get()).thenReturn(this.xcontext);
+
+        // The REST utility methods and the XWiki API use components from the Utils class
+        ComponentManager rootComponentManager = mock(ComponentManager.class);
+        Utils.setComponentManager(rootComponentManager);
+        when(rootComponentManager.getInstance(ComponentManager.class, "context")).thenReturn(componentManager);
+        when(componentManager.getInstance(XWikiContext.TYPE_PROVIDER, "default")).thenReturn(xcontextProvider);
+        when(componentManager.getInstance(EntityReferenceSerializer.TYPE_STRING, "default"))
+            .thenReturn(this.serializer);
+        EntityReferenceSerializer<String> localSerializer = mock(EntityReferenceSerializer.class);
+        when(componentManager.getInstance(EntityReferenceSerializer.TYPE_STRING, "local")).thenReturn(localSerializer);
+        when(localSerializer.serialize(new SpaceReference("Space", new WikiReference("whatever")))).thenReturn("Space");
+        when(componentManager.getInstance(DocumentReferenceResolver.TYPE_STRING, "currentmixed"))
+            .thenReturn(this.resolver);
+
+        QueryManager queryManager = this.mocker.getInstance(QueryManager.class);
+        when(queryManager.getNamedQuery("getSpaceDocsName")).thenReturn(this.query);
+        when(this.query.addFilter(this.hiddenFilter)).thenReturn(this.query);
+        when(this.query.bindValue("space", "Space")).thenReturn(this.query);
+        when(this.query.setOffset(anyInt())).thenReturn(this.query);
+        when(this.query.setLimit(anyInt())).thenReturn(this.query);
+
+        this.modelFactory = this.mocker.getInstance(ModelFactory.class);
+
+        UriInfo uriInfo = mock(UriInfo.class);
+        when(uriInfo.getBaseUri()).thenReturn(new URI("/xwiki/rest"));
+        this.resource = this.mocker.getComponentUnderTest();
+        ReflectionUtils.setFieldValue(this.resource, "uriInfo", uriInfo);
+    }
+
+    @Test
+    public void getPagesOfViewableDocuments() throws Exception
+    {
+        when(this.query.<String>execute()).thenReturn(Arrays.asList("Page", "Private"));
+
+        Document page = mockDocument("Page", true);
+        DocumentReference privateReference = mockDocument("Private", false).getDocumentReference();
+
+        PageSummaryBatch batch = new PageSummaryBatch();
+        when(this.modelFactory.loadPageSummaryBatch(Arrays.asList(page))).thenReturn(batch);
+        PageSummary pageSummary = new PageSummary();
+        when(this.modelFactory.toRestPageSummary(new URI("/xwiki/rest"), page, false, batch)).thenReturn(pageSummary);
+
+        Pages pages = this.resource.getPages("wiki", "Space", 0, 10, null, "", false);
+
+        assertEquals(Collections.singletonList(pageSummary), pages.getPageSummaries());
+
+        // The hidden pages are filtered by the query
+        verify(this.query).addFilter(this.hiddenFilter);
+        // The pages that cannot be viewed are not even loaded
+        verify(this.xwiki, never()).getDocument(privateReference, this.xcontext);
+    }
+
+    private Document mockDocument(String pageName, boolean viewable) throws Exception
+    {
+        DocumentReference documentReference = new DocumentReference("wiki", Arrays.asList("Space"), pageName);
+        String pageId = "wiki:Space." + pageName;
+        when(this.serializer.serialize(documentReference)).thenReturn(pageId);
+        when(this.resolver.resolve(pageId)).thenReturn(documentReference);
+        when(this.rightService.hasAccessLevel("view", "XWiki.Alice", pageId, this.xcontext)).thenReturn(viewable);
+
+        XWikiDocument xdocument = mock(XWikiDocument.class);
+        when(this.xwiki.getDocument(documentReference, this.xcontext)).thenReturn(xdocument);
+        when(xdocument.getPrefixedFullName()).thenReturn(pageId);
+
+        Document document = mock(Document.class);
+        when(xdocument.newDocument(this.xcontext)).thenReturn(document);
+        when(document.getDocumentReference()).thenReturn(documentReference);
+
+        return document;
+    }
+}
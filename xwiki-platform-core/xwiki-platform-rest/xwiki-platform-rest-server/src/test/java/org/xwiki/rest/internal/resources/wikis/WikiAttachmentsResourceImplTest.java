@@ -0,0 +1,176 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal.resources.wikis;
+
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.ws.rs.core.UriInfo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.SpaceReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rest.model.jaxb.Attachment;
+import org.xwiki.rest.model.jaxb.Attachments;
+import org.xwiki.rest.resources.wikis.WikiAttachmentsResource;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.user.api.XWikiRightService;
+import com.xpn.xwiki.web.Utils;
+import com.xpn.xwiki.web.XWikiURLFactory;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link WikiAttachmentsResourceImpl}.
+ * 
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class WikiAttachmentsResourceImplTest
+{
+    @Rule
+    public MockitoComponentMockingRule<WikiAttachmentsResource> mocker =
+        new MockitoComponentMockingRule<WikiAttachmentsResource>(WikiAttachmentsResourceImpl.class);
+
+    private XWikiContext xcontext = mock(XWikiContext.class);
+
+    private XWikiRightService rightService = mock(XWikiRightService.class);
+
+    private EntityReferenceSerializer<String> serializer = mock(EntityReferenceSerializer.class);
+
+    private List<Object> queryResults = new ArrayList<>();
+
+    private WikiAttachmentsResource resource;
+
+    @Before
+    public void configure() throws Exception
+    {
+        XWiki xwiki = mock(XWiki.class);
+        when(this.xcontext.getWiki()).thenReturn(xwiki);
+        when(this.xcontext.getWikiId()).thenReturn("wiki");
+        when(this.xcontext.getUser()).thenReturn("XWiki.Alice");
+        when(xwiki.getRightService()).thenReturn(this.rightService);
+
+        XWikiURLFactory urlFactory = mock(XWikiURLFactory.class);
+        when(this.xcontext.getURLFactory()).thenReturn(urlFactory);
+        when(urlFactory.createAttachmentURL(any(), any(), any(), any(), any(), any(), any()))
+            .thenReturn(new URL("http://localhost:8080/xwiki/bin/download/Space/Page/file"));
+        when(urlFactory.getURL(any(URL.class), any())).thenReturn("/xwiki/bin/download/Space/Page/file");
+
+        ExecutionContext executionContext = new ExecutionContext();
+        executionContext.setProperty("xwikicontext", this.xcontext);
+        Execution execution = mock(Execution.class);
+        ComponentManager componentManager = this.mocker.getInstance(ComponentManager.class, "context");
+        when(componentManager.getInstance(Execution.class)).thenReturn(execution);
+        when(execution.getContext()).thenReturn(executionContext);
+
+        // The REST utility methods use components from the Utils class to resolve and serialize the references
+        ComponentManager rootComponentManager = mock(ComponentManager.class);
+        Utils.setComponentManager(rootComponentManager);
+        when(rootComponentManager.getInstance(ComponentManager.class, "context")).thenReturn(componentManager);
+        when(componentManager.getInstance(EntityReferenceSerializer.TYPE_STRING, "default"))
+            .thenReturn(this.serializer);
+        SpaceReferenceResolver<String> spaceResolver = mock(SpaceReferenceResolver.class);
+        when(componentManager.getInstance(SpaceReferenceResolver.TYPE_STRING, "default")).thenReturn(spaceResolver);
+        when(spaceResolver.resolve("Space", new WikiReference("whatever")))
+            .thenReturn(new SpaceReference("Space", new WikiReference("whatever")));
+
+        QueryManager queryManager = this.mocker.getInstance(QueryManager.class);
+        Query query = mock(Query.class);
+        when(queryManager.createQuery(anyString(), eq(Query.XWQL))).thenReturn(query);
+        when(query.setLimit(anyInt())).thenReturn(query);
+        when(query.setOffset(anyInt())).thenReturn(query);
+        when(query.<Object>execute()).thenReturn(this.queryResults);
+
+        UriInfo uriInfo = mock(UriInfo.class);
+        when(uriInfo.getBaseUri()).thenReturn(new URI("/xwiki/rest"));
+        this.resource = this.mocker.getComponentUnderTest();
+        ReflectionUtils.setFieldValue(this.resource, "uriInfo", uriInfo);
+    }
+
+    @Test
+    public void getAttachmentsOfViewablePages() throws Exception
+    {
+        addAttachment("Page", "one.txt");
+        addAttachment("Private", "two.txt");
+        addAttachment("Page", "three.txt");
+        addAttachment("Private", "four.txt");
+
+        when(this.rightService.hasAccessLevel("view", "XWiki.Alice", "wiki:Space.Page", this.xcontext))
+            .thenReturn(true);
+
+        Attachments attachments = this.resource.getAttachments("wiki", "", "", "", "", "", 0, 10, false);
+
+        List<String> names = new ArrayList<>();
+        for (Attachment attachment : attachments.getAttachments()) {
+            names.add(attachment.getName());
+            assertEquals("wiki:Space.Page", attachment.getPageId());
+        }
+        assertEquals(Arrays.asList("one.txt", "three.txt"), names);
+
+        // The view right is checked only once per page
+        verify(this.rightService).hasAccessLevel("view", "XWiki.Alice", "wiki:Space.Page", this.xcontext);
+        verify(this.rightService).hasAccessLevel("view", "XWiki.Alice", "wiki:Space.Private", this.xcontext);
+    }
+
+    @Test
+    public void getAttachmentsWithoutViewRight() throws Exception
+    {
+        addAttachment("Private", "one.txt");
+
+        assertTrue(this.resource.getAttachments("wiki", "", "", "", "", "", 0, 10, false).getAttachments().isEmpty());
+    }
+
+    private void addAttachment(String pageName, String fileName)
+    {
+        when(this.serializer.serialize(new DocumentReference("wiki", Arrays.asList("Space"), pageName)))
+            .thenReturn("wiki:Space." + pageName);
+
+        XWikiAttachment attachment = mock(XWikiAttachment.class);
+        when(attachment.getFilename()).thenReturn(fileName);
+        when(attachment.getMimeType(this.xcontext)).thenReturn("text/plain");
+        when(attachment.getAuthor()).thenReturn("XWiki.Bob");
+        when(attachment.getDate()).thenReturn(new Date());
+        when(attachment.getVersion()).thenReturn("1.1");
+
+        this.queryResults.add(new Object[] {"Space", pageName, "1.1", attachment});
+    }
+}
@@ -114,6 +114,26 @@ public class DefaultSolrConfiguration implements SolrConfiguration
      */
     public static final boolean SOLR_SYNCHRONIZE_AT_STARTUP_DEFAULT = true;
 
+    /**
+     * The name of the configuration property containing the number of metadata extractor threads.
+     */
+    public static final String SOLR_INDEXER_EXTRACTOR_THREADS_PROPERTY = "solr.indexer.extractor.threads";
+
+    /**
+     * The default number of metadata extractor threads.
+     */
+    public static final int SOLR_INDEXER_EXTRACTOR_THREADS_DEFAULT = 2;
+
+    /**
+     * The name of the configuration property indicating if the indexer queue should be stored on disk.
+     */
+    public static final String SOLR_INDEXER_JOURNAL_PROPERTY = "solr.indexer.journal";
+
+    /**
+     * Indicate if the indexer queue should be stored on disk by default.
+     */
+    public static final boolean SOLR_INDEXER_JOURNAL_DEFAULT = true;
+
     /**
      * The Solr configuration source.
      */
@@ -165,4 +185,17 @@ public boolean synchronizeAtStartup()
     {
         return this.configuration.getProperty(SOLR_SYNCHRONIZE_AT_STARTUP, SOLR_SYNCHRONIZE_AT_STARTUP_DEFAULT);
     }
+
+    @Override
+    public int getIndexerExtractorThreads()
+    {
+        return this.configuration
+            .getProperty(SOLR_INDEXER_EXTRACTOR_THREADS_PROPERTY, SOLR_INDEXER_EXTRACTOR_THREADS_DEFAULT);
+    }
+
+    @Override
+    public boolean isIndexerJournalEnabled()
+    {
+        return this.configuration.getProperty(SOLR_INDEXER_JOURNAL_PROPERTY, SOLR_INDEXER_JOURNAL_DEFAULT);
+    }
 }
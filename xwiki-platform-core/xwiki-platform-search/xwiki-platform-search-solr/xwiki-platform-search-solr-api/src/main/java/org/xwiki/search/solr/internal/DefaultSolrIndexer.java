@@ -19,14 +19,25 @@
  */
 package org.xwiki.search.solr.internal;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.solr.common.SolrInputDocument;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
@@ -41,10 +52,13 @@
 import org.xwiki.context.ExecutionContext;
 import org.xwiki.context.ExecutionContextException;
 import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.environment.Environment;
 import org.xwiki.job.JobException;
 import org.xwiki.job.JobExecutor;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.search.solr.internal.api.SolrConfiguration;
 import org.xwiki.search.solr.internal.api.SolrIndexer;
 import org.xwiki.search.solr.internal.api.SolrIndexerException;
@@ -63,6 +77,10 @@
  * This implementation does not directly process the given leaf-references, but adds them to a processing queue, in the
  * order they were received. The {@link Runnable} part of this implementation is the one that sequentially reads and
  * processes the queue.
+ * <p>
+ * The metadata of the entities to index are extracted in parallel by a pool of extractor threads and an entity which is
+ * already waiting in the queue to be indexed is not added again. The received operations are also stored in a journal
+ * on disk so that they are not lost if XWiki is stopped before they are processed.
  * 
  * @version $Id$
  * @since 5.1M2
@@ -97,6 +115,16 @@ public class DefaultSolrIndexer implements SolrIndexer, Initializable, Disposabl
          */
         public IndexOperation operation;
 
+        /**
+         * The metadata extraction running in the extractor threads.
+         */
+        public Future<LengthSolrInputDocument> extraction;
+
+        /**
+         * The journal entries completed when this entry is committed, null if the journal is disabled.
+         */
+        public List<SolrIndexerJournal.Entry> journalEntries;
+
         /**
          * @param indexReference the reference of the entity to index.
          * @param operation the indexing operation to perform.
@@ -163,16 +191,24 @@ public String toString()
          */
         public IndexOperation operation;
 
+        /**
+         * The corresponding journal entry, null if the journal is disabled.
+         */
+        public SolrIndexerJournal.Entry journalEntry;
+
         /**
          * @param reference the reference of the entity to index.
          * @param recurse also apply operation to reference children.
          * @param operation the indexing operation to perform.
+         * @param journalEntry the corresponding journal entry, null if the journal is disabled
          */
-        public ResolveQueueEntry(EntityReference reference, boolean recurse, IndexOperation operation)
+        public ResolveQueueEntry(EntityReference reference, boolean recurse, IndexOperation operation,
+            SolrIndexerJournal.Entry journalEntry)
         {
             this.reference = reference;
             this.recurse = recurse;
             this.operation = operation;
+            this.journalEntry = journalEntry;
         }
     }
 
@@ -204,6 +240,11 @@ public void runInternal()
                     break;
                 }
 
+                if (journal != null) {
+                    // Write the operations added since the last entry was taken
+                    journal.flush();
+                }
+
                 try {
                     if (queueEntry.operation == IndexOperation.INDEX) {
                         Iterable<EntityReference> references;
@@ -214,19 +255,27 @@ public void runInternal()
                         }
 
                         for (EntityReference reference : references) {
-                            indexQueue.put(new IndexQueueEntry(reference, queueEntry.operation));
+                            putIndexEntry(new IndexQueueEntry(reference, queueEntry.operation),
+                                queueEntry.journalEntry);
                         }
                     } else {
+                        // Make sure entities deleted after being queued for indexing are indexed again if needed
+                        forgetPendingIndex(queueEntry.reference, queueEntry.recurse);
+
                         if (queueEntry.recurse) {
-                            indexQueue.put(new IndexQueueEntry(solrRefereceResolver.getQuery(queueEntry.reference),
-                                queueEntry.operation));
+                            putEntry(new IndexQueueEntry(solrRefereceResolver.getQuery(queueEntry.reference),
+                                queueEntry.operation), queueEntry.journalEntry);
                         } else if (queueEntry.reference != null) {
-                            indexQueue.put(new IndexQueueEntry(queueEntry.reference, queueEntry.operation));
+                            putEntry(new IndexQueueEntry(queueEntry.reference, queueEntry.operation),
+                                queueEntry.journalEntry);
                         }
                     }
                 } catch (Throwable e) {
                     logger.warn("Failed to apply operation [{}] on root reference [{}]", queueEntry.operation,
                         queueEntry.reference, e);
+                } finally {
+                    // The resolved entry is replaced by the index entries (if any)
+                    release(queueEntry.journalEntry);
                 }
             }
 
@@ -238,7 +287,7 @@ public void runInternal()
      * Stop resolver thread.
      */
     private static final ResolveQueueEntry RESOLVE_QUEUE_ENTRY_STOP =
-        new ResolveQueueEntry(null, false, IndexOperation.STOP);
+        new ResolveQueueEntry(null, false, IndexOperation.STOP, null);
 
     /**
      * Stop indexer thread.
@@ -285,6 +334,16 @@ public void runInternal()
     @Inject
     private JobExecutor jobs;
 
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private EntityReferenceSerializer<String> referenceSerializer;
+
+    @Inject
+    @Named("explicit")
+    private EntityReferenceResolver<String> referenceResolver;
+
     /**
      * The queue of index operation to perform.
      */
@@ -305,6 +364,21 @@ public void runInternal()
      */
     private Thread resolveThread;
 
+    /**
+     * The threads in which the metadata of the entities to index are extracted.
+     */
+    private ExecutorService extractorExecutor;
+
+    /**
+     * The index entries waiting in the queue (and not yet being extracted) by reference.
+     */
+    private final ConcurrentMap<EntityReference, IndexQueueEntry> pendingIndex = new ConcurrentHashMap<>();
+
+    /**
+     * The journal of the queued operations, null if disabled.
+     */
+    private SolrIndexerJournal journal;
+
     /**
      * Indicate of the component has been disposed.
      */
@@ -322,6 +396,28 @@ public void initialize() throws InitializationException
         this.resolveQueue = new LinkedBlockingQueue<>();
         this.indexQueue = new LinkedBlockingQueue<>(this.configuration.getIndexerQueueCapacity());
 
+        // Restore the operations which were not processed before the last shutdown
+        if (this.configuration.isIndexerJournalEnabled() && this.environment.getPermanentDirectory() != null) {
+            this.journal = new SolrIndexerJournal(
+                new File(this.environment.getPermanentDirectory(), "cache/solr/indexer/queue.journal"),
+                this.referenceSerializer, this.referenceResolver);
+
+            for (SolrIndexerJournal.Entry entry : this.journal.read()) {
+                this.resolveQueue.offer(
+                    new ResolveQueueEntry(entry.getReference(), entry.isRecurse(), entry.getOperation(), entry));
+            }
+
+            if (!this.resolveQueue.isEmpty()) {
+                this.logger.info("Restored [{}] Solr indexer operations from the journal", this.resolveQueue.size());
+            }
+        }
+
+        // Create the metadata extractor threads
+        this.extractorExecutor = Executors.newFixedThreadPool(
+            Math.max(1, this.configuration.getIndexerExtractorThreads()),
+            new BasicThreadFactory.Builder().namingPattern("XWiki Solr extractor thread %d").daemon(true)
+                .priority(Thread.NORM_PRIORITY - 1).build());
+
         // Launch the resolve thread
         this.resolveThread = new Thread(new Resolver());
         this.resolveThread.setName("XWiki Solr resolve thread");
@@ -379,9 +475,174 @@ public void run()
             }
         }
 
+        // The extractions still running are not needed anymore
+        this.extractorExecutor.shutdownNow();
+
+        if (this.journal != null) {
+            this.journal.close();
+        }
+
         this.logger.debug("Stop SOLR indexer thread");
     }
 
+    /**
+     * Indicate that an operation produced by the passed journal entry is done.
+     * 
+     * @param journalEntry the journal entry, null if the journal is disabled
+     */
+    private void release(SolrIndexerJournal.Entry journalEntry)
+    {
+        if (journalEntry != null) {
+            this.journal.release(journalEntry);
+        }
+    }
+
+    /**
+     * Release the journal entries of the committed index entries and mark them as completed in the journal file.
+     * 
+     * @param committed the committed index entries
+     */
+    private void releaseCommitted(List<IndexQueueEntry> committed)
+    {
+        if (this.journal != null) {
+            for (IndexQueueEntry entry : committed) {
+                if (entry.journalEntries != null) {
+                    entry.journalEntries.forEach(this.journal::release);
+                }
+            }
+
+            this.journal.commit();
+        }
+
+        committed.clear();
+    }
+
+    /**
+     * Associate a journal entry to an index entry so that it's not completed before the index entry is committed.
+     * 
+     * @param entry the index entry
+     * @param journalEntry the journal entry, null if the journal is disabled
+     */
+    private void attach(IndexQueueEntry entry, SolrIndexerJournal.Entry journalEntry)
+    {
+        if (journalEntry != null) {
+            this.journal.hold(journalEntry);
+
+            if (entry.journalEntries == null) {
+                entry.journalEntries = new ArrayList<>();
+            }
+            entry.journalEntries.add(journalEntry);
+        }
+    }
+
+    /**
+     * Add an entry to the index queue.
+     * 
+     * @param entry the entry to add
+     * @param journalEntry the journal entry which produced the index entry, null if the journal is disabled
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    private void putEntry(IndexQueueEntry entry, SolrIndexerJournal.Entry journalEntry) throws InterruptedException
+    {
+        attach(entry, journalEntry);
+
+        this.indexQueue.put(entry);
+    }
+
+    /**
+     * Add an index entry to the index queue unless the same entity is already waiting to be indexed.
+     * 
+     * @param entry the entry to add
+     * @param journalEntry the journal entry which produced the index entry, null if the journal is disabled
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    private void putIndexEntry(IndexQueueEntry entry, SolrIndexerJournal.Entry journalEntry)
+        throws InterruptedException
+    {
+        // The journal entry is attached atomically to the entry waiting in the queue (if any) so that it's not missed
+        // when the waiting entry is taken from the queue
+        IndexQueueEntry pendingEntry = this.pendingIndex.compute(entry.reference, (key, existingEntry) -> {
+            IndexQueueEntry result = existingEntry != null ? existingEntry : entry;
+            attach(result, journalEntry);
+            return result;
+        });
+
+        if (pendingEntry == entry) {
+            this.indexQueue.put(entry);
+        } else {
+            this.logger.debug("Entity [{}] is already waiting to be indexed", entry.reference);
+        }
+    }
+
+    /**
+     * Forget the index entries waiting in the queue for the passed reference so that a later index operation on the
+     * same entity is not skipped.
+     * 
+     * @param reference the deleted reference
+     * @param recurse true if the children of the reference are also deleted
+     */
+    private void forgetPendingIndex(EntityReference reference, boolean recurse)
+    {
+        if (reference == null) {
+            if (recurse) {
+                this.pendingIndex.clear();
+            }
+        } else if (recurse) {
+            this.pendingIndex.keySet().removeIf(key -> key.equals(reference) || key.hasParent(reference));
+        } else {
+            this.pendingIndex.remove(reference);
+        }
+    }
+
+    /**
+     * Get the next chunk of entries to process and start extracting the metadata of the entities to index.
+     * 
+     * @param queueEntry the first entry of the chunk
+     * @param chunk the list to fill with the entries to process
+     * @return {@code false} if the INDEX_QUEUE_ENTRY_STOP has been retrieved from the queue
+     */
+    private boolean startChunk(IndexQueueEntry queueEntry, List<IndexQueueEntry> chunk)
+    {
+        int chunkSize = Math.max(1, this.configuration.getIndexerBatchSize());
+
+        for (IndexQueueEntry entry = queueEntry; entry != null; entry =
+            chunk.size() < chunkSize ? this.indexQueue.poll() : null) {
+            if (entry == INDEX_QUEUE_ENTRY_STOP) {
+                return false;
+            }
+
+            if (IndexOperation.INDEX.equals(entry.operation)) {
+                // From now on, a new index operation on the same entity need to be queued again since the extraction
+                // might read the entity before it's modified
+                this.pendingIndex.remove(entry.reference, entry);
+
+                EntityReference reference = entry.reference;
+                entry.extraction = this.extractorExecutor.submit(() -> extract(reference));
+            }
+
+            chunk.add(entry);
+        }
+
+        return true;
+    }
+
+    /**
+     * @param reference the reference to extract metadata from
+     * @return the {@link SolrInputDocument} containing extracted metadata from the passed reference; {@code null} if
+     *         the reference type is not supported
+     * @throws Exception when failing to extract the metadata
+     */
+    private LengthSolrInputDocument extract(EntityReference reference) throws Exception
+    {
+        try {
+            this.ecim.initialize(new ExecutionContext());
+
+            return getSolrDocument(reference);
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+
     /**
      * Process a batch of operations that were just read from the index operations queue. This method also commits the
      * batch when it finishes to process it.
@@ -394,46 +655,47 @@ private boolean processBatch(IndexQueueEntry queueEntry)
         SolrInstance solrInstance = this.solrInstanceProvider.get();
 
         int length = 0;
+        List<IndexQueueEntry> uncommitted = new ArrayList<>();
 
-        for (IndexQueueEntry batchEntry = queueEntry; batchEntry != null; batchEntry = this.indexQueue.poll()) {
-            if (batchEntry == INDEX_QUEUE_ENTRY_STOP) {
+        for (IndexQueueEntry chunkEntry = queueEntry; chunkEntry != null; chunkEntry = this.indexQueue.poll()) {
+            // Start extracting in parallel the metadata of the next entries
+            List<IndexQueueEntry> chunk = new ArrayList<>();
+            if (!startChunk(chunkEntry, chunk)) {
                 // Discard the current batch and stop the indexing thread.
                 return false;
             }
 
-            IndexOperation operation = batchEntry.operation;
+            // Apply the operations in the order they were queued
+            for (IndexQueueEntry batchEntry : chunk) {
+                IndexOperation operation = batchEntry.operation;
 
-            // For the current contiguous operations queue, group the changes
-            try {
-                this.ecim.initialize(new ExecutionContext());
+                // For the current contiguous operations queue, group the changes
+                try {
+                    if (IndexOperation.INDEX.equals(operation)) {
+                        LengthSolrInputDocument solrDocument = getExtractedDocument(batchEntry);
+                        if (solrDocument != null) {
+                            solrInstance.add(solrDocument);
+                            length += solrDocument.getLength();
+                            ++this.batchSize;
+                        }
+                    } else if (IndexOperation.DELETE.equals(operation)) {
+                        delete(solrInstance, batchEntry);
 
-                if (IndexOperation.INDEX.equals(operation)) {
-                    LengthSolrInputDocument solrDocument = getSolrDocument(batchEntry.reference);
-                    if (solrDocument != null) {
-                        solrInstance.add(solrDocument);
-                        length += solrDocument.getLength();
                         ++this.batchSize;
                     }
-                } else if (IndexOperation.DELETE.equals(operation)) {
-                    if (batchEntry.reference == null) {
-                        solrInstance.deleteByQuery(batchEntry.deleteQuery);
-                    } else {
-                        solrInstance.delete(this.solrRefereceResolver.getId(batchEntry.reference));
-                    }
-
-                    ++this.batchSize;
+                } catch (Throwable e) {
+                    this.logger.error("Failed to process entry [{}]", batchEntry, e);
                 }
-            } catch (Throwable e) {
-                this.logger.error("Failed to process entry [{}]", batchEntry, e);
-            } finally {
-                this.execution.removeContext();
-            }
 
-            // Commit the index changes so that they become available to queries. This is a costly operation and that is
-            // the reason why we perform it at the end of the batch.
-            if (shouldCommit(length, this.batchSize)) {
-                commit();
-                length = 0;
+                uncommitted.add(batchEntry);
+
+                // Commit the index changes so that they become available to queries. This is a costly operation and
+                // that is the reason why we perform it at the end of the batch.
+                if (shouldCommit(length, this.batchSize)) {
+                    commit();
+                    length = 0;
+                    releaseCommitted(uncommitted);
+                }
             }
         }
 
@@ -441,10 +703,45 @@ private boolean processBatch(IndexQueueEntry queueEntry)
         if (this.batchSize > 0) {
             commit();
         }
+        releaseCommitted(uncommitted);
 
         return true;
     }
 
+    /**
+     * @param solrInstance the Solr instance
+     * @param entry the delete entry
+     * @throws Exception when failing to delete the entry
+     */
+    private void delete(SolrInstance solrInstance, IndexQueueEntry entry) throws Exception
+    {
+        try {
+            this.ecim.initialize(new ExecutionContext());
+
+            if (entry.reference == null) {
+                solrInstance.deleteByQuery(entry.deleteQuery);
+            } else {
+                solrInstance.delete(this.solrRefereceResolver.getId(entry.reference));
+            }
+        } finally {
+            this.execution.removeContext();
+        }
+    }
+
+    /**
+     * @param entry the index entry
+     * @return the extracted document
+     * @throws Exception when the extraction failed
+     */
+    private LengthSolrInputDocument getExtractedDocument(IndexQueueEntry entry) throws Exception
+    {
+        try {
+            return entry.extraction.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
     /**
      * Commit.
      */
@@ -545,10 +842,19 @@ public void delete(EntityReference reference, boolean recurse)
     private void addToQueue(EntityReference reference, boolean recurse, IndexOperation operation)
     {
         if (!this.disposed) {
+            SolrIndexerJournal.Entry journalEntry = null;
+            if (this.journal != null) {
+                // Written to the file by the resolve thread
+                journalEntry = new SolrIndexerJournal.Entry(reference, recurse, operation);
+                this.journal.append(journalEntry);
+            }
+
             // Don't block because the capacity of the resolver queue is not limited.
             try {
-                this.resolveQueue.put(new ResolveQueueEntry(reference, recurse, operation));
+                this.resolveQueue.put(new ResolveQueueEntry(reference, recurse, operation, journalEntry));
             } catch (InterruptedException e) {
+                release(journalEntry);
+
                 this.logger.error("Failed to add reference [{}] to Solr indexing queue", reference, e);
             }
         }
@@ -20,8 +20,10 @@
 package org.xwiki.search.solr.internal;
 
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -37,6 +39,7 @@
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.WikiReference;
 import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationContext;
 import org.xwiki.observation.event.Event;
 import org.xwiki.search.solr.internal.api.SolrIndexer;
 
@@ -46,6 +49,8 @@
 import com.xpn.xwiki.internal.event.AttachmentAddedEvent;
 import com.xpn.xwiki.internal.event.AttachmentDeletedEvent;
 import com.xpn.xwiki.internal.event.AttachmentUpdatedEvent;
+import com.xpn.xwiki.internal.event.DocumentsBatchSavedEvent;
+import com.xpn.xwiki.internal.event.DocumentsBatchSavingEvent;
 import com.xpn.xwiki.internal.event.EntityEvent;
 import com.xpn.xwiki.internal.event.XObjectAddedEvent;
 import com.xpn.xwiki.internal.event.XObjectDeletedEvent;
@@ -72,7 +77,9 @@ public class SolrIndexEventListener implements EventListener
         new DocumentCreatedEvent(), new DocumentDeletedEvent(), new AttachmentAddedEvent(),
         new AttachmentDeletedEvent(), new AttachmentUpdatedEvent(), new XObjectAddedEvent(), new XObjectDeletedEvent(),
         new XObjectUpdatedEvent(), new XObjectPropertyAddedEvent(), new XObjectPropertyDeletedEvent(),
-        new XObjectPropertyUpdatedEvent(), new WikiDeletedEvent());
+        new XObjectPropertyUpdatedEvent(), new WikiDeletedEvent(), new DocumentsBatchSavedEvent());
+
+    private static final DocumentsBatchSavingEvent BATCH_SAVING_EVENT = new DocumentsBatchSavingEvent();
 
     /**
      * Logging framework.
@@ -88,6 +95,9 @@ public class SolrIndexEventListener implements EventListener
     @Inject
     private Provider<SolrIndexer> solrIndexer;
 
+    @Inject
+    private ObservationContext observationContext;
+
     @Override
     public List<Event> getEvents()
     {
@@ -104,7 +114,13 @@ public String getName()
     public void onEvent(Event event, Object source, Object data)
     {
         try {
-            if (event instanceof DocumentUpdatedEvent) {
+            if (event instanceof DocumentsBatchSavedEvent) {
+                indexBatch(data);
+            } else if (this.observationContext.isIn(BATCH_SAVING_EVENT) && !isDeletion(event)) {
+                // The documents of the batch are not committed yet so the indexer (which runs in another thread) would
+                // index their previous version: they are indexed at the end of the batch instead
+                this.logger.debug("Delaying the indexing of [{}] until the end of the documents batch", source);
+            } else if (event instanceof DocumentUpdatedEvent) {
                 XWikiDocument document = (XWikiDocument) source;
 
                 this.solrIndexer.get().index(document.getDocumentReferenceWithLocale(), false);
@@ -171,4 +187,24 @@ public void onEvent(Event event, Object source, Object data)
             this.logger.error("Failed to handle event [{}] with source [{}]", event, source, e);
         }
     }
+
+    private boolean isDeletion(Event event)
+    {
+        return event instanceof DocumentDeletedEvent || event instanceof AttachmentDeletedEvent
+            || event instanceof XObjectDeletedEvent || event instanceof XObjectPropertyDeletedEvent
+            || event instanceof WikiDeletedEvent;
+    }
+
+    private void indexBatch(Object data)
+    {
+        // Index each document with all its translations, objects and attachments
+        Set<DocumentReference> documentReferences = new LinkedHashSet<>();
+        for (Object documentReference : (List<?>) data) {
+            documentReferences.add(new DocumentReference((DocumentReference) documentReference, (Locale) null));
+        }
+
+        for (DocumentReference documentReference : documentReferences) {
+            this.solrIndexer.get().index(documentReference, true);
+        }
+    }
 }
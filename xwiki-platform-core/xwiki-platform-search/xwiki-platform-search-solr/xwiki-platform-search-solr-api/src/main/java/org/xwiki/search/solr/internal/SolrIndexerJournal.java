@@ -0,0 +1,450 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.LocaleUtils;
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+
+/**
+ * File containing the operations queued in the Solr indexer so that they survive a restart.
+ * <p>
+ * Each line contains the operation, the recurse flag, the type of the reference, its locale and the serialized
+ * reference. The added entries are kept in memory until {@link #flush()} writes them to the file, so that the callers
+ * adding operations don't wait for the disk. An entry is completed once all the index changes it produced have been
+ * committed and {@link #commit()} then appends a completion mark (the {@code COMPLETED} keyword followed by the line of
+ * the entry) to the file. The file is only rewritten with the entries which are not completed yet once the completed
+ * entries take at least as much room as the others, so that the cost of the rewrites stays proportional to the number
+ * of completed entries.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class SolrIndexerJournal
+{
+    /**
+     * The journal entry.
+     *
+     * @version $Id$
+     */
+    public static class Entry
+    {
+        private final EntityReference reference;
+
+        private final boolean recurse;
+
+        private final IndexOperation operation;
+
+        /**
+         * The number of pending operations (resolution, indexing, etc.) produced by the entry.
+         */
+        private final AtomicInteger holders = new AtomicInteger(1);
+
+        /**
+         * @param reference the reference of the entity to index
+         * @param recurse also apply operation to reference children
+         * @param operation the indexing operation to perform
+         */
+        public Entry(EntityReference reference, boolean recurse, IndexOperation operation)
+        {
+            this.reference = reference;
+            this.recurse = recurse;
+            this.operation = operation;
+        }
+
+        /**
+         * @return the reference of the entity to index
+         */
+        public EntityReference getReference()
+        {
+            return this.reference;
+        }
+
+        /**
+         * @return true if the operation should also be applied to reference children
+         */
+        public boolean isRecurse()
+        {
+            return this.recurse;
+        }
+
+        /**
+         * @return the indexing operation to perform
+         */
+        public IndexOperation getOperation()
+        {
+            return this.operation;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SolrIndexerJournal.class);
+
+    private static final char SEPARATOR = '\t';
+
+    private static final String NULL = "-";
+
+    private static final String COMPLETED_PREFIX = "COMPLETED" + SEPARATOR;
+
+    /**
+     * The minimum number of completed entries in the file before it's rewritten.
+     */
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    private final File file;
+
+    private final EntityReferenceSerializer<String> serializer;
+
+    private final EntityReferenceResolver<String> resolver;
+
+    /**
+     * The entries which are not completed, with their serialized form, in the order they were added.
+     */
+    private final Map<Entry, String> entries = new LinkedHashMap<>();
+
+    /**
+     * The serialized entries not yet written to the file.
+     */
+    private final List<String> unwritten = new ArrayList<>();
+
+    /**
+     * The number of completed entries still in the file or waiting to be written (with their completion mark).
+     */
+    private int completed;
+
+    /**
+     * Used to write the file without blocking the addition of new entries.
+     */
+    private final Object writeLock = new Object();
+
+    private Writer writer;
+
+    /**
+     * @param file the file where to store the journal
+     * @param serializer used to serialize the references
+     * @param resolver used to parse the references
+     */
+    public SolrIndexerJournal(File file, EntityReferenceSerializer<String> serializer,
+        EntityReferenceResolver<String> resolver)
+    {
+        this.file = file;
+        this.serializer = serializer;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Read the entries which were stored in the file and not completed. The returned entries are not completed until
+     * they are {@link #release(Entry) released}.
+     *
+     * @return the entries which were stored in the journal and not completed
+     */
+    public List<Entry> read()
+    {
+        List<Entry> readEntries = new ArrayList<>();
+
+        synchronized (this.writeLock) {
+            if (this.file.exists()) {
+                List<String> lines = new ArrayList<>();
+                Map<String, Integer> completedLines = new HashMap<>();
+                readLines(lines, completedLines);
+
+                for (String line : lines) {
+                    // Identical entries are interchangeable so a completion mark cancels the first one not completed
+                    if (completedLines.containsKey(line)) {
+                        completedLines.computeIfPresent(line, (key, count) -> count > 1 ? count - 1 : null);
+
+                        synchronized (this) {
+                            this.completed++;
+                        }
+                    } else {
+                        Entry entry = parse(line);
+                        if (entry != null) {
+                            readEntries.add(entry);
+
+                            synchronized (this) {
+                                this.entries.put(entry, line);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return readEntries;
+    }
+
+    private void readLines(List<String> lines, Map<String, Integer> completedLines)
+    {
+        try (BufferedReader reader = Files.newBufferedReader(this.file.toPath(), StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith(COMPLETED_PREFIX)) {
+                    completedLines.merge(line.substring(COMPLETED_PREFIX.length()), 1, Integer::sum);
+                } else {
+                    lines.add(line);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to read the Solr indexer journal [{}]", this.file, e);
+        }
+    }
+
+    /**
+     * Add an entry at the end of the journal. It's written to the file at the next {@link #flush()}.
+     *
+     * @param entry the entry to add at the end of the journal
+     */
+    public synchronized void append(Entry entry)
+    {
+        String line = serialize(entry);
+
+        this.entries.put(entry, line);
+        this.unwritten.add(line);
+    }
+
+    /**
+     * Indicate that a new pending operation has been produced by the passed entry.
+     *
+     * @param entry the journal entry
+     */
+    public void hold(Entry entry)
+    {
+        entry.holders.incrementAndGet();
+    }
+
+    /**
+     * Indicate that a pending operation produced by the passed entry is done. The entry is completed when all its
+     * pending operations (including the first one, which is the entry itself) are done.
+     *
+     * @param entry the journal entry
+     */
+    public void release(Entry entry)
+    {
+        if (entry.holders.decrementAndGet() == 0) {
+            synchronized (this) {
+                String line = this.entries.remove(entry);
+                // Nothing to mark when the entry was not written yet (identical lines are interchangeable)
+                if (line != null && !this.unwritten.remove(line)) {
+                    this.unwritten.add(COMPLETED_PREFIX + line);
+                    this.completed++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the added entries to the file.
+     */
+    public void flush()
+    {
+        synchronized (this.writeLock) {
+            List<String> lines;
+            synchronized (this) {
+                if (this.unwritten.isEmpty()) {
+                    return;
+                }
+
+                lines = new ArrayList<>(this.unwritten);
+                this.unwritten.clear();
+            }
+
+            try {
+                if (this.writer == null) {
+                    this.file.getParentFile().mkdirs();
+                    this.writer = Files.newBufferedWriter(this.file.toPath(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+
+                write(this.writer, lines);
+                this.writer.flush();
+            } catch (IOException e) {
+                LOGGER.error("Failed to write [{}] operations in the Solr indexer journal [{}]", lines.size(),
+                    this.file, e);
+            }
+        }
+    }
+
+    /**
+     * Write the completion marks of the completed entries to the file, or rewrite the file with only the entries which
+     * are not completed once the completed entries take at least as much room as the others.
+     */
+    public void commit()
+    {
+        synchronized (this.writeLock) {
+            List<String> lines;
+            synchronized (this) {
+                if (!isCompactionNeeded()) {
+                    lines = null;
+                } else {
+                    this.completed = 0;
+                    lines = new ArrayList<>(this.entries.values());
+                    // The entries not yet written are part of the new file
+                    this.unwritten.clear();
+                }
+            }
+
+            if (lines != null) {
+                compact(lines);
+            } else {
+                flush();
+            }
+        }
+    }
+
+    private boolean isCompactionNeeded()
+    {
+        return this.completed > 0 && (this.entries.isEmpty()
+            || (this.completed >= COMPACTION_THRESHOLD && this.completed >= this.entries.size()));
+    }
+
+    private void compact(List<String> lines)
+    {
+        closeWriter();
+
+        try {
+            if (lines.isEmpty()) {
+                Files.deleteIfExists(this.file.toPath());
+            } else {
+                this.file.getParentFile().mkdirs();
+                File newFile = new File(this.file.getParentFile(), this.file.getName() + ".new");
+                try (Writer newWriter = Files.newBufferedWriter(newFile.toPath(), StandardCharsets.UTF_8)) {
+                    write(newWriter, lines);
+                }
+                move(newFile, this.file);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to compact the Solr indexer journal [{}]", this.file, e);
+        }
+    }
+
+    /**
+     * Write the added entries and release the file.
+     */
+    public void close()
+    {
+        flush();
+
+        synchronized (this.writeLock) {
+            closeWriter();
+        }
+    }
+
+    private void closeWriter()
+    {
+        if (this.writer != null) {
+            try {
+                this.writer.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close the Solr indexer journal [{}]", this.file, e);
+            }
+            this.writer = null;
+        }
+    }
+
+    private void write(Writer output, List<String> lines) throws IOException
+    {
+        for (String line : lines) {
+            output.write(line);
+            output.write('\n');
+        }
+    }
+
+    private void move(File source, File target) throws IOException
+    {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private String serialize(Entry entry)
+    {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append(entry.getOperation().name());
+        builder.append(SEPARATOR);
+        builder.append(entry.isRecurse());
+        builder.append(SEPARATOR);
+
+        EntityReference reference = entry.getReference();
+        if (reference != null) {
+            builder.append(reference.getType().name());
+            builder.append(SEPARATOR);
+            Locale locale = reference instanceof DocumentReference ? ((DocumentReference) reference).getLocale() : null;
+            builder.append(locale != null ? locale.toString() : NULL);
+            builder.append(SEPARATOR);
+            builder.append(StringEscapeUtils.escapeJava(this.serializer.serialize(reference)));
+        } else {
+            builder.append(NULL);
+        }
+
+        return builder.toString();
+    }
+
+    private Entry parse(String line)
+    {
+        String[] elements = StringUtils.splitPreserveAllTokens(line, SEPARATOR);
+
+        try {
+            IndexOperation operation = IndexOperation.valueOf(elements[0]);
+            boolean recurse = Boolean.parseBoolean(elements[1]);
+
+            EntityReference reference = null;
+            if (elements.length == 5) {
+                EntityType type = EntityType.valueOf(elements[2]);
+                reference = this.resolver.resolve(StringEscapeUtils.unescapeJava(elements[4]), type);
+                if (type == EntityType.DOCUMENT) {
+                    Locale locale = NULL.equals(elements[3]) ? null : LocaleUtils.toLocale(elements[3]);
+                    reference = new DocumentReference(reference, locale);
+                }
+            }
+
+            return new Entry(reference, recurse, operation);
+        } catch (Exception e) {
+            LOGGER.warn("Ignoring invalid Solr indexer journal line [{}]: {}", line, e.getMessage());
+
+            return null;
+        }
+    }
+}
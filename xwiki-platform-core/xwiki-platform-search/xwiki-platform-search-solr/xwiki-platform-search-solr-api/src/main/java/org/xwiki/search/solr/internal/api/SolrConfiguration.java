@@ -78,4 +78,22 @@
      * @since 6.1M2
      */
     boolean synchronizeAtStartup();
+
+    /**
+     * @return the number of threads used to extract the metadata of the entities to index
+     * @since 10.0RC1
+     */
+    default int getIndexerExtractorThreads()
+    {
+        return 1;
+    }
+
+    /**
+     * @return true if the operations waiting in the indexer queue should be stored on disk to survive a restart
+     * @since 10.0RC1
+     */
+    default boolean isIndexerJournalEnabled()
+    {
+        return false;
+    }
 }
@@ -25,6 +25,7 @@
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -62,14 +63,14 @@
 public class DatabaseDocumentIterator extends AbstractDocumentIterator<String>
 {
     /**
-     * The current index in the list of {@link #results}.
+     * The results of the wiki that is currently being iterated, read from the database as they are iterated.
      */
-    private int index;
+    private Stream<Object[]> stream;
 
     /**
-     * A 'page' of results taken from the database.
+     * Iterates over the {@link #stream} of results.
      */
-    private List<Object[]> results = Collections.emptyList();
+    private Iterator<Object[]> results = Collections.emptyIterator();
 
     /**
      * Used to get the list of available wikis.
@@ -87,11 +88,6 @@ public class DatabaseDocumentIterator extends AbstractDocumentIterator<String>
      */
     private String wiki;
 
-    /**
-     * The offset in the current wiki.
-     */
-    private int offset;
-
     /**
      * Used to query the underlying storage.
      */
@@ -126,13 +122,13 @@ public class DatabaseDocumentIterator extends AbstractDocumentIterator<String>
     @Override
     public boolean hasNext()
     {
-        return getResults().size() > index;
+        return getResults().hasNext();
     }
 
     @Override
     public Pair<DocumentReference, String> next()
     {
-        Object[] result = getResults().get(index++);
+        Object[] result = getResults().next();
         String localSpaceReference = (String) result[0];
         String name = (String) result[1];
         String locale = (String) result[2];
@@ -165,44 +161,52 @@ public long size()
         return size;
     }
 
+    @Override
+    public void close()
+    {
+        if (this.stream != null) {
+            this.stream.close();
+            this.stream = null;
+        }
+
+        this.results = Collections.emptyIterator();
+    }
+
     /**
-     * The current 'page' of results. If the current page has been fully iterated then a new page is fetched
-     * automatically.
+     * The results of the current wiki. If the current wiki has been fully iterated then the results of the next wiki
+     * are fetched automatically.
      * 
-     * @return the current 'page' of results taken from the database
+     * @return the results of the current wiki
      */
-    private List<Object[]> getResults()
+    private Iterator<Object[]> getResults()
     {
-        if (index >= results.size()) {
-            if (wiki == null) {
-                wiki = getNextWiki();
-            }
-            while (wiki != null) {
-                fetchNextResults();
-                if (results.size() > 0) {
-                    break;
-                }
-                wiki = getNextWiki();
-                offset = 0;
+        while (!this.results.hasNext()) {
+            // Release the database cursor as soon as possible
+            close();
+
+            this.wiki = getNextWiki();
+            if (this.wiki == null) {
+                break;
             }
-            index = 0;
+
+            fetchResults();
         }
-        return results;
+
+        return this.results;
     }
 
     /**
-     * Fetches the next 'page' of results from the database.
+     * Fetches the results of the current wiki from the database.
      */
-    private void fetchNextResults()
+    private void fetchResults()
     {
         try {
-            // We use basic pagination (absolute offset) because we don't expect the database to change too much while
-            // the synchronization takes place. Also, the database is used as the reference store, meaning that we
-            // update the Solr index to match the database, not the other way around.
-            results = getQuery().setWiki(wiki).setOffset(offset).execute();
-            offset += LIMIT;
+            // The results are streamed from a single query, instead of paginating with an absolute offset which gets
+            // slower and slower as the offset increases. Also, the database is used as the reference store, meaning
+            // that we update the Solr index to match the database, not the other way around.
+            this.stream = getQuery().setWiki(this.wiki).stream();
+            this.results = this.stream.iterator();
         } catch (QueryException e) {
-            results = Collections.emptyList();
             logger.error("Failed to query the database.", e);
         }
     }
@@ -233,7 +237,7 @@ private Query getQuery() throws QueryException
                 }
             }
 
-            query = queryManager.createQuery(select + whereClause + orderBy, Query.HQL).setLimit(LIMIT);
+            query = queryManager.createQuery(select + whereClause + orderBy, Query.HQL);
             countQuery = queryManager.createQuery(whereClause, Query.HQL).addFilter(countFilter);
 
             if (spaceReference != null) {
@@ -101,6 +101,16 @@ public void setRootReference(EntityReference rootReference)
         next.setRootReference(rootReference);
     }
 
+    @Override
+    public void close()
+    {
+        try {
+            this.previous.close();
+        } finally {
+            this.next.close();
+        }
+    }
+
     @Override
     public boolean hasNext()
     {
@@ -34,7 +34,7 @@
  * @since 5.4.5
  */
 @Role
-public interface DocumentIterator<T> extends Iterator<Pair<DocumentReference, T>>
+public interface DocumentIterator<T> extends Iterator<Pair<DocumentReference, T>>, AutoCloseable
 {
     /**
      * Limit the iterator to the specified entity (e.g. a wiki or a space). If the passed reference is {@code null} (or
@@ -49,4 +49,15 @@
      * @return estimate the size of the iterated store for showing progress information
      */
     long size();
+
+    /**
+     * Release the resources (e.g. a database cursor) held by the iterator when the iteration is stopped before the end.
+     *
+     * @since 10.0RC1
+     */
+    @Override
+    default void close()
+    {
+        // Nothing to release by default
+    }
 }
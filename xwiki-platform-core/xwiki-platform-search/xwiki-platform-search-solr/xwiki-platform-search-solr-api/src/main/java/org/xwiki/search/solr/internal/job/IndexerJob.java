@@ -116,12 +116,12 @@ protected void runInternal() throws Exception
      */
     private void updateSolrIndex()
     {
-        DiffDocumentIterator<String> iterator = new DiffDocumentIterator<>(this.solrIterator, this.databaseIterator);
-        iterator.setRootReference(getRequest().getRootReference());
-
         this.progressManager.pushLevelProgress(2, this);
 
-        try {
+        try (DiffDocumentIterator<String> iterator =
+            new DiffDocumentIterator<>(this.solrIterator, this.databaseIterator)) {
+            iterator.setRootReference(getRequest().getRootReference());
+
             // Calculate index progress size
 
             this.progressManager.startStep(this);
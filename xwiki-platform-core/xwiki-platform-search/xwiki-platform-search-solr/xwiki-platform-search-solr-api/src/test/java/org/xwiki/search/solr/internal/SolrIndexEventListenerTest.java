@@ -19,22 +19,31 @@
  */
 package org.xwiki.search.solr.internal;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.Locale;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReference;
 import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationContext;
 import org.xwiki.search.solr.internal.api.SolrIndexer;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.event.DocumentsBatchSavedEvent;
+import com.xpn.xwiki.internal.event.DocumentsBatchSavingEvent;
 
 /**
  * Unit tests for {@link SolrIndexEventListener}.
@@ -68,4 +77,34 @@ public void onDocumentDeleted() throws Exception
 
         verify(indexer).delete(new DocumentReference(documentReference, Locale.FRENCH), false);
     }
+
+    @Test
+    public void onDocumentUpdatedInBatch() throws Exception
+    {
+        DocumentReference documentReference = new DocumentReference("aWiki", "aSpace", "aPage");
+        XWikiDocument document = mock(XWikiDocument.class);
+        when(document.getDocumentReferenceWithLocale()).thenReturn(documentReference);
+
+        ObservationContext observationContext = mocker.getInstance(ObservationContext.class);
+        when(observationContext.isIn(any(DocumentsBatchSavingEvent.class))).thenReturn(true);
+
+        mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(), document, null);
+
+        // The document is not committed yet.
+        verify(indexer, never()).index(any(EntityReference.class), anyBoolean());
+    }
+
+    @Test
+    public void onDocumentsBatchSaved() throws Exception
+    {
+        DocumentReference documentReference = new DocumentReference("aWiki", "aSpace", "aPage");
+        DocumentReference otherDocumentReference = new DocumentReference("aWiki", "aSpace", "otherPage");
+
+        mocker.getComponentUnderTest().onEvent(new DocumentsBatchSavedEvent(), null,
+            Arrays.asList(documentReference, new DocumentReference(documentReference, Locale.FRENCH),
+                otherDocumentReference));
+
+        verify(indexer).index(documentReference, true);
+        verify(indexer).index(otherDocumentReference, true);
+    }
 }
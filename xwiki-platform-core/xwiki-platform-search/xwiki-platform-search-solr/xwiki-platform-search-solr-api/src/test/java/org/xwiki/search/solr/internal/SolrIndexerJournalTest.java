@@ -0,0 +1,217 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.search.solr.internal;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SolrIndexerJournal}.
+ *
+ * @version $Id$
+ */
+public class SolrIndexerJournalTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EntityReferenceSerializer<String> serializer;
+
+    private EntityReferenceResolver<String> resolver;
+
+    private File file;
+
+    @Before
+    public void before()
+    {
+        this.serializer = mock(EntityReferenceSerializer.class);
+        this.resolver = mock(EntityReferenceResolver.class);
+
+        this.file = new File(this.folder.getRoot(), "solr/queue.journal");
+    }
+
+    @Test
+    public void appendReadAndCommit()
+    {
+        DocumentReference documentReference = new DocumentReference("wiki", "space", "page", Locale.FRENCH);
+        WikiReference wikiReference = new WikiReference("wiki");
+
+        when(this.serializer.serialize(documentReference)).thenReturn("wiki:space.pa\tge");
+        when(this.serializer.serialize(wikiReference)).thenReturn("wiki");
+        when(this.resolver.resolve("wiki:space.pa\tge", EntityType.DOCUMENT))
+            .thenReturn(new DocumentReference("wiki", "space", "page"));
+        when(this.resolver.resolve("wiki", EntityType.WIKI)).thenReturn(wikiReference);
+
+        SolrIndexerJournal journal = new SolrIndexerJournal(this.file, this.serializer, this.resolver);
+
+        journal.append(new SolrIndexerJournal.Entry(documentReference, false, IndexOperation.INDEX));
+        journal.append(new SolrIndexerJournal.Entry(wikiReference, true, IndexOperation.DELETE));
+
+        // Nothing is written before the flush
+        assertFalse(this.file.exists());
+
+        journal.flush();
+
+        assertTrue(this.file.exists());
+
+        journal.append(new SolrIndexerJournal.Entry(null, true, IndexOperation.INDEX));
+        journal.close();
+
+        // Simulate a restart
+        journal = new SolrIndexerJournal(this.file, this.serializer, this.resolver);
+
+        List<SolrIndexerJournal.Entry> entries = journal.read();
+
+        assertEquals(3, entries.size());
+
+        assertEquals(documentReference, entries.get(0).getReference());
+        assertFalse(entries.get(0).isRecurse());
+        assertEquals(IndexOperation.INDEX, entries.get(0).getOperation());
+
+        assertEquals(wikiReference, entries.get(1).getReference());
+        assertTrue(entries.get(1).isRecurse());
+        assertEquals(IndexOperation.DELETE, entries.get(1).getOperation());
+
+        assertNull(entries.get(2).getReference());
+        assertTrue(entries.get(2).isRecurse());
+
+        // Complete the second entry
+        journal.release(entries.get(1));
+        journal.commit();
+        journal.close();
+
+        journal = new SolrIndexerJournal(this.file, this.serializer, this.resolver);
+        entries = journal.read();
+
+        assertEquals(2, entries.size());
+        assertEquals(IndexOperation.INDEX, entries.get(0).getOperation());
+        assertFalse(entries.get(0).isRecurse());
+        assertNull(entries.get(1).getReference());
+
+        entries.forEach(journal::release);
+        journal.commit();
+
+        assertFalse(this.file.exists());
+        assertTrue(journal.read().isEmpty());
+    }
+
+    @Test
+    public void entryCompletedWhenAllHoldersReleased()
+    {
+        WikiReference wikiReference = new WikiReference("wiki");
+
+        when(this.serializer.serialize(wikiReference)).thenReturn("wiki");
+        when(this.resolver.resolve("wiki", EntityType.WIKI)).thenReturn(wikiReference);
+
+        SolrIndexerJournal journal = new SolrIndexerJournal(this.file, this.serializer, this.resolver);
+
+        SolrIndexerJournal.Entry entry = new SolrIndexerJournal.Entry(wikiReference, true, IndexOperation.INDEX);
+        journal.append(entry);
+        journal.hold(entry);
+        journal.flush();
+
+        // Still held by the produced operation
+        journal.release(entry);
+        journal.commit();
+
+        assertTrue(this.file.exists());
+
+        journal.release(entry);
+        journal.commit();
+
+        assertFalse(this.file.exists());
+
+        // The journal is written again after being deleted
+        journal.append(new SolrIndexerJournal.Entry(wikiReference, false, IndexOperation.DELETE));
+        journal.close();
+
+        journal = new SolrIndexerJournal(this.file, this.serializer, this.resolver);
+        List<SolrIndexerJournal.Entry> entries = journal.read();
+
+        assertEquals(1, entries.size());
+        assertEquals(IndexOperation.DELETE, entries.get(0).getOperation());
+    }
+
+    @Test
+    public void completedEntriesAreMarkedUntilCompaction() throws Exception
+    {
+        WikiReference wikiReference = new WikiReference("wiki");
+
+        when(this.serializer.serialize(wikiReference)).thenReturn("wiki");
+        when(this.resolver.resolve("wiki", EntityType.WIKI)).thenReturn(wikiReference);
+
+        SolrIndexerJournal journal = new SolrIndexerJournal(this.file, this.serializer, this.resolver);
+
+        List<SolrIndexerJournal.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            SolrIndexerJournal.Entry entry = new SolrIndexerJournal.Entry(wikiReference, false, IndexOperation.INDEX);
+            journal.append(entry);
+            entries.add(entry);
+        }
+        journal.flush();
+
+        // The completed entries are marked at the end of the file
+        entries.subList(0, 999).forEach(journal::release);
+        journal.commit();
+
+        assertEquals(2999, Files.readAllLines(this.file.toPath()).size());
+
+        // An entry completed before being written is not written at all
+        SolrIndexerJournal.Entry unwrittenEntry = new SolrIndexerJournal.Entry(null, false, IndexOperation.DELETE);
+        journal.append(unwrittenEntry);
+        journal.release(unwrittenEntry);
+        journal.commit();
+
+        assertEquals(2999, Files.readAllLines(this.file.toPath()).size());
+
+        journal.close();
+
+        journal = new SolrIndexerJournal(this.file, this.serializer, this.resolver);
+        entries = journal.read();
+
+        assertEquals(1001, entries.size());
+
+        // The file is rewritten once the completed entries take as much room as the others
+        journal.release(entries.get(0));
+        journal.commit();
+
+        assertEquals(1000, Files.readAllLines(this.file.toPath()).size());
+    }
+}
@@ -27,6 +27,7 @@
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -80,16 +81,13 @@ public void configure() throws Exception
     @Test
     public void iterateAllWikis() throws Exception
     {
-        Query emptyQuery = mock(Query.class);
-        when(emptyQuery.execute()).thenReturn(Collections.emptyList());
-
         Query chessQuery = mock(Query.class);
-        when(chessQuery.setOffset(0)).thenReturn(chessQuery);
-        when(chessQuery.setOffset(100)).thenReturn(emptyQuery);
-        when(chessQuery.execute()).thenReturn(Arrays.<Object> asList(
+        Stream<Object[]> chessResults = Stream.of(
             new Object[] {"Blog.Code", "WebHome", "", "3.2"},
             new Object[] {"Main", "Welcome", "en", "1.1"},
-            new Object[] {"XWiki.Syntax", "Links", "fr", "2.5"}));
+            new Object[] {"XWiki.Syntax", "Links", "fr", "2.5"});
+        Runnable chessClose = mock(Runnable.class);
+        doReturn(chessResults.onClose(chessClose)).when(chessQuery).stream();
 
         DocumentReference chessBlogCodeWebHome =
             createDocumentReference("chess", Arrays.asList("Blog", "Code"), "WebHome", null);
@@ -99,11 +97,9 @@ public void iterateAllWikis() throws Exception
             createDocumentReference("chess", Arrays.asList("XWiki", "Syntax"), "Links", Locale.FRENCH);
 
         Query tennisQuery = mock(Query.class);
-        when(tennisQuery.setOffset(0)).thenReturn(tennisQuery);
-        when(tennisQuery.setOffset(100)).thenReturn(emptyQuery);
-        when(tennisQuery.execute()).thenReturn(Arrays.<Object> asList(
+        doReturn(Stream.of(
             new Object[] {"Main", "Welcome", "en", "2.1"},
-            new Object[] {"XWiki.Syntax", "Links", "fr", "1.3"}));
+            new Object[] {"XWiki.Syntax", "Links", "fr", "1.3"})).when(tennisQuery).stream();
 
         DocumentReference tennisMainWelcome =
             createDocumentReference("tennis", Arrays.asList("Main"), "Welcome", Locale.ENGLISH);
@@ -111,7 +107,6 @@ public void iterateAllWikis() throws Exception
             createDocumentReference("tennis", Arrays.asList("XWiki", "Syntax"), "Links", Locale.FRENCH);
 
         Query query = mock(Query.class);
-        when(query.setLimit(anyInt())).thenReturn(query);
         when(query.getNamedParameters()).thenReturn(Collections.<String, Object> emptyMap());
         when(query.setWiki("chess")).thenReturn(chessQuery);
         when(query.setWiki("tennis")).thenReturn(tennisQuery);
@@ -149,6 +144,9 @@ public void iterateAllWikis() throws Exception
         expectedResults.add(new ImmutablePair<DocumentReference, String>(tennisXWikiSyntaxLinks, "1.3"));
 
         assertEquals(expectedResults, actualResults);
+
+        // The results of a wiki are released as soon as they have been iterated.
+        verify(chessClose).run();
     }
 
     @Test
@@ -156,15 +154,9 @@ public void iterateOneWiki() throws Exception
     {
         DocumentReference rootReference = createDocumentReference("gang", Arrays.asList("A", "B"), "C", null);
 
-        Query emptyQuery = mock(Query.class);
-        when(emptyQuery.execute()).thenReturn(Collections.emptyList());
-
         Query query = mock(Query.class);
-        when(query.setLimit(anyInt())).thenReturn(query);
         when(query.setWiki(rootReference.getWikiReference().getName())).thenReturn(query);
-        when(query.setOffset(0)).thenReturn(query);
-        when(query.setOffset(100)).thenReturn(emptyQuery);
-        when(query.execute()).thenReturn(Collections.<Object>singletonList(new Object[] {"A.B", "C", "de", "3.1"}));
+        doReturn(Stream.<Object[]>of(new Object[] {"A.B", "C", "de", "3.1"})).when(query).stream();
 
         Map<String, Object> namedParameters = new HashMap<String, Object>();
         namedParameters.put("space", "A.B");
@@ -194,6 +186,7 @@ public void iterateOneWiki() throws Exception
 
         assertEquals(expectedResults, actualResults);
 
+        verify(query, never()).setOffset(anyInt());
         verify(query).bindValue("space", "A.B");
         verify(query).bindValue("name", "C");
 
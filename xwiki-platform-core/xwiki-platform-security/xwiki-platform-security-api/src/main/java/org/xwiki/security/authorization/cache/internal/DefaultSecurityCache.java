@@ -26,8 +26,7 @@
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -54,6 +53,12 @@
 
 /**
  * Default implementation of the security cache.
+ * <p>
+ * Lookups never take any lock: they rely on the thread safety of the underlying cache and on the fact that all the
+ * descendants of an entry are marked as invalidated before any of them is removed. Modifications (additions and
+ * removals) are serialized by a single lock so that the parent/child links are always consistent. The parents of an
+ * entry are never modified in place, a new collection is published instead, so that readers walking the groups of a
+ * user never see a partially updated collection.
  *
  * @version $Id$
  * @since 4.0M2 
@@ -72,14 +77,8 @@ public class DefaultSecurityCache implements SecurityCache, Initializable
     @Inject
     private Logger logger;
 
-    /** Fair read-write lock used for fair scheduling of cache access. */
-    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock(true);
-
-    /** Fair read lock. */
-    private final Lock readLock = readWriteLock.readLock();
-
-    /** Fair write lock. */
-    private final Lock writeLock = readWriteLock.writeLock();
+    /** Lock used to serialize the modifications of the cache, lookups don't use it. */
+    private final Lock writeLock = new ReentrantLock();
 
     /** The keys in the cache are generated from instances of {@link org.xwiki.model.reference.EntityReference}. */
     @Inject
@@ -129,12 +128,12 @@ private class SecurityCacheEntry implements DisposableCacheValue
         /**
          * The cached security entry.
          */
-        private SecurityEntry entry;
+        private volatile SecurityEntry entry;
 
         /**
-         * Parents of this cached entry.
+         * Parents of this cached entry. Never modified once published, replaced instead.
          */
-        private Collection<SecurityCacheEntry> parents;
+        private volatile Collection<SecurityCacheEntry> parents;
 
         /**
          * Children of this cached entry.
@@ -144,7 +143,13 @@ private class SecurityCacheEntry implements DisposableCacheValue
         /**
          * True if this entry has been removed.
          */
-        private boolean disposed;
+        private volatile boolean disposed;
+
+        /**
+         * True if this entry or one of its ancestors is being removed. Set on all the descendants of a removed entry
+         * before any of them is removed, so that lookups don't have to walk up the ancestors.
+         */
+        private volatile boolean invalidated;
 
         /**
          * Create a new cache entry for a security rule, linking it to its parent.
@@ -262,16 +267,17 @@ private SecurityCacheEntry(SecurityEntry entry, Collection<GroupSecurityReferenc
             this.entry = entry;
             int parentSize = groups.size() + ((parentReference == null) ? 0 : 1);
             if (parentSize > 0) {
-                this.parents = new ArrayList<SecurityCacheEntry>(parentSize);
+                Collection<SecurityCacheEntry> newParents = new ArrayList<SecurityCacheEntry>(parentSize);
                 if (parentReference != null) {
                     SecurityCacheEntry parent = DefaultSecurityCache.this.getEntry(parentReference);
                     if (parent == null) {
                         throw new ParentEntryEvictedException();
                     }
-                    this.parents.add(parent);
+                    newParents.add(parent);
                     parent.addChild(this);
                 }
-                addParentGroups(groups, parentReference);
+                addParentGroups(newParents, groups, parentReference);
+                this.parents = newParents;
                 logNewEntry();
             } else {
                 this.parents = null;
@@ -282,12 +288,14 @@ private SecurityCacheEntry(SecurityEntry entry, Collection<GroupSecurityReferenc
         /**
          * Add provided groups as parent of this entry, excluding the main parent reference.
          *
+         * @param newParents the collection of parents being built.
          * @param groups the list of groups to add.
          * @param parentReference the main parent reference to exclude.
          * @throws ParentEntryEvictedException if the parents required are no more available in the cache.
          */
-        private void addParentGroups(Collection<GroupSecurityReference> groups,
-            SecurityReference parentReference) throws ParentEntryEvictedException
+        private void addParentGroups(Collection<SecurityCacheEntry> newParents,
+            Collection<GroupSecurityReference> groups, SecurityReference parentReference)
+            throws ParentEntryEvictedException
         {
             for (GroupSecurityReference group : groups) {
                 if (group.equals(parentReference)) {
@@ -300,7 +308,7 @@ private void addParentGroups(Collection<GroupSecurityReference> groups,
                 if (parent == null) {
                     throw new ParentEntryEvictedException();
                 }
-                this.parents.add(parent);
+                newParents.add(parent);
                 parent.addChild(this);
             }
         }
@@ -319,15 +327,19 @@ boolean updateParentGroups(Collection<GroupSecurityReference> groups)
             }
 
             if (groups != null && !groups.isEmpty()) {
-                if (this.parents == null) {
-                    this.parents = new ArrayList<SecurityCacheEntry>(groups.size());
-                    addParentGroups(groups, null);
+                // Build the new parents aside and publish them only when complete since lookups don't lock
+                Collection<SecurityCacheEntry> currentParents = this.parents;
+                Collection<SecurityCacheEntry> newParents;
+                if (currentParents == null) {
+                    newParents = new ArrayList<SecurityCacheEntry>(groups.size());
+                    addParentGroups(newParents, groups, null);
                 } else {
-                    SecurityCacheEntry parent = this.parents.iterator().next();
-                    this.parents = new ArrayList<SecurityCacheEntry>(groups.size() + 1);
-                    this.parents.add(parent);
-                    addParentGroups(groups, parent.entry.getReference());
+                    SecurityCacheEntry parent = currentParents.iterator().next();
+                    newParents = new ArrayList<SecurityCacheEntry>(groups.size() + 1);
+                    newParents.add(parent);
+                    addParentGroups(newParents, groups, parent.entry.getReference());
                 }
+                this.parents = newParents;
             }
 
             return true;
@@ -367,6 +379,15 @@ SecurityEntry getEntry()
             return this.entry;
         }
 
+        /**
+         * @return true if this entry or one of its ancestors has been removed from the cache (the cascaded removal of
+         *         this entry is in progress).
+         */
+        boolean isDisposed()
+        {
+            return this.disposed || this.invalidated;
+        }
+
         /**
          * @return the serialized key of this entry.
          */
@@ -384,12 +405,28 @@ String getKey()
         public void dispose()
         {
             if (!disposed) {
+                invalidate();
                 disposed = true;
                 disconnectFromParents();
                 disposeChildren();
             }
         }
 
+        /**
+         * Mark this entry and all its descendants as invalidated, skipping the ones already invalidated.
+         */
+        private void invalidate()
+        {
+            if (!invalidated) {
+                invalidated = true;
+                if (children != null) {
+                    for (SecurityCacheEntry child : children) {
+                        child.invalidate();
+                    }
+                }
+            }
+        }
+
         protected void disconnectFromParents()
         {
             if (parents != null) {
@@ -539,12 +576,7 @@ private String getEntryKey(SecurityAccessEntry entry)
      */
     private SecurityCacheEntry getEntry(SecurityReference reference)
     {
-        readLock.lock();
-        try {
-            return cache.get(getEntryKey(reference));
-        } finally {
-            readLock.unlock();
-        }
+        return getValidEntry(getEntryKey(reference));
     }
 
     /**
@@ -555,12 +587,7 @@ private SecurityCacheEntry getEntry(SecurityReference reference)
      */
     private SecurityCacheEntry getEntry(UserSecurityReference userReference, SecurityReference reference)
     {
-        readLock.lock();
-        try {
-            return cache.get(getEntryKey(userReference, reference));
-        } finally {
-            readLock.unlock();
-        }
+        return getValidEntry(getEntryKey(userReference, reference));
     }
 
     /**
@@ -571,12 +598,19 @@ private SecurityCacheEntry getEntry(UserSecurityReference userReference, Securit
      */
     private SecurityCacheEntry getShadowEntry(SecurityReference userReference, SecurityReference wiki)
     {
-        readLock.lock();
-        try {
-            return cache.get(getShadowEntryKey(userReference, wiki));
-        } finally {
-            readLock.unlock();
-        }
+        return getValidEntry(getShadowEntryKey(userReference, wiki));
+    }
+
+    /**
+     * @param key the key of the entry.
+     * @return the cache entry associated to the passed key or null if none or if it's being removed.
+     */
+    private SecurityCacheEntry getValidEntry(String key)
+    {
+        SecurityCacheEntry entry = cache.get(key);
+
+        // Ignore an entry which is currently being removed by a concurrent invalidation
+        return (entry != null && !entry.isDisposed()) ? entry : null;
     }
 
     /**
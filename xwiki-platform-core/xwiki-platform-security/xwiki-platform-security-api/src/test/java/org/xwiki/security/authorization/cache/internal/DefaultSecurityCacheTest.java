@@ -26,12 +26,19 @@
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.internal.reference.DefaultStringEntityReferenceSerializer;
 import org.xwiki.model.internal.reference.DefaultSymbolScheme;
@@ -59,6 +66,7 @@
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.any;
@@ -809,4 +817,114 @@ public boolean keepAccess(SecurityAccessEntry entry) {
             }
         });
     }
+
+    @Test
+    public void testConcurrentReadsDuringInvalidation() throws Exception
+    {
+        // Fill the cache
+        InsertUsers();
+        InsertEntities();
+
+        final int generations = 2000;
+        final int readers = 8;
+
+        // The access entries of each generation and the last generation which has been invalidated
+        final Map<SecurityAccessEntry, Integer> entryGenerations = new ConcurrentHashMap<>();
+        final AtomicInteger invalidatedGeneration = new AtomicInteger(-1);
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final CountDownLatch started = new CountDownLatch(readers);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < readers; ++i) {
+            Thread thread = new Thread(() -> {
+                started.countDown();
+                while (!done.get() && failure.get() == null) {
+                    int invalidated = invalidatedGeneration.get();
+                    SecurityAccessEntry entry = securityCache.get(xuserRef, xdocRef);
+                    if (entry != null) {
+                        Integer generation = entryGenerations.get(entry);
+                        if (generation == null || generation <= invalidated) {
+                            failure.set(String.format("Got access entry of generation [%s] after the invalidation"
+                                + " of generation [%s]", generation, invalidated));
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        started.await();
+
+        for (int generation = 0; generation < generations && failure.get() == null; ++generation) {
+            if (securityCache.get(xdocRef) == null) {
+                AddRuleEntry(mockSecurityRuleEntry(xdocRef));
+            }
+            SecurityAccessEntry entry = mockSecurityAccessEntry(xdocRef, xuserRef);
+            entryGenerations.put(entry, generation);
+            AddAccessEntry(entry);
+
+            // Invalidate the rules of the document, which should also remove the access entry
+            securityCache.remove(xdocRef);
+            invalidatedGeneration.set(generation);
+        }
+
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertThat(securityCache.get(xuserRef, xdocRef), nullValue());
+    }
+
+    @Test
+    public void testDescendantsIgnoredDuringCascadedRemoval() throws Exception
+    {
+        InsertUsers();
+        InsertEntities();
+
+        SecurityAccessEntry entry = mockSecurityAccessEntry(xdocRef, xuserRef);
+        AddAccessEntry(entry);
+        assertThat(securityCache.get(xuserRef, xdocRef), sameInstance(entry));
+
+        // Look up the access entry each time an entry is removed by the cascade, before its parent is removed
+        final List<SecurityAccessEntry> lookups = new ArrayList<>();
+        CacheEntryListener<Object> listener = new CacheEntryListener<Object>()
+        {
+            private boolean cascading;
+
+            @Override
+            public void cacheEntryAdded(CacheEntryEvent<Object> event)
+            {
+            }
+
+            @Override
+            public void cacheEntryModified(CacheEntryEvent<Object> event)
+            {
+            }
+
+            @Override
+            public void cacheEntryRemoved(CacheEntryEvent<Object> event)
+            {
+                // The first removed entry is the space, which is marked as removed once it's out of the cache
+                if (cascading) {
+                    lookups.add(securityCache.get(xuserRef, xdocRef));
+                }
+                cascading = true;
+            }
+        };
+        cache.addCacheEntryListener(listener);
+        try {
+            securityCache.remove(xspaceRef);
+        } finally {
+            cache.removeCacheEntryListener(listener);
+        }
+
+        assertThat(lookups.isEmpty(), is(false));
+        for (SecurityAccessEntry lookup : lookups) {
+            assertThat(lookup, nullValue());
+        }
+    }
 }
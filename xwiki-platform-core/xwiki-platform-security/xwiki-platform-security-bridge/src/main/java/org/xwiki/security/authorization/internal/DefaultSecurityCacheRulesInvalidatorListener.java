@@ -21,7 +21,12 @@
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import javax.inject.Inject;
@@ -29,7 +34,7 @@
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
-import org.slf4j.Logger;
+import org.apache.commons.lang3.StringUtils;
 import org.xwiki.bridge.event.DocumentCreatedEvent;
 import org.xwiki.bridge.event.DocumentDeletedEvent;
 import org.xwiki.bridge.event.DocumentUpdatedEvent;
@@ -37,20 +42,17 @@
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
-import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.SpaceReference;
 import org.xwiki.model.reference.WikiReference;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.event.Event;
 import org.xwiki.security.SecurityReferenceFactory;
-import org.xwiki.security.authorization.AuthorizationException;
 import org.xwiki.security.authorization.cache.SecurityCache;
 import org.xwiki.security.internal.XWikiConstants;
 
 import com.xpn.xwiki.XWikiContext;
-import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.objects.BaseObject;
-import com.xpn.xwiki.user.api.XWikiGroupService;
 
 /**
  * The instance of this class monitors updates and invalidates right cache entries whenever necessary.
@@ -66,6 +68,8 @@ public class DefaultSecurityCacheRulesInvalidatorListener implements EventListen
     private static final List<Event> EVENTS = Arrays.<Event> asList(new DocumentCreatedEvent(),
         new DocumentUpdatedEvent(), new DocumentDeletedEvent());
 
+    private static final String MEMBER_FIELD_NAME = "member";
+
     /**
      * Fair read-write lock to suspend the delivery of cache updates while there are loads in progress.
      */
@@ -73,10 +77,6 @@ public class DefaultSecurityCacheRulesInvalidatorListener implements EventListen
     @Named(DefaultSecurityCacheRulesInvalidator.NAME)
     private ReadWriteLock readWriteLock;
 
-    /** Logger. **/
-    @Inject
-    private Logger logger;
-
     /** The right cache. */
     @Inject
     private SecurityCache securityCache;
@@ -94,10 +94,6 @@ public class DefaultSecurityCacheRulesInvalidatorListener implements EventListen
     @Named("user")
     private DocumentReferenceResolver<String> userResolver;
 
-    /** Entity reference serializer. */
-    @Inject
-    private EntityReferenceSerializer<String> serializer;
-
     /** Execution object. */
     @Inject
     private Provider<XWikiContext> xcontextProvider;
@@ -114,113 +110,183 @@ public List<Event> getEvents()
         return EVENTS;
     }
 
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        XWikiDocument document = (XWikiDocument) source;
+
+        // The rights are read from the default locale of the documents only
+        if (!Locale.ROOT.equals(document.getLocale())) {
+            return;
+        }
+
+        // Find out what changed before suspending the loads so that they are blocked only while removing the entries
+        XWikiDocument originalDocument = document.getOriginalDocument();
+        DocumentReference ref = document.getDocumentReference();
+        boolean globalRulesChanged = haveGlobalRulesChanged(document, originalDocument);
+        boolean rulesChanged = globalRulesChanged || haveRulesChanged(document, originalDocument);
+        Collection<DocumentReference> changedMembers = getChangedMembers(document, originalDocument);
+
+        if (!rulesChanged && changedMembers.isEmpty()) {
+            return;
+        }
+
+        readWriteLock.writeLock().lock();
+        try {
+            if (rulesChanged) {
+                deliverUpdateEvent(ref, globalRulesChanged);
+            }
+
+            // When a group receive a new member, the new member could be currently in the cache without being linked
+            // to the group (and a removed member is still linked to it). The members which are still in the group
+            // keep the same groups so they don't need to be invalidated.
+            for (DocumentReference member : changedMembers) {
+                securityCache.remove(securityReferenceFactory.newUserReference(member));
+            }
+        } finally {
+            readWriteLock.writeLock().unlock();
+        }
+    }
+
     /**
-     * Obtain a document reference to the {@link com.xpn.xwiki.doc.XWikiDocument} given as parameter.
-     * 
-     * @param xwikiDocument The xwiki document.
-     * @return The document reference.
+     * @param document the saved document
+     * @param originalDocument the document before the save, {@code null} if unknown
+     * @return {@code true} if the local rules of the document might have changed
      */
-    private static DocumentReference getDocumentReference(Object xwikiDocument)
+    private boolean haveRulesChanged(XWikiDocument document, XWikiDocument originalDocument)
     {
-        XWikiDocument doc = (XWikiDocument) xwikiDocument;
-        return doc.getDocumentReference();
+        if (originalDocument == null || document.isNew() != originalDocument.isNew()
+            || !Objects.equals(document.getCreatorReference(), originalDocument.getCreatorReference())
+            || isWikiDescriptor(document.getDocumentReference())) {
+            return true;
+        }
+
+        return !getRules(document, XWikiConstants.LOCAL_CLASSNAME)
+            .equals(getRules(originalDocument, XWikiConstants.LOCAL_CLASSNAME));
     }
 
     /**
-     * @param source an xwiki document, that has just been updated.
-     * @return true if and only if the xwiki document corresponds to a group.
+     * @param document the saved document
+     * @param originalDocument the document before the save, {@code null} if unknown
+     * @return {@code true} if the document hosts global rights which might have changed
      */
-    private boolean isGroupDocument(Object source)
+    private boolean haveGlobalRulesChanged(XWikiDocument document, XWikiDocument originalDocument)
     {
-        XWikiDocument doc = (XWikiDocument) source;
-        DocumentReference docRef = doc.getDocumentReference();
-        DocumentReference groupClass = resolver.resolve(XWikiConstants.GROUP_CLASS, docRef);
-        List<BaseObject> objects = doc.getXObjects(groupClass);
-        return objects != null && objects.size() > 0;
+        if (!isGlobalRightsDocument(document.getDocumentReference())) {
+            return false;
+        }
+
+        return originalDocument == null || !getRules(document, XWikiConstants.GLOBAL_CLASSNAME)
+            .equals(getRules(originalDocument, XWikiConstants.GLOBAL_CLASSNAME));
     }
 
     /**
-     * Drop from the cache all members of a given group.
-     * 
-     * @param group The group.
-     * @param securityCache Right cache instance to invalidate.
-     * @throws org.xwiki.security.authorization.AuthorizationException on error.
+     * @param document the document holding the rights objects
+     * @param className the name of the rights class
+     * @return the values of the rights objects which are used to build the rules
      */
-    public void invalidateGroupMembers(DocumentReference group, SecurityCache securityCache)
-        throws AuthorizationException
+    private Set<List<Object>> getRules(XWikiDocument document, String className)
     {
-        try {
-            XWikiContext xwikiContext = this.xcontextProvider.get();
-            XWikiGroupService groupService = xwikiContext.getWiki().getGroupService(xwikiContext);
-            String groupName = serializer.serialize(group);
-
-            // The group members inherit the wiki from the group
-            // itself, unless the wiki name is explicitly given.
-
-            WikiReference wikiReference = group.getWikiReference();
-            final int nb = 100;
-            int i = 0;
-            Collection<String> memberNames;
-            do {
-                memberNames = groupService.getAllMembersNamesForGroup(groupName, nb, i * nb, xwikiContext);
-                for (String member : memberNames) {
-                    DocumentReference memberRef = userResolver.resolve(member, wikiReference);
-
-                    // Avoid infinite loops.
-
-                    if (!memberRef.equals(group)) {
-                        securityCache.remove(securityReferenceFactory.newUserReference(memberRef));
-                    }
+        Set<List<Object>> rules = new HashSet<>();
+
+        List<BaseObject> objects = document.getXObjects(new DocumentReference(className,
+            new SpaceReference(XWikiConstants.XWIKI_SPACE, document.getDocumentReference().getWikiReference())));
+        if (objects != null) {
+            for (BaseObject object : objects) {
+                if (object != null) {
+                    rules.add(Arrays.<Object>asList(object.getIntValue(XWikiConstants.ALLOW_FIELD_NAME),
+                        object.getStringValue(XWikiConstants.LEVELS_FIELD_NAME),
+                        object.getStringValue(XWikiConstants.USERS_FIELD_NAME),
+                        object.getStringValue(XWikiConstants.GROUPS_FIELD_NAME)));
                 }
-                i++;
-            } while (memberNames.size() == nb);
-        } catch (XWikiException e) {
-            throw new AuthorizationException("Failed to invalidate group member.", e);
+            }
         }
+
+        return rules;
     }
 
-    @Override
-    public void onEvent(Event event, Object source, Object data)
+    /**
+     * @param document the saved document
+     * @param originalDocument the document before the save, {@code null} if unknown
+     * @return the members which were added to or removed from the group
+     */
+    private Collection<DocumentReference> getChangedMembers(XWikiDocument document, XWikiDocument originalDocument)
     {
-        DocumentReference ref = getDocumentReference(source);
-        readWriteLock.writeLock().lock();
-        try {
-            deliverUpdateEvent(ref);
-            if (isGroupDocument(source)) {
-                // When a group receive a new member, the update event is triggered and the above invalidate the group
-                // and also all its existing members already in cache, but NOT the new member that could be currently
-                // in the cache, and is not yet linked to the group. Here, we invalidate individually all members of
-                // the group based on the updated group, which will only have the effect of invaliding new members.
-                invalidateGroupMembers(ref, securityCache);
+        Set<DocumentReference> members = getMembers(document);
+        // Without the previous version, the removed members are dropped along with the group entry
+        Set<DocumentReference> previousMembers =
+            originalDocument != null ? getMembers(originalDocument) : Collections.<DocumentReference>emptySet();
+
+        Set<DocumentReference> changedMembers = new HashSet<>(members);
+        changedMembers.addAll(previousMembers);
+        members.retainAll(previousMembers);
+        changedMembers.removeAll(members);
+
+        // Avoid infinite loops.
+        changedMembers.remove(document.getDocumentReference());
+
+        return changedMembers;
+    }
+
+    /**
+     * @param document a document
+     * @return the members listed by the group objects of the document
+     */
+    private Set<DocumentReference> getMembers(XWikiDocument document)
+    {
+        Set<DocumentReference> members = new HashSet<>();
+
+        DocumentReference docRef = document.getDocumentReference();
+        List<BaseObject> objects = document.getXObjects(resolver.resolve(XWikiConstants.GROUP_CLASS, docRef));
+        if (objects != null) {
+            for (BaseObject object : objects) {
+                if (object != null) {
+                    String member = object.getStringValue(MEMBER_FIELD_NAME);
+                    if (StringUtils.isNotBlank(member)) {
+                        // The group members inherit the wiki from the group itself, unless the wiki name is
+                        // explicitly given.
+                        members.add(userResolver.resolve(member, docRef.getWikiReference()));
+                    }
+                }
             }
-        } catch (AuthorizationException e) {
-            this.logger.error("Failed to invalidate group members on the document: {}", ref, e);
-        } finally {
-            readWriteLock.writeLock().unlock();
         }
+
+        return members;
+    }
+
+    private boolean isGlobalRightsDocument(DocumentReference ref)
+    {
+        return XWikiConstants.WIKI_DOC_REFERENCE.equals(ref, EntityType.SPACE)
+            || ref.getName().equals(XWikiConstants.SPACE_DOC);
+    }
+
+    private boolean isWikiDescriptor(DocumentReference ref)
+    {
+        return ref.getName().startsWith(XWikiConstants.WIKI_DESCRIPTOR_PREFIX)
+            && XWikiConstants.XWIKI_SPACE_REFERENCE.equals(ref.getLastSpaceReference(), EntityType.SPACE)
+            && ref.getWikiReference().getName().equals(this.xcontextProvider.get().getMainXWiki());
     }
 
     /**
-     * Describe {@code deliverUpdateEvent} method here.
+     * Remove the cache entries depending on the rules of a document.
      *
      * @param ref Reference to the document that should be invalidated.
+     * @param globalRulesChanged {@code true} if the global rights hosted by the document changed
      */
-    private void deliverUpdateEvent(DocumentReference ref)
+    private void deliverUpdateEvent(DocumentReference ref, boolean globalRulesChanged)
     {
-        if (XWikiConstants.WIKI_DOC_REFERENCE.equals(ref, EntityType.SPACE)) {
+        if (globalRulesChanged && XWikiConstants.WIKI_DOC_REFERENCE.equals(ref, EntityType.SPACE)) {
             // For XWiki.XWikiPreferences, remove the whole wiki.
             securityCache.remove(securityReferenceFactory.newEntityReference(ref.getWikiReference()));
-        } else if (ref.getName().equals(XWikiConstants.SPACE_DOC)) {
+        } else if (globalRulesChanged) {
             // For WebPreferences, remove the whole space.
             securityCache.remove(securityReferenceFactory.newEntityReference(ref.getParent()));
         } else {
-            // For any other documents, remove that document cache.
+            // For any other documents (or local rights changes), remove that document cache.
             securityCache.remove(securityReferenceFactory.newEntityReference(ref));
 
             // If it's a wiki descriptor remove the wiki reference from the cache
-            if (ref.getName().startsWith(XWikiConstants.WIKI_DESCRIPTOR_PREFIX)
-                && XWikiConstants.XWIKI_SPACE_REFERENCE.equals(ref.getLastSpaceReference(), EntityType.SPACE)
-                && ref.getWikiReference().getName().equals(this.xcontextProvider.get().getMainXWiki())) {
+            if (isWikiDescriptor(ref)) {
                 // For xwiki:XWiki.XWikiServer... documents, also remove the whole corresponding wiki.
                 securityCache.remove(securityReferenceFactory.newEntityReference(new WikiReference(ref.getName()
                     .substring(XWikiConstants.WIKI_DESCRIPTOR_PREFIX.length()).toLowerCase())));
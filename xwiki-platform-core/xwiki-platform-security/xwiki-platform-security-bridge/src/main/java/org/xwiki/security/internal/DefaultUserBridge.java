@@ -108,21 +108,12 @@ private Collection<DocumentReference> getGroupsReferencesFor(WikiReference wiki,
         Collection<DocumentReference> groupReferences = new HashSet<>();
         try {
             xwikiContext.setWikiId(wiki.getName());            
-            // We get the groups of the member via the group service but we make sure to not use the group service's
-            // cache by calling the method with a limit and an offset.
-            //
-            // We do not use the group service's cache because it might not have been refreshed yet (for example, it can
-            // happen when the security module is used inside a listener that reacts to the "SaveDocument" event just 
-            // before the XWikiGroupService listener is called). Because of this race condition, it is not a good idea
-            // to have a cache depending on an other cache.
-            //
-            // TODO: use a proper component to retrieve the groups of a member without any cache
-            final int nb = 1000;
-            int i = 0;
-            while (groupReferences.addAll(groupService.getAllGroupsReferencesForMember(userOrGroupDocumentReference,
-                nb, i * nb, xwikiContext))) {
-                i++;
-            }            
+            // The group service finds the groups of the member in an index which is never used while a group of the
+            // wiki is being saved (the database is queried instead), so the groups are never outdated even when the
+            // security module is used inside a listener that reacts to the "SaveDocument" event just before the
+            // index is updated.
+            groupReferences.addAll(
+                groupService.getAllGroupsReferencesForMember(userOrGroupDocumentReference, 0, 0, xwikiContext));
             return groupReferences;
         } catch (Exception e) {
             throw new AuthorizationException(String.format("Failed to get groups for user or group [%s] in wiki [%s]",
@@ -0,0 +1,235 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.security.authorization.internal;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.security.SecurityReference;
+import org.xwiki.security.SecurityReferenceFactory;
+import org.xwiki.security.UserSecurityReference;
+import org.xwiki.security.authorization.cache.SecurityCache;
+import org.xwiki.security.internal.XWikiConstants;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.test.MockitoOldcoreRule;
+import com.xpn.xwiki.test.reference.ReferenceComponentList;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link DefaultSecurityCacheRulesInvalidatorListener}.
+ *
+ * @version $Id$
+ */
+@ReferenceComponentList
+public class DefaultSecurityCacheRulesInvalidatorListenerTest
+{
+    public MockitoComponentMockingRule<EventListener> mocker =
+        new MockitoComponentMockingRule<EventListener>(DefaultSecurityCacheRulesInvalidatorListener.class);
+
+    @Rule
+    public MockitoOldcoreRule oldcore = new MockitoOldcoreRule(this.mocker);
+
+    private WikiReference wikiReference = new WikiReference("wiki");
+
+    private DocumentReference documentReference = new DocumentReference("wiki", "Space", "Page");
+
+    private DocumentReference preferencesReference = new DocumentReference("wiki", "XWiki", "XWikiPreferences");
+
+    private DocumentReference groupReference = new DocumentReference("wiki", "XWiki", "Group");
+
+    private SecurityCache securityCache;
+
+    private SecurityReferenceFactory securityReferenceFactory;
+
+    private DocumentReferenceResolver<String> userResolver;
+
+    @Before
+    public void before() throws Exception
+    {
+        ReadWriteLock readWriteLock =
+            this.mocker.getInstance(ReadWriteLock.class, DefaultSecurityCacheRulesInvalidator.NAME);
+        when(readWriteLock.writeLock()).thenReturn(mock(Lock.class));
+
+        DocumentReferenceResolver<String> resolver = this.mocker.getInstance(DocumentReferenceResolver.TYPE_STRING);
+        when(resolver.resolve(XWikiConstants.GROUP_CLASS, this.groupReference))
+            .thenReturn(new DocumentReference("wiki", "XWiki", "XWikiGroups"));
+        when(resolver.resolve(XWikiConstants.GROUP_CLASS, this.documentReference))
+            .thenReturn(new DocumentReference("wiki", "XWiki", "XWikiGroups"));
+        when(resolver.resolve(XWikiConstants.GROUP_CLASS, this.preferencesReference))
+            .thenReturn(new DocumentReference("wiki", "XWiki", "XWikiGroups"));
+
+        this.userResolver = this.mocker.getInstance(DocumentReferenceResolver.TYPE_STRING, "user");
+
+        this.securityCache = this.mocker.getInstance(SecurityCache.class);
+        this.securityReferenceFactory = this.mocker.getInstance(SecurityReferenceFactory.class);
+    }
+
+    private XWikiDocument createDocument(DocumentReference reference)
+    {
+        XWikiDocument document = new XWikiDocument(reference);
+        document.setNew(false);
+
+        return document;
+    }
+
+    private void addRightsObject(XWikiDocument document, String className, String levels)
+    {
+        BaseObject rightsObject = new BaseObject();
+        rightsObject.setXClassReference(new DocumentReference("wiki", "XWiki", className));
+        rightsObject.setStringValue(XWikiConstants.LEVELS_FIELD_NAME, levels);
+        rightsObject.setStringValue(XWikiConstants.USERS_FIELD_NAME, "XWiki.user");
+        rightsObject.setIntValue(XWikiConstants.ALLOW_FIELD_NAME, 1);
+        document.addXObject(rightsObject);
+    }
+
+    private void addMember(XWikiDocument document, String member)
+    {
+        BaseObject groupObject = new BaseObject();
+        groupObject.setXClassReference(new DocumentReference("wiki", "XWiki", "XWikiGroups"));
+        groupObject.setStringValue("member", member);
+        document.addXObject(groupObject);
+    }
+
+    private UserSecurityReference mockUserReference(String member)
+    {
+        DocumentReference memberReference = new DocumentReference("wiki", "XWiki", member);
+        when(this.userResolver.resolve("XWiki." + member, this.wikiReference)).thenReturn(memberReference);
+
+        UserSecurityReference userReference = mock(UserSecurityReference.class, member);
+        when(this.securityReferenceFactory.newUserReference(memberReference)).thenReturn(userReference);
+
+        return userReference;
+    }
+
+    @Test
+    public void updateDocumentWithoutRightsChanges() throws Exception
+    {
+        XWikiDocument document = createDocument(this.documentReference);
+        addRightsObject(document, XWikiConstants.LOCAL_CLASSNAME, "view");
+        XWikiDocument originalDocument = createDocument(this.documentReference);
+        addRightsObject(originalDocument, XWikiConstants.LOCAL_CLASSNAME, "view");
+        document.setOriginalDocument(originalDocument);
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(this.documentReference), document,
+            this.oldcore.getXWikiContext());
+
+        verifyZeroInteractions(this.securityCache);
+    }
+
+    @Test
+    public void updateDocumentRights() throws Exception
+    {
+        XWikiDocument document = createDocument(this.documentReference);
+        addRightsObject(document, XWikiConstants.LOCAL_CLASSNAME, "view,edit");
+        XWikiDocument originalDocument = createDocument(this.documentReference);
+        addRightsObject(originalDocument, XWikiConstants.LOCAL_CLASSNAME, "view");
+        document.setOriginalDocument(originalDocument);
+
+        SecurityReference documentSecurityReference = mock(SecurityReference.class);
+        when(this.securityReferenceFactory.newEntityReference(this.documentReference))
+            .thenReturn(documentSecurityReference);
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(this.documentReference), document,
+            this.oldcore.getXWikiContext());
+
+        verify(this.securityCache).remove(documentSecurityReference);
+    }
+
+    @Test
+    public void updatePreferencesLocalRights() throws Exception
+    {
+        XWikiDocument document = createDocument(this.preferencesReference);
+        addRightsObject(document, XWikiConstants.GLOBAL_CLASSNAME, "view");
+        addRightsObject(document, XWikiConstants.LOCAL_CLASSNAME, "view,edit");
+        XWikiDocument originalDocument = createDocument(this.preferencesReference);
+        addRightsObject(originalDocument, XWikiConstants.GLOBAL_CLASSNAME, "view");
+        document.setOriginalDocument(originalDocument);
+
+        SecurityReference preferencesSecurityReference = mock(SecurityReference.class);
+        when(this.securityReferenceFactory.newEntityReference(this.preferencesReference))
+            .thenReturn(preferencesSecurityReference);
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(this.preferencesReference), document,
+            this.oldcore.getXWikiContext());
+
+        // The global rights did not change, so the rest of the wiki is kept
+        verify(this.securityCache).remove(preferencesSecurityReference);
+        verify(this.securityReferenceFactory, never()).newEntityReference(this.wikiReference);
+    }
+
+    @Test
+    public void updatePreferencesGlobalRights() throws Exception
+    {
+        XWikiDocument document = createDocument(this.preferencesReference);
+        addRightsObject(document, XWikiConstants.GLOBAL_CLASSNAME, "view,edit");
+        XWikiDocument originalDocument = createDocument(this.preferencesReference);
+        addRightsObject(originalDocument, XWikiConstants.GLOBAL_CLASSNAME, "view");
+        document.setOriginalDocument(originalDocument);
+
+        SecurityReference wikiSecurityReference = mock(SecurityReference.class);
+        when(this.securityReferenceFactory.newEntityReference(this.wikiReference)).thenReturn(wikiSecurityReference);
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(this.preferencesReference), document,
+            this.oldcore.getXWikiContext());
+
+        verify(this.securityCache).remove(wikiSecurityReference);
+    }
+
+    @Test
+    public void updateGroupMembers() throws Exception
+    {
+        XWikiDocument group = createDocument(this.groupReference);
+        addMember(group, "XWiki.user2");
+        addMember(group, "XWiki.user3");
+        XWikiDocument originalGroup = createDocument(this.groupReference);
+        addMember(originalGroup, "XWiki.user1");
+        addMember(originalGroup, "XWiki.user2");
+        group.setOriginalDocument(originalGroup);
+
+        UserSecurityReference user1 = mockUserReference("user1");
+        UserSecurityReference user2 = mockUserReference("user2");
+        UserSecurityReference user3 = mockUserReference("user3");
+
+        this.mocker.getComponentUnderTest().onEvent(new DocumentUpdatedEvent(this.groupReference), group,
+            this.oldcore.getXWikiContext());
+
+        // Only the removed and added members are invalidated, not the group itself
+        verify(this.securityCache).remove(user1);
+        verify(this.securityCache).remove(user3);
+        verify(this.securityCache, never()).remove(user2);
+        verify(this.securityReferenceFactory, never()).newEntityReference(this.groupReference);
+    }
+}
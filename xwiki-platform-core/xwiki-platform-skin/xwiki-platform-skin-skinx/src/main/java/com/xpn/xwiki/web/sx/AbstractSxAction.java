@@ -27,9 +27,14 @@
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
+import org.xwiki.container.servlet.HttpServletUtils;
+import org.xwiki.skinx.internal.CachedSxOutput;
+import org.xwiki.skinx.internal.SxOutputCache;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.web.Utils;
 import com.xpn.xwiki.web.XWikiAction;
 import com.xpn.xwiki.web.XWikiRequest;
 import com.xpn.xwiki.web.XWikiResponse;
@@ -59,6 +64,15 @@ public abstract class AbstractSxAction extends XWikiAction
     /** What http header parameter is used to specify when the cache should expire. */
     private static final String CACHE_EXPIRES_HEADER = "Expires";
 
+    /** What http header parameter is used to specify the entity tag of the response. */
+    private static final String ETAG_HEADER = "ETag";
+
+    /** What http header parameter is used to send the encodings supported by the client. */
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+
+    /** The separator of the parts of the cache keys. */
+    private static final char KEY_SEPARATOR = ':';
+
     /** The response will be sent to the browser as a byte array in this character set. */
     private static final String RESPONSE_CHARACTER_SET = "UTF-8";
 
@@ -86,8 +100,6 @@ public void renderExtension(SxSource sxSource, Extension sxType, XWikiContext co
         XWikiRequest request = context.getRequest();
         XWikiResponse response = context.getResponse();
 
-        String extensionContent = sxSource.getContent();
-
         response.setContentType(sxType.getContentType());
 
         if (sxSource.getLastModifiedDate() > 0) {
@@ -109,18 +121,87 @@ public void renderExtension(SxSource sxSource, Extension sxType, XWikiContext co
             response.setHeader(CACHE_CONTROL_HEADER, "no-cache, no-store, must-revalidate");
         }
 
-        if (BooleanUtils.toBoolean(StringUtils.defaultIfEmpty(
-            request.get(COMPRESS_SCRIPT_REQUEST_PARAMETER), "true"))) {
-            extensionContent = sxType.getCompressor().compress(extensionContent);
-        }
+        boolean compress =
+            BooleanUtils.toBoolean(StringUtils.defaultIfEmpty(request.get(COMPRESS_SCRIPT_REQUEST_PARAMETER), "true"));
 
         try {
-            response.setContentLength(extensionContent.getBytes(RESPONSE_CHARACTER_SET).length);
-            response.getOutputStream().write(extensionContent.getBytes(RESPONSE_CHARACTER_SET));
+            // The output of the extensions evaluated with Velocity depends on the request (current user, rights,
+            // translations, included documents, etc.) so it can't be kept on the server side
+            if (cachePolicy != CachePolicy.FORBID && !isParsed(sxSource)) {
+                // The response can be shared by the proxies so it can be kept on the server side too
+                renderCachedExtension(sxSource, sxType, compress, context);
+            } else {
+                String extensionContent = sxSource.getContent();
+                if (compress) {
+                    extensionContent = sxType.getCompressor().compress(extensionContent);
+                }
+
+                response.setContentLength(extensionContent.getBytes(RESPONSE_CHARACTER_SET).length);
+                response.getOutputStream().write(extensionContent.getBytes(RESPONSE_CHARACTER_SET));
+            }
         } catch (IOException ex) {
             getLogger().warn("Failed to send SX content: [{}]", ex.getMessage());
         }
+    }
+
+    private void renderCachedExtension(SxSource sxSource, Extension sxType, boolean compress, XWikiContext context)
+        throws IOException
+    {
+        XWikiRequest request = context.getRequest();
+        XWikiResponse response = context.getResponse();
+
+        CachedSxOutput output =
+            Utils.getComponent(SxOutputCache.class).get(getCacheKey(sxSource, sxType, compress, context), () -> {
+                String extensionContent = sxSource.getContent();
+                return compress ? sxType.getCompressor().compress(extensionContent) : extensionContent;
+            });
+
+        boolean gzip = HttpServletUtils.acceptsGzip(request);
+        String etag = output.getETag(gzip);
+
+        response.setHeader("Vary", ACCEPT_ENCODING_HEADER);
+        response.setHeader(ETAG_HEADER, etag);
+
+        if (HttpServletUtils.matchesETag(request, etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        } else {
+            if (gzip) {
+                response.setHeader("Content-Encoding", HttpServletUtils.GZIP_ENCODING);
+            }
+
+            byte[] content = output.getContent(gzip);
+            response.setContentLength(content.length);
+            response.getOutputStream().write(content);
+        }
+    }
+
+    private boolean isParsed(SxSource sxSource)
+    {
+        return sxSource instanceof SxDocumentSource && ((SxDocumentSource) sxSource).isParsed();
+    }
+
+    /**
+     * @return the key of the output of the passed extension, containing everything it depends on: the version of the
+     *         extension document, the skin, the color theme, the language and the request parameters
+     */
+    private String getCacheKey(SxSource sxSource, Extension sxType, boolean compress, XWikiContext context)
+    {
+        StringBuilder key = new StringBuilder();
+        key.append(sxType.getClassName()).append(KEY_SEPARATOR).append(compress);
+
+        if (sxSource instanceof SxDocumentSource) {
+            XWikiDocument document = context.getDoc();
+            key.append(KEY_SEPARATOR).append(document.getPrefixedFullName());
+            key.append(KEY_SEPARATOR).append(document.getVersion());
+            key.append(KEY_SEPARATOR).append(document.getDate().getTime());
+        }
+
+        key.append(KEY_SEPARATOR).append(context.getWiki().getSkin(context));
+        key.append(KEY_SEPARATOR).append(context.getWiki().getUserPreference("colorTheme", context));
+        key.append(KEY_SEPARATOR).append(context.getLocale());
+        key.append(KEY_SEPARATOR).append(context.getRequest().getQueryString());
 
+        return key.toString();
     }
 
     @Override
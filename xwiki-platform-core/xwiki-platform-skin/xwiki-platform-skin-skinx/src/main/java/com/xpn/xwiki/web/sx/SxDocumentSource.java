@@ -166,6 +166,25 @@ public String getContent()
         return resultBuilder.toString();
     }
 
+    /**
+     * @return {@code true} if the content of at least one of the extension objects is evaluated with Velocity, in which
+     *         case it depends on the request (current user, rights, included documents, etc.)
+     * @since 10.0RC1
+     */
+    public boolean isParsed()
+    {
+        List<BaseObject> objects = this.document.getObjects(this.extension.getClassName());
+        if (objects != null) {
+            for (BaseObject sxObj : objects) {
+                if (sxObj != null && sxObj.getIntValue(PARSE_CONTENT_PROPERTY_NAME) == 1) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
     @Override
     public long getLastModifiedDate()
     {
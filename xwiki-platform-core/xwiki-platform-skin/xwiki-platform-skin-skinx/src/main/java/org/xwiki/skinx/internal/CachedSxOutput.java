@@ -0,0 +1,77 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.skinx.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * The final output of a skin extension, ready to be sent as is, with its gzipped variant.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class CachedSxOutput
+{
+    private final byte[] content;
+
+    private final byte[] gzippedContent;
+
+    private final String etag;
+
+    /**
+     * @param content the content of the skin extension
+     * @throws IOException if the content cannot be compressed
+     */
+    public CachedSxOutput(String content) throws IOException
+    {
+        this.content = content.getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(this.content.length / 3 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(this.content);
+        }
+        this.gzippedContent = output.toByteArray();
+
+        this.etag = DigestUtils.md5Hex(this.content);
+    }
+
+    /**
+     * @param gzipped {@code true} for the gzipped variant
+     * @return the bytes to send
+     */
+    public byte[] getContent(boolean gzipped)
+    {
+        return gzipped ? this.gzippedContent : this.content;
+    }
+
+    /**
+     * @param gzipped {@code true} for the gzipped variant
+     * @return the strong entity tag of the variant, quoted
+     */
+    public String getETag(boolean gzipped)
+    {
+        return gzipped ? '"' + this.etag + "-gzip\"" : '"' + this.etag + '"';
+    }
+}
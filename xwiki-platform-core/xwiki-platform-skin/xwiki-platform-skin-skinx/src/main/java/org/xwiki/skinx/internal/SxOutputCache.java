@@ -0,0 +1,183 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.skinx.internal;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Keeps the final output of the skin extensions so that they are not evaluated and minified on each request.
+ * <p>
+ * Only the extensions which are not evaluated with Velocity are kept, since the output of the others depends on the
+ * request (current user, rights, translations, included documents, etc.). The cache keys contain the version of the
+ * extension document, so modifying it is enough to stop using its previous output. Since an extension can also depend
+ * on other extensions, color themes or skins (through LESS), the whole cache is cleared when a document holding one of
+ * those is modified.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Component(roles = SxOutputCache.class)
+@Singleton
+public class SxOutputCache implements Initializable
+{
+    /**
+     * Identifier of the cache.
+     */
+    private static final String NAME = "skinx.output";
+
+    private static final String CAPACITY_PROPERTY = "xwiki.skinx.cache.capacity";
+
+    private static final int DEFAULT_CAPACITY = 500;
+
+    private static final String SYSTEM_SPACE = "XWiki";
+
+    /**
+     * The classes whose objects impact the output of the skin extensions.
+     */
+    private static final List<LocalDocumentReference> CLASSES =
+        Arrays.asList(new LocalDocumentReference(SYSTEM_SPACE, "StyleSheetExtension"),
+            new LocalDocumentReference(SYSTEM_SPACE, "JavaScriptExtension"),
+            new LocalDocumentReference(SYSTEM_SPACE, "XWikiSkins"),
+            new LocalDocumentReference("ColorThemes", "ColorThemeClass"),
+            new LocalDocumentReference("FlamingoThemesCode", "ThemeClass"));
+
+    /**
+     * Event listened by the component.
+     */
+    private static final List<Event> EVENTS = Arrays.<Event>asList(new DocumentCreatedEvent(),
+        new DocumentUpdatedEvent(), new DocumentDeletedEvent());
+
+    /**
+     * Used to listen to document modification events.
+     *
+     * @version $Id$
+     */
+    protected class Listener implements EventListener
+    {
+        @Override
+        public String getName()
+        {
+            return NAME;
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return EVENTS;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            XWikiDocument document = (XWikiDocument) source;
+
+            if (hasExtensionObjects(document) || hasExtensionObjects(document.getOriginalDocument())) {
+                SxOutputCache.this.cache.removeAll();
+            }
+        }
+    }
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private ObservationManager observationManager;
+
+    @Inject
+    @Named("xwikicfg")
+    private ConfigurationSource configuration;
+
+    private Cache<CachedSxOutput> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        int capacity = this.configuration.getProperty(CAPACITY_PROPERTY, DEFAULT_CAPACITY);
+        if (capacity > 0) {
+            try {
+                this.cache = this.cacheManager.createNewCache(new LRUCacheConfiguration(NAME, capacity));
+            } catch (CacheException e) {
+                throw new InitializationException("Failed to initialize the skin extension output cache", e);
+            }
+
+            this.observationManager.addListener(new Listener());
+        }
+    }
+
+    /**
+     * @param key identifies the output; it should contain everything the output depends on
+     * @param producer produces the content of the skin extension when it's not cached
+     * @return the output of the skin extension
+     * @throws IOException if the content cannot be compressed
+     */
+    public CachedSxOutput get(String key, Supplier<String> producer) throws IOException
+    {
+        CachedSxOutput output = this.cache != null ? this.cache.get(key) : null;
+
+        if (output == null) {
+            output = new CachedSxOutput(producer.get());
+
+            if (this.cache != null) {
+                this.cache.set(key, output);
+            }
+        }
+
+        return output;
+    }
+
+    private boolean hasExtensionObjects(XWikiDocument document)
+    {
+        if (document != null) {
+            for (DocumentReference classReference : document.getXObjects().keySet()) {
+                if (CLASSES.contains(classReference.getLocalDocumentReference())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
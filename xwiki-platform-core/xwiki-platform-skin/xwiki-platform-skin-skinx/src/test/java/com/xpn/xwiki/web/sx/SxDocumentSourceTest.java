@@ -0,0 +1,71 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.web.sx;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.test.MockitoOldcoreRule;
+import com.xpn.xwiki.test.reference.ReferenceComponentList;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Validate {@link SxDocumentSource}.
+ *
+ * @version $Id$
+ */
+@ReferenceComponentList
+public class SxDocumentSourceTest
+{
+    @Rule
+    public MockitoOldcoreRule oldcore = new MockitoOldcoreRule();
+
+    private void addExtensionObject(XWikiDocument document, int parse)
+    {
+        BaseObject extensionObject = new BaseObject();
+        extensionObject.setXClassReference(new DocumentReference("xwiki", "XWiki", "StyleSheetExtension"));
+        extensionObject.setIntValue("parse", parse);
+        document.addXObject(extensionObject);
+    }
+
+    @Test
+    public void isParsed()
+    {
+        XWikiDocument document = new XWikiDocument(new DocumentReference("xwiki", "Space", "Page"));
+        this.oldcore.getXWikiContext().setDoc(document);
+
+        SxDocumentSource source = new SxDocumentSource(this.oldcore.getXWikiContext(), new CssExtension());
+
+        assertFalse(source.isParsed());
+
+        addExtensionObject(document, 0);
+
+        assertFalse(source.isParsed());
+
+        addExtensionObject(document, 1);
+
+        assertTrue(source.isParsed());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.skinx.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.configuration.ConfigurationSource;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.test.MockitoOldcoreRule;
+import com.xpn.xwiki.test.reference.ReferenceComponentList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link SxOutputCache}.
+ *
+ * @version $Id$
+ */
+@ReferenceComponentList
+public class SxOutputCacheTest
+{
+    public MockitoComponentMockingRule<SxOutputCache> mocker =
+        new MockitoComponentMockingRule<>(SxOutputCache.class);
+
+    @Rule
+    public MockitoOldcoreRule oldcore = new MockitoOldcoreRule(this.mocker);
+
+    private EventListener listener;
+
+    private int produced;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void before() throws Exception
+    {
+        Map<String, CachedSxOutput> entries = new HashMap<>();
+        Cache<CachedSxOutput> cache = mock(Cache.class);
+        when(cache.get(anyString())).then(invocation -> entries.get(invocation.getArgument(0)));
+        doAnswer(invocation -> entries.put(invocation.getArgument(0), invocation.getArgument(1))).when(cache)
+            .set(anyString(), any(CachedSxOutput.class));
+        doAnswer(invocation -> {
+            entries.clear();
+            return null;
+        }).when(cache).removeAll();
+
+        CacheManager cacheManager = this.mocker.getInstance(CacheManager.class);
+        when(cacheManager.<CachedSxOutput>createNewCache(any(CacheConfiguration.class))).thenReturn(cache);
+
+        ConfigurationSource configuration = this.mocker.getInstance(ConfigurationSource.class, "xwikicfg");
+        when(configuration.getProperty("xwiki.skinx.cache.capacity", 500)).thenReturn(500);
+
+        this.mocker.getComponentUnderTest();
+
+        ObservationManager observationManager = this.mocker.getInstance(ObservationManager.class);
+        ArgumentCaptor<EventListener> listenerCaptor = ArgumentCaptor.forClass(EventListener.class);
+        verify(observationManager).addListener(listenerCaptor.capture());
+        this.listener = listenerCaptor.getValue();
+    }
+
+    private String produce()
+    {
+        ++this.produced;
+
+        return "content";
+    }
+
+    private void updateDocument(String className)
+    {
+        DocumentReference documentReference = new DocumentReference("xwiki", "Space", "Page");
+        XWikiDocument document = new XWikiDocument(documentReference);
+        BaseObject object = new BaseObject();
+        object.setXClassReference(new DocumentReference("xwiki", "XWiki", className));
+        document.addXObject(object);
+        document.setOriginalDocument(new XWikiDocument(documentReference));
+
+        this.listener.onEvent(new DocumentUpdatedEvent(documentReference), document, null);
+    }
+
+    @Test
+    public void get() throws Exception
+    {
+        SxOutputCache outputCache = this.mocker.getComponentUnderTest();
+
+        CachedSxOutput output = outputCache.get("key", this::produce);
+
+        assertArrayEquals("content".getBytes("UTF-8"), output.getContent(false));
+        assertSame(output, outputCache.get("key", this::produce));
+        assertEquals(1, this.produced);
+
+        outputCache.get("otherkey", this::produce);
+
+        assertEquals(2, this.produced);
+    }
+
+    @Test
+    public void getWhenExtensionIsModified() throws Exception
+    {
+        SxOutputCache outputCache = this.mocker.getComponentUnderTest();
+
+        outputCache.get("key", this::produce);
+
+        // Documents without skin extension objects don't clear the cache
+        updateDocument("OtherClass");
+        outputCache.get("key", this::produce);
+
+        assertEquals(1, this.produced);
+
+        updateDocument("StyleSheetExtension");
+        outputCache.get("key", this::produce);
+
+        assertEquals(2, this.produced);
+    }
+}
@@ -29,11 +29,17 @@
 import org.slf4j.Logger;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.model.EntityType;
+import org.xwiki.model.ModelContext;
+import org.xwiki.model.reference.EntityReference;
 import org.xwiki.uiextension.UIExtension;
 import org.xwiki.uiextension.UIExtensionManager;
 
 /**
  * Default UIExtensionManager, retrieves all the extensions for a given extension point.
+ * <p>
+ * The extensions are taken from the {@link UIExtensionRegistry} when possible, in which case the returned list is
+ * unmodifiable and sorted by id.
  *
  * @version $Id$
  * @since 4.3.1
@@ -55,8 +61,32 @@ public class DefaultUIExtensionManager implements UIExtensionManager
     @Named("context")
     private Provider<ComponentManager> contextComponentManagerProvider;
 
+    @Inject
+    private UIExtensionRegistry registry;
+
+    @Inject
+    private ModelContext modelContext;
+
     @Override
     public List<UIExtension> get(String extensionPointId)
+    {
+        List<UIExtension> extensions = this.registry.get(extensionPointId, getCurrentWiki());
+        if (extensions != null) {
+            return extensions;
+        }
+
+        return lookup(extensionPointId);
+    }
+
+    private String getCurrentWiki()
+    {
+        EntityReference reference = this.modelContext.getCurrentEntityReference();
+        EntityReference wikiReference = reference != null ? reference.extractReference(EntityType.WIKI) : null;
+
+        return wikiReference != null ? wikiReference.getName() : null;
+    }
+
+    private List<UIExtension> lookup(String extensionPointId)
     {
         List<UIExtension> extensions = new ArrayList<UIExtension>();
 
@@ -0,0 +1,387 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.uiextension.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.manager.NamespacedComponentManager;
+import org.xwiki.model.namespace.WikiNamespace;
+import org.xwiki.uiextension.UIExtension;
+
+/**
+ * Index of the {@link UIExtension} components by namespace and extension point, kept up to date with the component
+ * registration events (see {@link UIExtensionRegistryListener}).
+ * <p>
+ * The extensions of an extension point visible from a wiki (the ones registered in the wiki namespace and in the root
+ * namespace, the former hiding the latter for a same hint) are sorted by id and computed only once, until a component
+ * registration impacting them. Extension points which have extensions registered for a user, a document or a space, or
+ * extensions which are not singletons, can't be indexed since the result depends on the context: {@code null} is
+ * returned for them so that the caller looks them up in the Context Component Manager.
+ * <p>
+ * The components registered in the root namespace before the registry is created are taken into account by looking
+ * them up the first time the registry is used. The other namespaces are only known through the registration events,
+ * which is fine since the observation manager, and thus the listener, exists before any namespace.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Component(roles = UIExtensionRegistry.class)
+@Singleton
+public class UIExtensionRegistry
+{
+    /**
+     * Marks the extension points which are not indexed in the computed lists.
+     */
+    private static final List<UIExtension> UNINDEXED = Collections.unmodifiableList(new ArrayList<UIExtension>());
+
+    /**
+     * The key of the root namespace in {@link #namespaces} and of the root wiki in {@link #lists}.
+     */
+    private static final String ROOT = "";
+
+    private static final String WIKI_PREFIX = WikiNamespace.TYPE + ':';
+
+    private static final Comparator<UIExtension> ID_COMPARATOR =
+        Comparator.comparing(UIExtension::getId, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+
+    /**
+     * A {@link UIExtension} component registered in a namespace.
+     *
+     * @version $Id$
+     */
+    private static class Entry
+    {
+        private final ComponentManager componentManager;
+
+        private final ComponentDescriptor<?> descriptor;
+
+        private UIExtension extension;
+
+        Entry(ComponentManager componentManager, ComponentDescriptor<?> descriptor)
+        {
+            this.componentManager = componentManager;
+            this.descriptor = descriptor;
+        }
+
+        boolean isIndexable()
+        {
+            return this.descriptor.getInstantiationStrategy() != ComponentInstantiationStrategy.PER_LOOKUP;
+        }
+    }
+
+    /**
+     * The {@link UIExtension} components registered in a namespace.
+     *
+     * @version $Id$
+     */
+    private static class Namespace
+    {
+        /**
+         * The entries by hint.
+         */
+        private final Map<String, Entry> entries = new HashMap<>();
+
+        /**
+         * The resolved entries by extension point and hint.
+         */
+        private final Map<String, Map<String, Entry>> extensionPoints = new HashMap<>();
+
+        /**
+         * The entries whose extension is not instantiated yet, and thus whose extension point is unknown. They are
+         * instantiated lazily because the component might depend on components which are not registered yet.
+         */
+        private final List<Entry> pending = new ArrayList<>();
+
+        boolean isEmpty()
+        {
+            return this.entries.isEmpty();
+        }
+    }
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private ComponentManager rootComponentManager;
+
+    /**
+     * The registered components by namespace.
+     */
+    private final Map<String, Namespace> namespaces = new HashMap<>();
+
+    /**
+     * The sorted extensions by wiki and extension point. The lists are computed lazily and removed when a component
+     * registration impacts them.
+     */
+    private final Map<String, Map<String, List<UIExtension>>> lists = new ConcurrentHashMap<>();
+
+    private boolean rootLoaded;
+
+    /**
+     * @param extensionPointId the id of the extension point
+     * @param wiki the current wiki, {@code null} to only take into account the root namespace
+     * @return the unmodifiable list of the extensions of the extension point, sorted by id, or {@code null} when they
+     *         can't be indexed and should be looked up in the Context Component Manager
+     */
+    public List<UIExtension> get(String extensionPointId, String wiki)
+    {
+        Map<String, List<UIExtension>> wikiLists = this.lists.get(wiki != null ? wiki : ROOT);
+        List<UIExtension> extensions = wikiLists != null ? wikiLists.get(extensionPointId) : null;
+
+        if (extensions == null) {
+            extensions = compute(extensionPointId, wiki != null ? wiki : ROOT);
+        }
+
+        return extensions != UNINDEXED ? extensions : null;
+    }
+
+    private synchronized List<UIExtension> compute(String extensionPointId, String wiki)
+    {
+        loadRoot();
+
+        for (Namespace namespace : this.namespaces.values()) {
+            resolve(namespace);
+        }
+
+        Map<String, Entry> entries = new HashMap<>();
+        if (!addEntries(ROOT, extensionPointId, entries)
+            || (!wiki.isEmpty() && !addEntries(WIKI_PREFIX + wiki, extensionPointId, entries))
+            || isRegisteredInEntityNamespace(extensionPointId)) {
+            return put(wiki, extensionPointId, UNINDEXED);
+        }
+
+        List<UIExtension> extensions = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            extensions.add(entry.extension);
+        }
+        Collections.sort(extensions, ID_COMPARATOR);
+
+        return put(wiki, extensionPointId, Collections.unmodifiableList(extensions));
+    }
+
+    private List<UIExtension> put(String wiki, String extensionPointId, List<UIExtension> extensions)
+    {
+        this.lists.computeIfAbsent(wiki, key -> new ConcurrentHashMap<>()).put(extensionPointId, extensions);
+
+        return extensions;
+    }
+
+    /**
+     * @return {@code false} if one of the extensions can't be indexed
+     */
+    private boolean addEntries(String namespaceKey, String extensionPointId, Map<String, Entry> entries)
+    {
+        Namespace namespace = this.namespaces.get(namespaceKey);
+        Map<String, Entry> namespaceEntries = namespace != null ? namespace.extensionPoints.get(extensionPointId) : null;
+
+        if (namespaceEntries != null) {
+            for (Map.Entry<String, Entry> entry : namespaceEntries.entrySet()) {
+                if (!entry.getValue().isIndexable()) {
+                    return false;
+                }
+
+                // The extensions registered in the wiki hide the ones registered in the root namespace
+                entries.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isRegisteredInEntityNamespace(String extensionPointId)
+    {
+        for (Map.Entry<String, Namespace> namespace : this.namespaces.entrySet()) {
+            String key = namespace.getKey();
+            if (!key.isEmpty() && !key.startsWith(WIKI_PREFIX)
+                && namespace.getValue().extensionPoints.containsKey(extensionPointId)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void loadRoot()
+    {
+        if (!this.rootLoaded) {
+            for (ComponentDescriptor<UIExtension> descriptor : this.rootComponentManager
+                .<UIExtension>getComponentDescriptorList(UIExtension.class)) {
+                add(ROOT, this.rootComponentManager, descriptor);
+            }
+
+            this.rootLoaded = true;
+        }
+    }
+
+    private void resolve(Namespace namespace)
+    {
+        for (Entry entry : namespace.pending) {
+            try {
+                entry.extension = entry.componentManager.getInstance(UIExtension.class, entry.descriptor.getRoleHint());
+                namespace.extensionPoints
+                    .computeIfAbsent(entry.extension.getExtensionPointId(), key -> new HashMap<>())
+                    .put(entry.descriptor.getRoleHint(), entry);
+            } catch (ComponentLookupException e) {
+                this.logger.warn("Failed to lookup UIExtension with hint [{}]: {}", entry.descriptor.getRoleHint(),
+                    e.getMessage());
+
+                namespace.entries.remove(entry.descriptor.getRoleHint(), entry);
+            }
+        }
+
+        namespace.pending.clear();
+    }
+
+    /**
+     * Called when a {@link UIExtension} component is registered.
+     *
+     * @param componentManager the component manager in which the component has been registered
+     * @param descriptor the descriptor of the component
+     */
+    public synchronized void onComponentAdded(ComponentManager componentManager, ComponentDescriptor<?> descriptor)
+    {
+        String namespace = getNamespace(componentManager);
+
+        add(namespace, componentManager, descriptor);
+
+        // The extension point of the new extension is unknown until it's instantiated
+        invalidate(namespace, null);
+    }
+
+    private void add(String namespaceKey, ComponentManager componentManager, ComponentDescriptor<?> descriptor)
+    {
+        Namespace namespace = this.namespaces.computeIfAbsent(namespaceKey, key -> new Namespace());
+
+        remove(namespace, descriptor.getRoleHint());
+
+        Entry entry = new Entry(componentManager, descriptor);
+        namespace.entries.put(descriptor.getRoleHint(), entry);
+        namespace.pending.add(entry);
+    }
+
+    /**
+     * Called when a {@link UIExtension} component is unregistered.
+     *
+     * @param componentManager the component manager from which the component has been unregistered
+     * @param descriptor the descriptor of the component
+     */
+    public synchronized void onComponentRemoved(ComponentManager componentManager, ComponentDescriptor<?> descriptor)
+    {
+        String namespaceKey = getNamespace(componentManager);
+        Namespace namespace = this.namespaces.get(namespaceKey);
+
+        if (namespace != null) {
+            Entry entry = remove(namespace, descriptor.getRoleHint());
+            if (entry != null && entry.extension != null) {
+                invalidate(namespaceKey, entry.extension.getExtensionPointId());
+            }
+
+            if (namespace.isEmpty()) {
+                this.namespaces.remove(namespaceKey);
+            }
+        }
+    }
+
+    private Entry remove(Namespace namespace, String hint)
+    {
+        Entry entry = namespace.entries.remove(hint);
+
+        if (entry != null) {
+            if (entry.extension != null) {
+                String extensionPointId = entry.extension.getExtensionPointId();
+                Map<String, Entry> entries = namespace.extensionPoints.get(extensionPointId);
+                entries.remove(hint);
+                if (entries.isEmpty()) {
+                    namespace.extensionPoints.remove(extensionPointId);
+                }
+            } else {
+                namespace.pending.remove(entry);
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * Called when a wiki is deleted.
+     *
+     * @param wiki the identifier of the deleted wiki
+     */
+    public synchronized void onWikiDeleted(String wiki)
+    {
+        this.namespaces.remove(WIKI_PREFIX + wiki);
+        this.lists.remove(wiki);
+    }
+
+    /**
+     * Forget the computed lists impacted by a modification of the passed namespace.
+     *
+     * @param namespace the modified namespace
+     * @param extensionPointId the modified extension point, {@code null} if unknown
+     */
+    private void invalidate(String namespace, String extensionPointId)
+    {
+        if (namespace.startsWith(WIKI_PREFIX)) {
+            Map<String, List<UIExtension>> wikiLists = this.lists.get(namespace.substring(WIKI_PREFIX.length()));
+            if (wikiLists != null) {
+                invalidate(wikiLists, extensionPointId);
+            }
+        } else {
+            // The root namespace and the entity namespaces impact all the wikis
+            for (Map<String, List<UIExtension>> wikiLists : this.lists.values()) {
+                invalidate(wikiLists, extensionPointId);
+            }
+        }
+    }
+
+    private void invalidate(Map<String, List<UIExtension>> wikiLists, String extensionPointId)
+    {
+        if (extensionPointId != null) {
+            wikiLists.remove(extensionPointId);
+        } else {
+            wikiLists.clear();
+        }
+    }
+
+    private String getNamespace(ComponentManager componentManager)
+    {
+        String namespace = null;
+        if (componentManager instanceof NamespacedComponentManager) {
+            namespace = ((NamespacedComponentManager) componentManager).getNamespace();
+        }
+
+        return namespace != null ? namespace : ROOT;
+    }
+}
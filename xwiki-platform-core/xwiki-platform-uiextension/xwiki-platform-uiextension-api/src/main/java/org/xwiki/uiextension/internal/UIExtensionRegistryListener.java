@@ -0,0 +1,79 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.uiextension.internal;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.uiextension.UIExtension;
+
+/**
+ * Keep the {@link UIExtensionRegistry} up to date with the registered {@link UIExtension} components.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Component
+@Named(UIExtensionRegistryListener.NAME)
+@Singleton
+public class UIExtensionRegistryListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "org.xwiki.uiextension.internal.UIExtensionRegistryListener";
+
+    /**
+     * Lazily loaded since the listener is created very early.
+     */
+    @Inject
+    private Provider<UIExtensionRegistry> registryProvider;
+
+    /**
+     * The default constructor.
+     */
+    public UIExtensionRegistryListener()
+    {
+        super(NAME, new ComponentDescriptorAddedEvent(UIExtension.class),
+            new ComponentDescriptorRemovedEvent(UIExtension.class), new WikiDeletedEvent());
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (event instanceof ComponentDescriptorAddedEvent) {
+            this.registryProvider.get().onComponentAdded((ComponentManager) source, (ComponentDescriptor<?>) data);
+        } else if (event instanceof ComponentDescriptorRemovedEvent) {
+            this.registryProvider.get().onComponentRemoved((ComponentManager) source, (ComponentDescriptor<?>) data);
+        } else {
+            this.registryProvider.get().onWikiDeleted(((WikiDeletedEvent) event).getWikiId());
+        }
+    }
+}
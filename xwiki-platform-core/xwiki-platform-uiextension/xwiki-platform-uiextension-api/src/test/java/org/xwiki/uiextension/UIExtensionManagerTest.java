@@ -20,6 +20,8 @@
 package org.xwiki.uiextension;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
@@ -27,33 +29,111 @@
 
 import org.junit.Rule;
 import org.junit.Test;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
 import org.xwiki.component.internal.ContextComponentManagerProvider;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.manager.NamespacedComponentManager;
+import org.xwiki.model.ModelContext;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.observation.EventListener;
 import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 import org.xwiki.uiextension.internal.DefaultUIExtensionManager;
+import org.xwiki.uiextension.internal.UIExtensionRegistry;
+import org.xwiki.uiextension.internal.UIExtensionRegistryListener;
 
-@ComponentList(ContextComponentManagerProvider.class)
+@ComponentList({ContextComponentManagerProvider.class, UIExtensionRegistry.class, UIExtensionRegistryListener.class})
 public class UIExtensionManagerTest
 {
     @Rule
     public MockitoComponentMockingRule<UIExtensionManager> mocker =
         new MockitoComponentMockingRule<UIExtensionManager>(DefaultUIExtensionManager.class);
 
+    private UIExtension registerUIExtension(String hint, String extensionPointId) throws Exception
+    {
+        UIExtension uix = this.mocker.registerMockComponent(UIExtension.class, hint);
+        when(uix.getId()).thenReturn(hint);
+        when(uix.getExtensionPointId()).thenReturn(extensionPointId);
+
+        notifyAdded(this.mocker, hint);
+
+        return uix;
+    }
+
+    private void notifyAdded(ComponentManager componentManager, String hint) throws Exception
+    {
+        EventListener listener = this.mocker.getInstance(EventListener.class, UIExtensionRegistryListener.NAME);
+        listener.onEvent(new ComponentDescriptorAddedEvent(UIExtension.class, hint), componentManager,
+            this.mocker.getComponentDescriptor(UIExtension.class, hint));
+    }
+
+    private void notifyRemoved(ComponentManager componentManager, String hint) throws Exception
+    {
+        ComponentDescriptor<UIExtension> descriptor = this.mocker.getComponentDescriptor(UIExtension.class, hint);
+        this.mocker.unregisterComponent(UIExtension.class, hint);
+
+        EventListener listener = this.mocker.getInstance(EventListener.class, UIExtensionRegistryListener.NAME);
+        listener.onEvent(new ComponentDescriptorRemovedEvent(UIExtension.class, hint), componentManager, descriptor);
+    }
+
     @Test
     public void testGet() throws Exception
     {
         assertEquals(Arrays.asList(), this.mocker.getComponentUnderTest().get("extensionpoint"));
 
-        UIExtension uix1 = mocker.registerMockComponent(UIExtension.class, "uix1");
-        when(uix1.getExtensionPointId()).thenReturn("extensionpoint");
-
-        UIExtension uix2 = mocker.registerMockComponent(UIExtension.class, "uix2");
-        when(uix2.getExtensionPointId()).thenReturn("extensionpoint");
-
-        UIExtension notuix = mocker.registerMockComponent(UIExtension.class, "notuix");
-        when(notuix.getExtensionPointId()).thenReturn("notuix");
+        UIExtension uix1 = registerUIExtension("uix1", "extensionpoint");
+        UIExtension uix2 = registerUIExtension("uix2", "extensionpoint");
+        registerUIExtension("notuix", "notuix");
 
         assertEquals(new HashSet<UIExtension>(Arrays.asList(uix1, uix2)), new HashSet<UIExtension>(this.mocker
             .getComponentUnderTest().get("extensionpoint")));
     }
+
+    @Test
+    public void getWithWikiAndUserExtensions() throws Exception
+    {
+        UIExtension uix1 = registerUIExtension("uix1", "extensionpoint");
+        UIExtension uix2 = registerUIExtension("uix2", "extensionpoint");
+
+        ModelContext modelContext = this.mocker.getInstance(ModelContext.class);
+        when(modelContext.getCurrentEntityReference()).thenReturn(new WikiReference("wiki"));
+
+        assertEquals(Arrays.asList(uix1, uix2), this.mocker.getComponentUnderTest().get("extensionpoint"));
+        // The list is computed only once
+        assertSame(this.mocker.getComponentUnderTest().get("extensionpoint"),
+            this.mocker.getComponentUnderTest().get("extensionpoint"));
+
+        // An extension registered in the wiki hides the root extension with the same hint
+        NamespacedComponentManager wikiComponentManager = mock(NamespacedComponentManager.class);
+        when(wikiComponentManager.getNamespace()).thenReturn("wiki:wiki");
+        UIExtension wikiUIX2 = mock(UIExtension.class);
+        when(wikiUIX2.getId()).thenReturn("uix2");
+        when(wikiUIX2.getExtensionPointId()).thenReturn("extensionpoint");
+        when(wikiComponentManager.getInstance(UIExtension.class, "uix2")).thenReturn(wikiUIX2);
+        notifyAdded(wikiComponentManager, "uix2");
+
+        assertEquals(Arrays.asList(uix1, wikiUIX2), this.mocker.getComponentUnderTest().get("extensionpoint"));
+        when(modelContext.getCurrentEntityReference()).thenReturn(new WikiReference("otherwiki"));
+        assertEquals(Arrays.asList(uix1, uix2), this.mocker.getComponentUnderTest().get("extensionpoint"));
+
+        // Extensions registered for a user are looked up in the context component manager
+        NamespacedComponentManager userComponentManager = mock(NamespacedComponentManager.class);
+        when(userComponentManager.getNamespace()).thenReturn("user:wiki:XWiki.User");
+        // Registered in the test component manager too since it's the context component manager
+        UIExtension userUIX = this.mocker.registerMockComponent(UIExtension.class, "useruix");
+        when(userUIX.getExtensionPointId()).thenReturn("extensionpoint");
+        when(userComponentManager.getInstance(UIExtension.class, "useruix")).thenReturn(userUIX);
+        notifyAdded(userComponentManager, "useruix");
+
+        assertEquals(new HashSet<>(Arrays.asList(uix1, uix2, userUIX)),
+            new HashSet<>(this.mocker.getComponentUnderTest().get("extensionpoint")));
+
+        // Unregistered extensions are forgotten
+        notifyRemoved(this.mocker, "uix1");
+        notifyRemoved(userComponentManager, "useruix");
+
+        assertEquals(Arrays.asList(uix2), this.mocker.getComponentUnderTest().get("extensionpoint"));
+    }
 }
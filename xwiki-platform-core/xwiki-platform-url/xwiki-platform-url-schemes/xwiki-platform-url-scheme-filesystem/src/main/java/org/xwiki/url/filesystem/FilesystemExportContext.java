@@ -21,35 +21,45 @@
 
 import java.io.File;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Stores states when generating Filesystem URLs. As we generate URLs for passed Resources we also export them to the
  * filesystem at the same time.
+ * <p>
+ * The same context can be used by several threads rendering pages of the same export: the CSS and document levels are
+ * kept per thread while the exported pages, skins and skin files are shared.
  *
  * @version $Id$
  * @since 7.2M1
  */
 public class FilesystemExportContext
 {
+    /**
+     * The name of the Execution Context property holding the current export context.
+     *
+     * @since 10.0RC1
+     */
+    public static final String EXECUTION_CONTEXT_KEY = "filesystemExportContext";
+
     /**
      * When there are relative links to resources inside CSS files they are resolved based on the location of the CSS
      * file itself. When we export we put all resources and attachments in the root of the exported directory and thus
      * in order to have valid relative links we need to make them match. We use this variable to do this.
      */
-    private Stack<Integer> cssParentDepth = new Stack<>();
+    private ThreadLocal<Stack<Integer>> cssParentDepth = ThreadLocal.withInitial(Stack::new);
 
     /**
      * @see #getDocParentLevel()
      */
-    private int docParentDepth;
+    private ThreadLocal<Integer> docParentDepth = ThreadLocal.withInitial(() -> 0);
 
     /**
      * @see #getExportedPages()
      */
-    private Set<String> exportedPages = new HashSet<>();
+    private Set<String> exportedPages = ConcurrentHashMap.newKeySet();
 
     /**
      * @see #getExportDir()
@@ -59,19 +69,21 @@
     /**
      * @see #getNeededSkins()
      */
-    private Set<String> neededSkins = new HashSet<>();
+    private Set<String> neededSkins = ConcurrentHashMap.newKeySet();
 
     /**
      * @see #getExportedSkinFiles()
      */
-    private Set<String> exportedSkinFiles = new HashSet<>();
+    private Set<String> exportedSkinFiles = ConcurrentHashMap.newKeySet();
 
     /**
      * @return the number of relative parent levels in the path to find the CSS file
      */
     public int getCSSParentLevel()
     {
-        return this.cssParentDepth.isEmpty() ? 0 : this.cssParentDepth.peek();
+        Stack<Integer> depths = this.cssParentDepth.get();
+
+        return depths.isEmpty() ? 0 : depths.peek();
     }
 
     /**
@@ -81,7 +93,7 @@ public int getCSSParentLevel()
      */
     public int getDocParentLevel()
     {
-        return this.docParentDepth;
+        return this.docParentDepth.get();
     }
 
     /**
@@ -91,7 +103,7 @@ public int getDocParentLevel()
      */
     public void pushCSSParentLevels(int depth)
     {
-        this.cssParentDepth.push(depth);
+        this.cssParentDepth.get().push(depth);
     }
 
     /**
@@ -103,7 +115,7 @@ public void pushCSSParentLevels(int depth)
      */
     public void setDocParentLevels(int depth)
     {
-        this.docParentDepth = depth;
+        this.docParentDepth.set(depth);
     }
 
     /**
@@ -111,7 +123,7 @@ public void setDocParentLevels(int depth)
      */
     public void popCSSParentLevels()
     {
-        this.cssParentDepth.pop();
+        this.cssParentDepth.get().pop();
     }
 
     /**
@@ -195,4 +207,16 @@ public void addExportedSkinFile(String filePath)
     {
         this.exportedSkinFiles.add(filePath);
     }
+
+    /**
+     * Atomically marks a skin file as exported, so that only one of the threads rendering the pages exports it.
+     *
+     * @param filePath the skin file path
+     * @return {@code true} if the skin file was not already exported and the caller should export it
+     * @since 10.0RC1
+     */
+    public boolean claimExportedSkinFile(String filePath)
+    {
+        return this.exportedSkinFiles.add(filePath);
+    }
 }
@@ -39,8 +39,6 @@
 @Singleton
 public class FilesystemExportContextProvider implements Provider<FilesystemExportContext>
 {
-    private static final String CONTEXT_KEY = "filesystemExportContext";
-
     @Inject
     private Execution execution;
 
@@ -48,10 +46,11 @@ public class FilesystemExportContextProvider implements Provider<FilesystemExpor
     public FilesystemExportContext get()
     {
         ExecutionContext ec = this.execution.getContext();
-        FilesystemExportContext exportContext = (FilesystemExportContext) ec.getProperty(CONTEXT_KEY);
+        FilesystemExportContext exportContext =
+            (FilesystemExportContext) ec.getProperty(FilesystemExportContext.EXECUTION_CONTEXT_KEY);
         if (exportContext == null) {
             exportContext = new FilesystemExportContext();
-            ec.newProperty(CONTEXT_KEY)
+            ec.newProperty(FilesystemExportContext.EXECUTION_CONTEXT_KEY)
                 .inherited()
                 .initial(exportContext)
                 .declare();
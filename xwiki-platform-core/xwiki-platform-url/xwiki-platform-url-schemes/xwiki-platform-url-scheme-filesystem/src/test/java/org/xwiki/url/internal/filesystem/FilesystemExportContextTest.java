@@ -23,6 +23,8 @@
 import org.xwiki.url.filesystem.FilesystemExportContext;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Unit tests for {@link org.xwiki.url.filesystem.FilesystemExportContext}.
@@ -38,4 +40,33 @@ public void getSetDocParentLevels()
         context.setDocParentLevels(5);
         assertEquals(5, context.getDocParentLevel());
     }
+
+    @Test
+    public void levelsAreKeptPerThread() throws Exception
+    {
+        FilesystemExportContext context = new FilesystemExportContext();
+        context.setDocParentLevels(5);
+        context.pushCSSParentLevels(2);
+
+        Thread thread = new Thread(() -> {
+            context.setDocParentLevels(3);
+            context.addNeededSkin("flamingo");
+        });
+        thread.start();
+        thread.join();
+
+        assertEquals(5, context.getDocParentLevel());
+        assertEquals(2, context.getCSSParentLevel());
+        assertTrue(context.getNeededSkins().contains("flamingo"));
+    }
+
+    @Test
+    public void claimExportedSkinFile()
+    {
+        FilesystemExportContext context = new FilesystemExportContext();
+
+        assertTrue(context.claimExportedSkinFile("skins/flamingo/style.css"));
+        assertFalse(context.claimExportedSkinFile("skins/flamingo/style.css"));
+        assertTrue(context.hasExportedSkinFile("skins/flamingo/style.css"));
+    }
 }
@@ -0,0 +1,106 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.webjars.internal;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.xwiki.cache.DisposableCacheValue;
+
+/**
+ * A static WebJar resource extracted from its JAR to the local file system, with its gzipped variant when it's worth
+ * compressing it. The files are deleted when the asset is disposed (i.e. evicted from the cache).
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class WebJarsAsset implements DisposableCacheValue
+{
+    private final File file;
+
+    private final File gzippedFile;
+
+    private final String contentType;
+
+    private final String etag;
+
+    /**
+     * @param file the file holding the content of the resource
+     * @param gzippedFile the file holding the gzipped content of the resource, {@code null} if there's none
+     * @param contentType the content type of the resource
+     * @param etag the hash of the content of the resource
+     */
+    public WebJarsAsset(File file, File gzippedFile, String contentType, String etag)
+    {
+        this.file = file;
+        this.gzippedFile = gzippedFile;
+        this.contentType = contentType;
+        this.etag = etag;
+    }
+
+    /**
+     * @return {@code true} if the resource has a gzipped variant
+     */
+    public boolean hasGzippedVariant()
+    {
+        return this.gzippedFile != null;
+    }
+
+    /**
+     * @param gzipped {@code true} for the gzipped variant
+     * @return the file to send
+     */
+    public File getFile(boolean gzipped)
+    {
+        return gzipped ? this.gzippedFile : this.file;
+    }
+
+    /**
+     * @return the content type of the resource
+     */
+    public String getContentType()
+    {
+        return this.contentType;
+    }
+
+    /**
+     * @param gzipped {@code true} for the gzipped variant
+     * @return the strong entity tag of the variant, quoted
+     */
+    public String getETag(boolean gzipped)
+    {
+        return gzipped ? '"' + this.etag + "-gzip\"" : '"' + this.etag + '"';
+    }
+
+    /**
+     * @return {@code true} if the extracted files are still there (the temporary directory might have been cleaned)
+     */
+    public boolean exists()
+    {
+        return this.file.exists() && (this.gzippedFile == null || this.gzippedFile.exists());
+    }
+
+    @Override
+    public void dispose()
+    {
+        FileUtils.deleteQuietly(this.file);
+        FileUtils.deleteQuietly(this.gzippedFile);
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.webjars.internal;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.tika.Tika;
+import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.environment.Environment;
+import org.xwiki.extension.event.ExtensionInstalledEvent;
+import org.xwiki.extension.event.ExtensionUninstalledEvent;
+import org.xwiki.extension.event.ExtensionUpgradedEvent;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Extracts the static WebJar resources to the temporary directory the first time they are requested, along with their
+ * gzipped variant and the hash of their content, so that they can be served straight from the file system instead of
+ * being read from the JARs (and compressed by the servlet container) on each request.
+ * <p>
+ * Since the path of a WebJar resource contains the version of the WebJar, the extracted files are only forgotten when
+ * an extension is installed, upgraded or uninstalled (a snapshot version can be reinstalled with a different content).
+ * The number of remembered resources is bounded and the files of a forgotten resource are deleted (each extraction
+ * writes new files so that the files of the forgotten resources are never the ones of the remembered resources). The
+ * extraction directory is emptied on startup to not keep the files left by a previous run.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+@Component(roles = WebJarsAssetCache.class)
+@Singleton
+public class WebJarsAssetCache implements Initializable
+{
+    private static final String NAME = "webjars.assets";
+
+    private static final String GZIP_EXTENSION = ".gz";
+
+    /**
+     * The maximum number of extracted resources remembered.
+     */
+    private static final int CAPACITY = 1000;
+
+    /**
+     * The gzipped variant is kept only if it saves at least this fraction of the size.
+     */
+    private static final double MINIMUM_COMPRESSION_GAIN = 0.1;
+
+    /**
+     * The content types (besides the text ones) worth compressing.
+     */
+    private static final List<String> COMPRESSIBLE_CONTENT_TYPES =
+        Arrays.asList("javascript", "json", "xml", "svg", "font/ttf", "font/otf", "application/x-font-ttf",
+            "application/vnd.ms-fontobject");
+
+    /**
+     * Event listened by the component.
+     */
+    private static final List<Event> EVENTS =
+        Arrays.<Event>asList(new ExtensionInstalledEvent(), new ExtensionUpgradedEvent(),
+            new ExtensionUninstalledEvent());
+
+    /**
+     * Used to listen to extension events.
+     *
+     * @version $Id$
+     */
+    protected class Listener implements EventListener
+    {
+        @Override
+        public String getName()
+        {
+            return NAME;
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return EVENTS;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            WebJarsAssetCache.this.assets.removeAll();
+            // Removing all the entries doesn't necessarily dispose them
+            cleanDirectory();
+        }
+    }
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private ObservationManager observationManager;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Used to determine the Content Type of the extracted resources.
+     */
+    private Tika tika = new Tika();
+
+    private Cache<WebJarsAsset> assets;
+
+    private File directory;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        File temporaryDirectory = this.environment.getTemporaryDirectory();
+        if (temporaryDirectory != null) {
+            try {
+                this.assets = this.cacheManager.createNewCache(new LRUCacheConfiguration(NAME, CAPACITY));
+            } catch (CacheException e) {
+                throw new InitializationException("Failed to create the WebJar assets cache", e);
+            }
+
+            this.directory = new File(temporaryDirectory, "cache/webjars");
+            cleanDirectory();
+
+            this.observationManager.addListener(new Listener());
+        }
+    }
+
+    /**
+     * @param namespace the namespace where the WebJar is installed, {@code null} for the root namespace
+     * @param resourceName the path of the resource inside the WebJar
+     * @param source provides the content of the resource when it's not extracted yet
+     * @return the extracted resource or {@code null} if the resource doesn't exist or cannot be extracted (in which
+     *         case it should be read from the JAR)
+     */
+    public WebJarsAsset get(String namespace, String resourceName, Supplier<InputStream> source)
+    {
+        if (this.directory == null) {
+            return null;
+        }
+
+        String key = namespace + ':' + resourceName;
+        WebJarsAsset asset = this.assets.get(key);
+
+        if (asset == null || !asset.exists()) {
+            try {
+                asset = extract(key, resourceName, source);
+            } catch (IOException e) {
+                this.logger.warn("Failed to extract the WebJar resource [{}] in namespace [{}]: {}", resourceName,
+                    namespace, ExceptionUtils.getRootCauseMessage(e));
+
+                return null;
+            }
+
+            if (asset != null) {
+                this.assets.set(key, asset);
+            }
+        }
+
+        return asset;
+    }
+
+    private void cleanDirectory()
+    {
+        try {
+            FileUtils.deleteDirectory(this.directory);
+        } catch (IOException e) {
+            this.logger.warn("Failed to delete the extracted WebJar resources from [{}]: {}", this.directory,
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    private WebJarsAsset extract(String key, String resourceName, Supplier<InputStream> source) throws IOException
+    {
+        InputStream resourceStream = source.get();
+        if (resourceStream == null) {
+            return null;
+        }
+
+        FileUtils.forceMkdir(this.directory);
+
+        // The name of the files doesn't depend on the resource path to stay in the cache directory whatever it is, and
+        // it's unique so that the files are deleted only with the asset they belong to
+        File file = File.createTempFile(DigestUtils.sha1Hex(key), null, this.directory);
+        try {
+            MessageDigest digest = DigestUtils.getSha256Digest();
+            try (InputStream input = new DigestInputStream(resourceStream, digest);
+                OutputStream output = new FileOutputStream(file)) {
+                IOUtils.copy(input, output);
+            }
+
+            String contentType;
+            try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+                contentType = this.tika.detect(input, resourceName);
+            }
+
+            File gzippedFile = null;
+            if (isCompressible(contentType)) {
+                gzippedFile = compress(file);
+            }
+
+            return new WebJarsAsset(file, gzippedFile, contentType, Hex.encodeHexString(digest.digest()));
+        } catch (IOException e) {
+            Files.deleteIfExists(file.toPath());
+
+            throw e;
+        }
+    }
+
+    private boolean isCompressible(String contentType)
+    {
+        return contentType.startsWith("text/")
+            || COMPRESSIBLE_CONTENT_TYPES.stream().anyMatch(type -> StringUtils.contains(contentType, type));
+    }
+
+    private File compress(File file) throws IOException
+    {
+        File gzippedFile = File.createTempFile(file.getName(), GZIP_EXTENSION, this.directory);
+        try (OutputStream output = new GZIPOutputStream(new FileOutputStream(gzippedFile))) {
+            Files.copy(file.toPath(), output);
+        } catch (IOException e) {
+            Files.deleteIfExists(gzippedFile.toPath());
+
+            throw e;
+        }
+
+        if (gzippedFile.length() > file.length() * (1 - MINIMUM_COMPRESSION_GAIN)) {
+            // Not worth it (small or already compressed resource)
+            Files.delete(gzippedFile.toPath());
+
+            return null;
+        }
+
+        return gzippedFile;
+    }
+}
@@ -20,18 +20,38 @@
 package org.xwiki.webjars.internal;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.apache.http.HttpHeaders;
 import org.xwiki.classloader.ClassLoaderManager;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.container.Container;
+import org.xwiki.container.Request;
+import org.xwiki.container.Response;
+import org.xwiki.container.servlet.HttpServletUtils;
+import org.xwiki.container.servlet.ServletRequest;
+import org.xwiki.container.servlet.ServletResponse;
+import org.xwiki.extension.InstalledExtension;
+import org.xwiki.extension.repository.InstalledExtensionRepository;
+import org.xwiki.resource.ResourceReference;
+import org.xwiki.resource.ResourceReferenceHandlerChain;
 import org.xwiki.resource.ResourceReferenceHandlerException;
 import org.xwiki.resource.ResourceType;
 import org.xwiki.resource.servlet.AbstractServletResourceReferenceHandler;
@@ -68,17 +88,136 @@ public class WebJarsResourceReferenceHandler extends AbstractServletResourceRefe
     @Inject
     private ClassLoaderManager classLoaderManager;
 
+    @Inject
+    private WebJarsAssetCache assetCache;
+
+    @Inject
+    private InstalledExtensionRepository installedExtensionRepository;
+
+    @Inject
+    private Container container;
+
     @Override
     public List<ResourceType> getSupportedResourceReferences()
     {
         return Arrays.asList(WebJarsResourceReference.TYPE);
     }
 
+    @Override
+    public void handle(ResourceReference resourceReference, ResourceReferenceHandlerChain chain)
+        throws ResourceReferenceHandlerException
+    {
+        WebJarsResourceReference webJarsResourceReference = (WebJarsResourceReference) resourceReference;
+
+        WebJarsAsset asset = getAsset(webJarsResourceReference);
+        if (asset != null && serveAsset(webJarsResourceReference, asset)) {
+            chain.handleNext(resourceReference);
+        } else {
+            // Dynamic resource, missing resource or no servlet environment
+            super.handle(resourceReference, chain);
+        }
+    }
+
+    private WebJarsAsset getAsset(WebJarsResourceReference resourceReference)
+    {
+        if (isResourceCacheable(resourceReference) && this.container.getRequest() instanceof ServletRequest
+            && this.container.getResponse() instanceof ServletResponse) {
+            return this.assetCache.get(getNamespace(resourceReference), getResourceName(resourceReference),
+                () -> getResourceStream(resourceReference));
+        }
+
+        return null;
+    }
+
+    /**
+     * @return {@code false} if the extracted files have been deleted since the asset was looked up (e.g. because it
+     *         was evicted from the cache) in which case the resource should be read from the JAR
+     */
+    private boolean serveAsset(WebJarsResourceReference resourceReference, WebJarsAsset asset)
+        throws ResourceReferenceHandlerException
+    {
+        HttpServletRequest httpRequest = ((ServletRequest) this.container.getRequest()).getHttpServletRequest();
+        Response response = this.container.getResponse();
+        HttpServletResponse httpResponse = ((ServletResponse) response).getHttpServletResponse();
+
+        boolean gzipped = asset.hasGzippedVariant() && HttpServletUtils.acceptsGzip(httpRequest);
+        String etag = asset.getETag(gzipped);
+
+        if (HttpServletUtils.matchesETag(httpRequest, etag)
+            || httpRequest.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            setVariantHeaders(httpResponse, asset, etag);
+            // The browser has the same content in its cache (the static resources never change, see
+            // AbstractServletResourceReferenceHandler)
+            httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+            return true;
+        }
+
+        try (FileChannel channel = FileChannel.open(asset.getFile(gzipped).toPath(), StandardOpenOption.READ)) {
+            setVariantHeaders(httpResponse, asset, etag);
+            setResponseHeaders(response, resourceReference);
+            response.setContentType(asset.getContentType());
+            if (gzipped) {
+                httpResponse.setHeader(HttpHeaders.CONTENT_ENCODING, HttpServletUtils.GZIP_ENCODING);
+            }
+
+            long size = channel.size();
+            httpResponse.setContentLengthLong(size);
+
+            // Don't close the target channel since it would close the response output stream
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            for (long position = 0; position < size;) {
+                position += channel.transferTo(position, size - position, target);
+            }
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            throw new ResourceReferenceHandlerException(
+                String.format("Failed to read resource [%s]", getResourceName(resourceReference)), e);
+        }
+
+        return true;
+    }
+
+    private void setVariantHeaders(HttpServletResponse httpResponse, WebJarsAsset asset, String etag)
+    {
+        if (asset.hasGzippedVariant()) {
+            httpResponse.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        httpResponse.setHeader(HttpHeaders.ETAG, etag);
+    }
+
     @Override
     protected InputStream getResourceStream(WebJarsResourceReference resourceReference)
     {
         String resourcePath = String.format("%s%s", WEBJARS_RESOURCE_PREFIX, getResourceName(resourceReference));
-        return getClassLoader(resourceReference.getNamespace()).getResourceAsStream(resourcePath);
+        return getClassLoader(getNamespace(resourceReference)).getResourceAsStream(resourcePath);
+    }
+
+    /**
+     * The namespace comes from the URL: a namespace where no extension is installed only has access to the root
+     * extensions so it's replaced by the root namespace to not create a class loader (and extract the resources) for
+     * any namespace a client asks for.
+     *
+     * @param resourceReference the reference of the requested resource
+     * @return the namespace where to look for the resource, {@code null} for the root namespace
+     */
+    private String getNamespace(WebJarsResourceReference resourceReference)
+    {
+        String namespace = resourceReference.getNamespace();
+
+        if (namespace != null) {
+            // The extensions installed on the root namespace are also returned for any namespace so we need to look
+            // for an extension installed on the requested namespace itself
+            for (InstalledExtension extension : this.installedExtensionRepository.getInstalledExtensions(namespace)) {
+                Collection<String> namespaces = extension.getNamespaces();
+                if (namespaces != null && namespaces.contains(namespace)) {
+                    return namespace;
+                }
+            }
+        }
+
+        return null;
     }
 
     @Override
@@ -21,6 +21,7 @@
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.util.Arrays;
@@ -29,10 +30,12 @@
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.velocity.exception.VelocityException;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -41,19 +44,26 @@
 import org.xwiki.container.Container;
 import org.xwiki.container.servlet.ServletRequest;
 import org.xwiki.container.servlet.ServletResponse;
+import org.xwiki.extension.InstalledExtension;
+import org.xwiki.extension.repository.InstalledExtensionRepository;
 import org.xwiki.resource.ResourceReferenceHandlerChain;
 import org.xwiki.resource.ResourceReferenceHandlerException;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 import org.xwiki.velocity.VelocityEngine;
 import org.xwiki.velocity.VelocityManager;
+import org.xwiki.webjars.internal.WebJarsAsset;
+import org.xwiki.webjars.internal.WebJarsAssetCache;
 import org.xwiki.webjars.internal.WebJarsResourceReference;
 import org.xwiki.webjars.internal.WebJarsResourceReferenceHandler;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -72,6 +82,9 @@
     public MockitoComponentMockingRule<WebJarsResourceReferenceHandler> componentManager =
         new MockitoComponentMockingRule<>(WebJarsResourceReferenceHandler.class);
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private ServletRequest request;
 
     private ServletResponse response;
@@ -82,6 +95,11 @@
 
     private NamespaceURLClassLoader classLoader;
 
+    /**
+     * An extension installed on the root namespace, which is also returned for all the other namespaces.
+     */
+    private InstalledExtension rootExtension = mock(InstalledExtension.class);
+
     @Before
     public void configure() throws Exception
     {
@@ -105,6 +123,15 @@ public void configure() throws Exception
         this.classLoader = mock(NamespaceURLClassLoader.class);
         ClassLoaderManager clm = this.componentManager.getInstance(ClassLoaderManager.class);
         when(clm.getURLClassLoader("wiki:wiki", true)).thenReturn(this.classLoader);
+
+        InstalledExtension extension = mock(InstalledExtension.class);
+        when(extension.getNamespaces()).thenReturn(Arrays.asList("wiki:wiki"));
+        InstalledExtensionRepository installedExtensionRepository =
+            this.componentManager.getInstance(InstalledExtensionRepository.class);
+        when(installedExtensionRepository.getInstalledExtensions("wiki:wiki"))
+            .thenReturn(Arrays.asList(this.rootExtension, extension));
+        when(installedExtensionRepository.getInstalledExtensions("wiki:unknown"))
+            .thenReturn(Arrays.asList(this.rootExtension));
     }
 
     @Test
@@ -156,6 +183,31 @@ public void executeWhenResourceExists() throws Exception
         verify(this.chain).handleNext(reference);
     }
 
+    @Test
+    public void executeWhenNamespaceHasNoInstalledExtension() throws Exception
+    {
+        // Only the extensions installed on the root namespace are available in the requested namespace
+        WebJarsResourceReference reference =
+            new WebJarsResourceReference("wiki:unknown", Arrays.asList("angular", "2.1.11", "angular.js"));
+
+        NamespaceURLClassLoader rootClassLoader = mock(NamespaceURLClassLoader.class);
+        ClassLoaderManager clm = this.componentManager.getInstance(ClassLoaderManager.class);
+        when(clm.getURLClassLoader(null, true)).thenReturn(rootClassLoader);
+        when(rootClassLoader.getResourceAsStream("META-INF/resources/webjars/angular/2.1.11/angular.js"))
+            .thenReturn(new ByteArrayInputStream("content".getBytes()));
+
+        this.handler.handle(reference, this.chain);
+
+        // The resource is looked for in the root namespace without creating a class loader for the requested one
+        assertEquals("content", this.response.getOutputStream().toString());
+        verify(clm, never()).getURLClassLoader(eq("wiki:unknown"), anyBoolean());
+
+        WebJarsAssetCache assetCache = this.componentManager.getInstance(WebJarsAssetCache.class);
+        verify(assetCache).get(isNull(), eq("angular/2.1.11/angular.js"), any());
+
+        verify(this.chain).handleNext(reference);
+    }
+
     @Test
     public void return304WhenIfModifiedSinceHeader() throws Exception
     {
@@ -172,6 +224,112 @@ public void return304WhenIfModifiedSinceHeader() throws Exception
         verify(this.chain).handleNext(reference);
     }
 
+    @Test
+    public void executeWhenResourceIsExtracted() throws Exception
+    {
+        WebJarsResourceReference reference =
+            new WebJarsResourceReference("wiki:wiki", Arrays.asList("angular", "2.1.11", "angular.js"));
+
+        File file = this.temporaryFolder.newFile();
+        FileUtils.writeStringToFile(file, "content", "UTF-8");
+        File gzippedFile = this.temporaryFolder.newFile();
+        FileUtils.writeStringToFile(gzippedFile, "gzipped content", "UTF-8");
+        WebJarsAsset asset = new WebJarsAsset(file, gzippedFile, "application/javascript", "hash");
+
+        WebJarsAssetCache assetCache = this.componentManager.getInstance(WebJarsAssetCache.class);
+        when(assetCache.get(eq("wiki:wiki"), eq("angular/2.1.11/angular.js"), any())).thenReturn(asset);
+        when(this.request.getHttpServletRequest().getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+
+        this.handler.handle(reference, this.chain);
+
+        // Verify that the gzipped variant has been copied to the Response output stream.
+        assertEquals("gzipped content", this.response.getOutputStream().toString());
+        verify(this.response).setContentType("application/javascript");
+        verify(this.response.getHttpServletResponse()).setHeader("Content-Encoding", "gzip");
+        verify(this.response.getHttpServletResponse()).setHeader("Vary", "Accept-Encoding");
+        verify(this.response.getHttpServletResponse()).setHeader("ETag", "\"hash-gzip\"");
+        verify(this.response.getHttpServletResponse()).setHeader("Cache-Control", "public");
+        verify(this.response.getHttpServletResponse()).setContentLengthLong(15);
+
+        // The resource is not read from the JAR.
+        verify(this.classLoader, never()).getResourceAsStream(anyString());
+
+        verify(this.chain).handleNext(reference);
+    }
+
+    @Test
+    public void executeWhenGzipIsRefused() throws Exception
+    {
+        WebJarsResourceReference reference =
+            new WebJarsResourceReference("wiki:wiki", Arrays.asList("angular", "2.1.11", "angular.js"));
+
+        File file = this.temporaryFolder.newFile();
+        FileUtils.writeStringToFile(file, "content", "UTF-8");
+        File gzippedFile = this.temporaryFolder.newFile();
+        FileUtils.writeStringToFile(gzippedFile, "gzipped content", "UTF-8");
+        WebJarsAsset asset = new WebJarsAsset(file, gzippedFile, "application/javascript", "hash");
+
+        WebJarsAssetCache assetCache = this.componentManager.getInstance(WebJarsAssetCache.class);
+        when(assetCache.get(eq("wiki:wiki"), eq("angular/2.1.11/angular.js"), any())).thenReturn(asset);
+        when(this.request.getHttpServletRequest().getHeader("Accept-Encoding")).thenReturn("gzip;q=0, deflate");
+
+        this.handler.handle(reference, this.chain);
+
+        assertEquals("content", this.response.getOutputStream().toString());
+        verify(this.response.getHttpServletResponse(), never()).setHeader(eq("Content-Encoding"), any());
+        verify(this.response.getHttpServletResponse()).setHeader("Vary", "Accept-Encoding");
+        verify(this.response.getHttpServletResponse()).setHeader("ETag", "\"hash\"");
+
+        verify(this.chain).handleNext(reference);
+    }
+
+    @Test
+    public void executeWhenExtractedResourceIsDeleted() throws Exception
+    {
+        WebJarsResourceReference reference =
+            new WebJarsResourceReference("wiki:wiki", Arrays.asList("angular", "2.1.11", "angular.js"));
+
+        // The asset was evicted (and its files deleted) right after the lookup
+        File file = this.temporaryFolder.newFile();
+        WebJarsAsset asset = new WebJarsAsset(file, null, "application/javascript", "hash");
+        file.delete();
+
+        WebJarsAssetCache assetCache = this.componentManager.getInstance(WebJarsAssetCache.class);
+        when(assetCache.get(eq("wiki:wiki"), eq("angular/2.1.11/angular.js"), any())).thenReturn(asset);
+        when(this.classLoader.getResourceAsStream("META-INF/resources/webjars/angular/2.1.11/angular.js"))
+            .thenReturn(new ByteArrayInputStream("content".getBytes()));
+
+        this.handler.handle(reference, this.chain);
+
+        // The resource is read from the JAR
+        assertEquals("content", this.response.getOutputStream().toString());
+        verify(this.response.getHttpServletResponse(), never()).setHeader("ETag", "\"hash\"");
+
+        verify(this.chain).handleNext(reference);
+    }
+
+    @Test
+    public void return304WhenIfNoneMatchHeader() throws Exception
+    {
+        WebJarsResourceReference reference =
+            new WebJarsResourceReference("wiki:wiki", Arrays.asList("angular", "2.1.11", "angular.js"));
+
+        WebJarsAsset asset =
+            new WebJarsAsset(this.temporaryFolder.newFile(), null, "application/javascript", "hash");
+
+        WebJarsAssetCache assetCache = this.componentManager.getInstance(WebJarsAssetCache.class);
+        when(assetCache.get(eq("wiki:wiki"), eq("angular/2.1.11/angular.js"), any())).thenReturn(asset);
+        when(this.request.getHttpServletRequest().getHeader("If-None-Match")).thenReturn("\"other\", \"hash\"");
+
+        this.handler.handle(reference, this.chain);
+
+        verify(this.response.getHttpServletResponse()).setStatus(304);
+        verify(this.response.getHttpServletResponse()).setHeader("ETag", "\"hash\"");
+        assertEquals("", this.response.getOutputStream().toString());
+
+        verify(this.chain).handleNext(reference);
+    }
+
     @Test
     public void evaluateResource() throws Exception
     {
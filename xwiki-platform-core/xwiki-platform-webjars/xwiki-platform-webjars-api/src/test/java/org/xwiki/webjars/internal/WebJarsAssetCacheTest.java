@@ -0,0 +1,206 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.webjars.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.DisposableCacheValue;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.environment.Environment;
+import org.xwiki.extension.event.ExtensionUninstalledEvent;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link WebJarsAssetCache}.
+ *
+ * @version $Id$
+ * @since 10.0RC1
+ */
+public class WebJarsAssetCacheTest
+{
+    @Rule
+    public MockitoComponentMockingRule<WebJarsAssetCache> mocker =
+        new MockitoComponentMockingRule<>(WebJarsAssetCache.class);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Cache<Object> cache = mock(Cache.class);
+
+    private File staleFile;
+
+    private WebJarsAssetCache assetCache;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void configure() throws Exception
+    {
+        Environment environment = this.mocker.getInstance(Environment.class);
+        when(environment.getTemporaryDirectory()).thenReturn(this.temporaryFolder.getRoot());
+
+        Map<String, Object> entries = new HashMap<>();
+        when(this.cache.get(anyString())).then(invocation -> entries.get(invocation.getArgument(0)));
+        doAnswer(invocation -> entries.put(invocation.getArgument(0), invocation.getArgument(1))).when(this.cache)
+            .set(anyString(), any());
+        // Like an eviction
+        doAnswer(invocation -> {
+            ((DisposableCacheValue) entries.remove(invocation.getArgument(0))).dispose();
+            return null;
+        }).when(this.cache).remove(anyString());
+        CacheManager cacheManager = this.mocker.getInstance(CacheManager.class);
+        when(cacheManager.<Object>createNewCache(any(CacheConfiguration.class))).thenReturn(this.cache);
+
+        // Left by a previous run
+        this.staleFile = new File(this.temporaryFolder.getRoot(), "cache/webjars/stale");
+        FileUtils.write(this.staleFile, "stale", "UTF-8");
+
+        this.assetCache = this.mocker.getComponentUnderTest();
+    }
+
+    @Test
+    public void getTextResource() throws Exception
+    {
+        String content = StringUtils.repeat("var answer = 42;\n", 100);
+
+        WebJarsAsset asset =
+            this.assetCache.get("wiki:wiki", "angular/2.1.11/angular.js", () -> toStream(content));
+
+        assertEquals("application/javascript", asset.getContentType());
+        assertEquals('"' + DigestUtils.sha256Hex(content) + '"', asset.getETag(false));
+        assertEquals(content, FileUtils.readFileToString(asset.getFile(false), "UTF-8"));
+
+        assertTrue(asset.hasGzippedVariant());
+        assertEquals('"' + DigestUtils.sha256Hex(content) + "-gzip\"", asset.getETag(true));
+        try (InputStream input = new GZIPInputStream(new FileInputStream(asset.getFile(true)))) {
+            assertEquals(content, IOUtils.toString(input, "UTF-8"));
+        }
+
+        // The resource is extracted only once.
+        assertSame(asset, this.assetCache.get("wiki:wiki", "angular/2.1.11/angular.js", () -> {
+            fail("The resource should not be read again");
+            return null;
+        }));
+    }
+
+    @Test
+    public void getSmallResource() throws Exception
+    {
+        WebJarsAsset asset = this.assetCache.get("wiki:wiki", "angular/2.1.11/angular.js", () -> toStream("x"));
+
+        // Compressing such a small resource only makes it bigger.
+        assertFalse(asset.hasGzippedVariant());
+    }
+
+    @Test
+    public void getMissingResource() throws Exception
+    {
+        assertNull(this.assetCache.get("wiki:wiki", "angular/2.1.11/missing.js", () -> null));
+    }
+
+    @Test
+    public void getWhenFilesAreDeleted() throws Exception
+    {
+        WebJarsAsset asset = this.assetCache.get("wiki:wiki", "angular/2.1.11/angular.js", () -> toStream("x"));
+
+        FileUtils.cleanDirectory(this.temporaryFolder.getRoot());
+
+        WebJarsAsset extractedAgain =
+            this.assetCache.get("wiki:wiki", "angular/2.1.11/angular.js", () -> toStream("y"));
+
+        assertEquals("y", FileUtils.readFileToString(extractedAgain.getFile(false), "UTF-8"));
+        assertFalse(asset == extractedAgain);
+    }
+
+    @Test
+    public void getWhenAssetIsEvicted() throws Exception
+    {
+        String content = StringUtils.repeat("var answer = 42;\n", 100);
+        WebJarsAsset asset =
+            this.assetCache.get("wiki:wiki", "angular/2.1.11/angular.js", () -> toStream(content));
+
+        this.cache.remove("wiki:wiki:angular/2.1.11/angular.js");
+
+        // The files of the evicted asset are deleted
+        assertFalse(asset.getFile(false).exists());
+        assertFalse(asset.getFile(true).exists());
+
+        WebJarsAsset extractedAgain =
+            this.assetCache.get("wiki:wiki", "angular/2.1.11/angular.js", () -> toStream(content));
+
+        assertTrue(extractedAgain.exists());
+        assertFalse(asset.getFile(false).equals(extractedAgain.getFile(false)));
+    }
+
+    @Test
+    public void staleFilesAreDeletedOnStartup() throws Exception
+    {
+        assertFalse(this.staleFile.exists());
+    }
+
+    @Test
+    public void onExtensionEvent() throws Exception
+    {
+        WebJarsAsset asset = this.assetCache.get("wiki:wiki", "angular/2.1.11/angular.js", () -> toStream("x"));
+
+        ArgumentCaptor<EventListener> listener = ArgumentCaptor.forClass(EventListener.class);
+        verify(this.mocker.<ObservationManager>getInstance(ObservationManager.class)).addListener(listener.capture());
+        listener.getValue().onEvent(new ExtensionUninstalledEvent(), null, null);
+
+        verify(this.cache).removeAll();
+        assertFalse(asset.exists());
+    }
+
+    private InputStream toStream(String content)
+    {
+        return new ByteArrayInputStream(content.getBytes());
+    }
+}